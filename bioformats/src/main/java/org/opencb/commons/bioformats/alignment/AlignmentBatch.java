@@ -0,0 +1,396 @@
+package org.opencb.commons.bioformats.alignment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Alignments of the same chromosome stored by columns, in arrays of primitives, instead of as {@link Alignment}
+ * objects, each of them with its own strings, lists and arrays.
+ * <p>
+ * Every field of the alignment at an index is taken from its own array. The bases of all the reads are packed in 4
+ * bits each, using the BAM codes "=ACMGRSVTWYHKDBN", so any other base is read back as 'N'. The qualities, names and
+ * the sequences of the differences are concatenated in byte arrays, and the differences of all the alignments are
+ * stored in arrays of their own, pointed by the first difference of each alignment. Mate reference names are stored
+ * once for the whole batch. Attributes depend on the format of the file, so they are kept as they are.
+ * <p>
+ * The methods that take an alignment index and return a field do not create objects, except for the strings, and can
+ * be used instead of the getters of {@link Alignment}. {@link #getAlignment(int)} creates the whole alignment.
+ */
+public class AlignmentBatch {
+
+    public static final String BASES = "=ACMGRSVTWYHKDBN";
+    private static final byte[] BASE_CODES = new byte[256];
+
+    static {
+        Arrays.fill(BASE_CODES, (byte) BASES.indexOf('N'));
+        for (int i = 0; i < BASES.length(); i++) {
+            BASE_CODES[BASES.charAt(i)] = (byte) i;
+            BASE_CODES[Character.toLowerCase(BASES.charAt(i))] = (byte) i;
+        }
+    }
+
+    private final String chromosome;
+    private int size;
+
+    private long[] starts;
+    private long[] ends;
+    private long[] unclippedStarts;
+    private long[] unclippedEnds;
+    private int[] lengths;
+    private int[] flags;
+    private byte[] mappingQualities;
+    private int[] mateAlignmentStarts;
+    private int[] inferredInsertSizes;
+    private int[] mateReferences;       // Index in mateReferenceNames, or -1 if null
+    private final List<String> mateReferenceNames;
+    private final Map<String, Integer> mateReferenceIndex;
+    private final List<Map<String, Object>> attributes;
+
+    private final ByteColumn names;
+    private final ByteColumn qualities;
+    private long[] sequenceOffsets;     // Offset of the first base in bases
+    private int[] sequenceLengths;      // Length of the read sequence, or -1 if there is none
+    private byte[] bases;               // Two bases per byte, the first one in the high bits
+    private long numBases;
+
+    private int[] firstDifferences;     // Index of the first difference of each alignment, plus the end of the last one
+    private int numDifferences;
+    private int[] differencePositions;
+    private char[] differenceOps;
+    private int[] differenceLengths;
+    private final ByteColumn differenceSequences;
+
+    public AlignmentBatch(String chromosome) {
+        this(chromosome, 1024);
+    }
+
+    public AlignmentBatch(String chromosome, int capacity) {
+        this.chromosome = chromosome;
+        capacity = Math.max(capacity, 1);
+        starts = new long[capacity];
+        ends = new long[capacity];
+        unclippedStarts = new long[capacity];
+        unclippedEnds = new long[capacity];
+        lengths = new int[capacity];
+        flags = new int[capacity];
+        mappingQualities = new byte[capacity];
+        mateAlignmentStarts = new int[capacity];
+        inferredInsertSizes = new int[capacity];
+        mateReferences = new int[capacity];
+        mateReferenceNames = new ArrayList<>();
+        mateReferenceIndex = new HashMap<>();
+        attributes = new ArrayList<>(capacity);
+        names = new ByteColumn(capacity, 16);
+        qualities = new ByteColumn(capacity, 64);
+        sequenceOffsets = new long[capacity];
+        sequenceLengths = new int[capacity];
+        bases = new byte[capacity * 32];
+        firstDifferences = new int[capacity + 1];
+        differencePositions = new int[capacity];
+        differenceOps = new char[capacity];
+        differenceLengths = new int[capacity];
+        differenceSequences = new ByteColumn(capacity, 2);
+    }
+
+    /**
+     * @param alignments Alignments of the same chromosome
+     */
+    public AlignmentBatch(List<Alignment> alignments) {
+        this(alignments.isEmpty() ? null : alignments.get(0).getChromosome(), alignments.size());
+        for (Alignment alignment : alignments) {
+            add(alignment);
+        }
+    }
+
+    @SuppressWarnings("deprecation")    // The read sequence is kept, even if Alignment may drop it in the future
+    public void add(Alignment alignment) {
+        if (chromosome != null && !chromosome.equals(alignment.getChromosome())) {
+            throw new IllegalArgumentException("Alignment of chromosome " + alignment.getChromosome()
+                    + " added to a batch of chromosome " + chromosome);
+        }
+        if (size == starts.length) {
+            grow(size * 2);
+        }
+        int i = size++;
+        starts[i] = alignment.getStart();
+        ends[i] = alignment.getEnd();
+        unclippedStarts[i] = alignment.getUnclippedStart();
+        unclippedEnds[i] = alignment.getUnclippedEnd();
+        lengths[i] = alignment.getLength();
+        flags[i] = alignment.getFlags();
+        mappingQualities[i] = (byte) alignment.getMappingQuality();
+        mateAlignmentStarts[i] = alignment.getMateAlignmentStart();
+        inferredInsertSizes[i] = alignment.getInferredInsertSize();
+        mateReferences[i] = mateReference(alignment.getMateReferenceName());
+        attributes.add(alignment.getAttributes());
+        names.add(alignment.getName());
+        qualities.add(alignment.getQualities());
+        addSequence(i, alignment.getReadSequence());
+
+        List<Alignment.AlignmentDifference> differences = alignment.getDifferences();
+        if (differences != null) {
+            for (Alignment.AlignmentDifference difference : differences) {
+                addDifference(difference);
+            }
+        }
+        firstDifferences[i + 1] = numDifferences;
+    }
+
+    private int mateReference(String mateReferenceName) {
+        if (mateReferenceName == null) {
+            return -1;
+        }
+        Integer index = mateReferenceIndex.get(mateReferenceName);
+        if (index == null) {
+            index = mateReferenceNames.size();
+            mateReferenceNames.add(mateReferenceName);
+            mateReferenceIndex.put(mateReferenceName, index);
+        }
+        return index;
+    }
+
+    private void addSequence(int i, byte[] sequence) {
+        sequenceOffsets[i] = numBases;
+        if (sequence == null) {
+            sequenceLengths[i] = -1;
+            return;
+        }
+        long required = (numBases + sequence.length + 1) / 2;
+        if (required > bases.length) {
+            bases = Arrays.copyOf(bases, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, 2L * bases.length)));
+        }
+        sequenceLengths[i] = sequence.length;
+        for (byte base : sequence) {
+            int code = BASE_CODES[base & 0xff];
+            int index = (int) (numBases >>> 1);
+            if ((numBases & 1) == 0) {
+                bases[index] = (byte) (code << 4);
+            } else {
+                bases[index] |= code;
+            }
+            numBases++;
+        }
+    }
+
+    private void addDifference(Alignment.AlignmentDifference difference) {
+        if (numDifferences == differencePositions.length) {
+            int capacity = numDifferences * 2;
+            differencePositions = Arrays.copyOf(differencePositions, capacity);
+            differenceOps = Arrays.copyOf(differenceOps, capacity);
+            differenceLengths = Arrays.copyOf(differenceLengths, capacity);
+        }
+        differencePositions[numDifferences] = difference.getPos();
+        differenceOps[numDifferences] = difference.getOp();
+        differenceLengths[numDifferences] = difference.getLength();
+        differenceSequences.add(difference.getSeq());
+        numDifferences++;
+    }
+
+    private void grow(int capacity) {
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        unclippedStarts = Arrays.copyOf(unclippedStarts, capacity);
+        unclippedEnds = Arrays.copyOf(unclippedEnds, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        mappingQualities = Arrays.copyOf(mappingQualities, capacity);
+        mateAlignmentStarts = Arrays.copyOf(mateAlignmentStarts, capacity);
+        inferredInsertSizes = Arrays.copyOf(inferredInsertSizes, capacity);
+        mateReferences = Arrays.copyOf(mateReferences, capacity);
+        sequenceOffsets = Arrays.copyOf(sequenceOffsets, capacity);
+        sequenceLengths = Arrays.copyOf(sequenceLengths, capacity);
+        firstDifferences = Arrays.copyOf(firstDifferences, capacity + 1);
+    }
+
+    public String getChromosome() {
+        return chromosome;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getStart(int i) {
+        return starts[i];
+    }
+
+    public long getEnd(int i) {
+        return ends[i];
+    }
+
+    public long getUnclippedStart(int i) {
+        return unclippedStarts[i];
+    }
+
+    public long getUnclippedEnd(int i) {
+        return unclippedEnds[i];
+    }
+
+    public int getLength(int i) {
+        return lengths[i];
+    }
+
+    public int getFlags(int i) {
+        return flags[i];
+    }
+
+    public int getMappingQuality(int i) {
+        return mappingQualities[i] & 0xff;
+    }
+
+    public int getMateAlignmentStart(int i) {
+        return mateAlignmentStarts[i];
+    }
+
+    public int getInferredInsertSize(int i) {
+        return inferredInsertSizes[i];
+    }
+
+    public String getMateReferenceName(int i) {
+        return mateReferences[i] < 0 ? null : mateReferenceNames.get(mateReferences[i]);
+    }
+
+    public Map<String, Object> getAttributes(int i) {
+        return attributes.get(i);
+    }
+
+    public String getName(int i) {
+        return names.getString(i);
+    }
+
+    public String getQualities(int i) {
+        return qualities.getString(i);
+    }
+
+    /**
+     * @return Quality of a base of the read, as stored in {@link Alignment#getQualities()}
+     */
+    public byte getQuality(int i, int position) {
+        return qualities.get(i, position);
+    }
+
+    public boolean hasReadSequence(int i) {
+        return sequenceLengths[i] >= 0;
+    }
+
+    /**
+     * @return Base of the read at a position, as an ASCII character
+     */
+    public byte getBase(int i, int position) {
+        long offset = sequenceOffsets[i] + position;
+        int code = bases[(int) (offset >>> 1)];
+        return (byte) BASES.charAt((offset & 1) == 0 ? (code >>> 4) & 0xf : code & 0xf);
+    }
+
+    /**
+     * @return Read sequence, or null if the alignment had none
+     */
+    public byte[] getReadSequence(int i) {
+        if (!hasReadSequence(i)) {
+            return null;
+        }
+        byte[] sequence = new byte[sequenceLengths[i]];
+        for (int position = 0; position < sequence.length; position++) {
+            sequence[position] = getBase(i, position);
+        }
+        return sequence;
+    }
+
+    public int getNumDifferences(int i) {
+        return firstDifferences[i + 1] - firstDifferences[i];
+    }
+
+    public int getDifferencePos(int i, int difference) {
+        return differencePositions[firstDifferences[i] + difference];
+    }
+
+    public char getDifferenceOp(int i, int difference) {
+        return differenceOps[firstDifferences[i] + difference];
+    }
+
+    public int getDifferenceLength(int i, int difference) {
+        return differenceLengths[firstDifferences[i] + difference];
+    }
+
+    public String getDifferenceSeq(int i, int difference) {
+        return differenceSequences.getString(firstDifferences[i] + difference);
+    }
+
+    public List<Alignment.AlignmentDifference> getDifferences(int i) {
+        List<Alignment.AlignmentDifference> differences = new ArrayList<>(getNumDifferences(i));
+        for (int d = 0; d < getNumDifferences(i); d++) {
+            differences.add(new Alignment.AlignmentDifference(getDifferencePos(i, d), getDifferenceOp(i, d),
+                    getDifferenceSeq(i, d), getDifferenceLength(i, d)));
+        }
+        return differences;
+    }
+
+    /**
+     * @return New alignment with the values of the alignment at an index
+     */
+    @SuppressWarnings("deprecation")    // The read sequence is kept, even if Alignment may drop it in the future
+    public Alignment getAlignment(int i) {
+        Alignment alignment = new Alignment(getName(i), chromosome, starts[i], ends[i], unclippedStarts[i],
+                unclippedEnds[i], lengths[i], getMappingQuality(i), getQualities(i), getMateReferenceName(i),
+                mateAlignmentStarts[i], inferredInsertSizes[i], flags[i], getDifferences(i), attributes.get(i));
+        alignment.setReadSequence(getReadSequence(i));
+        return alignment;
+    }
+
+    /**
+     * @return New alignments with the values of all the alignments of the batch
+     */
+    public List<Alignment> getAlignments() {
+        List<Alignment> alignments = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            alignments.add(getAlignment(i));
+        }
+        return alignments;
+    }
+
+    /**
+     * Strings of ASCII characters, concatenated in a single array.
+     */
+    private static class ByteColumn {
+        private byte[] bytes;
+        private int[] offsets;      // Offset of each string, plus the end of the last one
+        private final BitSet nulls;
+        private int size;
+
+        ByteColumn(int capacity, int averageLength) {
+            bytes = new byte[capacity * averageLength];
+            offsets = new int[capacity + 1];
+            nulls = new BitSet();
+        }
+
+        void add(String value) {
+            if (size + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            int offset = offsets[size];
+            if (value == null) {
+                nulls.set(size);
+            } else {
+                if (offset + value.length() > bytes.length) {
+                    bytes = Arrays.copyOf(bytes, Math.max(offset + value.length(), bytes.length * 2));
+                }
+                for (int i = 0; i < value.length(); i++) {
+                    bytes[offset + i] = (byte) value.charAt(i);
+                }
+                offset += value.length();
+            }
+            offsets[++size] = offset;
+        }
+
+        byte get(int i, int position) {
+            return bytes[offsets[i] + position];
+        }
+
+        String getString(int i) {
+            if (nulls.get(i)) {
+                return null;
+            }
+            return new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.ISO_8859_1);
+        }
+    }
+}
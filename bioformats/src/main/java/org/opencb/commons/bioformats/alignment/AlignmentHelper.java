@@ -1,18 +1,13 @@
 package org.opencb.commons.bioformats.alignment;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedList;
 import java.util.List;
 
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import net.sf.samtools.*;
+import org.opencb.commons.bioformats.alignment.io.readers.sequence.CellBaseSequenceProvider;
+import org.opencb.commons.bioformats.alignment.io.readers.sequence.ReferenceSequenceProvider;
 import org.opencb.commons.bioformats.feature.Region;
 import org.opencb.commons.containers.map.QueryOptions;
 
@@ -39,6 +34,7 @@ public class AlignmentHelper {
 
         int index = 0, indexRef = 0, indexMismatchBlock = 0, realStart;
         AlignmentBlock blk;
+        byte[] reference = null;
 //        System.out.println("align start = " + record.getAlignmentStart() + 
 //                "\t1st block start = " + record.getAlignmentBlocks().get(0).getReferenceStart() + 
 //                "\n*****\n" + refStr + "\n" + record.getReadString());
@@ -73,13 +69,20 @@ public class AlignmentHelper {
                     realStart = blk.getReferenceStart() - record.getAlignmentStart();
                     // Picard ignores hard clipping, the indices could be necessary
                     indexRef = realStart >= indexRef ? realStart : indexRef;
-                    subread = record.getReadString().substring(index, Math.min(index + blk.getLength(), record.getReadString().length()));
                     if (refStr == null) {
+                        subread = record.getReadString().substring(index, Math.min(index + blk.getLength(), record.getReadString().length()));
                         currentDifference = new Alignment.AlignmentDifference(indexRef, Alignment.AlignmentDifference.MATCH_MISMATCH, cigarLen);
                         currentDifference.setSeq(subread);
                     } else {
-                        subref = refStr.substring(indexRef, indexRef + blk.getLength());
-                        differences.addAll(getMismatchDiff(subref, subread, indexRef));
+                        if (reference == null) {
+                            reference = refStr.getBytes(StandardCharsets.ISO_8859_1);
+                        }
+                        if (indexRef + blk.getLength() > reference.length) {
+                            throw new StringIndexOutOfBoundsException(indexRef + blk.getLength());
+                        }
+                        byte[] read = record.getReadBases();
+                        int length = Math.max(0, Math.min(blk.getLength(), read.length - index));
+                        addMismatches(differences, reference, indexRef, read, index, length, indexRef);
                     }
                     index = index + record.getAlignmentBlocks().get(indexMismatchBlock).getLength();
                     indexRef = indexRef + record.getAlignmentBlocks().get(indexMismatchBlock).getLength();
@@ -268,32 +271,99 @@ public class AlignmentHelper {
      */
     private static List<Alignment.AlignmentDifference> getMismatchDiff(String referenceSequence, String readSequence, int baseIndex) {
         List<Alignment.AlignmentDifference> differences = new LinkedList<>();
-        StringBuilder sb = new StringBuilder();
-        int foundIndex = 0;
-        for (int i = 0; i < Math.min(referenceSequence.length(), readSequence.length()); i++) {
-            if (referenceSequence.charAt(i) != readSequence.charAt(i)) {
-                if (sb.length() == 0) {
-                    foundIndex = i;
+        addMismatches(differences, referenceSequence.getBytes(StandardCharsets.ISO_8859_1), 0,
+                readSequence.getBytes(StandardCharsets.ISO_8859_1), 0,
+                Math.min(referenceSequence.length(), readSequence.length()), baseIndex);
+        return differences;
+    }
+
+    private static final ThreadLocal<MismatchBuffer> mismatchBuffers = new ThreadLocal<MismatchBuffer>() {
+        @Override
+        protected MismatchBuffer initialValue() {
+            return new MismatchBuffer();
+        }
+    };
+
+    /**
+     * Adds a MISMATCH difference for each run of consecutive bases of the read that are different from the reference.
+     *
+     * @param differences List where the differences are added
+     * @param baseIndex Position of the compared bases inside the whole sequence
+     */
+    private static void addMismatches(List<Alignment.AlignmentDifference> differences, byte[] reference, int referenceOffset,
+                                      byte[] read, int readOffset, int length, int baseIndex) {
+        MismatchBuffer mismatches = mismatchBuffers.get();
+        mismatches.clear();
+        findMismatches(reference, referenceOffset, read, readOffset, length, mismatches);
+        for (int i = 0; i < mismatches.size(); i++) {
+            differences.add(new Alignment.AlignmentDifference(baseIndex + mismatches.getPosition(i),
+                    Alignment.AlignmentDifference.MISMATCH,
+                    new String(read, readOffset + mismatches.getPosition(i), mismatches.getLength(i), StandardCharsets.ISO_8859_1)));
+        }
+    }
+
+    /**
+     * Compares two sequences of bases, 8 at a time: each 8 bases of the read are XORed with the 8 bases of the
+     * reference as a long, and only the words that are not zero are looked into base by base.
+     *
+     * @param reference Reference sequence
+     * @param referenceOffset First base of the reference to compare
+     * @param read Read sequence
+     * @param readOffset First base of the read to compare
+     * @param length Number of bases to compare
+     * @param mismatches Buffer where the runs of consecutive mismatches are added, relative to the offsets
+     */
+    public static void findMismatches(byte[] reference, int referenceOffset, byte[] read, int readOffset, int length,
+                                      MismatchBuffer mismatches) {
+        int runStart = -1;
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            long word = getWord(reference, referenceOffset + i) ^ getWord(read, readOffset + i);
+            if (word == 0) {
+                if (runStart >= 0) {
+                    mismatches.add(runStart, i - runStart);
+                    runStart = -1;
+                }
+                continue;
+            }
+            for (int j = 0; j < 8; j++, word >>>= 8) {
+                if ((word & 0xff) != 0) {
+                    if (runStart < 0) {
+                        runStart = i + j;
+                    }
+                } else if (runStart >= 0) {
+                    mismatches.add(runStart, i + j - runStart);
+                    runStart = -1;
                 }
-                sb.append(readSequence.charAt(i));
-            } else {
-                if (sb.length() > 0) {
-                    Alignment.AlignmentDifference difference =
-                            new Alignment.AlignmentDifference(baseIndex + foundIndex, Alignment.AlignmentDifference.MISMATCH, sb.toString());
-                    differences.add(difference);
-                    sb.setLength(0);
+            }
+        }
+        for (; i < length; i++) {
+            if (reference[referenceOffset + i] != read[readOffset + i]) {
+                if (runStart < 0) {
+                    runStart = i;
                 }
+            } else if (runStart >= 0) {
+                mismatches.add(runStart, i - runStart);
+                runStart = -1;
             }
         }
-
-        // If a mismatch was found at the end, it can't be appended inside the loop
-        if (sb.length() > 0) {
-            Alignment.AlignmentDifference difference =
-                    new Alignment.AlignmentDifference(baseIndex + foundIndex, Alignment.AlignmentDifference.MISMATCH, sb.toString());
-            differences.add(difference);
+        if (runStart >= 0) {
+            mismatches.add(runStart, length - runStart);
         }
+    }
 
-        return differences;
+    /**
+     * @return The 8 bytes from offset as a little endian long, so the first base is in the lowest byte
+     */
+    private static long getWord(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xffL)
+                | (bytes[offset + 1] & 0xffL) << 8
+                | (bytes[offset + 2] & 0xffL) << 16
+                | (bytes[offset + 3] & 0xffL) << 24
+                | (bytes[offset + 4] & 0xffL) << 32
+                | (bytes[offset + 5] & 0xffL) << 40
+                | (bytes[offset + 6] & 0xffL) << 48
+                | (bytes[offset + 7] & 0xffL) << 56;
     }
 
 
@@ -308,8 +378,8 @@ public class AlignmentHelper {
         return getSequenceFromDifferences(differences, sequenceSize, referenceSequence, cigar, 0);
     }
     public static String getSequenceFromDifferences(List<Alignment.AlignmentDifference> differences, int sequenceSize, String referenceSequence, Cigar cigar, final int offset) throws ShortReferenceSequenceException {
-        String sequence = "";
-        String subSeq;
+        StringBuilder sequence = new StringBuilder(sequenceSize);
+        int subSeqLength;
         int index = 0;
         int indexRef = offset;
         if(cigar == null){
@@ -319,11 +389,11 @@ public class AlignmentHelper {
             for(Alignment.AlignmentDifference alignmentDifference : differences){
 
                 if(indexRef - offset < alignmentDifference.getPos()){
-                    subSeq = referenceSequence.substring(indexRef, offset+alignmentDifference.getPos());
-                    sequence += subSeq;
-                    indexRef += subSeq.length();
-                    index    += subSeq.length();
-                    cigar.add(new CigarElement(subSeq.length(), CigarOperator.EQ));
+                    subSeqLength = offset + alignmentDifference.getPos() - indexRef;
+                    sequence.append(referenceSequence, indexRef, indexRef + subSeqLength);
+                    indexRef += subSeqLength;
+                    index    += subSeqLength;
+                    cigar.add(new CigarElement(subSeqLength, CigarOperator.EQ));
                 } else if(indexRef - offset > alignmentDifference.getPos()) {
                     System.out.println("[ERROR] BAD DIFFERENCES ");
                 }
@@ -334,11 +404,11 @@ public class AlignmentHelper {
                         cigar.add(new CigarElement(alignmentDifference.getLength(), CigarOperator.INSERTION));
 
                         if(alignmentDifference.isAllSequenceStored()){
-                            sequence += alignmentDifference.getSeq();
+                            sequence.append(alignmentDifference.getSeq());
                         } else {
                             System.out.println("[WARNING] Missing insertion information");
                             for(int i = 0; i < alignmentDifference.getLength(); i++){
-                                sequence += '*';
+                                sequence.append('*');
                             }
                         }
                         index += alignmentDifference.getLength();
@@ -357,9 +427,9 @@ public class AlignmentHelper {
                             cigar.add(new CigarElement(alignmentDifference.getLength(), CigarOperator.X));
                         }
                         if(alignmentDifference.isAllSequenceStored()){
-                            sequence += alignmentDifference.getSeq();
+                            sequence.append(alignmentDifference.getSeq());
                         } else {
-                            sequence += referenceSequence.substring(indexRef, indexRef+alignmentDifference.getLength());
+                            sequence.append(referenceSequence, indexRef, indexRef+alignmentDifference.getLength());
                         }
                         indexRef += alignmentDifference.getLength();
                         index += alignmentDifference.getLength();
@@ -368,9 +438,9 @@ public class AlignmentHelper {
                     case Alignment.AlignmentDifference.SOFT_CLIPPING:
                         cigar.add(new CigarElement(alignmentDifference.getLength(), CigarOperator.SOFT_CLIP));
                         if(alignmentDifference.isAllSequenceStored()) {
-                            sequence += alignmentDifference.getSeq();
+                            sequence.append(alignmentDifference.getSeq());
                         } else {
-                            sequence += referenceSequence.substring(indexRef, indexRef+alignmentDifference.getLength());
+                            sequence.append(referenceSequence, indexRef, indexRef+alignmentDifference.getLength());
                         }
 
                         indexRef += alignmentDifference.getLength();
@@ -394,47 +464,66 @@ public class AlignmentHelper {
             }
 
             if(sequence.length() < sequenceSize){
-                subSeq = referenceSequence.substring(indexRef, indexRef + sequenceSize - sequence.length());
-                sequence += subSeq;
-                cigar.add(new CigarElement(subSeq.length(), CigarOperator.EQ));
+                subSeqLength = sequenceSize - sequence.length();
+                sequence.append(referenceSequence, indexRef, indexRef + subSeqLength);
+                cigar.add(new CigarElement(subSeqLength, CigarOperator.EQ));
             } else if(index > sequenceSize) {
                 System.out.println("[ERROR] TOO MUCH DIFFERENCES ");
             }
-        } catch (StringIndexOutOfBoundsException e) {
+        } catch (IndexOutOfBoundsException e) {
             throw new ShortReferenceSequenceException("ReferenceSequence Out of Bounds in Alignment.getSequenceFromDifferences()");
         }
 
-        return sequence;
+        return sequence.toString();
     }
 
+    /**
+     * Gets the reference sequence of a region from CellBase.
+     *
+     * @param region Region, with 1-based positions
+     * @param params Options of {@link CellBaseSequenceProvider}
+     * @return Reference sequence
+     * @throws IOException
+     */
     public static String getSequence(Region region, QueryOptions params) throws IOException {
-        if(params == null){
-            params = new QueryOptions();
-        }
-        String cellbaseHost = params.getString("cellbasehost", "http://ws.bioinfo.cipf.es/cellbase/rest/latest");
-        String species = params.getString("species", "hsa");
-
-        String urlString = cellbaseHost + "/" + species + "/genomic/region/" + region.toString() + "/sequence?of=json";
-        //System.out.println(urlString);
-
-        URL url = new URL(urlString);
-        InputStream is = url.openConnection().getInputStream();
-        BufferedReader br = new BufferedReader(new InputStreamReader(is));
-
-        ObjectMapper mapper = new ObjectMapper();
-        JsonFactory factory = mapper.getFactory();
-        JsonParser jp = factory.createParser(br);
-        JsonNode o = mapper.readTree(jp);
-
-        String sequence = o.get(0).get("sequence").asText();
-        br.close();
-
+        return new CellBaseSequenceProvider(params).getSequence(region);
+    }
 
-        if(sequence.length() == 0 && region.getEnd()-region.getStart() > 0) { //FIXME JJ: Recursive call to solve one undocumented feature of cellbase (AKA: bug)
-            return getSequence(new Region(region.getChromosome(), region.getStart(), region.getEnd() - (region.getEnd()-region.getStart())* 9 / 10), params);
+    /**
+     * Gets the reference sequence covered by a record, from its alignment start to its alignment end, as expected by
+     * {@link #getDifferencesFromCigar(SAMRecord, String)} and {@link Alignment#Alignment(SAMRecord, String)}.
+     *
+     * @param record SAM record
+     * @param referenceSequenceProvider Source of the reference sequence
+     * @return Reference sequence, or null if the record is unmapped
+     * @throws IOException
+     */
+    public static String getReferenceSequence(SAMRecord record, ReferenceSequenceProvider referenceSequenceProvider) throws IOException {
+        if ((record.getFlags() & Alignment.SEGMENT_UNMAPPED) != 0) {
+            return null;
         }
+        return referenceSequenceProvider.getSequence(
+                new Region(record.getReferenceName(), record.getAlignmentStart(), record.getAlignmentEnd()));
+    }
 
-        return sequence;
+    /**
+     * Same as {@link #completeDifferencesFromReference(Alignment, String, long)}, getting the reference sequence of the
+     * alignment from a provider.
+     *
+     * @param alignment The Alignment
+     * @param referenceSequenceProvider Source of the reference sequence
+     * @throws IOException
+     * @throws ShortReferenceSequenceException
+     */
+    public static void completeDifferencesFromReference(Alignment alignment, ReferenceSequenceProvider referenceSequenceProvider)
+            throws IOException, ShortReferenceSequenceException {
+        if ((alignment.getFlags() & Alignment.SEGMENT_UNMAPPED) != 0) {   // umnmapped, return as is
+            return;
+        }
+        long start = Math.max(alignment.getUnclippedStart(), 1);
+        String referenceSequence = referenceSequenceProvider.getSequence(
+                new Region(alignment.getChromosome(), start, alignment.getUnclippedEnd()));
+        completeDifferencesFromReference(alignment, referenceSequence, start);
     }
 
 
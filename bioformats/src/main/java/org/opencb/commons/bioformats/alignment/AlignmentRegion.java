@@ -18,6 +18,7 @@ public class AlignmentRegion {
     private boolean overlapEnd;     //Indicates if the last alignment is overlapped with the next alignment
 
     private List<Alignment> alignments;     //Sorted Alignments
+    private AlignmentBatch alignmentBatch;  //Sorted Alignments, when packed by columns
     private RegionCoverage coverage;
     private List<MeanCoverage> meanCoverage;
 
@@ -45,7 +46,15 @@ public class AlignmentRegion {
         this.coverage = coverage;
     }
 
+    /**
+     * @return Sorted alignments. If they are packed, they are unpacked into a new list that replaces the batch, so the
+     * changes to the alignments are kept
+     */
     public List<Alignment> getAlignments() {
+        if (alignments == null && alignmentBatch != null) {
+            alignments = alignmentBatch.getAlignments();
+            alignmentBatch = null;
+        }
         return alignments;
     }
 
@@ -53,6 +62,27 @@ public class AlignmentRegion {
         this.alignments = alignments;
     }
 
+    /**
+     * @return Sorted alignments packed by columns, or null if they are not packed
+     */
+    public AlignmentBatch getAlignmentBatch() {
+        return alignmentBatch;
+    }
+
+    public void setAlignmentBatch(AlignmentBatch alignmentBatch) {
+        this.alignmentBatch = alignmentBatch;
+    }
+
+    /**
+     * Packs the alignments by columns in an {@link AlignmentBatch}, and releases the list of alignments.
+     */
+    public void packAlignments() {
+        if (alignments != null) {
+            alignmentBatch = new AlignmentBatch(alignments);
+            alignments = null;
+        }
+    }
+
     public String getChromosome() {
         return chromosome;
     }
@@ -0,0 +1,59 @@
+package org.opencb.commons.bioformats.alignment;
+
+import java.util.Arrays;
+
+/**
+ * Runs of consecutive mismatches found by {@link AlignmentHelper#findMismatches}, stored as their position and length
+ * in arrays that are reused after {@link #clear()}.
+ */
+public class MismatchBuffer {
+
+    private int[] positions;
+    private int[] lengths;
+    private int size;
+
+    public MismatchBuffer() {
+        this(16);
+    }
+
+    public MismatchBuffer(int capacity) {
+        positions = new int[Math.max(capacity, 1)];
+        lengths = new int[Math.max(capacity, 1)];
+        size = 0;
+    }
+
+    void add(int position, int length) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+        positions[size] = position;
+        lengths[size] = length;
+        size++;
+    }
+
+    /**
+     * @return Number of runs of mismatches
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Position of the first mismatch of a run, relative to the start of the compared sequences
+     */
+    public int getPosition(int i) {
+        return positions[i];
+    }
+
+    /**
+     * @return Number of consecutive mismatches of a run
+     */
+    public int getLength(int i) {
+        return lengths[i];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
@@ -6,8 +6,9 @@ import org.opencb.commons.bioformats.alignment.AlignmentRegion;
 import org.opencb.commons.io.DataReader;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * Created with IntelliJ IDEA.
@@ -21,9 +22,15 @@ public class AlignmentRegionDataReader implements DataReader<AlignmentRegion> {
     private Alignment prevAlignment;
     private int chunkSize;  //Max number of alignments in one AlignmentRegion.
     private int maxSequenceSize; //Maximum size for the total sequence. Count from the start of the first alignment to the end of the last alignment.
+    private int readBatchSize;  //Number of alignments taken from the alignment reader at once.
+
+    private List<Alignment> buffer = Collections.emptyList();
+    private int bufferPosition;
+    private boolean endOfFile;
 
     private static final int defaultChunkSize = 2000;
     private static final int defaultMaxSequenceSize = 100000;
+    private static final int defaultReadBatchSize = 1000;
 
     public AlignmentRegionDataReader(AlignmentDataReader<SAMFileHeader> alignmentDataReader){
         this(alignmentDataReader, defaultChunkSize);
@@ -37,6 +44,7 @@ public class AlignmentRegionDataReader implements DataReader<AlignmentRegion> {
         this.prevAlignment = null;
         this.chunkSize = chunkSize;
         this.maxSequenceSize = maxSequenceSize;
+        this.readBatchSize = defaultReadBatchSize;
     }
 
 
@@ -62,16 +70,40 @@ public class AlignmentRegionDataReader implements DataReader<AlignmentRegion> {
 
     @Override
     public List<AlignmentRegion> read() {
-        List<Alignment> alignmentList = new LinkedList<>();
+        AlignmentRegion alignmentRegion = readRegion();
+        if(alignmentRegion == null){
+            return null;
+        }
+        List<AlignmentRegion> alignmentRegions = new ArrayList<>(1);
+        alignmentRegions.add(alignmentRegion);
+        return alignmentRegions;
+    }
+
+    /**
+     * Reads several regions at once, pulling the alignments from the alignment reader in batches.
+     *
+     * @param batchSize Maximum number of regions
+     * @return Next regions, or an empty list at the end of the file
+     */
+    @Override
+    public List<AlignmentRegion> read(int batchSize) {
+        List<AlignmentRegion> alignmentRegionList = new ArrayList<>(batchSize);
+        AlignmentRegion alignmentRegion;
+        for(int i = 0; i < batchSize && (alignmentRegion = readRegion()) != null; i++){
+            alignmentRegionList.add(alignmentRegion);
+        }
+        return alignmentRegionList;
+    }
+
+    private AlignmentRegion readRegion() {
         String chromosome;
         long start;
         long end;   //To have the correct "end" value,
         boolean overlappedEnd = true;
-        String referenceSequence = null;
 
         //First initialisation
         if(prevAlignment == null){
-            prevAlignment = alignmentDataReader.read().get(0);
+            prevAlignment = nextAlignment();
             if(prevAlignment == null){  //Empty source
                 return null;
             }
@@ -86,7 +118,7 @@ public class AlignmentRegionDataReader implements DataReader<AlignmentRegion> {
             end = start;
         }
 
-
+        List<Alignment> alignmentList = new ArrayList<>(chunkSize);
         for(int i = 0; i < chunkSize; i++){
             alignmentList.add(prevAlignment);   //The prevAlignment is ready to be added.
             if((prevAlignment.getFlags() & Alignment.SEGMENT_UNMAPPED) == 0){
@@ -96,7 +128,7 @@ public class AlignmentRegionDataReader implements DataReader<AlignmentRegion> {
             }
 
             //Read new alignment.
-            prevAlignment = alignmentDataReader.read().get(0);
+            prevAlignment = nextAlignment();
 
             //First stop condition: End of the chromosome or file
             if(prevAlignment == null || !chromosome.equals(prevAlignment.getChromosome())){
@@ -114,71 +146,33 @@ public class AlignmentRegionDataReader implements DataReader<AlignmentRegion> {
                     break;
                 }
             }
-
         }
 
-        if(prevAlignment != null){
-            //System.out.println("(prevAlignment.getUnclippedEnd() - start) = " +(prevAlignment.getUnclippedEnd() - start) + " overlappedEnd = " + overlappedEnd);
-            //System.out.println("(alignmentList.get(alignmentList(size)-1).getEnd()) = " + (alignmentList.get(alignmentList.size()-1).getEnd()) + " start " + start + " i " + i);
-            System.out.println("(alignmentList.get(alignmentList(size)-1).getUnclippedEnd() - start) = " + (alignmentList.get(alignmentList.size()-1).getUnclippedEnd() - start));
-         }
-        System.out.println("start = " + start + ", end = " + end + ", size = " + (end - start));
-
-
-
         AlignmentRegion alignmentRegion = new AlignmentRegion(alignmentList);
         alignmentRegion.setOverlapEnd(overlappedEnd);
-
         alignmentRegion.setStart(start);
         alignmentRegion.setEnd(end);
-
-
-/*
-        if(externalReferenceSequence){
-            try {
-                referenceSequence = AlignmentHelper.getSequence(new Region(chromosome, start, start+maxSequenceSize), new QueryOptions());
-                for(Alignment alignment : alignmentRegion.getAlignments()){
-                    alignment.completeDifferences(referenceSequence, (int)(alignment.getStart() - start));
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-*/
-//        for(Alignment al : alignmentList){        //Debug
-//            for(byte b : al.getReadSequence()){
-//                System.out.print((char) b);
-//            }
-//            System.out.println( " <<< " + al.getStart());
-//        }
-
-
-//        System.out.println("Read " + alignmentRegion.getAlignments().size() +
-//                " Start: " + alignmentRegion.getAlignments().get(0).getStart() +
-//                " End " + alignmentRegion.getAlignments().get(alignmentRegion.getAlignments().size()-1).getStart()  +
-//                " Size " +  (alignmentRegion.getAlignments().get(alignmentRegion.getAlignments().size()-1).getStart()-alignmentRegion.getAlignments().get(0).getStart() )
-//
-//        );
-        ArrayList<AlignmentRegion> alignmentRegions = new ArrayList<>();
-        alignmentRegions.add(alignmentRegion);
-        return alignmentRegions;
+        return alignmentRegion;
     }
 
-
-    @Override
-    public List<AlignmentRegion> read(int batchSize) {
-        List<AlignmentRegion> alignmentRegionList = new LinkedList<>();
-//        for(int i = 0; i < batchSize; i++){
-//            alignmentRegionList.add(read());
-//        }
-        AlignmentRegion alignmentRegion;
-        for(int i = 0; i < batchSize; i++){
-            alignmentRegion = read().get(0);
-            if(alignmentRegion != null){
-                alignmentRegionList.add(alignmentRegion);
+    /**
+     * @return Next alignment of the alignment reader, or null at the end of the file
+     */
+    private Alignment nextAlignment() {
+        if(bufferPosition == buffer.size()){
+            if(endOfFile){
+                return null;
+            }
+            List<Alignment> batch = alignmentDataReader.read(readBatchSize);
+            if(batch == null || batch.isEmpty()){
+                endOfFile = true;
+                return null;
             }
+            // Random access is needed to take the alignments by position
+            buffer = batch instanceof RandomAccess ? batch : new ArrayList<>(batch);
+            bufferPosition = 0;
         }
-        return alignmentRegionList;
+        return buffer.get(bufferPosition++);
     }
 
     /**
@@ -203,4 +197,16 @@ public class AlignmentRegionDataReader implements DataReader<AlignmentRegion> {
         this.chunkSize = chunkSize;
     }
 
+    public int getReadBatchSize() {
+        return readBatchSize;
+    }
+
+    /**
+     * Set number of Alignments taken from the AlignmentDataReader at once
+     *
+     * @param readBatchSize Read batch size
+     */
+    public void setReadBatchSize(int readBatchSize) {
+        this.readBatchSize = readBatchSize;
+    }
 }
@@ -0,0 +1,200 @@
+package org.opencb.commons.bioformats.alignment.io.readers.coverage;
+
+import org.opencb.commons.bioformats.alignment.io.writers.coverage.AlignmentCoveragePyramidWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Answers coverage queries over a file written by {@link AlignmentCoveragePyramidWriter}, which is memory mapped, so
+ * only the parts of the file used by the queries are read.
+ * <p>
+ * The sum of the coverage over a range is taken from the cumulative sums of the coarsest level with whole bins inside
+ * the range, and the parts of the range outside those bins from the finer levels, so it reads a few values per level
+ * whatever the size of the range. The maximum reads the maxes of the whole bins of the coarsest level instead.
+ * Positions are the same as in the coverage of the regions written, and ranges include both ends. Positions outside
+ * the chromosome have no coverage.
+ */
+public class AlignmentCoveragePyramidReader implements Closeable {
+
+    private final RandomAccessFile file;
+    private final int[] binSizes;
+    private final Map<String, Chromosome> chromosomes;
+
+    public AlignmentCoveragePyramidReader(String filename) throws IOException {
+        file = new RandomAccessFile(filename, "r");
+        FileChannel channel = file.getChannel();
+
+        byte[] magic = new byte[AlignmentCoveragePyramidWriter.MAGIC.length];
+        file.readFully(magic);
+        if (!Arrays.equals(magic, AlignmentCoveragePyramidWriter.MAGIC)) {
+            file.close();
+            throw new IOException("Not a coverage file: " + filename);
+        }
+        binSizes = new int[file.readInt()];
+        for (int i = 0; i < binSizes.length; i++) {
+            binSizes[i] = file.readInt();
+        }
+
+        file.seek(file.length() - 8 - magic.length);
+        file.seek(file.readLong());
+        int numChromosomes = file.readInt();
+        chromosomes = new LinkedHashMap<>(numChromosomes * 2);
+        for (int i = 0; i < numChromosomes; i++) {
+            Chromosome chromosome = new Chromosome(file.readUTF(), file.readLong(), binSizes.length);
+            for (int level = 1; level < binSizes.length; level++) {
+                chromosome.numBins[level] = file.readInt();
+            }
+            long coverageOffset = file.readLong();
+            long[] offsets = new long[2 * binSizes.length - 2];
+            for (int j = 0; j < offsets.length; j++) {
+                offsets[j] = file.readLong();
+            }
+            chromosome.coverage = map(channel, coverageOffset, 2 * chromosome.length).asShortBuffer();
+            for (int level = 1; level < binSizes.length; level++) {
+                int numBins = chromosome.numBins[level];
+                chromosome.maxes[level] = map(channel, offsets[2 * level - 2], 2L * numBins).asShortBuffer();
+                chromosome.sums[level] = map(channel, offsets[2 * level - 1], 8L * (numBins + 1)).asLongBuffer();
+            }
+            chromosomes.put(chromosome.name, chromosome);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+    }
+
+    /**
+     * @return Sum of the coverage of the positions from start to end
+     */
+    public long getSum(String chromosome, long start, long end) {
+        Chromosome c = chromosomes.get(chromosome);
+        if (c == null) {
+            return 0;
+        }
+        return sum(c, Math.max(start, 0), Math.min(end + 1, c.length));
+    }
+
+    /**
+     * @return Mean coverage of the positions from start to end
+     */
+    public float getMeanCoverage(String chromosome, long start, long end) {
+        if (end < start) {
+            return 0;
+        }
+        return (float) getSum(chromosome, start, end) / (end - start + 1);
+    }
+
+    /**
+     * @return Maximum coverage of the positions from start to end
+     */
+    public int getMaxCoverage(String chromosome, long start, long end) {
+        Chromosome c = chromosomes.get(chromosome);
+        if (c == null) {
+            return 0;
+        }
+        return max(c, Math.max(start, 0), Math.min(end + 1, c.length));
+    }
+
+    /**
+     * @return Coverage of a position
+     */
+    public int getCoverage(String chromosome, long position) {
+        Chromosome c = chromosomes.get(chromosome);
+        if (c == null || position < 0 || position >= c.length) {
+            return 0;
+        }
+        return c.coverage.get((int) position) & 0xffff;
+    }
+
+    private long sum(Chromosome c, long from, long to) {
+        if (from >= to) {
+            return 0;
+        }
+        for (int level = binSizes.length - 1; level > 0; level--) {
+            long size = binSizes[level];
+            long first = (from + size - 1) / size;
+            long last = to / size;
+            if (first < last) {
+                LongBuffer sums = c.sums[level];
+                return sum(c, from, first * size) + sums.get((int) last) - sums.get((int) first) + sum(c, last * size, to);
+            }
+        }
+        long sum = 0;
+        for (long position = from; position < to; position++) {
+            sum += c.coverage.get((int) position) & 0xffff;
+        }
+        return sum;
+    }
+
+    private int max(Chromosome c, long from, long to) {
+        if (from >= to) {
+            return 0;
+        }
+        for (int level = binSizes.length - 1; level > 0; level--) {
+            long size = binSizes[level];
+            long first = (from + size - 1) / size;
+            long last = to / size;
+            if (first < last) {
+                ShortBuffer maxes = c.maxes[level];
+                int max = Math.max(max(c, from, first * size), max(c, last * size, to));
+                for (long bin = first; bin < last; bin++) {
+                    max = Math.max(max, maxes.get((int) bin) & 0xffff);
+                }
+                return max;
+            }
+        }
+        int max = 0;
+        for (long position = from; position < to; position++) {
+            max = Math.max(max, c.coverage.get((int) position) & 0xffff);
+        }
+        return max;
+    }
+
+    /**
+     * @return Names of the chromosomes, in the same order as in the file
+     */
+    public Set<String> getChromosomes() {
+        return Collections.unmodifiableSet(chromosomes.keySet());
+    }
+
+    /**
+     * @return Position after the last position with coverage of the chromosome, or 0 if not present
+     */
+    public long getLength(String chromosome) {
+        Chromosome c = chromosomes.get(chromosome);
+        return c == null ? 0 : c.length;
+    }
+
+    public int[] getBinSizes() {
+        return binSizes.clone();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private static class Chromosome {
+        private final String name;
+        private final long length;
+        private final int[] numBins;
+        private ShortBuffer coverage;
+        private final ShortBuffer[] maxes;
+        private final LongBuffer[] sums;
+
+        Chromosome(String name, long length, int numLevels) {
+            this.name = name;
+            this.length = length;
+            this.numBins = new int[numLevels];
+            this.maxes = new ShortBuffer[numLevels];
+            this.sums = new LongBuffer[numLevels];
+        }
+    }
+}
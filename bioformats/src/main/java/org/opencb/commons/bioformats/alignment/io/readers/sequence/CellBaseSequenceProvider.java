@@ -0,0 +1,65 @@
+package org.opencb.commons.bioformats.alignment.io.readers.sequence;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.opencb.commons.bioformats.feature.Region;
+import org.opencb.commons.containers.map.QueryOptions;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+
+/**
+ * Reads the reference sequence from the web services of CellBase, with one request per region.
+ * <p>
+ * Options: "cellbasehost" is the URL of the web services, and "species" the species to query, "hsa" by default.
+ */
+public class CellBaseSequenceProvider implements ReferenceSequenceProvider {
+
+    private final String cellbaseHost;
+    private final String species;
+    private final ObjectMapper mapper;
+
+    public CellBaseSequenceProvider() {
+        this(new QueryOptions());
+    }
+
+    public CellBaseSequenceProvider(QueryOptions params) {
+        if (params == null) {
+            params = new QueryOptions();
+        }
+        this.cellbaseHost = params.getString("cellbasehost", "http://ws.bioinfo.cipf.es/cellbase/rest/latest");
+        this.species = params.getString("species", "hsa");
+        this.mapper = new ObjectMapper();
+    }
+
+    @Override
+    public String getSequence(Region region) throws IOException {
+        String sequence = request(region);
+
+        //FIXME JJ: Shrink the region to solve one undocumented feature of cellbase (AKA: bug)
+        while (sequence.length() == 0 && region.getEnd() - region.getStart() > 0) {
+            region = new Region(region.getChromosome(), region.getStart(),
+                    region.getEnd() - (region.getEnd() - region.getStart()) * 9 / 10);
+            sequence = request(region);
+        }
+        return sequence;
+    }
+
+    private String request(Region region) throws IOException {
+        String urlString = cellbaseHost + "/" + species + "/genomic/region/" + region.toString() + "/sequence?of=json";
+
+        URL url = new URL(urlString);
+        InputStream is = url.openConnection().getInputStream();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(is))) {
+            JsonFactory factory = mapper.getFactory();
+            JsonParser jp = factory.createParser(br);
+            JsonNode o = mapper.readTree(jp);
+            return o.get(0).get("sequence").asText();
+        }
+    }
+}
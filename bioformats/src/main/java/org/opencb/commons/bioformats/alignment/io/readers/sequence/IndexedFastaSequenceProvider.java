@@ -0,0 +1,184 @@
+package org.opencb.commons.bioformats.alignment.io.readers.sequence;
+
+import org.opencb.commons.bioformats.feature.Region;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the reference sequence from a local FASTA file, indexed with "samtools faidx" in a ".fai" file next to it.
+ * <p>
+ * The sequence of each chromosome is memory mapped the first time it is used. The bases are copied, without the line
+ * breaks and in upper case, to blocks of a fixed size, and the most recently used blocks are kept in a cache, so
+ * consecutive regions, like the ones of sorted alignments, are served from the same blocks. It can be shared between
+ * threads.
+ */
+public class IndexedFastaSequenceProvider implements ReferenceSequenceProvider, Closeable {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+    public static final int DEFAULT_MAX_BLOCKS = 256;
+
+    private final String filename;
+    private final RandomAccessFile file;
+    private final Map<String, Sequence> index;
+    private final int blockSize;
+    private final Map<Long, byte[]> blocks;
+    private long cacheHits;
+    private long cacheMisses;
+
+    public IndexedFastaSequenceProvider(String filename) throws IOException {
+        this(filename, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_BLOCKS);
+    }
+
+    /**
+     * @param filename  FASTA file, with its index in filename + ".fai"
+     * @param blockSize Number of bases of each cached block
+     * @param maxBlocks Number of blocks kept in the cache
+     * @throws IOException If the file or its index can not be read
+     */
+    public IndexedFastaSequenceProvider(String filename, int blockSize, final int maxBlocks) throws IOException {
+        this.filename = filename;
+        this.index = readIndex(filename + ".fai");
+        this.file = new RandomAccessFile(filename, "r");
+        this.blockSize = blockSize;
+        this.blocks = new LinkedHashMap<Long, byte[]>(maxBlocks * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > maxBlocks;
+            }
+        };
+    }
+
+    private static Map<String, Sequence> readIndex(String indexFilename) throws IOException {
+        Map<String, Sequence> index = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(indexFilename))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                if (fields.length < 5) {
+                    throw new IOException("Wrong line in FASTA index " + indexFilename + ": " + line);
+                }
+                index.put(fields[0], new Sequence(index.size(), Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                        Integer.parseInt(fields[3]), Integer.parseInt(fields[4])));
+            }
+        }
+        return index;
+    }
+
+    @Override
+    public synchronized String getSequence(Region region) throws IOException {
+        Sequence sequence = index.get(region.getChromosome());
+        if (sequence == null) {
+            throw new IOException("Chromosome " + region.getChromosome() + " not found in " + filename);
+        }
+        long start = Math.max(region.getStart(), 1) - 1;
+        long end = Math.min(region.getEnd(), sequence.length);
+        if (end <= start) {
+            return "";
+        }
+
+        byte[] bases = new byte[(int) (end - start)];
+        for (long position = start; position < end; ) {
+            long block = position / blockSize;
+            byte[] blockBases = getBlock(sequence, block);
+            int from = (int) (position - block * blockSize);
+            int length = (int) Math.min(blockBases.length - from, end - position);
+            System.arraycopy(blockBases, from, bases, (int) (position - start), length);
+            position += length;
+        }
+        return new String(bases, StandardCharsets.ISO_8859_1);
+    }
+
+    private byte[] getBlock(Sequence sequence, long block) throws IOException {
+        Long key = ((long) sequence.id << 40) | block;
+        byte[] bases = blocks.get(key);
+        if (bases != null) {
+            cacheHits++;
+            return bases;
+        }
+        cacheMisses++;
+
+        if (sequence.buffer == null) {
+            long size = sequence.offset(sequence.length - 1) + 1 - sequence.offset;
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Sequence too long to be mapped: " + size + " bytes");
+            }
+            sequence.buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, sequence.offset, size);
+        }
+        long start = block * blockSize;
+        bases = new byte[(int) Math.min(blockSize, sequence.length - start)];
+        ByteBuffer buffer = sequence.buffer.duplicate();
+        for (int i = 0; i < bases.length; ) {
+            long position = start + i;
+            int length = (int) Math.min(bases.length - i, sequence.lineBases - position % sequence.lineBases);
+            buffer.position((int) (sequence.offset(position) - sequence.offset));
+            buffer.get(bases, i, length);
+            i += length;
+        }
+        for (int i = 0; i < bases.length; i++) {
+            if (bases[i] >= 'a' && bases[i] <= 'z') {
+                bases[i] -= 'a' - 'A';
+            }
+        }
+        blocks.put(key, bases);
+        return bases;
+    }
+
+    /**
+     * @return Length of the chromosome, or -1 if it is not in the file
+     */
+    public long getLength(String chromosome) {
+        Sequence sequence = index.get(chromosome);
+        return sequence == null ? -1 : sequence.length;
+    }
+
+    public synchronized long getCacheHits() {
+        return cacheHits;
+    }
+
+    public synchronized long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        blocks.clear();
+        file.close();
+    }
+
+    /**
+     * Entry of the FASTA index.
+     */
+    private static class Sequence {
+        private final int id;
+        private final long length;
+        private final long offset;      // Offset of the first base in the file
+        private final int lineBases;
+        private final int lineWidth;    // Bases of a line plus its line break
+        private MappedByteBuffer buffer;
+
+        Sequence(int id, long length, long offset, int lineBases, int lineWidth) {
+            this.id = id;
+            this.length = length;
+            this.offset = offset;
+            this.lineBases = lineBases;
+            this.lineWidth = lineWidth;
+        }
+
+        /**
+         * @return Offset in the file of a 0-based position of the sequence
+         */
+        long offset(long position) {
+            return offset + position / lineBases * lineWidth + position % lineBases;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.opencb.commons.bioformats.alignment.io.readers.sequence;
+
+import org.opencb.commons.bioformats.feature.Region;
+
+import java.io.IOException;
+
+/**
+ * Source of the bases of a reference genome, used to compare the alignments with the reference.
+ */
+public interface ReferenceSequenceProvider {
+
+    /**
+     * @param region Region with 1-based positions, including both the start and the end
+     * @return Bases of the region, in upper case. Shorter than the region if it goes beyond the end of the chromosome
+     * @throws IOException If the sequence can not be read
+     */
+    String getSequence(Region region) throws IOException;
+}
@@ -0,0 +1,252 @@
+package org.opencb.commons.bioformats.alignment.io.writers.coverage;
+
+import org.opencb.commons.bioformats.alignment.AlignmentRegion;
+import org.opencb.commons.bioformats.alignment.stats.RegionCoverage;
+import org.opencb.commons.io.DataWriter;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes the coverage of alignment regions to a file with several zoom levels, to be queried with
+ * {@link org.opencb.commons.bioformats.alignment.io.readers.coverage.AlignmentCoveragePyramidReader}.
+ * <p>
+ * The first level has the coverage of every position. Each of the following levels splits the chromosome in bins of
+ * its size, and has the maximum coverage of each bin and the cumulative sum of the coverage before each bin, so the
+ * sum over any number of whole bins is the difference of two values. Each bin size must be a multiple of the
+ * previous one.
+ * <p>
+ * The regions must be written in order, with their coverage calculated, and without overlapping, as produced by
+ * {@link org.opencb.commons.bioformats.alignment.tasks.AlignmentCoverageCalculatorTask} or
+ * {@link org.opencb.commons.bioformats.alignment.tasks.AlignmentCoverageMerger}. Positions without coverage are
+ * written as zero. The file layout is:
+ * <pre>
+ * MAGIC numLevels binSizes[numLevels]
+ * for each chromosome: coverage[length] (short), and for each level but the first: maxes[numBins] (short),
+ *                      sums[numBins + 1] (long)
+ * index: numChromosomes, and for each chromosome: name, length, offset of each array
+ * indexOffset (long) MAGIC
+ * </pre>
+ */
+public class AlignmentCoveragePyramidWriter implements DataWriter<AlignmentRegion> {
+
+    public static final byte[] MAGIC = {'A', 'C', 'P', 'Y'};
+    public static final int[] DEFAULT_BIN_SIZES = {1, 100, 10000, 1000000};
+
+    private final String filename;
+    private final int[] binSizes;
+
+    private DataOutputStream outputStream;
+    private long offset;
+    private final List<ChromosomeIndex> index;
+
+    // Chromosome being written
+    private ChromosomeIndex chromosome;
+    private long nextPosition;
+    private long[] binSums;
+    private int[] binMaxes;
+    private long[][] sums;
+    private short[][] maxes;
+    private int[] numBins;
+
+    public AlignmentCoveragePyramidWriter(String filename) {
+        this(filename, DEFAULT_BIN_SIZES);
+    }
+
+    /**
+     * @param filename File to write
+     * @param binSizes Size of the bins of each level. The first one must be 1, and each one a multiple of the previous
+     */
+    public AlignmentCoveragePyramidWriter(String filename, int... binSizes) {
+        if (binSizes.length == 0 || binSizes[0] != 1) {
+            throw new IllegalArgumentException("The first level must have bins of size 1: " + Arrays.toString(binSizes));
+        }
+        for (int i = 1; i < binSizes.length; i++) {
+            if (binSizes[i] <= binSizes[i - 1] || binSizes[i] % binSizes[i - 1] != 0) {
+                throw new IllegalArgumentException("Each bin size must be a multiple of the previous one: "
+                        + Arrays.toString(binSizes));
+            }
+        }
+        this.filename = filename;
+        this.binSizes = binSizes;
+        this.index = new ArrayList<>();
+    }
+
+    @Override
+    public boolean open() {
+        try {
+            outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean pre() {
+        try {
+            outputStream.write(MAGIC);
+            outputStream.writeInt(binSizes.length);
+            for (int binSize : binSizes) {
+                outputStream.writeInt(binSize);
+            }
+            offset = MAGIC.length + 4 + 4 * binSizes.length;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean write(List<AlignmentRegion> batch) {
+        try {
+            for (AlignmentRegion alignmentRegion : batch) {
+                if (alignmentRegion != null && alignmentRegion.getCoverage() != null) {
+                    write(alignmentRegion.getChromosome(), alignmentRegion.getCoverage());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    private void write(String chromosomeName, RegionCoverage coverage) throws IOException {
+        if (chromosome == null || !chromosome.name.equals(chromosomeName)) {
+            finishChromosome();
+            startChromosome(chromosomeName);
+        }
+
+        // Positions before the region have no coverage, and positions already written are not written again
+        while (nextPosition < coverage.getStart()) {
+            add((short) 0);
+        }
+        short[] all = coverage.getAll();
+        for (long position = nextPosition; position < coverage.getEnd(); position++) {
+            add(all[(int) (position - coverage.getStart())]);
+        }
+    }
+
+    private void startChromosome(String name) {
+        chromosome = new ChromosomeIndex(name, binSizes.length);
+        chromosome.offsets[0] = offset;
+        nextPosition = 0;
+        binSums = new long[binSizes.length];
+        binMaxes = new int[binSizes.length];
+        sums = new long[binSizes.length][];
+        maxes = new short[binSizes.length][];
+        numBins = new int[binSizes.length];
+        for (int level = 1; level < binSizes.length; level++) {
+            sums[level] = new long[1024];
+            maxes[level] = new short[1024];
+        }
+    }
+
+    private void add(short value) throws IOException {
+        outputStream.writeShort(value);
+        offset += 2;
+        int coverage = value & 0xffff;
+        nextPosition++;
+        for (int level = 1; level < binSizes.length; level++) {
+            binSums[level] += coverage;
+            binMaxes[level] = Math.max(binMaxes[level], coverage);
+            if (nextPosition % binSizes[level] == 0) {
+                addBin(level);
+            }
+        }
+    }
+
+    private void addBin(int level) {
+        int bin = numBins[level]++;
+        if (bin + 1 >= sums[level].length) {
+            sums[level] = Arrays.copyOf(sums[level], sums[level].length * 2);
+            maxes[level] = Arrays.copyOf(maxes[level], maxes[level].length * 2);
+        }
+        maxes[level][bin] = (short) binMaxes[level];
+        sums[level][bin + 1] = sums[level][bin] + binSums[level];
+        binSums[level] = 0;
+        binMaxes[level] = 0;
+    }
+
+    private void finishChromosome() throws IOException {
+        if (chromosome == null) {
+            return;
+        }
+        chromosome.length = nextPosition;
+        for (int level = 1; level < binSizes.length; level++) {
+            if (nextPosition % binSizes[level] != 0) {
+                addBin(level);
+            }
+            chromosome.numBins[level] = numBins[level];
+            chromosome.offsets[2 * level - 1] = offset;
+            for (int bin = 0; bin < numBins[level]; bin++) {
+                outputStream.writeShort(maxes[level][bin]);
+            }
+            offset += 2L * numBins[level];
+            chromosome.offsets[2 * level] = offset;
+            for (int bin = 0; bin <= numBins[level]; bin++) {
+                outputStream.writeLong(sums[level][bin]);
+            }
+            offset += 8L * (numBins[level] + 1);
+        }
+        index.add(chromosome);
+        chromosome = null;
+    }
+
+    @Override
+    public boolean post() {
+        try {
+            finishChromosome();
+            outputStream.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean close() {
+        try {
+            finishChromosome();
+            long indexOffset = offset;
+            outputStream.writeInt(index.size());
+            for (ChromosomeIndex chromosomeIndex : index) {
+                outputStream.writeUTF(chromosomeIndex.name);
+                outputStream.writeLong(chromosomeIndex.length);
+                for (int level = 1; level < binSizes.length; level++) {
+                    outputStream.writeInt(chromosomeIndex.numBins[level]);
+                }
+                for (long arrayOffset : chromosomeIndex.offsets) {
+                    outputStream.writeLong(arrayOffset);
+                }
+            }
+            outputStream.writeLong(indexOffset);
+            outputStream.write(MAGIC);
+            outputStream.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    private static class ChromosomeIndex {
+        private final String name;
+        private long length;
+        private final int[] numBins;
+        // Offset of the coverage, and of the maxes and sums of each following level
+        private final long[] offsets;
+
+        ChromosomeIndex(String name, int numLevels) {
+            this.name = name;
+            this.numBins = new int[numLevels];
+            this.offsets = new long[2 * numLevels - 1];
+        }
+    }
+}
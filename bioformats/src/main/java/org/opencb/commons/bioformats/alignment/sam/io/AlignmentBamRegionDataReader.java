@@ -0,0 +1,284 @@
+package org.opencb.commons.bioformats.alignment.sam.io;
+
+import net.sf.samtools.SAMFileHeader;
+import net.sf.samtools.SAMFileReader;
+import net.sf.samtools.SAMRecord;
+import net.sf.samtools.SAMRecordIterator;
+import net.sf.samtools.SAMSequenceRecord;
+import org.opencb.commons.bioformats.alignment.Alignment;
+import org.opencb.commons.bioformats.alignment.AlignmentHelper;
+import org.opencb.commons.bioformats.alignment.io.readers.AlignmentDataReader;
+import org.opencb.commons.bioformats.alignment.io.readers.sequence.ReferenceSequenceProvider;
+import org.opencb.commons.bioformats.feature.Region;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Reads the alignments of a list of regions from a sorted and indexed BAM file, decoding them in several threads.
+ * <p>
+ * The regions are split in chunks of a fixed number of bases, and each chunk is queried through the BAM index by one
+ * of the threads, with its own {@link SAMFileReader}, so the BGZF blocks of different chunks are inflated and decoded
+ * at the same time. The chunks are returned in the order of the regions, and the alignments of each chunk in
+ * coordinate order, so the batches read can feed a sorted {@link org.opencb.commons.run.ParallelTaskRunner}.
+ * <p>
+ * An alignment is returned in the chunk where it starts, or in the first chunk of a region if it starts before the
+ * region. If the regions overlap, the alignments of both regions are returned. If no regions are given, all the
+ * chromosomes of the header are read, followed by the unmapped reads without a position.
+ */
+public class AlignmentBamRegionDataReader implements AlignmentDataReader<SAMFileHeader> {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000000;
+
+    private String filename;
+    private List<Region> regions;
+    private int numThreads;
+    private int chunkSize;          // Number of bases of each chunk
+    private ReferenceSequenceProvider referenceSequenceProvider;
+
+    private SAMFileHeader header;
+    private BlockingQueue<SAMFileReader> readers;
+    private List<SAMFileReader> openReaders;
+    private ExecutorService executorService;
+    private Iterator<Chunk> chunks;
+    private Deque<Future<List<Alignment>>> pendingChunks;
+
+    private List<Alignment> buffer = Collections.emptyList();
+    private int bufferPosition;
+
+    protected static Logger logger = LoggerFactory.getLogger(AlignmentBamRegionDataReader.class);
+
+    public AlignmentBamRegionDataReader(String filename, List<Region> regions, int numThreads) {
+        this(filename, regions, numThreads, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param filename   Sorted BAM file, with its index in filename + ".bai" or in the same name ending in ".bai"
+     *                   instead of ".bam"
+     * @param regions    Regions to read, in the order they are read. If null, all the chromosomes of the header and
+     *                   the unmapped reads
+     * @param numThreads Number of threads decoding the BAM file
+     * @param chunkSize  Number of bases of each chunk decoded by a thread
+     */
+    public AlignmentBamRegionDataReader(String filename, List<Region> regions, int numThreads, int chunkSize) {
+        this.filename = filename;
+        this.regions = regions;
+        this.numThreads = Math.max(numThreads, 1);
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public boolean open() {
+        File file = new File(filename);
+        if (!file.exists()) {
+            return false;
+        }
+        File index = getIndexFile(file);
+
+        readers = new ArrayBlockingQueue<>(numThreads);
+        openReaders = new ArrayList<>(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            SAMFileReader reader = index == null ? new SAMFileReader(file) : new SAMFileReader(file, index);
+            reader.setValidationStringency(SAMFileReader.ValidationStringency.LENIENT);
+            reader.enableIndexCaching(true);
+            openReaders.add(reader);
+            if (!reader.hasIndex()) {
+                logger.error("BAM file {} is not indexed", filename);
+                close();
+                return false;
+            }
+            readers.add(reader);
+        }
+        header = openReaders.get(0).getFileHeader();
+        executorService = Executors.newFixedThreadPool(numThreads);
+        return true;
+    }
+
+    private static File getIndexFile(File file) {
+        File index = new File(file.getPath() + ".bai");
+        if (!index.exists() && file.getName().endsWith(".bam")) {
+            index = new File(file.getPath().substring(0, file.getPath().length() - 4) + ".bai");
+        }
+        return index.exists() ? index : null;
+    }
+
+    @Override
+    public boolean close() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+            executorService = null;
+        }
+        if (openReaders != null) {
+            for (SAMFileReader reader : openReaders) {
+                reader.close();
+            }
+            openReaders = null;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean pre() {
+        List<Chunk> chunkList = new ArrayList<>();
+        List<Region> regionList = regions;
+        if (regionList == null) {
+            regionList = new ArrayList<>(header.getSequenceDictionary().size());
+            for (SAMSequenceRecord sequence : header.getSequenceDictionary().getSequences()) {
+                regionList.add(new Region(sequence.getSequenceName(), 1, sequence.getSequenceLength()));
+            }
+        }
+        for (Region region : regionList) {
+            SAMSequenceRecord sequence = header.getSequence(region.getChromosome());
+            if (sequence == null) {
+                logger.warn("Chromosome {} not found in {}", region.getChromosome(), filename);
+                continue;
+            }
+            long regionStart = Math.max(region.getStart(), 1);
+            long end = Math.min(region.getEnd(), sequence.getSequenceLength());
+            for (long start = regionStart; start <= end; start += chunkSize) {
+                chunkList.add(new Chunk(region.getChromosome(), (int) start, (int) Math.min(start + chunkSize - 1, end),
+                        start == regionStart));
+            }
+        }
+        if (regions == null) {
+            chunkList.add(Chunk.UNMAPPED);
+        }
+        chunks = chunkList.iterator();
+        pendingChunks = new ArrayDeque<>(numThreads * 2);
+        return true;
+    }
+
+    @Override
+    public boolean post() {
+        return true;
+    }
+
+    /**
+     * @return Up to batchSize alignments, in the order of the regions. Empty when all the regions have been read
+     */
+    @Override
+    public List<Alignment> read(int batchSize) {
+        List<Alignment> alignments = new ArrayList<>(batchSize);
+        while (alignments.size() < batchSize) {
+            if (bufferPosition >= buffer.size()) {
+                buffer = nextChunk();
+                bufferPosition = 0;
+                if (buffer == null) {
+                    buffer = Collections.emptyList();
+                    break;
+                }
+                continue;
+            }
+            int length = Math.min(batchSize - alignments.size(), buffer.size() - bufferPosition);
+            alignments.addAll(buffer.subList(bufferPosition, bufferPosition + length));
+            bufferPosition += length;
+        }
+        return alignments;
+    }
+
+    /**
+     * Keeps up to two chunks per thread being decoded ahead, and waits for the oldest one.
+     *
+     * @return Alignments of the next chunk, or null if there are no more chunks
+     * @throws IllegalStateException If a chunk can not be read, or if the thread is interrupted while waiting
+     */
+    private List<Alignment> nextChunk() {
+        while (pendingChunks.size() < numThreads * 2 && chunks.hasNext()) {
+            final Chunk chunk = chunks.next();
+            pendingChunks.add(executorService.submit(new Callable<List<Alignment>>() {
+                @Override
+                public List<Alignment> call() throws Exception {
+                    return readChunk(chunk);
+                }
+            }));
+        }
+        Future<List<Alignment>> future = pendingChunks.poll();
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // Not the end of the data, the read is incomplete
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading " + filename, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error reading " + filename, e.getCause());
+        }
+    }
+
+    @SuppressWarnings("deprecation")    // Same read sequence as the alignments of AlignmentSamDataReader
+    private List<Alignment> readChunk(Chunk chunk) throws InterruptedException, IOException {
+        SAMFileReader reader = readers.take();
+        List<Alignment> alignments = new ArrayList<>();
+        SAMRecordIterator iterator = chunk == Chunk.UNMAPPED
+                ? reader.queryUnmapped()
+                : reader.queryOverlapping(chunk.chromosome, chunk.start, chunk.end);
+        try {
+            while (iterator.hasNext()) {
+                SAMRecord record = iterator.next();
+                if (!chunk.first && record.getAlignmentStart() < chunk.start) {
+                    continue;   // Already returned by the previous chunk
+                }
+                String referenceSequence = null;
+                if (referenceSequenceProvider != null) {
+                    referenceSequence = AlignmentHelper.getReferenceSequence(record, referenceSequenceProvider);
+                }
+                Alignment alignment = new Alignment(record, referenceSequence);
+                alignment.setReadSequence(record.getReadBases());
+                alignments.add(alignment);
+            }
+        } finally {
+            iterator.close();
+            readers.put(reader);
+        }
+        return alignments;
+    }
+
+    /**
+     * Set the source of the reference sequence used to find the mismatches of the alignments read. By default, the
+     * mismatches are not looked for.
+     *
+     * @param referenceSequenceProvider Source of the reference sequence, or null. Used from several threads
+     */
+    public void setReferenceSequenceProvider(ReferenceSequenceProvider referenceSequenceProvider) {
+        this.referenceSequenceProvider = referenceSequenceProvider;
+    }
+
+    @Override
+    public SAMFileHeader getHeader() {
+        return header;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Bases of a region decoded by one thread.
+     */
+    private static class Chunk {
+        // Reads without a position, at the end of the file
+        private static final Chunk UNMAPPED = new Chunk(null, 0, 0, true);
+
+        private final String chromosome;
+        private final int start;
+        private final int end;
+        private final boolean first;    // First chunk of its region
+
+        Chunk(String chromosome, int start, int end, boolean first) {
+            this.chromosome = chromosome;
+            this.start = start;
+            this.end = end;
+            this.first = first;
+        }
+    }
+}
@@ -5,9 +5,14 @@ import net.sf.samtools.SAMFileReader;
 import net.sf.samtools.SAMRecord;
 import net.sf.samtools.SAMRecordIterator;
 import org.opencb.commons.bioformats.alignment.Alignment;
+import org.opencb.commons.bioformats.alignment.AlignmentHelper;
 import org.opencb.commons.bioformats.alignment.io.readers.AlignmentDataReader;
+import org.opencb.commons.bioformats.alignment.io.readers.sequence.ReferenceSequenceProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -28,6 +33,9 @@ public class AlignmentSamDataReader implements AlignmentDataReader<SAMFileHeader
     public SAMFileHeader header;
     private SAMRecordIterator iterator;
     private boolean enableFileSource;
+    private ReferenceSequenceProvider referenceSequenceProvider;
+
+    protected static Logger logger = LoggerFactory.getLogger(AlignmentSamDataReader.class);
 
     public AlignmentSamDataReader(String filename){
         this(filename,false);
@@ -76,42 +84,60 @@ public class AlignmentSamDataReader implements AlignmentDataReader<SAMFileHeader
 
     @Override
     public List<Alignment> read() {
-        Alignment alignment = null;
-        List<Alignment> alignments = null;
-
-
-        SAMRecord record = null;
-        if(iterator.hasNext()){
-            record = iterator.next();
-            alignment = new Alignment(record, null);
-            /*
-            alignment = new Alignment(record.getReadName(), record.getReferenceName(), record.getAlignmentStart(), record.getAlignmentEnd(),
-                record.getUnclippedStart(), record.getUnclippedEnd(), record.getReadLength(),
-                record.getMappingQuality(), record.getBaseQualityString(),
-                record.getMateReferenceName(), record.getMateAlignmentStart(),
-                record.getInferredInsertSize(), record.getFlags(),
-                AlignmentHelper.getDifferencesFromCigar(record,null), null);
-                */
-//            Alignment alignment = new Alignment(record, null, record.getReadString());
-            alignment.setReadSequence(record.getReadBases());
-            alignments = new ArrayList<>(1);
-            alignments.add(alignment);
+        Alignment alignment = readAlignment();
+        if (alignment == null) {
+            return null;
         }
+        List<Alignment> alignments = new ArrayList<>(1);
+        alignments.add(alignment);
         return alignments;
     }
 
     @Override
     public List<Alignment> read(int batchSize) {
         List<Alignment> listRecords = new ArrayList<>(batchSize);
-        List<Alignment> auxList;
+        Alignment alignment;
 
-        for (int i = 0; (i < batchSize) && (auxList = this.read()) != null; i++) {
-            listRecords.add(auxList.get(0));
+        for (int i = 0; (i < batchSize) && (alignment = readAlignment()) != null; i++) {
+            listRecords.add(alignment);
         }
 
         return listRecords;
     }
 
+    /**
+     * @return Next alignment, or null at the end of the file
+     * @throws IllegalStateException If the reference sequence of the alignment can not be read
+     */
+    private Alignment readAlignment() {
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        SAMRecord record = iterator.next();
+        String referenceSequence = null;
+        if (referenceSequenceProvider != null) {
+            try {
+                referenceSequence = AlignmentHelper.getReferenceSequence(record, referenceSequenceProvider);
+            } catch (IOException e) {
+                logger.error("Error reading the reference sequence of {} in {}", record.getReadName(), filename, e);
+                throw new IllegalStateException("Error reading " + filename, e);
+            }
+        }
+        Alignment alignment = new Alignment(record, referenceSequence);
+        alignment.setReadSequence(record.getReadBases());
+        return alignment;
+    }
+
+    /**
+     * Set the source of the reference sequence used to find the mismatches of the alignments read. By default, the
+     * mismatches are not looked for.
+     *
+     * @param referenceSequenceProvider Source of the reference sequence, or null
+     */
+    public void setReferenceSequenceProvider(ReferenceSequenceProvider referenceSequenceProvider) {
+        this.referenceSequenceProvider = referenceSequenceProvider;
+    }
+
     public SAMFileHeader getHeader(){
         return header;
     }
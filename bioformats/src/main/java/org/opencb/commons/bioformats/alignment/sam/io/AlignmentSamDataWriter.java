@@ -2,8 +2,9 @@ package org.opencb.commons.bioformats.alignment.sam.io;
 
 import net.sf.samtools.*;
 import org.opencb.commons.bioformats.alignment.Alignment;
-import org.opencb.commons.bioformats.alignment.AlignmentHelper;
 import org.opencb.commons.bioformats.alignment.ShortReferenceSequenceException;
+import org.opencb.commons.bioformats.alignment.io.readers.sequence.CellBaseSequenceProvider;
+import org.opencb.commons.bioformats.alignment.io.readers.sequence.ReferenceSequenceProvider;
 import org.opencb.commons.bioformats.alignment.io.writers.AlignmentDataWriter;
 import org.opencb.commons.bioformats.feature.Region;
 
@@ -33,6 +34,7 @@ public class AlignmentSamDataWriter implements AlignmentDataWriter<Alignment, SA
     private long referenceSequenceStart = -1;
     private boolean headerWritten = false;
     private boolean validSequence = false;
+    private ReferenceSequenceProvider referenceSequenceProvider;
 
 
     public AlignmentSamDataWriter(String filename, SAMFileHeader header) {
@@ -112,18 +114,27 @@ public class AlignmentSamDataWriter implements AlignmentDataWriter<Alignment, SA
     }
 
     private void getSequence(String chromosome, long pos){
-        System.out.println("Asking for reference... " + pos + " - " + (pos + maxSequenceSize));
         validSequence = true;
         referenceSequenceStart = pos;
+        if (referenceSequenceProvider == null) {
+            referenceSequenceProvider = new CellBaseSequenceProvider();
+        }
         try {
-            referenceSequence = AlignmentHelper.getSequence(
-                    new Region(chromosome, pos, pos + maxSequenceSize)
-                    , null);
+            referenceSequence = referenceSequenceProvider.getSequence(new Region(chromosome, pos, pos + maxSequenceSize));
         } catch (IOException e) {
             System.out.println("Could not get reference sequence");
         }
     }
 
+    /**
+     * Set the source of the reference sequence needed to rebuild the reads. CellBase is used by default.
+     *
+     * @param referenceSequenceProvider Source of the reference sequence
+     */
+    public void setReferenceSequenceProvider(ReferenceSequenceProvider referenceSequenceProvider) {
+        this.referenceSequenceProvider = referenceSequenceProvider;
+    }
+
     @Override
     public boolean write(List<Alignment> batch) {
         for(Alignment r : batch){
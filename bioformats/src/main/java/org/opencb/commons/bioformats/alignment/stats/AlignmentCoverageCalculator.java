@@ -55,6 +55,11 @@ public class AlignmentCoverageCalculator {
     private int coverage(int end){
         int coverageDecrement;
         while(nucleotideIndex < end){
+            if(list.isEmpty() && nucleotideIndex < nextChunkSize){
+                // No reads cover the positions until the next chunk, so their coverage is zero
+                nucleotideIndex = Math.min(end, nextChunkSize);
+                continue;
+            }
             if((coverageDecrement = list.decrement()) != 0){
                 actualCoverage-=coverageDecrement;
             }
@@ -39,6 +39,22 @@ public class AlignmentRegionSummary {
         this.tagMap = tagMap;
     }
 
+    public long getStart() {
+        return start;
+    }
+
+    public void setStart(long start) {
+        this.start = start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public void setEnd(long end) {
+        this.end = end;
+    }
+
     public int getDefaultLength() {
         return defaultLength;
     }
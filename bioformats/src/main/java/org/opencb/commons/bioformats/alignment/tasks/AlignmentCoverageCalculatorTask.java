@@ -325,8 +325,23 @@ public class AlignmentCoverageCalculatorTask extends Task<AlignmentRegion> {
         if(alignment.getEnd()>end){
             end = alignment.getEnd();
         }
-        byte[] sequence = alignment.getReadSequence();
+        addCoverage(alignment, coverage, 0, regionCoverageMask);
 
+        return 0;
+    }
+
+    /**
+     * Adds the bases of an alignment to the coverage of each nucleotide. The coverage of a position p is stored at
+     * (p - origin) &amp; mask, so the arrays can be used as a ring buffer or as a plain array starting at origin.
+     *
+     * @param alignment Alignment to add
+     * @param coverage  Coverage arrays
+     * @param origin    Position stored at index 0
+     * @param mask      Mask applied to the index
+     */
+    static void addCoverage(Alignment alignment, RegionCoverage coverage, long origin, long mask) {
+        long start = alignment.getStart();
+        byte[] sequence = alignment.getReadSequence();
 
         Iterator<Alignment.AlignmentDifference> diferencesIterator = alignment.getDifferences().iterator();
         Alignment.AlignmentDifference alignmentDifference = diferencesIterator.hasNext()? diferencesIterator.next():null;
@@ -362,16 +377,16 @@ public class AlignmentCoverageCalculatorTask extends Task<AlignmentRegion> {
             if(i < alignment.getLength()){ //TODO jj: Write a correct commentary
                 switch (sequence[i]) {
                     case 'A':
-                        coverage.getA()[(int) ((i + offset + start) & regionCoverageMask)]++;
+                        coverage.getA()[(int) ((i + offset + start - origin) & mask)]++;
                         break;
                     case 'C':
-                        coverage.getC()[(int) ((i + offset + start) & regionCoverageMask)]++;
+                        coverage.getC()[(int) ((i + offset + start - origin) & mask)]++;
                         break;
                     case 'G':
-                        coverage.getG()[(int) ((i + offset + start) & regionCoverageMask)]++;
+                        coverage.getG()[(int) ((i + offset + start - origin) & mask)]++;
                         break;
                     case 'T':
-                        coverage.getT()[(int) ((i + offset + start) & regionCoverageMask)]++;
+                        coverage.getT()[(int) ((i + offset + start - origin) & mask)]++;
                         break;
                     default:
                         //TODO jcoll: Analyze this case
@@ -379,8 +394,6 @@ public class AlignmentCoverageCalculatorTask extends Task<AlignmentRegion> {
                 }
             }
         }
-
-        return 0;
     }
 
     /**
@@ -0,0 +1,173 @@
+package org.opencb.commons.bioformats.alignment.tasks;
+
+import org.opencb.commons.bioformats.alignment.Alignment;
+import org.opencb.commons.bioformats.alignment.AlignmentBatch;
+import org.opencb.commons.bioformats.alignment.AlignmentRegion;
+import org.opencb.commons.bioformats.alignment.stats.RegionCoverage;
+import org.opencb.commons.run.ParallelTaskRunner;
+
+import java.util.List;
+
+/**
+ * {@link ParallelTaskRunner} task that calculates the coverage of each {@link AlignmentRegion} on its own, so the
+ * regions can be processed by any number of threads.
+ * <p>
+ * Unlike {@link AlignmentCoverageCalculatorTask}, no state is kept between regions: the coverage of a region spans
+ * from the first position to the last position of its alignments, including the alignments that overlap the next
+ * region. The overlapping positions are added to the next region by {@link AlignmentCoverageMerger}, which must
+ * receive the regions in order, i.e. with a sorted runner.
+ */
+public class AlignmentCoverageChunkTask implements ParallelTaskRunner.Task<AlignmentRegion, AlignmentRegion> {
+
+    @Override
+    public List<AlignmentRegion> apply(List<AlignmentRegion> batch) {
+        for (AlignmentRegion alignmentRegion : batch) {
+            if (alignmentRegion == null) {
+                continue;
+            }
+            // The batch is checked first, as getAlignments() unpacks it
+            if (alignmentRegion.getAlignmentBatch() != null) {
+                alignmentRegion.setCoverage(coverage(alignmentRegion.getAlignmentBatch()));
+            } else if (alignmentRegion.getAlignments() != null) {
+                alignmentRegion.setCoverage(coverage(alignmentRegion.getAlignments()));
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Calculates the coverage of a list of alignments.
+     *
+     * @param alignments Alignments of the same chromosome
+     * @return Coverage from the first to the last position of the alignments, with the end exclusive
+     */
+    public static RegionCoverage coverage(List<Alignment> alignments) {
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        for (Alignment alignment : alignments) {
+            start = Math.min(start, alignment.getStart());
+            end = Math.max(end, lastPosition(alignment));
+        }
+        if (alignments.isEmpty()) {
+            start = end = 0;
+        } else {
+            end++;
+        }
+
+        RegionCoverage coverage = new RegionCoverage((int) (end - start));
+        for (Alignment alignment : alignments) {
+            AlignmentCoverageCalculatorTask.addCoverage(alignment, coverage, start, -1L);
+        }
+        return finish(coverage, start, end);
+    }
+
+    /**
+     * Calculates the coverage of packed alignments, without creating the alignment objects.
+     *
+     * @param alignments Alignments of the same chromosome
+     * @return Coverage from the first to the last position of the alignments, with the end exclusive
+     */
+    public static RegionCoverage coverage(AlignmentBatch alignments) {
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        for (int i = 0; i < alignments.size(); i++) {
+            start = Math.min(start, alignments.getStart(i));
+            end = Math.max(end, lastPosition(alignments, i));
+        }
+        if (alignments.size() == 0) {
+            start = end = 0;
+        } else {
+            end++;
+        }
+
+        RegionCoverage coverage = new RegionCoverage((int) (end - start));
+        for (int i = 0; i < alignments.size(); i++) {
+            addCoverage(alignments, i, coverage, start);
+        }
+        return finish(coverage, start, end);
+    }
+
+    private static RegionCoverage finish(RegionCoverage coverage, long start, long end) {
+        short[] all = coverage.getAll();
+        for (int i = 0; i < all.length; i++) {
+            all[i] = (short) (coverage.getA()[i] + coverage.getC()[i] + coverage.getG()[i] + coverage.getT()[i]);
+        }
+        coverage.setStart(start);
+        coverage.setEnd(end);
+        return coverage;
+    }
+
+    /**
+     * Same as {@link AlignmentCoverageCalculatorTask#addCoverage}, reading the alignment from the batch.
+     */
+    private static void addCoverage(AlignmentBatch alignments, int index, RegionCoverage coverage, long origin) {
+        if (!alignments.hasReadSequence(index)) {
+            return;
+        }
+        long start = alignments.getStart(index) - origin;
+        int length = alignments.getLength(index);
+        int numDifferences = alignments.getNumDifferences(index);
+        int difference = 0;
+        int offset = 0; // offset caused by insertions and deletions
+        for (int i = 0; i < length; i++) {
+            if (difference < numDifferences && alignments.getDifferencePos(index, difference) == i) {
+                switch (alignments.getDifferenceOp(index, difference)) {
+                    case Alignment.AlignmentDifference.INSERTION:
+                        i += alignments.getDifferenceLength(index, difference);
+                        offset -= alignments.getDifferenceLength(index, difference);
+                        break;
+                    case Alignment.AlignmentDifference.DELETION:
+                        offset += alignments.getDifferenceLength(index, difference);
+                        break;
+                    default:
+                        break;
+                }
+                difference++;
+            }
+            if (i < length) {
+                switch (alignments.getBase(index, i)) {
+                    case 'A':
+                        coverage.getA()[(int) (i + offset + start)]++;
+                        break;
+                    case 'C':
+                        coverage.getC()[(int) (i + offset + start)]++;
+                        break;
+                    case 'G':
+                        coverage.getG()[(int) (i + offset + start)]++;
+                        break;
+                    case 'T':
+                        coverage.getT()[(int) (i + offset + start)]++;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Last position the bases of the alignment can be counted at, after shifting them by its deletions
+     */
+    private static long lastPosition(AlignmentBatch alignments, int index) {
+        long last = alignments.getStart(index) + alignments.getLength(index) - 1;
+        for (int d = 0; d < alignments.getNumDifferences(index); d++) {
+            if (alignments.getDifferenceOp(index, d) == Alignment.AlignmentDifference.DELETION) {
+                last += alignments.getDifferenceLength(index, d);
+            }
+        }
+        return Math.max(last, alignments.getEnd(index));
+    }
+
+    /**
+     * @return Last position the bases of the alignment can be counted at, after shifting them by its deletions
+     */
+    private static long lastPosition(Alignment alignment) {
+        long last = alignment.getStart() + alignment.getLength() - 1;
+        for (Alignment.AlignmentDifference difference : alignment.getDifferences()) {
+            if (difference.getOp() == Alignment.AlignmentDifference.DELETION) {
+                last += difference.getLength();
+            }
+        }
+        return Math.max(last, alignment.getEnd());
+    }
+}
@@ -0,0 +1,230 @@
+package org.opencb.commons.bioformats.alignment.tasks;
+
+import org.opencb.commons.bioformats.alignment.AlignmentRegion;
+import org.opencb.commons.bioformats.alignment.stats.MeanCoverage;
+import org.opencb.commons.bioformats.alignment.stats.RegionCoverage;
+import org.opencb.commons.io.DataWriter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Joins the coverage calculated independently for each region by {@link AlignmentCoverageChunkTask}, and writes the
+ * regions to another writer.
+ * <p>
+ * The regions must be received in order. The coverage of a region that overlaps the next one is added to the next
+ * region, and the region is cut where the next one starts, so every position is written once and the result does not
+ * depend on how many threads calculated the coverage. As a region can only be cut once the next one is received, each
+ * region is written with the following batch, or when the writer is finished.
+ * <p>
+ * The mean coverage is calculated here, after merging, for windows aligned to multiples of their size. Each region
+ * gets the windows that end within it, or in the gap between it and the previous region. The last region of each
+ * chromosome also gets the window where its coverage ends, with the positions after the end counted as zero coverage.
+ */
+public class AlignmentCoverageMerger implements DataWriter<AlignmentRegion> {
+
+    private final DataWriter<AlignmentRegion> writer;
+    private final List<MeanCoverageWindow> meanCoverageWindows;
+    private AlignmentRegion pending;
+
+    /**
+     * @param writer Writer of the merged regions, or null to get them only from {@link #merge(List)}
+     */
+    public AlignmentCoverageMerger(DataWriter<AlignmentRegion> writer) {
+        this.writer = writer;
+        this.meanCoverageWindows = new ArrayList<>();
+    }
+
+    public void addMeanCoverageCalculator(int size, String name) {
+        meanCoverageWindows.add(new MeanCoverageWindow(size, name));
+    }
+
+    /**
+     * Merges the next regions with the previous ones.
+     *
+     * @param batch Regions with their own coverage, in order
+     * @return Regions whose coverage is complete
+     */
+    public List<AlignmentRegion> merge(List<AlignmentRegion> batch) {
+        List<AlignmentRegion> merged = new ArrayList<>(batch.size());
+        for (AlignmentRegion alignmentRegion : batch) {
+            if (alignmentRegion == null) {
+                continue;
+            }
+            if (pending != null) {
+                merged.add(join(pending, alignmentRegion));
+            }
+            pending = alignmentRegion;
+        }
+        return merged;
+    }
+
+    /**
+     * @return The last region received, if any, as nothing else can be merged into it
+     */
+    public List<AlignmentRegion> drain() {
+        List<AlignmentRegion> merged = new ArrayList<>(1);
+        if (pending != null) {
+            merged.add(finish(pending, true));
+            pending = null;
+        }
+        return merged;
+    }
+
+    /**
+     * Adds the coverage of a region that overlaps the next one to the next one, and cuts the region where the next
+     * one starts.
+     */
+    private AlignmentRegion join(AlignmentRegion region, AlignmentRegion next) {
+        RegionCoverage coverage = region.getCoverage();
+        RegionCoverage nextCoverage = next.getCoverage();
+        if (!region.getChromosome().equals(next.getChromosome())) {
+            return finish(region, true);
+        }
+        if (coverage == null || nextCoverage == null || nextCoverage.getStart() >= coverage.getEnd()) {
+            return finish(region, false);
+        }
+
+        long start = nextCoverage.getStart();
+        if (coverage.getEnd() > nextCoverage.getEnd()) {
+            int length = (int) (coverage.getEnd() - start);
+            nextCoverage.setA(Arrays.copyOf(nextCoverage.getA(), length));
+            nextCoverage.setC(Arrays.copyOf(nextCoverage.getC(), length));
+            nextCoverage.setG(Arrays.copyOf(nextCoverage.getG(), length));
+            nextCoverage.setT(Arrays.copyOf(nextCoverage.getT(), length));
+            nextCoverage.setAll(Arrays.copyOf(nextCoverage.getAll(), length));
+            nextCoverage.setEnd(coverage.getEnd());
+        }
+        int from = (int) (start - coverage.getStart());
+        int length = (int) (coverage.getEnd() - start);
+        add(coverage.getA(), from, nextCoverage.getA(), length);
+        add(coverage.getC(), from, nextCoverage.getC(), length);
+        add(coverage.getG(), from, nextCoverage.getG(), length);
+        add(coverage.getT(), from, nextCoverage.getT(), length);
+        add(coverage.getAll(), from, nextCoverage.getAll(), length);
+
+        // The arrays are not shrunk, as in the coverage of AlignmentCoverageCalculatorTask
+        coverage.setEnd(start);
+        region.setOverlapEnd(false);
+        return finish(region, false);
+    }
+
+    private static void add(short[] source, int from, short[] dest, int length) {
+        for (int i = 0; i < length; i++) {
+            dest[i] += source[from + i];
+        }
+    }
+
+    /**
+     * @param lastOfChromosome If no more regions of the same chromosome will be received
+     */
+    private AlignmentRegion finish(AlignmentRegion region, boolean lastOfChromosome) {
+        List<MeanCoverage> meanCoverageList = new ArrayList<>(meanCoverageWindows.size());
+        for (MeanCoverageWindow meanCoverageWindow : meanCoverageWindows) {
+            meanCoverageList.add(meanCoverageWindow.take(region, lastOfChromosome));
+        }
+        region.setMeanCoverage(meanCoverageList);
+        return region;
+    }
+
+    @Override
+    public boolean open() {
+        return writer == null || writer.open();
+    }
+
+    @Override
+    public boolean close() {
+        return writer == null || writer.close();
+    }
+
+    @Override
+    public boolean pre() {
+        return writer == null || writer.pre();
+    }
+
+    @Override
+    public boolean post() {
+        List<AlignmentRegion> merged = drain();
+        boolean res = true;
+        if (writer != null) {
+            res = merged.isEmpty() || writer.write(merged);
+            res &= writer.post();
+        }
+        return res;
+    }
+
+    @Override
+    public boolean write(List<AlignmentRegion> batch) {
+        List<AlignmentRegion> merged = merge(batch);
+        return writer == null || merged.isEmpty() || writer.write(merged);
+    }
+
+    /**
+     * Mean coverage of consecutive windows of the same size. The window in progress is kept between regions of the
+     * same chromosome.
+     */
+    private static class MeanCoverageWindow {
+        private final int size;
+        private final String name;
+        private String chromosome;
+        private long window = -1;
+        private long sum;
+
+        MeanCoverageWindow(int size, String name) {
+            this.size = size;
+            this.name = name;
+        }
+
+        /**
+         * @param region           Next region
+         * @param lastOfChromosome Take also the window in progress, as no more regions of the chromosome will follow
+         */
+        MeanCoverage take(AlignmentRegion region, boolean lastOfChromosome) {
+            if (!region.getChromosome().equals(chromosome)) {
+                chromosome = region.getChromosome();
+                window = -1;
+                sum = 0;
+            }
+
+            List<Float> means = new ArrayList<>();
+            long first = -1;
+            RegionCoverage coverage = region.getCoverage();
+            if (coverage != null) {
+                short[] all = coverage.getAll();
+                for (long position = coverage.getStart(); position < coverage.getEnd(); position++) {
+                    long w = position / size;
+                    if (w != window) {
+                        // Windows between the last one and this one are empty
+                        for (long x = window; window >= 0 && x < w; x++) {
+                            means.add(x == window ? (float) sum / size : 0f);
+                            if (first < 0) {
+                                first = x;
+                            }
+                        }
+                        window = w;
+                        sum = 0;
+                    }
+                    sum += all[(int) (position - coverage.getStart())];
+                }
+            }
+            if (lastOfChromosome && window >= 0) {
+                means.add((float) sum / size);
+                if (first < 0) {
+                    first = window;
+                }
+                window = -1;
+                sum = 0;
+            }
+
+            float[] array = new float[means.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = means.get(i);
+            }
+            MeanCoverage meanCoverage = new MeanCoverage(size, name);
+            meanCoverage.setCoverage(array);
+            meanCoverage.setInitPosition((int) (first >= 0 ? first : Math.max(window, 0)));
+            return meanCoverage;
+        }
+    }
+}
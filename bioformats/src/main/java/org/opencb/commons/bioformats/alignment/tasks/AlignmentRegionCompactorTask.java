@@ -4,8 +4,9 @@ import org.opencb.commons.bioformats.alignment.Alignment;
 import org.opencb.commons.bioformats.alignment.AlignmentHelper;
 import org.opencb.commons.bioformats.alignment.AlignmentRegion;
 import org.opencb.commons.bioformats.alignment.ShortReferenceSequenceException;
+import org.opencb.commons.bioformats.alignment.io.readers.sequence.CellBaseSequenceProvider;
+import org.opencb.commons.bioformats.alignment.io.readers.sequence.ReferenceSequenceProvider;
 import org.opencb.commons.bioformats.feature.Region;
-import org.opencb.commons.containers.map.QueryOptions;
 import org.opencb.commons.run.Task;
 
 import java.io.IOException;
@@ -20,8 +21,14 @@ import java.util.List;
 
 public class AlignmentRegionCompactorTask extends Task<AlignmentRegion> {
 
+    private final ReferenceSequenceProvider referenceSequenceProvider;
 
     public AlignmentRegionCompactorTask(){
+        this(new CellBaseSequenceProvider());
+    }
+
+    public AlignmentRegionCompactorTask(ReferenceSequenceProvider referenceSequenceProvider){
+        this.referenceSequenceProvider = referenceSequenceProvider;
     }
 
 
@@ -31,8 +38,7 @@ public class AlignmentRegionCompactorTask extends Task<AlignmentRegion> {
         for(AlignmentRegion alignmentRegion : batch){
             Long start = alignmentRegion.getStart();
             Region region = alignmentRegion.getRegion();
-            System.out.println("Asking for sequence: " + region.toString() + " size = " + (region.getEnd()-region.getStart()));
-            String sequence = AlignmentHelper.getSequence(region, new QueryOptions());
+            String sequence = referenceSequenceProvider.getSequence(region);
             for(Alignment alignment : alignmentRegion.getAlignments()){
                 try {
                     AlignmentHelper.completeDifferencesFromReference(alignment,sequence, start);
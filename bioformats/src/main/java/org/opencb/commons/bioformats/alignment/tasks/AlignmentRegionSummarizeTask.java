@@ -1,9 +1,13 @@
 package org.opencb.commons.bioformats.alignment.tasks;
 
 import org.opencb.commons.bioformats.alignment.Alignment;
+import org.opencb.commons.bioformats.alignment.AlignmentBatch;
 import org.opencb.commons.bioformats.alignment.AlignmentRegion;
 import org.opencb.commons.bioformats.alignment.stats.AlignmentRegionSummary;
+import org.opencb.commons.containers.map.IntHistogram;
 import org.opencb.commons.run.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
@@ -24,215 +28,175 @@ import java.util.*;
  * Time: 5:55 PM
  *
  * @brief This task obtains the most repeated values in the alignments belonging to some range
+ *
+ * The values of the alignments of each window of modeStatsSize positions are counted in histograms of ints, which are
+ * cleared and reused for the next window. Mate reference names and tags are counted by an id given the first time
+ * they are seen. When a window is finished, its summary is added to {@link #getSummaries()}.
  */
 public class AlignmentRegionSummarizeTask extends Task<AlignmentRegion> {
     private int modeStatsSize = defaultModeStatsSize ;
     private static final int defaultModeStatsSize = 100000;
 
+    protected static Logger logger = LoggerFactory.getLogger(AlignmentRegionSummarizeTask.class);
+
+    private final IntHistogram flagsHistogram = new IntHistogram();
+    private final IntHistogram startDiffHistogram = new IntHistogram();
+    private final IntHistogram lengthHistogram = new IntHistogram();
+    private final IntHistogram mappingQualityHistogram = new IntHistogram();
+    private final IntHistogram mateAlignmentStartDiffHistogram = new IntHistogram();
+    private final IntHistogram rNextHistogram = new IntHistogram();
+    private final IntHistogram tagsHistogram = new IntHistogram();
 
-  //  private Map<String, Integer> nameMap;
-    private Map<Integer, Integer> flagsMap;
-    private Map<Long, Integer> startDiffMap;
-    private Map<Integer, Integer> lengthMap;
-    private Map<Integer, Integer> mappingQualityMap;
-    private Map<Integer, Integer> mateAlignmentStartDiffMap;
-    private Map<String, Integer> rNextMap;
-    private List<String> keyList;
-    private Map<String, Integer> keyMap;
-    private Map<Map.Entry<Integer, Object>, Integer> tagsMap;
+    // Ids of the strings and tags counted in the histograms, kept for all the windows
+    private final List<String> rNextList = new ArrayList<>();
+    private final Map<String, Integer> rNextMap = new HashMap<>();
+    private final List<String> keyList = new ArrayList<>();
+    private final Map<String, Integer> keyMap = new HashMap<>();
+    private final List<Map<Object, Integer>> tagIdMaps = new ArrayList<>();    // Id of each value, for each key
+    private final List<Map.Entry<Integer, Object>> tagList = new ArrayList<>();
 
+    private final List<AlignmentRegionSummary> summaries = new ArrayList<>();
+    private long numAlignments;
 
     private long start;
+    private long prevStart;
     private long actualEnd; //Position until which the actual ModeStats are calculated
     private boolean running = false;
 
     private void restart(long position){
-        //nameMap = new HashMap<>();
-        flagsMap = new HashMap<>();
-        startDiffMap = new HashMap<>();
-        lengthMap = new HashMap<>();
-        mappingQualityMap = new HashMap<>();
-        mateAlignmentStartDiffMap = new HashMap<>();
-        rNextMap = new HashMap<>();
-        keyMap = new HashMap<>();
-        keyList = new ArrayList<>();
-        tagsMap = new HashMap<>();
+        flagsHistogram.clear();
+        startDiffHistogram.clear();
+        lengthHistogram.clear();
+        mappingQualityHistogram.clear();
+        mateAlignmentStartDiffHistogram.clear();
+        rNextHistogram.clear();
+        tagsHistogram.clear();
 
         start = (position / modeStatsSize)*modeStatsSize;
+        prevStart = start;
         actualEnd = start + modeStatsSize;
+        running = true;
     }
 
     @Override
     public boolean apply(List<AlignmentRegion> batch) throws IOException {
-        String name;
-        Map.Entry<String, Integer> nameEntry;
-        Integer flags;
-        Map.Entry<Integer, Integer> flagsEntry;
-
-
         for (AlignmentRegion alignmentRegion : batch) {
-            System.out.println("en un alignmentRegion con num alignments = " + alignmentRegion.getAlignments().size());
-
             if(!running){
                 restart(alignmentRegion.getStart());
-                running = true;
             }
 
-            long auxl;
-            int auxi;
-            String auxs;
-            for (Alignment alignment : alignmentRegion.getAlignments()) {
-
-
-                if(alignment.getStart() > actualEnd){
-
-                    int defaultLength = 0;
-                    int defaultFlag = 0;
-                    int defaultMapQ = 0;
-                    String defaultRNext = "";
-
-                    auxi = 0;
-                    for (Map.Entry<Integer, Integer> entry: flagsMap.entrySet()) {
-                        if(auxi < entry.getValue()){
-                            defaultFlag = entry.getKey();
-                        }
-                    }
-                    auxi = 0;
-                    for (Map.Entry<Integer, Integer> entry: lengthMap.entrySet()) {
-                        if(auxi < entry.getValue()){
-                            defaultLength = entry.getKey();
-                        }
-                    }
-                    auxi = 0;
-                    for (Map.Entry<Integer, Integer> entry: mappingQualityMap.entrySet()) {
-                        if(auxi < entry.getValue()){
-                            defaultMapQ = entry.getKey();
-                        }
-                    }
-                    auxi = 0;
-                    for (Map.Entry<String, Integer> entry: rNextMap.entrySet()) {
-                        if(auxi < entry.getValue()){
-                            defaultRNext = entry.getKey();
-                        }
-                    }
-
-
-                    AlignmentRegionSummary alignmentRegionSummary = new AlignmentRegionSummary(defaultLength, defaultFlag ,defaultMapQ, defaultRNext, keyMap, tagsMap);
-                    restart(alignment.getStart());
-
-
+            // The batch is checked first, as getAlignments() unpacks it
+            if (alignmentRegion.getAlignmentBatch() != null) {
+                AlignmentBatch alignments = alignmentRegion.getAlignmentBatch();
+                for (int i = 0; i < alignments.size(); i++) {
+                    add(alignments.getStart(i), alignments.getFlags(i), alignments.getLength(i),
+                            alignments.getMappingQuality(i), alignments.getMateAlignmentStart(i),
+                            alignments.getMateReferenceName(i), alignments.getAttributes(i));
                 }
-
-//                name = alignment.getName();
-//                nameMap.put(name, !nameMap.containsKey(name)? 1: nameMap.get(name)+1);
-
-                flags = alignment.getFlags();
-                flagsMap.put(flags, !flagsMap.containsKey(flags)? 1: flagsMap.get(flags)+1);
-
-                auxl = alignment.getStart()-start;
-                startDiffMap.put(auxl, !startDiffMap.containsKey(auxl)? 1: startDiffMap.get(auxl)+1);
-                start = alignment.getStart();
-
-                auxi = alignment.getLength();
-                lengthMap.put(auxi, !lengthMap.containsKey(auxi)? 1: lengthMap.get(auxi)+1);
-
-                auxi = alignment.getMappingQuality();
-                mappingQualityMap.put(auxi, !mappingQualityMap.containsKey(auxi)? 1: mappingQualityMap.get(auxi)+1);
-
-                auxi = (int)(alignment.getStart()-alignment.getMateAlignmentStart());
-                mateAlignmentStartDiffMap.put(auxi, !mateAlignmentStartDiffMap.containsKey(auxi)? 1: mateAlignmentStartDiffMap.get(auxi)+1);
-
-                rNextMap.put(alignment.getMateReferenceName(), !rNextMap.containsKey(alignment.getMateReferenceName())? 1: rNextMap.get(alignment.getMateReferenceName())+1);
-
-
-                for(Map.Entry<String, Object> entry : alignment.getAttributes().entrySet()){
-                    auxs = entry.getKey();
-                    if(keyMap.containsKey(auxs)){
-                        auxi = keyMap.get(auxs);
-                    } else {
-                        auxi = keyList.size();
-                        keyList.add(auxs);
-                        keyMap.put(auxs, auxi);
-                    } //auxi = IndexTag;
-
-                    Map.Entry<Integer, Object> tag = new AbstractMap.SimpleEntry<>(auxi, entry.getValue());
-                    if(tagsMap.containsKey(tag)){
-                        auxi = tagsMap.get(tag) + 1;
-                    } else {
-                        auxi = 1;
-                    }
-                    tagsMap.put(tag, auxi);
+            } else if (alignmentRegion.getAlignments() != null) {
+                for (Alignment alignment : alignmentRegion.getAlignments()) {
+                    add(alignment.getStart(), alignment.getFlags(), alignment.getLength(),
+                            alignment.getMappingQuality(), alignment.getMateAlignmentStart(),
+                            alignment.getMateReferenceName(), alignment.getAttributes());
                 }
             }
+        }
 
-//            nameEntry = new AbstractMap.SimpleEntry<String, Integer>("", 0);
-//            for (Map.Entry<String, Integer> entry: nameMap.entrySet()) {
-//                if (entry.getValue() > nameEntry.getValue()) {
-//                    nameEntry = entry;
-//                }
-//
-//            }
-            flagsEntry = new AbstractMap.SimpleEntry<Integer, Integer>(0, 0);
-            for (Map.Entry<Integer, Integer> entry: flagsMap.entrySet()) {
-                if (entry.getValue() > flagsEntry.getValue()) {
-                    flagsEntry = entry;
-                }
-                System.out.println("clave: " + entry.getKey() + ", valor : " + entry.getValue());
-            }
-
+        return true;
+    }
 
-            System.out.println("Start Diff:");
-            for (Map.Entry<Long, Integer> entry: startDiffMap.entrySet()) {
-                System.out.print("clave: " + entry.getKey() + ", valor : " + entry.getValue() + "\t");
-                for(int i = 0; i < entry.getValue(); i++){
-                    System.out.print('*');
-                }
-                System.out.println("");
-            }
+    @Override
+    public boolean post() {
+        if (running && numAlignments > 0) {
+            summarize();
+            running = false;
+        }
+        return true;
+    }
 
-            System.out.println("Mapping Quality:");
-            for (Map.Entry<Integer, Integer> entry: mappingQualityMap.entrySet()) {
-                System.out.print("clave: " + entry.getKey() + ", valor : " + entry.getValue() + "\t");
-                for(int i = 0; i < entry.getValue(); i++){
-                    System.out.print('*');
+    private void add(long alignmentStart, int flags, int length, int mappingQuality, int mateAlignmentStart,
+                     String mateReferenceName, Map<String, Object> attributes) {
+        if(alignmentStart > actualEnd){
+            summarize();
+            restart(alignmentStart);
+        }
+        numAlignments++;
+
+        flagsHistogram.add(flags);
+        startDiffHistogram.add((int) (alignmentStart - prevStart));
+        prevStart = alignmentStart;
+        lengthHistogram.add(length);
+        mappingQualityHistogram.add(mappingQuality);
+        mateAlignmentStartDiffHistogram.add((int) (alignmentStart - mateAlignmentStart));
+        rNextHistogram.add(id(mateReferenceName == null ? "" : mateReferenceName, rNextList, rNextMap));
+
+        if (attributes != null) {
+            for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+                int key = id(entry.getKey(), keyList, keyMap);
+                if (key == tagIdMaps.size()) {
+                    tagIdMaps.add(new HashMap<>());
                 }
-                System.out.println("");
-            }
-/*
-            System.out.println("MateAlignmentStart Diff:");
-            for (Map.Entry<Integer, Integer> entry: mateAlignmentStartDiffMap.entrySet()) {
-                System.out.print("clave: " + entry.getKey() + ", valor : " + entry.getValue() + "\t");
-                for(int i = 0; i < entry.getValue(); i++){
-                    System.out.print('*');
+                Map<Object, Integer> tagIdMap = tagIdMaps.get(key);
+                Integer tag = tagIdMap.get(entry.getValue());
+                if (tag == null) {
+                    tag = tagList.size();
+                    tagList.add(new AbstractMap.SimpleEntry<>(key, entry.getValue()));
+                    tagIdMap.put(entry.getValue(), tag);
                 }
-                System.out.println("");
+                tagsHistogram.add(tag);
             }
+        }
+    }
 
-            System.out.println("MateReferenceNext Diff:");
-            for (Map.Entry<String, Integer> entry: rNextMap.entrySet()) {
-                System.out.print("clave: " + entry.getKey() + ", valor : " + entry.getValue() + "\t");
-                for(int i = 0; i < entry.getValue(); i++){
-                    System.out.print('*');
-                }
-                System.out.println("");
-            }*/
+    private static int id(String value, List<String> list, Map<String, Integer> map) {
+        Integer id = map.get(value);
+        if (id == null) {
+            id = list.size();
+            list.add(value);
+            map.put(value, id);
+        }
+        return id;
+    }
 
-            System.out.println("Key List:");
-            for (int i = 0; i < keyList.size(); i++){
-                System.out.println(i + " : " + keyList.get(i));
-            }
+    /**
+     * Adds the summary of the values counted in the actual window.
+     */
+    private void summarize() {
+        int defaultLength = lengthHistogram.getMode(0);
+        int defaultFlag = flagsHistogram.getMode(0);
+        int defaultMapQ = mappingQualityHistogram.getMode(0);
+        int defaultRNext = rNextHistogram.getMode(-1);
+
+        Map<Map.Entry<Integer, Object>, Integer> tagsMap = new HashMap<>(tagsHistogram.size() * 2);
+        for (int i = 0; i < tagsHistogram.size(); i++) {
+            tagsMap.put(tagList.get(tagsHistogram.getKey(i)), tagsHistogram.getCount(i));
+        }
 
-            System.out.println("Tags Map:");
-            for (Map.Entry<Map.Entry<Integer, Object>, Integer> entry: tagsMap.entrySet()) {
-                System.out.print("clave: " + entry.getKey() + ", valor : " + entry.getValue() + "\t");
-                for(int i = 0; i < entry.getValue(); i++){
-                    System.out.print('*');
-                }
-                System.out.println("");
-            }
+        AlignmentRegionSummary alignmentRegionSummary = new AlignmentRegionSummary(defaultLength, defaultFlag,
+                defaultMapQ, defaultRNext < 0 ? "" : rNextList.get(defaultRNext), new HashMap<>(keyMap), tagsMap);
+        alignmentRegionSummary.setStart(start);
+        alignmentRegionSummary.setEnd(actualEnd);
+        summaries.add(alignmentRegionSummary);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Summary of [{}, {}): length = {}, flags = {}, mapQ = {}, start diff = {}, mate start diff = {}, "
+                            + "{} tags", start, actualEnd, defaultLength, defaultFlag, defaultMapQ,
+                    startDiffHistogram.getMode(0), mateAlignmentStartDiffHistogram.getMode(0), tagsHistogram.size());
         }
+    }
+
+    /**
+     * @return Summaries of the windows finished so far, in order
+     */
+    public List<AlignmentRegionSummary> getSummaries() {
+        return summaries;
+    }
 
-        return false;
+    /**
+     * @return Number of alignments counted so far
+     */
+    public long getNumAlignments() {
+        return numAlignments;
     }
 
     public int getModeStatsSize() {
@@ -68,40 +68,26 @@ public class Genotype {
 
     }
 
-    private void parseGenotype(String genotype) {
-        this.code = null;
-        this.count = 0;
-        if (genotype.length() < 3) {
-            this.allele1 = null;
-            this.allele2 = null;
-            this.code = AllelesCode.ALL_ALLELES_MISSING;
-        } else {
-            String[] auxAlleles = genotype.split("/|\\|");
-            if (auxAlleles[0].equals(".")) {
-                this.allele1 = null;
-                this.code = AllelesCode.FIRST_ALLELE_MISSING;
-            } else {
-                this.allele1 = Integer.valueOf(auxAlleles[0]);
-            }
-
-            if (auxAlleles.length == 1) { // Haploid
-                this.allele2 = null;
-                this.code = AllelesCode.HAPLOID;
-
-            } else {
-                if (auxAlleles[1].equals(".")) {
-                    this.allele2 = null;
-                    this.code = (this.code == AllelesCode.FIRST_ALLELE_MISSING) ? AllelesCode.ALL_ALLELES_MISSING : AllelesCode.SECOND_ALLELE_MISSING;
-                } else {
-                    this.allele2 = Integer.valueOf(auxAlleles[1]);
-                }
-            }
+    /**
+     * Creates a genotype from its code, see {@link GenotypeCodec}.
+     *
+     * @param code Code of the genotype
+     */
+    Genotype(int code) {
+        setGenotypeCode(code);
+    }
 
-        }
-        if (this.code == null) {
-            this.code = AllelesCode.ALLELES_OK;
+    private void parseGenotype(String genotype) {
+        setGenotypeCode(GenotypeCodec.encode(genotype));
+    }
 
-        }
+    private void setGenotypeCode(int code) {
+        int allele1 = GenotypeCodec.getAllele1(code);
+        int allele2 = GenotypeCodec.getAllele2(code);
+        this.allele1 = allele1 == GenotypeCodec.MISSING_ALLELE ? null : allele1;
+        this.allele2 = allele2 == GenotypeCodec.MISSING_ALLELE ? null : allele2;
+        this.code = GenotypeCodec.getAllelesCode(code);
+        this.count = 0;
     }
 
     public Integer getAllele1() {
@@ -0,0 +1,215 @@
+package org.opencb.commons.bioformats.feature;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes genotypes as primitive ints, so they can be parsed and compared without creating any object.
+ * <p>
+ * A code stores the first allele in the high 16 bits and the second allele in the low 16 bits, both as the allele
+ * plus one, so a missing allele is stored as 0 and "./." is encoded as 0. Haploid genotypes have a special mark as
+ * second allele. Phasing is not stored, "0|1" and "0/1" have the same code.
+ * <p>
+ * Genotypes with single character alleles, like "0/1" or "./.", are decoded with a precomputed lookup table. Any other
+ * genotype is parsed with the same rules as {@link Genotype}.
+ */
+public final class GenotypeCodec {
+
+    public static final int MISSING_ALLELE = -1;
+    public static final int MAX_ALLELE = 0x7FFE;
+    public static final int MISSING_GENOTYPE = 0;
+
+    private static final int ALLELE_MASK = 0xFFFF;
+    private static final int HAPLOID_MARK = 0xFFFF;
+    private static final int NUM_SINGLE_ALLELES = 11;
+    private static final int[] SINGLE_ALLELE_GENOTYPES = new int[NUM_SINGLE_ALLELES * NUM_SINGLE_ALLELES];
+
+    static {
+        // Missing allele '.' is the position 0, and alleles '0' to '9' the positions 1 to 10
+        for (int allele1 = MISSING_ALLELE; allele1 < NUM_SINGLE_ALLELES - 1; allele1++) {
+            for (int allele2 = MISSING_ALLELE; allele2 < NUM_SINGLE_ALLELES - 1; allele2++) {
+                SINGLE_ALLELE_GENOTYPES[(allele1 + 1) * NUM_SINGLE_ALLELES + allele2 + 1] = encode(allele1, allele2);
+            }
+        }
+    }
+
+    private GenotypeCodec() {
+    }
+
+    /**
+     * @param allele1 First allele, or {@link #MISSING_ALLELE}
+     * @param allele2 Second allele, or {@link #MISSING_ALLELE}
+     * @return Code of the genotype
+     */
+    public static int encode(int allele1, int allele2) {
+        return (checkAllele(allele1) + 1) << 16 | (checkAllele(allele2) + 1);
+    }
+
+    /**
+     * @param allele Allele of a haploid genotype
+     * @return Code of the genotype
+     */
+    public static int encodeHaploid(int allele) {
+        return (checkAllele(allele) + 1) << 16 | HAPLOID_MARK;
+    }
+
+    /**
+     * Encodes a genotype like "0/1", "1|1" or "./.". As in {@link Genotype}, strings shorter than 3 characters are
+     * considered missing.
+     *
+     * @param genotype Genotype to encode
+     * @return Code of the genotype
+     * @throws NumberFormatException if an allele is not a number
+     */
+    public static int encode(String genotype) {
+        int length = genotype.length();
+        if (length < 3) {
+            return MISSING_GENOTYPE;
+        }
+        if (length == 3 && isSeparator(genotype.charAt(1))) {
+            int allele1 = singleAlleleIndex(genotype.charAt(0));
+            int allele2 = singleAlleleIndex(genotype.charAt(2));
+            if (allele1 >= 0 && allele2 >= 0) {
+                return SINGLE_ALLELE_GENOTYPES[allele1 * NUM_SINGLE_ALLELES + allele2];
+            }
+        }
+        return parse(genotype);
+    }
+
+    /**
+     * Encodes a genotype directly from the bytes of a VCF line.
+     *
+     * @param buffer Buffer containing the genotype
+     * @param start  Position of the first byte of the genotype
+     * @param end    Position after the last byte of the genotype
+     * @return Code of the genotype
+     * @throws NumberFormatException if an allele is not a number
+     */
+    public static int encode(byte[] buffer, int start, int end) {
+        int length = end - start;
+        if (length < 3) {
+            return MISSING_GENOTYPE;
+        }
+        if (length == 3 && isSeparator((char) buffer[start + 1])) {
+            int allele1 = singleAlleleIndex((char) buffer[start]);
+            int allele2 = singleAlleleIndex((char) buffer[start + 2]);
+            if (allele1 >= 0 && allele2 >= 0) {
+                return SINGLE_ALLELE_GENOTYPES[allele1 * NUM_SINGLE_ALLELES + allele2];
+            }
+        }
+        return parse(new String(buffer, start, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param code Code of a genotype
+     * @return First allele, or {@link #MISSING_ALLELE}
+     */
+    public static int getAllele1(int code) {
+        return (code >>> 16) - 1;
+    }
+
+    /**
+     * @param code Code of a genotype
+     * @return Second allele, or {@link #MISSING_ALLELE} if missing or haploid
+     */
+    public static int getAllele2(int code) {
+        int allele2 = code & ALLELE_MASK;
+        return allele2 == HAPLOID_MARK ? MISSING_ALLELE : allele2 - 1;
+    }
+
+    public static boolean isHaploid(int code) {
+        return (code & ALLELE_MASK) == HAPLOID_MARK;
+    }
+
+    public static AllelesCode getAllelesCode(int code) {
+        if (isHaploid(code)) {
+            return AllelesCode.HAPLOID;
+        }
+        boolean missing1 = (code >>> 16) == 0;
+        boolean missing2 = (code & ALLELE_MASK) == 0;
+        if (missing1) {
+            return missing2 ? AllelesCode.ALL_ALLELES_MISSING : AllelesCode.FIRST_ALLELE_MISSING;
+        }
+        return missing2 ? AllelesCode.SECOND_ALLELE_MISSING : AllelesCode.ALLELES_OK;
+    }
+
+    /**
+     * @param code Code of a genotype
+     * @return true if both alleles are present
+     */
+    public static boolean isCalled(int code) {
+        return (code >>> 16) != 0 && (code & ALLELE_MASK) != 0 && !isHaploid(code);
+    }
+
+    public static Genotype toGenotype(int code) {
+        return new Genotype(code);
+    }
+
+    /**
+     * Parses any genotype, with the same rules as the original split on "/" and "|".
+     */
+    private static int parse(String genotype) {
+        int separator = indexOfSeparator(genotype, 0);
+        if (separator < 0) {
+            return encodeHaploid(parseAllele(genotype, 0, genotype.length()));
+        }
+        int allele1 = parseAllele(genotype, 0, separator);
+        int end = indexOfSeparator(genotype, separator + 1);
+        if (end < 0) {
+            end = genotype.length();
+        }
+        if (end == separator + 1 && isTrailingSeparators(genotype, separator)) {
+            // Trailing empty alleles are ignored, as in String.split
+            return encodeHaploid(allele1);
+        }
+        return encode(allele1, parseAllele(genotype, separator + 1, end));
+    }
+
+    private static int parseAllele(String genotype, int start, int end) {
+        if (end - start == 1 && genotype.charAt(start) == '.') {
+            return MISSING_ALLELE;
+        }
+        int allele = Integer.parseInt(genotype.substring(start, end));
+        if (allele < 0 || allele > MAX_ALLELE) {
+            throw new NumberFormatException("Allele out of range in genotype \"" + genotype + "\"");
+        }
+        return allele;
+    }
+
+    private static int checkAllele(int allele) {
+        if (allele < MISSING_ALLELE || allele > MAX_ALLELE) {
+            throw new IllegalArgumentException("Allele out of range: " + allele);
+        }
+        return allele;
+    }
+
+    private static int singleAlleleIndex(char c) {
+        if (c == '.') {
+            return 0;
+        } else if (c >= '0' && c <= '9') {
+            return c - '0' + 1;
+        }
+        return -1;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '/' || c == '|';
+    }
+
+    private static int indexOfSeparator(String genotype, int start) {
+        for (int i = start; i < genotype.length(); i++) {
+            if (isSeparator(genotype.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isTrailingSeparators(String genotype, int start) {
+        for (int i = start; i < genotype.length(); i++) {
+            if (!isSeparator(genotype.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
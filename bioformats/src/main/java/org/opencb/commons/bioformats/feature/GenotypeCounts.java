@@ -0,0 +1,127 @@
+package org.opencb.commons.bioformats.feature;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense matrix with the number of occurrences of each genotype of a variant, indexed by allele pair.
+ * <p>
+ * Rows are the first allele and columns the second allele, both shifted by one so the position 0 is the missing
+ * allele. An extra column counts the haploid genotypes. Counting a genotype is a single array increment. Genotypes
+ * with alleles greater than the number of alleles of the variant are counted apart.
+ */
+public class GenotypeCounts {
+
+    private final int numAlleles;
+    private final int numColumns;
+    private final int[] counts;
+    private Map<Integer, Integer> outOfRangeCounts;
+
+    /**
+     * @param numAlleles Number of alleles of the variant, including the reference
+     */
+    public GenotypeCounts(int numAlleles) {
+        this.numAlleles = numAlleles;
+        this.numColumns = numAlleles + 2;
+        this.counts = new int[(numAlleles + 1) * numColumns];
+    }
+
+    /**
+     * Counts an occurrence of a genotype.
+     *
+     * @param code Code of the genotype, see {@link GenotypeCodec}
+     */
+    public void add(int code) {
+        add(code, 1);
+    }
+
+    public void add(int code, int count) {
+        int index = index(code);
+        if (index >= 0) {
+            counts[index] += count;
+        } else {
+            if (outOfRangeCounts == null) {
+                outOfRangeCounts = new LinkedHashMap<>();
+            }
+            outOfRangeCounts.merge(code, count, Integer::sum);
+        }
+    }
+
+    public int getCount(int code) {
+        int index = index(code);
+        if (index >= 0) {
+            return counts[index];
+        }
+        return outOfRangeCounts == null ? 0 : outOfRangeCounts.getOrDefault(code, 0);
+    }
+
+    /**
+     * @param allele1 First allele, or {@link GenotypeCodec#MISSING_ALLELE}
+     * @param allele2 Second allele, or {@link GenotypeCodec#MISSING_ALLELE}
+     * @return Number of occurrences of the diploid genotype
+     */
+    public int getCount(int allele1, int allele2) {
+        return counts[(allele1 + 1) * numColumns + allele2 + 1];
+    }
+
+    /**
+     * @param allele Allele, or {@link GenotypeCodec#MISSING_ALLELE}
+     * @return Number of occurrences of the haploid genotype
+     */
+    public int getHaploidCount(int allele) {
+        return counts[(allele + 1) * numColumns + numColumns - 1];
+    }
+
+    public int getNumAlleles() {
+        return numAlleles;
+    }
+
+    /**
+     * @return Occurrences of the genotypes with alleles greater than the number of alleles, by genotype code
+     */
+    public Map<Integer, Integer> getOutOfRangeCounts() {
+        return outOfRangeCounts == null ? new LinkedHashMap<Integer, Integer>() : outOfRangeCounts;
+    }
+
+    /**
+     * @return A genotype for each genotype with any occurrence, with its number of occurrences as count
+     */
+    public List<Genotype> toGenotypes() {
+        List<Genotype> genotypes = new ArrayList<>();
+        for (int allele1 = GenotypeCodec.MISSING_ALLELE; allele1 < numAlleles; allele1++) {
+            for (int allele2 = GenotypeCodec.MISSING_ALLELE; allele2 < numAlleles; allele2++) {
+                addGenotype(genotypes, GenotypeCodec.encode(allele1, allele2), getCount(allele1, allele2));
+            }
+            addGenotype(genotypes, GenotypeCodec.encodeHaploid(allele1), getHaploidCount(allele1));
+        }
+        for (Map.Entry<Integer, Integer> entry : getOutOfRangeCounts().entrySet()) {
+            addGenotype(genotypes, entry.getKey(), entry.getValue());
+        }
+        return genotypes;
+    }
+
+    private static void addGenotype(List<Genotype> genotypes, int code, int count) {
+        if (count > 0) {
+            Genotype genotype = GenotypeCodec.toGenotype(code);
+            genotype.setCount(count);
+            genotypes.add(genotype);
+        }
+    }
+
+    private int index(int code) {
+        int allele1 = GenotypeCodec.getAllele1(code);
+        if (allele1 >= numAlleles) {
+            return -1;
+        }
+        if (GenotypeCodec.isHaploid(code)) {
+            return (allele1 + 1) * numColumns + numColumns - 1;
+        }
+        int allele2 = GenotypeCodec.getAllele2(code);
+        if (allele2 >= numAlleles) {
+            return -1;
+        }
+        return (allele1 + 1) * numColumns + allele2 + 1;
+    }
+}
@@ -11,6 +11,10 @@ import java.util.List;
  */
 public class Genotypes {
 
+    /**
+     * @deprecated Use {@link GenotypeCounts}, which counts genotypes in a dense matrix instead of scanning the list.
+     */
+    @Deprecated
     public static void addGenotypeToList(List<Genotype> list, Genotype g) {
 
         Genotype auxG;
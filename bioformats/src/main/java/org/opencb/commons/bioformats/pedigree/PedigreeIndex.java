@@ -0,0 +1,140 @@
+package org.opencb.commons.bioformats.pedigree;
+
+import java.util.*;
+
+/**
+ * Pedigree compiled into integer arrays aligned with a list of samples.
+ * <p>
+ * The first positions of the index are the samples it was created with, in the same order. The parents of those
+ * samples that are not in the list are appended after them, so the genotypes of every trio can be read from a single
+ * array of genotypes ordered as {@link #getSampleNames()}. Parents are referenced by their position, or {@link #NONE}.
+ */
+public class PedigreeIndex {
+
+    public static final int NONE = -1;
+
+    private static final Sex[] SEXES = Sex.values();
+    private static final Condition[] CONDITIONS = Condition.values();
+
+    private final List<String> sampleNames;
+    private final int numIndexedSamples;
+    private final int[] father;
+    private final int[] mother;
+    private final int[] sex;
+    private final int[] condition;
+    private final int[] children;
+
+    /**
+     * @param ped         Pedigree of the samples
+     * @param sampleNames Samples to index. Samples not in the pedigree have no parents and unknown sex and condition
+     */
+    public PedigreeIndex(Pedigree ped, List<String> sampleNames) {
+        this.numIndexedSamples = sampleNames.size();
+
+        List<String> names = new ArrayList<>(sampleNames);
+        Map<String, Integer> positions = new HashMap<>(sampleNames.size() * 2);
+        for (int i = 0; i < names.size(); i++) {
+            positions.put(names.get(i), i);
+        }
+
+        int[] fatherPositions = new int[numIndexedSamples];
+        int[] motherPositions = new int[numIndexedSamples];
+        List<Integer> childrenPositions = new ArrayList<>();
+        for (int i = 0; i < numIndexedSamples; i++) {
+            Individual ind = ped.getIndividual(names.get(i));
+            if (ind == null || ind.getFather() == null || ind.getMother() == null) {
+                fatherPositions[i] = NONE;
+                motherPositions[i] = NONE;
+            } else {
+                fatherPositions[i] = position(ind.getFather().getId(), names, positions);
+                motherPositions[i] = position(ind.getMother().getId(), names, positions);
+                childrenPositions.add(i);
+            }
+        }
+
+        this.sampleNames = Collections.unmodifiableList(names);
+        this.father = fatherPositions;
+        this.mother = motherPositions;
+        this.children = new int[childrenPositions.size()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = childrenPositions.get(i);
+        }
+
+        this.sex = new int[names.size()];
+        this.condition = new int[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            Individual ind = ped.getIndividual(names.get(i));
+            sex[i] = (ind == null || ind.getSexCode() == null ? Sex.UNKNOWN_SEX : ind.getSexCode()).ordinal();
+            condition[i] = (ind == null || ind.getCondition() == null ? Condition.UNKNOWN_CONDITION : ind.getCondition()).ordinal();
+        }
+    }
+
+    private static int position(String sampleName, List<String> names, Map<String, Integer> positions) {
+        Integer position = positions.get(sampleName);
+        if (position == null) {
+            position = names.size();
+            names.add(sampleName);
+            positions.put(sampleName, position);
+        }
+        return position;
+    }
+
+    /**
+     * @return The indexed samples followed by their parents that were not indexed
+     */
+    public List<String> getSampleNames() {
+        return sampleNames;
+    }
+
+    /**
+     * @return Number of samples the index was created with
+     */
+    public int getNumIndexedSamples() {
+        return numIndexedSamples;
+    }
+
+    /**
+     * @param sample Position of an indexed sample
+     * @return Position of its father, or {@link #NONE} if any of its parents is unknown
+     */
+    public int getFather(int sample) {
+        return father[sample];
+    }
+
+    /**
+     * @param sample Position of an indexed sample
+     * @return Position of its mother, or {@link #NONE} if any of its parents is unknown
+     */
+    public int getMother(int sample) {
+        return mother[sample];
+    }
+
+    /**
+     * @return Positions of the indexed samples with both parents known
+     */
+    public int[] getChildren() {
+        return children;
+    }
+
+    /**
+     * @return Ordinal of the {@link Sex} of the sample
+     */
+    public int getSexCode(int sample) {
+        return sex[sample];
+    }
+
+    public Sex getSex(int sample) {
+        return SEXES[sex[sample]];
+    }
+
+    /**
+     * @return Ordinal of the {@link Condition} of the sample
+     */
+    public int getConditionCode(int sample) {
+        return condition[sample];
+    }
+
+    public Condition getCondition(int sample) {
+        return CONDITIONS[condition[sample]];
+    }
+}
@@ -2,6 +2,7 @@ package org.opencb.commons.bioformats.variant;
 
 import java.util.*;
 
+import org.opencb.commons.bioformats.feature.GenotypeCodec;
 import org.opencb.commons.bioformats.variant.utils.effect.VariantEffect;
 import org.opencb.commons.bioformats.variant.utils.stats.VariantStats;
 
@@ -16,6 +17,10 @@ public class Variant {
     private String id;
     private String format;
     private Map<String, Map<String, String>> samplesData;
+    /**
+     * Compact sample data of a VCF variant. When present, it is used instead of the samplesData map.
+     */
+    private VariantSamplesData samplesDataColumns;
     private VariantStats stats;
     private List<VariantEffect> effect;
 
@@ -25,6 +30,11 @@ public class Variant {
      */
     private Map<String, String> attributes;
 
+    /**
+     * Raw INFO column of a VCF file. It is parsed into the attributes the first time they are accessed.
+     */
+    private String rawInfo;
+
     public Variant(String chromosome, int position, String reference, String alternate) {
         this.setChromosome(chromosome);
         this.setPosition(position);
@@ -89,11 +99,31 @@ public class Variant {
     }
 
     public Map<String, Map<String, String>> getSamplesData() {
+        if (samplesDataColumns != null) {
+            return samplesDataColumns.asMap();
+        }
         return samplesData;
     }
 
     public Map<String, String> getSampleData(String sampleName) {
-        return samplesData.get(sampleName);
+        return getSamplesData().get(sampleName);
+    }
+
+    /**
+     * @return The compact sample data of the variant, or null if the samples data is stored in maps
+     */
+    public VariantSamplesData getSamplesDataColumns() {
+        return samplesDataColumns;
+    }
+
+    /**
+     * Sets the samples data of the variant in its compact form, replacing any sample data already added.
+     *
+     * @param samplesDataColumns Compact sample data
+     */
+    public void setSamplesDataColumns(VariantSamplesData samplesDataColumns) {
+        this.samplesData.clear();
+        this.samplesDataColumns = samplesDataColumns;
     }
 
     public VariantStats getStats() {
@@ -113,13 +143,35 @@ public class Variant {
     }
 
     public Map<String, String> getAttributes() {
+        if (rawInfo != null) {
+            String info = rawInfo;
+            rawInfo = null;
+            VariantFactory.parseInfo(attributes, info);
+        }
         return attributes;
     }
 
     public void setAttributes(Map<String, String> attributes) {
+        this.rawInfo = null;
         this.attributes = attributes;
     }
 
+    /**
+     * Sets the raw INFO column of a VCF file. It will be parsed into attributes only if they are accessed.
+     *
+     * @param rawInfo INFO column
+     */
+    public void setRawInfo(String rawInfo) {
+        this.rawInfo = rawInfo;
+    }
+
+    /**
+     * @return The raw INFO column while the attributes have not been accessed, null otherwise
+     */
+    public String getRawInfo() {
+        return rawInfo;
+    }
+
     public boolean addEffect(VariantEffect e) {
         if (this.effect == null) {
             this.effect = new ArrayList<>();
@@ -134,26 +186,58 @@ public class Variant {
     }
 
     public void addAttribute(String key, String value) {
-        this.attributes.put(key, value);
+        this.getAttributes().put(key, value);
     }
 
     public String getAttribute(String key) {
-        return this.attributes.get(key);
+        // Attributes not read from INFO, like QUAL and FILTER, do not need to parse it
+        String value = attributes.get(key);
+        return value != null || rawInfo == null ? value : this.getAttributes().get(key);
     }
 
     public boolean containsAttribute(String key) {
-        return this.attributes.containsKey(key);
+        return attributes.containsKey(key) || rawInfo != null && this.getAttributes().containsKey(key);
     }
 
     public void addSampleData(String sampleName, Map<String, String> sampleData) {
+        if (samplesDataColumns != null) {
+            // Switch to maps, so the data of every sample can be modified
+            for (Map.Entry<String, Map<String, String>> entry : samplesDataColumns.asMap().entrySet()) {
+                this.samplesData.put(entry.getKey(), new HashMap<>(entry.getValue()));
+            }
+            samplesDataColumns = null;
+        }
         this.samplesData.put(sampleName, sampleData);
     }
 
     public String getSampleData(String sampleName, String field) {
+        if (samplesDataColumns != null) {
+            return samplesDataColumns.get(sampleName, field);
+        }
         return this.samplesData.get(sampleName).get(field.toUpperCase());
     }
 
+    /**
+     * Returns the genotype of a sample as a code, without creating any object. See {@link GenotypeCodec}.
+     *
+     * @param sampleName Name of the sample
+     * @return Code of the genotype, or {@link GenotypeCodec#MISSING_GENOTYPE} if the sample has no genotype
+     */
+    public int getGenotypeCode(String sampleName) {
+        if (samplesDataColumns != null) {
+            int sample = samplesDataColumns.getSampleIndex(sampleName);
+            int field = samplesDataColumns.getFieldIndex("GT");
+            return sample < 0 || field < 0 ? GenotypeCodec.MISSING_GENOTYPE : samplesDataColumns.getGenotypeCode(sample, field);
+        }
+        Map<String, String> sampleData = samplesData.get(sampleName);
+        String genotype = sampleData == null ? null : sampleData.get("GT");
+        return genotype == null ? GenotypeCodec.MISSING_GENOTYPE : GenotypeCodec.encode(genotype);
+    }
+
     public Iterable<String> getSampleNames() {
+        if (samplesDataColumns != null) {
+            return samplesDataColumns.getSampleNames();
+        }
         return this.samplesData.keySet();
     }
 
@@ -166,10 +250,10 @@ public class Variant {
                 ", alternate='" + alternate + '\'' +
                 ", id='" + id + '\'' +
                 ", format='" + format + '\'' +
-                ", samplesData=" + samplesData +
+                ", samplesData=" + getSamplesData() +
                 ", stats=" + stats +
                 ", effect=" + effect +
-                ", attributes=" + attributes +
+                ", attributes=" + getAttributes() +
                 '}';
     }
 
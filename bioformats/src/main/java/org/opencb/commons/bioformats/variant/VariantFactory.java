@@ -1,6 +1,7 @@
 package org.opencb.commons.bioformats.variant;
 
-import java.util.HashMap;
+import org.opencb.commons.bioformats.variant.vcf4.VcfLineTokenizer;
+
 import java.util.List;
 import java.util.Map;
 
@@ -18,11 +19,53 @@ public class VariantFactory {
         variant.setId(fields[2]);
         variant.addAttribute("QUAL", fields[5]);
         variant.addAttribute("FILTER", fields[6]);
-        parseInfo(variant, fields[7]);
+        variant.setRawInfo(fields[7]);
 
         if (fields.length > 8) {
             variant.setFormat(fields[8]);
-            parseSampleData(variant, fields, sampleNames);
+            VcfLineTokenizer tokenizer = new VcfLineTokenizer().tokenize(String.join("\t", fields));
+            variant.setSamplesDataColumns(new VariantSamplesData(new VariantSamplesData.SampleIndex(sampleNames),
+                    variant.getFormat(), tokenizer, 9));
+        }
+
+        return variant;
+    }
+
+    /**
+     * Creates a variant from a tokenized VCF line. The index of the samples is built for this variant only, so readers
+     * should build it once and use {@link #createVariantFromVcf(VariantSamplesData.SampleIndex, VcfLineTokenizer)}.
+     *
+     * @param sampleNames Names of the samples, in the same order as in the file
+     * @param tokenizer   Tokenizer with the line already tokenized
+     * @return The new variant
+     */
+    public static Variant createVariantFromVcf(List<String> sampleNames, VcfLineTokenizer tokenizer) {
+        return createVariantFromVcf(new VariantSamplesData.SampleIndex(sampleNames), tokenizer);
+    }
+
+    /**
+     * Creates a variant from a tokenized VCF line, without splitting the line with regular expressions.
+     * The INFO column is kept raw and only parsed if the attributes of the variant are requested, and the samples data
+     * is stored in its compact form, see {@link VariantSamplesData}.
+     *
+     * @param samples   Names of the samples, in the same order as in the file, shared by all the variants of the file
+     * @param tokenizer Tokenizer with the line already tokenized
+     * @return The new variant
+     */
+    public static Variant createVariantFromVcf(VariantSamplesData.SampleIndex samples, VcfLineTokenizer tokenizer) {
+        if (tokenizer.getNumFields() < 8) {
+            throw new IllegalArgumentException("Not enough fields provided (min 8)");
+        }
+
+        Variant variant = new Variant(tokenizer.getString(0), tokenizer.getInt(1), tokenizer.getString(3), tokenizer.getString(4));
+        variant.setId(tokenizer.getString(2));
+        variant.addAttribute("QUAL", tokenizer.getString(5));
+        variant.addAttribute("FILTER", tokenizer.getString(6));
+        variant.setRawInfo(tokenizer.getString(7));
+
+        if (tokenizer.getNumFields() > 8) {
+            variant.setFormat(tokenizer.getString(8));
+            variant.setSamplesDataColumns(new VariantSamplesData(samples, variant.getFormat(), tokenizer, 9));
         }
 
         return variant;
@@ -67,36 +110,33 @@ public class VariantFactory {
     }
 
 
-    private static void parseSampleData(Variant variant, String[] fields, List<String> sampleNames) {
-        String[] formatFields = variant.getFormat().split(":");
-
-        for (int i = 9; i < fields.length; i++) {
-            Map<String, String> map = new HashMap<>(5);
-
-            // Fill map of a sample
-            String[] sampleFields = fields[i].split(":");
-            for (int j = 0; j < formatFields.length; j++) {
-                map.put(formatFields[j].toUpperCase(), sampleFields[j]);
-            }
-
-            variant.addSampleData(sampleNames.get(i - 9), map);
-        }
-    }
-
-    private static void parseInfo(Variant variant, String info) {
+    /**
+     * Parses a VCF INFO column into a map of attributes. Keys without value are stored with an empty value.
+     *
+     * @param attributes Map to fill
+     * @param info       INFO column
+     */
+    static void parseInfo(Map<String, String> attributes, String info) {
 
         if (info.equalsIgnoreCase(".")) {
             return;
         }
 
-        for (String var : info.split(";")) {
-            String[] splits = var.split("=");
-            if (splits.length == 2) {
-                variant.addAttribute(splits[0], splits[1]);
-            } else {
-                variant.addAttribute(splits[0], "");
+        int start = 0;
+        while (start <= info.length()) {
+            int end = info.indexOf(';', start);
+            if (end < 0) {
+                end = info.length();
             }
-
+            if (end > start) {
+                int equals = info.indexOf('=', start);
+                if (equals >= 0 && equals < end) {
+                    attributes.put(info.substring(start, equals), info.substring(equals + 1, end));
+                } else {
+                    attributes.put(info.substring(start, end), "");
+                }
+            }
+            start = end + 1;
         }
 
     }
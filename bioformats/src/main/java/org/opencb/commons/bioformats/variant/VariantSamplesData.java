@@ -0,0 +1,578 @@
+package org.opencb.commons.bioformats.variant;
+
+import org.opencb.commons.bioformats.feature.GenotypeCodec;
+import org.opencb.commons.bioformats.variant.vcf4.VcfLineTokenizer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact storage of the sample columns of a VCF variant.
+ * <p>
+ * The sample columns are kept as a single copy of their raw bytes, and each FORMAT field is decoded into a column the
+ * first time it is accessed. Integer and float fields are decoded into primitive arrays, and low cardinality fields like
+ * GT into a dictionary of values and one code per sample. The sample names and the FORMAT keys are shared between all
+ * the variants with the same samples and format, so no object is created per sample.
+ * <p>
+ * Values are always returned with the same text they had in the file. {@link #asMap()} gives a read-only view with the
+ * same contents as the sample maps used by {@link Variant}.
+ */
+public class VariantSamplesData {
+
+    public static final int MISSING_INT = Integer.MIN_VALUE;
+    public static final String MISSING_VALUE = ".";
+
+    private static final int MAX_DICTIONARY_SIZE = 256;
+    private static final int MAX_CACHED_FORMATS = 1024;
+    private static final Map<String, String[]> FORMAT_KEYS = new ConcurrentHashMap<>();
+
+    private final SampleIndex samples;
+    private final String[] formatKeys;
+    private final byte[] raw;
+    private final int[] sampleStarts;
+    private final Column[] columns;
+
+    /**
+     * Creates the samples data of a variant from the sample columns of a tokenized VCF line. The bytes are copied, so
+     * the tokenizer can be reused afterwards.
+     *
+     * @param samples     Names of the samples, in the same order as in the file
+     * @param format      FORMAT column of the variant
+     * @param tokenizer   Tokenizer with the line already tokenized
+     * @param firstSample Index of the field of the first sample
+     */
+    public VariantSamplesData(SampleIndex samples, String format, VcfLineTokenizer tokenizer, int firstSample) {
+        this.samples = samples;
+        this.formatKeys = getFormatKeys(format);
+
+        int numSamples = Math.min(samples.size(), tokenizer.getNumFields() - firstSample);
+        if (numSamples > 0) {
+            int start = tokenizer.getFieldStart(firstSample);
+            int end = tokenizer.getFieldEnd(firstSample + numSamples - 1);
+            raw = Arrays.copyOfRange(tokenizer.getBuffer(), start, end);
+            sampleStarts = new int[numSamples + 1];
+            for (int i = 0; i < numSamples; i++) {
+                sampleStarts[i] = tokenizer.getFieldStart(firstSample + i) - start;
+            }
+            // Position of a virtual separator after the last sample
+            sampleStarts[numSamples] = raw.length + 1;
+        } else {
+            raw = new byte[0];
+            sampleStarts = new int[]{1};
+        }
+        columns = new Column[formatKeys.length];
+    }
+
+    /**
+     * Creates the samples data of a variant from its raw sample columns, tab separated as in a VCF file. The array is
+     * not copied.
+     *
+     * @param samples Names of the samples, in the same order as the columns
+     * @param format  FORMAT column of the variant
+     * @param raw     Raw sample columns
+     */
+    public VariantSamplesData(SampleIndex samples, String format, byte[] raw) {
+        this.samples = samples;
+        this.formatKeys = getFormatKeys(format);
+        this.raw = raw;
+
+        int numSamples = 0;
+        if (raw.length > 0) {
+            numSamples = 1;
+            for (byte b : raw) {
+                if (b == VcfLineTokenizer.FIELD_SEPARATOR) {
+                    numSamples++;
+                }
+            }
+        }
+        sampleStarts = new int[numSamples + 1];
+        for (int i = 1, j = 0; i < numSamples; j++) {
+            if (raw[j] == VcfLineTokenizer.FIELD_SEPARATOR) {
+                sampleStarts[i++] = j + 1;
+            }
+        }
+        sampleStarts[numSamples] = raw.length + 1;
+        columns = new Column[formatKeys.length];
+    }
+
+    public int getNumSamples() {
+        return sampleStarts.length - 1;
+    }
+
+    public List<String> getSampleNames() {
+        return samples.names.subList(0, getNumSamples());
+    }
+
+    /**
+     * @param sampleName Name of the sample
+     * @return Position of the sample, or -1 if the variant has no data for the sample
+     */
+    public int getSampleIndex(String sampleName) {
+        int index = samples.indexOf(sampleName);
+        return index >= getNumSamples() ? -1 : index;
+    }
+
+    /**
+     * @return Keys of the FORMAT column, in upper case. The array is shared and must not be modified
+     */
+    public String[] getFormatKeys() {
+        return formatKeys;
+    }
+
+    /**
+     * @param field FORMAT key, case insensitive
+     * @return Position of the field in the FORMAT column, or -1 if not present
+     */
+    public int getFieldIndex(String field) {
+        for (int i = 0; i < formatKeys.length; i++) {
+            if (formatKeys[i].equalsIgnoreCase(field)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String get(String sampleName, String field) {
+        int sample = getSampleIndex(sampleName);
+        int fieldIndex = getFieldIndex(field);
+        if (sample < 0 || fieldIndex < 0) {
+            return null;
+        }
+        return get(sample, fieldIndex);
+    }
+
+    /**
+     * @param sample     Position of the sample
+     * @param fieldIndex Position of the field in the FORMAT column
+     * @return Value of the field for the sample. Trailing fields dropped in the file are returned as "."
+     */
+    public String get(int sample, int fieldIndex) {
+        return getColumn(fieldIndex).get(sample);
+    }
+
+    /**
+     * @param sample     Position of the sample
+     * @param fieldIndex Position of the field in the FORMAT column
+     * @return Value of an integer field, or {@link #MISSING_INT} if missing
+     * @throws NumberFormatException if the field is not an integer
+     */
+    public int getInt(int sample, int fieldIndex) {
+        Column column = getColumn(fieldIndex);
+        if (column instanceof IntColumn) {
+            return ((IntColumn) column).values[sample];
+        }
+        String value = column.get(sample);
+        return value.equals(MISSING_VALUE) ? MISSING_INT : Integer.parseInt(value);
+    }
+
+    /**
+     * @param sample     Position of the sample
+     * @param fieldIndex Position of the field in the FORMAT column
+     * @return Value of a numeric field, or NaN if missing
+     * @throws NumberFormatException if the field is not a number
+     */
+    public float getFloat(int sample, int fieldIndex) {
+        Column column = getColumn(fieldIndex);
+        if (column instanceof FloatColumn) {
+            return ((FloatColumn) column).values[sample];
+        } else if (column instanceof IntColumn) {
+            int value = ((IntColumn) column).values[sample];
+            return value == MISSING_INT ? Float.NaN : value;
+        }
+        String value = column.get(sample);
+        return value.equals(MISSING_VALUE) ? Float.NaN : Float.parseFloat(value);
+    }
+
+    /**
+     * Returns the code of a genotype field, see {@link GenotypeCodec}. Each distinct genotype of the variant is only
+     * parsed once.
+     *
+     * @param sample     Position of the sample
+     * @param fieldIndex Position of the genotype field in the FORMAT column
+     * @return Code of the genotype
+     * @throws NumberFormatException if the field is not a valid genotype
+     */
+    public int getGenotypeCode(int sample, int fieldIndex) {
+        Column column = getColumn(fieldIndex);
+        if (column instanceof DictionaryColumn) {
+            return ((DictionaryColumn) column).getGenotypeCode(sample);
+        }
+        return GenotypeCodec.encode(column.get(sample));
+    }
+
+    /**
+     * Returns the raw text of a sample column, as it was in the file.
+     *
+     * @param sample Position of the sample
+     * @return Raw sample data
+     */
+    public String getRaw(int sample) {
+        return VcfLineTokenizer.toString(raw, sampleStarts[sample], sampleStarts[sample + 1] - 1);
+    }
+
+    /**
+     * @return Length of the raw sample columns, including the tabs between them
+     */
+    public int getRawLength() {
+        return raw.length;
+    }
+
+    /**
+     * Copies the raw sample columns, tab separated as they were in the file.
+     *
+     * @param dest   Destination buffer
+     * @param offset Position of the destination buffer to copy to
+     */
+    public void copyRaw(byte[] dest, int offset) {
+        System.arraycopy(raw, 0, dest, offset, raw.length);
+    }
+
+    /**
+     * @return Read-only view of the samples data as a map from sample name to a map from FORMAT key to value
+     */
+    public Map<String, Map<String, String>> asMap() {
+        return new AbstractMap<String, Map<String, String>>() {
+            @Override
+            public Map<String, String> get(Object key) {
+                int sample = key instanceof String ? getSampleIndex((String) key) : -1;
+                return sample < 0 ? null : new SampleMap(sample);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof String && getSampleIndex((String) key) >= 0;
+            }
+
+            @Override
+            public Set<String> keySet() {
+                return new LinkedHashSet<>(getSampleNames());
+            }
+
+            @Override
+            public int size() {
+                return getNumSamples();
+            }
+
+            @Override
+            public Set<Entry<String, Map<String, String>>> entrySet() {
+                return new AbstractSet<Entry<String, Map<String, String>>>() {
+                    @Override
+                    public Iterator<Entry<String, Map<String, String>>> iterator() {
+                        return new Iterator<Entry<String, Map<String, String>>>() {
+                            private int sample = 0;
+
+                            @Override
+                            public boolean hasNext() {
+                                return sample < getNumSamples();
+                            }
+
+                            @Override
+                            public Entry<String, Map<String, String>> next() {
+                                if (!hasNext()) {
+                                    throw new NoSuchElementException();
+                                }
+                                SampleMap sampleMap = new SampleMap(sample++);
+                                return new SimpleImmutableEntry<String, Map<String, String>>(samples.names.get(sampleMap.sample), sampleMap);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return getNumSamples();
+                    }
+                };
+            }
+        };
+    }
+
+    private Column getColumn(int fieldIndex) {
+        Column column = columns[fieldIndex];
+        if (column == null) {
+            column = decodeColumn(fieldIndex);
+            columns[fieldIndex] = column;
+        }
+        return column;
+    }
+
+    /**
+     * Decodes a field for all the samples, using the most compact representation that keeps the original text.
+     */
+    private Column decodeColumn(int fieldIndex) {
+        int numSamples = getNumSamples();
+        int[] starts = new int[numSamples];
+        int[] ends = new int[numSamples];
+        boolean isInt = true;
+        boolean isFloat = true;
+        for (int sample = 0; sample < numSamples; sample++) {
+            int start = sampleStarts[sample];
+            int end = sampleStarts[sample + 1] - 1;
+            for (int i = 0; i < fieldIndex && start <= end; i++) {
+                start = VcfLineTokenizer.indexOf(raw, start, end, VcfLineTokenizer.FORMAT_SEPARATOR) + 1;
+            }
+            if (start > end) {
+                // Trailing fields can be dropped from the sample data
+                starts[sample] = -1;
+                continue;
+            }
+            starts[sample] = start;
+            ends[sample] = VcfLineTokenizer.indexOf(raw, start, end, VcfLineTokenizer.FORMAT_SEPARATOR);
+            if (!isMissing(start, ends[sample])) {
+                isInt = isInt && isCanonicalInt(start, ends[sample]);
+                isFloat = isFloat && isCanonicalFloat(start, ends[sample]);
+            }
+        }
+
+        if (isInt) {
+            int[] values = new int[numSamples];
+            for (int sample = 0; sample < numSamples; sample++) {
+                values[sample] = starts[sample] < 0 || isMissing(starts[sample], ends[sample])
+                        ? MISSING_INT
+                        : VcfLineTokenizer.parseInt(raw, starts[sample], ends[sample]);
+            }
+            return new IntColumn(values);
+        }
+        if (isFloat) {
+            float[] values = new float[numSamples];
+            for (int sample = 0; sample < numSamples; sample++) {
+                values[sample] = starts[sample] < 0 || isMissing(starts[sample], ends[sample])
+                        ? Float.NaN
+                        : Float.parseFloat(VcfLineTokenizer.toString(raw, starts[sample], ends[sample]));
+            }
+            return new FloatColumn(values);
+        }
+
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> dictionaryValues = new ArrayList<>();
+        String[] values = new String[numSamples];
+        for (int sample = 0; sample < numSamples; sample++) {
+            String value = starts[sample] < 0 ? MISSING_VALUE : VcfLineTokenizer.toString(raw, starts[sample], ends[sample]);
+            Integer code = dictionary.get(value);
+            if (code == null) {
+                code = dictionaryValues.size();
+                dictionary.put(value, code);
+                dictionaryValues.add(value);
+            }
+            // Share the instances of repeated values
+            values[sample] = dictionaryValues.get(code);
+        }
+        if (dictionaryValues.size() > MAX_DICTIONARY_SIZE) {
+            return new StringColumn(values);
+        }
+        byte[] codes = new byte[numSamples];
+        for (int sample = 0; sample < numSamples; sample++) {
+            codes[sample] = (byte) dictionary.get(values[sample]).intValue();
+        }
+        return new DictionaryColumn(dictionaryValues.toArray(new String[dictionaryValues.size()]), codes);
+    }
+
+    private boolean isMissing(int start, int end) {
+        return end - start == 1 && raw[start] == '.';
+    }
+
+    /**
+     * Checks if a value is an integer that is written back with exactly the same text.
+     */
+    private boolean isCanonicalInt(int start, int end) {
+        int i = raw[start] == '-' ? start + 1 : start;
+        // Up to 9 digits can not overflow, and MISSING_INT can not be read
+        if (i == end || end - i > 9 || raw[i] == '0' && (end - i > 1 || i > start)) {
+            return false;
+        }
+        for (; i < end; i++) {
+            if (raw[i] < '0' || raw[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a value is a float that is written back with exactly the same text.
+     */
+    private boolean isCanonicalFloat(int start, int end) {
+        if (end - start > 16) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            byte b = raw[i];
+            if ((b < '0' || b > '9') && b != '.' && b != '-') {
+                return false;
+            }
+        }
+        String value = VcfLineTokenizer.toString(raw, start, end);
+        try {
+            return Float.toString(Float.parseFloat(value)).equals(value);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String[] getFormatKeys(String format) {
+        String[] keys = FORMAT_KEYS.get(format);
+        if (keys == null) {
+            byte[] bytes = format.getBytes(StandardCharsets.UTF_8);
+            List<String> keyList = new ArrayList<>();
+            int start = 0;
+            while (start <= bytes.length) {
+                int end = VcfLineTokenizer.indexOf(bytes, start, bytes.length, VcfLineTokenizer.FORMAT_SEPARATOR);
+                keyList.add(VcfLineTokenizer.toString(bytes, start, end).toUpperCase().intern());
+                start = end + 1;
+            }
+            keys = keyList.toArray(new String[keyList.size()]);
+            if (FORMAT_KEYS.size() < MAX_CACHED_FORMATS) {
+                FORMAT_KEYS.put(format, keys);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Read-only map with the data of a single sample.
+     */
+    private class SampleMap extends AbstractMap<String, String> {
+
+        private final int sample;
+
+        SampleMap(int sample) {
+            this.sample = sample;
+        }
+
+        @Override
+        public String get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            // Keys are stored in upper case, as in the maps created by VariantFactory
+            for (int i = 0; i < formatKeys.length; i++) {
+                if (formatKeys[i].equals(key)) {
+                    return VariantSamplesData.this.get(sample, i);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return Arrays.asList(formatKeys).contains(key);
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            Set<Entry<String, String>> entries = new LinkedHashSet<>();
+            for (int i = 0; i < formatKeys.length; i++) {
+                entries.add(new SimpleImmutableEntry<>(formatKeys[i], VariantSamplesData.this.get(sample, i)));
+            }
+            return Collections.unmodifiableSet(entries);
+        }
+    }
+
+    /**
+     * Sample names and their positions. It is built once per file, usually by {@link
+     * org.opencb.commons.bioformats.variant.vcf4.Vcf4#getSampleIndex()}, and shared by all the variants read from it.
+     */
+    public static final class SampleIndex {
+
+        private final List<String> names;
+        private final Map<String, Integer> indexes;
+
+        /**
+         * @param names Names of the samples, in the same order as in the file. The list is copied
+         */
+        public SampleIndex(List<String> names) {
+            this.names = Collections.unmodifiableList(new ArrayList<>(names));
+            this.indexes = new HashMap<>(names.size() * 2);
+            for (int i = 0; i < this.names.size(); i++) {
+                indexes.put(this.names.get(i), i);
+            }
+        }
+
+        public List<String> getNames() {
+            return names;
+        }
+
+        /**
+         * @param name Name of the sample
+         * @return Position of the sample, or -1 if it is not in the index
+         */
+        public int indexOf(String name) {
+            Integer index = indexes.get(name);
+            return index == null ? -1 : index;
+        }
+
+        public int size() {
+            return names.size();
+        }
+    }
+
+    private interface Column {
+        String get(int sample);
+    }
+
+    private static final class IntColumn implements Column {
+        private final int[] values;
+
+        IntColumn(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public String get(int sample) {
+            return values[sample] == MISSING_INT ? MISSING_VALUE : Integer.toString(values[sample]);
+        }
+    }
+
+    private static final class FloatColumn implements Column {
+        private final float[] values;
+
+        FloatColumn(float[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public String get(int sample) {
+            return Float.isNaN(values[sample]) ? MISSING_VALUE : Float.toString(values[sample]);
+        }
+    }
+
+    private static final class DictionaryColumn implements Column {
+        private final String[] dictionary;
+        private final byte[] codes;
+        private int[] genotypeCodes;
+
+        DictionaryColumn(String[] dictionary, byte[] codes) {
+            this.dictionary = dictionary;
+            this.codes = codes;
+        }
+
+        @Override
+        public String get(int sample) {
+            return dictionary[codes[sample] & 0xFF];
+        }
+
+        int getGenotypeCode(int sample) {
+            if (genotypeCodes == null) {
+                int[] dictionaryGenotypeCodes = new int[dictionary.length];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionaryGenotypeCodes[i] = GenotypeCodec.encode(dictionary[i]);
+                }
+                genotypeCodes = dictionaryGenotypeCodes;
+            }
+            return genotypeCodes[codes[sample] & 0xFF];
+        }
+    }
+
+    private static final class StringColumn implements Column {
+        private final String[] values;
+
+        StringColumn(String[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public String get(int sample) {
+            return values[sample];
+        }
+    }
+}
@@ -2,11 +2,12 @@ package org.opencb.commons.bioformats.variant.stats;
 
 
 import org.opencb.commons.bioformats.feature.AllelesCode;
-import org.opencb.commons.bioformats.feature.Genotype;
-import org.opencb.commons.bioformats.feature.Genotypes;
+import org.opencb.commons.bioformats.feature.GenotypeCodec;
+import org.opencb.commons.bioformats.feature.GenotypeCounts;
 import org.opencb.commons.bioformats.pedigree.Condition;
 import org.opencb.commons.bioformats.pedigree.Individual;
 import org.opencb.commons.bioformats.pedigree.Pedigree;
+import org.opencb.commons.bioformats.pedigree.PedigreeIndex;
 import org.opencb.commons.bioformats.pedigree.Sex;
 import org.opencb.commons.bioformats.variant.Variant;
 import org.opencb.commons.bioformats.variant.utils.stats.*;
@@ -22,24 +23,53 @@ import java.util.*;
  */
 public class StatsCalculator {
 
+    // Mendelian errors of a trio by the sex of the child, as a bit per combination of reference/non-reference
+    // alleles of father, mother and child, see mendelIndex
+    private static final long AUTOSOMAL_MENDEL_ERRORS = mendelErrors("1", Sex.FEMALE);
+    private static final long X_MALE_MENDEL_ERRORS = mendelErrors("X", Sex.MALE);
+    private static final long[] AUTOSOMAL_MENDEL_ERRORS_BY_SEX = mendelErrorsBySex(AUTOSOMAL_MENDEL_ERRORS, AUTOSOMAL_MENDEL_ERRORS);
+    private static final long[] X_MENDEL_ERRORS_BY_SEX = mendelErrorsBySex(X_MALE_MENDEL_ERRORS, AUTOSOMAL_MENDEL_ERRORS);
+    private static final long[] HAPLOID_MENDEL_ERRORS_BY_SEX = mendelErrorsBySex(0, 0);
+
+    // Inheritance model counts by condition and genotype class (homozygous reference, heterozygous, homozygous alternate)
+    private static final int CONTROLS_DOMINANT = 1;
+    private static final int CONTROLS_RECESSIVE = 2;
+    private static final int CASES_DOMINANT = 4;
+    private static final int CASES_RECESSIVE = 8;
+    private static final int[][] INHERITANCE_MODELS = new int[Condition.values().length][];
+
+    static {
+        for (Condition condition : Condition.values()) {
+            INHERITANCE_MODELS[condition.ordinal()] = new int[3];
+        }
+        INHERITANCE_MODELS[Condition.UNAFFECTED.ordinal()] = new int[]{
+                CONTROLS_DOMINANT | CONTROLS_RECESSIVE, CONTROLS_RECESSIVE, CONTROLS_RECESSIVE};
+        INHERITANCE_MODELS[Condition.AFFECTED.ordinal()] = new int[]{
+                0, CASES_DOMINANT, CASES_DOMINANT | CASES_RECESSIVE};
+    }
+
 
     public static List<VariantStats> variantStats(List<Variant> vcfRecordsList, List<String> sampleNames, Pedigree ped) {
         List<VariantStats> statList = new ArrayList<>(vcfRecordsList.size());
 
+        // Frequencies, MAF and Hardy-Weinberg are calculated at once for all the variants
+        int[] numAllelesPerVariant = new int[vcfRecordsList.size()];
+        int variantIndex = 0;
+        for (Variant variant : vcfRecordsList) {
+            numAllelesPerVariant[variantIndex++] = variant.getAltAlleles().length + 1;
+        }
+        VariantStatsBlock block = new VariantStatsBlock(numAllelesPerVariant);
+
+        PedigreeIndex pedIndex = ped == null ? null : new PedigreeIndex(ped, sampleNames);
+        int[] gts = new int[pedIndex == null ? sampleNames.size() : pedIndex.getSampleNames().size()];
+        int numSamples = sampleNames.size();
+
         for (Variant variant : vcfRecordsList) {
             int transitionsCount = 0, transversionsCount = 0;
 
 
-            int genotypeCurrentPos;
             int totalAllelesCount = 0;
             int totalGenotypesCount = 0;
-            String mgfGenotype = "";
-            Individual ind;
-
-            float maf = Float.MAX_VALUE;
-            float mgf = Float.MAX_VALUE;
-            float currentGtFreq;
-
 
             float controlsDominant = 0;
             float casesDominant = 0;
@@ -61,105 +91,42 @@ public class StatsCalculator {
 
             int[] allelesCount = new int[vcfStat.getNumAlleles()];
             int[] genotypesCount = new int[vcfStat.getNumAlleles() * vcfStat.getNumAlleles()];
-            float[] allelesFreq = new float[vcfStat.getNumAlleles()];
-            float[] genotypesFreq = new float[vcfStat.getNumAlleles() * vcfStat.getNumAlleles()];
 
             vcfStat.setSamples(sampleNames.size());
 
-            for (String sampleName : sampleNames) {
-
-//                Genotype g = variant.getSampleGenotype(sampleName);
-                Genotype g = new Genotype(variant.getSampleData(sampleName, "GT"));
-
-                Genotypes.addGenotypeToList(vcfStat.getGenotypes(), g);
-
-                // Check missing alleles and genotypes
-                switch (g.getCode()) {
-                    case ALLELES_OK:
-                        // Both alleles set
-                        genotypeCurrentPos = g.getAllele1() * (vcfStat.getNumAlleles()) + g.getAllele2();
-
-                        allelesCount[g.getAllele1()]++;
-                        allelesCount[g.getAllele2()]++;
-                        genotypesCount[genotypeCurrentPos]++;
-
-                        totalAllelesCount += 2;
-                        totalGenotypesCount++;
-
-                        // Counting genotypes for Hardy-Weinberg (all phenotypes)
-
-                        if (g.isAllele1Ref() && g.isAllele2Ref()) { // 0|0
-                            vcfStat.getHw().incNAA();
-                        } else if ((g.isAllele1Ref() && g.getAllele2() == 1) || (g.getAllele1() == 1 && g.isAllele2Ref())) {  // 0|1, 1|0
-                            vcfStat.getHw().incNAa();
-
-                        } else if (g.getAllele1() == 1 && g.getAllele2() == 1) {
-                            vcfStat.getHw().incNaa();
-                        }
-
-                        break;
-                    case HAPLOID:
-                        // Haploid (chromosome X/Y)
+            GenotypeCounts genotypeCounts = new GenotypeCounts(vcfStat.getNumAlleles());
 
+            genotypeCodes(variant, pedIndex == null ? sampleNames : pedIndex.getSampleNames(), gts);
+            long[] mendelErrorsBySex = mendelErrorsBySex(variant.getChromosome());
 
-                        try {
-                            allelesCount[g.getAllele1()]++;
-                        } catch (ArrayIndexOutOfBoundsException e) {
-                            System.out.println("vcfRecord = " + variant);
-                            System.out.println("g = " + g);
+            for (int sample = 0; sample < numSamples; sample++) {
 
-                        }
-                        totalAllelesCount++;
-                        break;
-                    default:
-                        // Missing genotype (one or both alleles missing)
-                        vcfStat.setMissingGenotypes(vcfStat.getMissingGenotypes() + 1);
-                        if (g.getAllele1() == null) {
-                            vcfStat.setMissingAlleles(vcfStat.getMissingAlleles() + 1);
-                        } else {
-                            allelesCount[g.getAllele1()]++;
-                            totalAllelesCount++;
-                        }
-
-                        if (g.getAllele2() == null) {
-                            vcfStat.setMissingAlleles(vcfStat.getMissingAlleles() + 1);
-                        } else {
-                            allelesCount[g.getAllele2()]++;
-                            totalAllelesCount++;
-
-                        }
-                        break;
-
-                }
+                int gt = gts[sample];
+                genotypeCounts.add(gt);
 
                 // Include statistics that depend on pedigree information
-                if (ped != null) {
-                    if (g.getCode() == AllelesCode.ALLELES_OK || g.getCode() == AllelesCode.HAPLOID) {
-                        ind = ped.getIndividual(sampleName);
-                        if (isMendelianError(ind, g, variant)) {
+                if (pedIndex != null) {
+                    AllelesCode allelesCode = GenotypeCodec.getAllelesCode(gt);
+                    if (allelesCode == AllelesCode.ALLELES_OK || allelesCode == AllelesCode.HAPLOID) {
+                        if (isMendelianError(pedIndex, sample, gts, mendelErrorsBySex)) {
                             vcfStat.setMendelinanErrors(vcfStat.getMendelinanErrors() + 1);
 
                         }
-                        if (g.getCode() == AllelesCode.ALLELES_OK) {
+                        if (allelesCode == AllelesCode.ALLELES_OK) {
 
                             // Check inheritance models
-                            if (ind.getCondition() == Condition.UNAFFECTED) {
-                                if (g.isAllele1Ref() && g.isAllele2Ref()) { // 0|0
-                                    controlsDominant++;
-                                    controlsRecessive++;
-
-                                } else if ((g.isAllele1Ref() && !g.isAllele2Ref()) || (!g.isAllele1Ref() || g.isAllele2Ref())) { // 0|1 or 1|0
-                                    controlsRecessive++;
-
-                                }
-                            } else if (ind.getCondition() == Condition.AFFECTED) {
-                                if (!g.isAllele1Ref() && !g.isAllele2Ref() && g.getAllele1() == g.getAllele2()) {// 1|1, 2|2, and so on
-                                    casesRecessive++;
-                                    casesDominant++;
-                                } else if (!g.isAllele1Ref() || !g.isAllele2Ref()) { // 0|1, 1|0, 1|2, 2|1, 1|3, and so on
-                                    casesDominant++;
-
-                                }
+                            int inheritance = INHERITANCE_MODELS[pedIndex.getConditionCode(sample)][genotypeClass(gt)];
+                            if ((inheritance & CONTROLS_DOMINANT) != 0) {
+                                controlsDominant++;
+                            }
+                            if ((inheritance & CONTROLS_RECESSIVE) != 0) {
+                                controlsRecessive++;
+                            }
+                            if ((inheritance & CASES_DOMINANT) != 0) {
+                                casesDominant++;
+                            }
+                            if ((inheritance & CASES_RECESSIVE) != 0) {
+                                casesRecessive++;
                             }
 
                         }
@@ -169,57 +136,68 @@ public class StatsCalculator {
 
             }  // Finish all samples loop
 
-
-            // MAF
-            for (int i = 0; i < vcfStat.getNumAlleles(); i++) {
-                allelesFreq[i] = (totalAllelesCount > 0) ? allelesCount[i] / (float) totalAllelesCount : 0;
-                if (allelesFreq[i] < maf) {
-                    maf = allelesFreq[i];
-                    vcfStat.setMafAllele((i == 0) ? vcfStat.getRefAlleles() : vcfStat.getAltAlleles()[i - 1]);
-                }
-            }
-
-            vcfStat.setMaf(maf);
-
-            for (int i = 0; i < vcfStat.getNumAlleles() * vcfStat.getNumAlleles(); i++) {
-                genotypesFreq[i] = (totalGenotypesCount > 0) ? genotypesCount[i] / (float) totalGenotypesCount : 0;
-
-
-            }
-
-
-            // MGF
-            for (int i = 0; i < vcfStat.getNumAlleles(); i++) {
-                for (int j = 0; j < vcfStat.getNumAlleles(); j++) {
-                    int idx1 = i * vcfStat.getNumAlleles() + j;
-                    if (i == j) {
-                        currentGtFreq = genotypesFreq[idx1];
+            // Alleles, genotypes and missing values are derived from the genotype counts
+            int numAlleles = vcfStat.getNumAlleles();
+            int missingGenotypes = 0;
+            int missingAlleles = 0;
+            for (int allele1 = GenotypeCodec.MISSING_ALLELE; allele1 < numAlleles; allele1++) {
+                for (int allele2 = GenotypeCodec.MISSING_ALLELE; allele2 < numAlleles; allele2++) {
+                    int count = genotypeCounts.getCount(allele1, allele2);
+                    if (count == 0) {
+                        continue;
+                    }
+                    if (allele1 != GenotypeCodec.MISSING_ALLELE && allele2 != GenotypeCodec.MISSING_ALLELE) {
+                        // Both alleles set
+                        genotypesCount[allele1 * numAlleles + allele2] = count;
+                        totalGenotypesCount += count;
                     } else {
-                        int idx2 = j * vcfStat.getNumAlleles() + i;
-                        currentGtFreq = genotypesFreq[idx1] + genotypesFreq[idx2];
+                        // Missing genotype (one or both alleles missing)
+                        missingGenotypes += count;
                     }
-
-                    if (currentGtFreq < mgf) {
-                        String firstAllele = (i == 0) ? vcfStat.getRefAlleles() : vcfStat.getAltAlleles()[i - 1];
-                        String secondAllele = (j == 0) ? vcfStat.getRefAlleles() : vcfStat.getAltAlleles()[j - 1];
-                        mgfGenotype = firstAllele + "|" + secondAllele;
-                        mgf = currentGtFreq;
-
+                    if (allele1 == GenotypeCodec.MISSING_ALLELE) {
+                        missingAlleles += count;
+                    } else {
+                        allelesCount[allele1] += count;
+                        totalAllelesCount += count;
+                    }
+                    if (allele2 == GenotypeCodec.MISSING_ALLELE) {
+                        missingAlleles += count;
+                    } else {
+                        allelesCount[allele2] += count;
+                        totalAllelesCount += count;
                     }
                 }
-            }
 
-            vcfStat.setMgf(mgf);
-            vcfStat.setMgfAllele(mgfGenotype);
+                // Haploid (chromosome X/Y)
+                int count = genotypeCounts.getHaploidCount(allele1);
+                if (allele1 != GenotypeCodec.MISSING_ALLELE) {
+                    allelesCount[allele1] += count;
+                }
+                totalAllelesCount += count;
+            }
+            for (Map.Entry<Integer, Integer> entry : genotypeCounts.getOutOfRangeCounts().entrySet()) {
+                if (!GenotypeCodec.isHaploid(entry.getKey())) {
+                    throw new IllegalArgumentException("Genotype " + GenotypeCodec.toGenotype(entry.getKey()).getGenotype()
+                            + " has alleles out of range in variant " + variant);
+                }
+                totalAllelesCount += entry.getValue();
+            }
+            vcfStat.setMissingGenotypes(missingGenotypes);
+            vcfStat.setMissingAlleles(missingAlleles);
+            vcfStat.setGenotypeCounts(genotypeCounts);
+
+            // Counting genotypes for Hardy-Weinberg (all phenotypes). Monomorphic sites only have 0/0 genotypes
+            if (numAlleles > 1) {
+                block.setHardyWeinbergCounts(statList.size(), genotypeCounts.getCount(0, 0),
+                        genotypeCounts.getCount(0, 1) + genotypeCounts.getCount(1, 0), genotypeCounts.getCount(1, 1));
+            } else {
+                block.setHardyWeinbergCounts(statList.size(), genotypeCounts.getCount(0, 0), 0, 0);
+            }
+            block.setCounts(statList.size(), allelesCount, totalAllelesCount, genotypesCount, totalGenotypesCount);
 
             vcfStat.setAllelesCount(allelesCount);
             vcfStat.setGenotypesCount(genotypesCount);
 
-            vcfStat.setAllelesFreq(allelesFreq);
-            vcfStat.setGenotypesFreq(genotypesFreq);
-
-            hardyWeinbergTest(vcfStat.getHw());
-
 
             // INDELS
          /*
@@ -316,7 +294,12 @@ public class StatsCalculator {
             statList.add(vcfStat);
         }
 
-        calculateHardyWeinberChiSquareTest(statList);
+        block.compute();
+        for (int i = 0; i < statList.size(); i++) {
+            VariantStats vcfStat = statList.get(i);
+            block.copyTo(i, vcfStat);
+            mgf(vcfStat);
+        }
 
 //        samplesCount = sampleNames.size();
 
@@ -384,27 +367,30 @@ public class StatsCalculator {
 
     public static VariantSampleStats sampleStats(List<Variant> variants, List<String> sampleNames, Pedigree ped) {
 
-        Genotype g;
-        Individual ind;
         VariantSampleStats variantSampleStats = new VariantSampleStats(sampleNames);
 
+        PedigreeIndex pedIndex = ped == null ? null : new PedigreeIndex(ped, sampleNames);
+        int[] gts = new int[pedIndex == null ? sampleNames.size() : pedIndex.getSampleNames().size()];
+        int numSamples = sampleNames.size();
+
         for (Variant record : variants) {
 
-            for (String sample : sampleNames) {
+            genotypeCodes(record, pedIndex == null ? sampleNames : pedIndex.getSampleNames(), gts);
+            long[] mendelErrorsBySex = mendelErrorsBySex(record.getChromosome());
 
+            for (int i = 0; i < numSamples; i++) {
 
-//                g = record.getSampleGenotype(sample);
-                g = new Genotype(record.getSampleData(sample, "GT"));
+                String sample = sampleNames.get(i);
+                int gt = gts[i];
 
                 // Find the missing alleles
-                if (g.getCode() != AllelesCode.ALLELES_OK) {                   // Missing genotype (one or both alleles missing)
+                if (!GenotypeCodec.isCalled(gt)) {                   // Missing genotype (one or both alleles missing)
 
                     variantSampleStats.incrementMissingGenotypes(sample);
                 }
                 // Check mendelian errors
-                if (ped != null) {
-                    ind = ped.getIndividual(sample);
-                    if (g.getCode() == AllelesCode.ALLELES_OK && isMendelianError(ind, g, record)) {
+                if (pedIndex != null) {
+                    if (isMendelianError(pedIndex, i, gts, mendelErrorsBySex)) {
                         variantSampleStats.incrementMendelianErrors(sample);
 
                     }
@@ -412,7 +398,7 @@ public class StatsCalculator {
 
                 }
                 //Count homozygotes
-                if (g.getAllele1() == g.getAllele2()) {
+                if (GenotypeCodec.getAllele1(gt) == GenotypeCodec.getAllele2(gt)) {
                     variantSampleStats.incrementHomozygotesNumber(sample);
                 }
             }
@@ -491,43 +477,103 @@ public class StatsCalculator {
         return values;  //To change body of created methods use File | Settings | File Templates.
     }
 
-    private static boolean isMendelianError(Individual ind, Genotype g, Variant variant) {
+    private static void genotypeCodes(Variant variant, List<String> sampleNames, int[] gts) {
+        int i = 0;
+        for (String sampleName : sampleNames) {
+            gts[i++] = variant.getGenotypeCode(sampleName);
+        }
+    }
 
-        Genotype gFather;
-        Genotype gMother;
+    /**
+     * @return 0 for homozygous reference, 2 for homozygous alternate and 1 for any other called genotype
+     */
+    private static int genotypeClass(int gt) {
+        int allele1 = GenotypeCodec.getAllele1(gt);
+        int allele2 = GenotypeCodec.getAllele2(gt);
+        if (allele1 == allele2) {
+            return allele1 == 0 ? 0 : 2;
+        }
+        return 1;
+    }
+
+    private static boolean isMendelianError(PedigreeIndex pedIndex, int sample, int[] gts, long[] mendelErrorsBySex) {
 
-        if (ind.getFather() == null || ind.getMother() == null) {
+        int father = pedIndex.getFather(sample);
+        if (father == PedigreeIndex.NONE) {
             return false;
         }
 
-//        gFather = variant.getSampleGenotype(ind.getFather().getId());
-//        gMother = variant.getSampleGenotype(ind.getMother().getId());
-        gFather = new Genotype(variant.getSampleData(ind.getFather().getId(), "GT"));
-        gMother = new Genotype(variant.getSampleData(ind.getMother().getId(), "GT"));
+        int gt = gts[sample];
+        int gtFather = gts[father];
+        int gtMother = gts[pedIndex.getMother(sample)];
 
-        if (gFather.getCode() != AllelesCode.ALLELES_OK || gMother.getCode() != AllelesCode.ALLELES_OK) {
+        if (!GenotypeCodec.isCalled(gtFather) || !GenotypeCodec.isCalled(gtMother) || !GenotypeCodec.isCalled(gt)) {
             return false;
         }
 
-        if (checkMendel(variant.getChromosome(), gFather, gMother, g, ind.getSexCode()) > 0) {
-            return true;
+        return (mendelErrorsBySex[pedIndex.getSexCode(sample)] >>> mendelIndex(gtFather, gtMother, gt) & 1) != 0;
+    }
+
+    /**
+     * @return A bit per allele of father, mother and child, set when the allele is not the reference
+     */
+    private static int mendelIndex(int gtFather, int gtMother, int gtInd) {
+        return nonRef(GenotypeCodec.getAllele1(gtFather)) << 5 | nonRef(GenotypeCodec.getAllele2(gtFather)) << 4
+                | nonRef(GenotypeCodec.getAllele1(gtMother)) << 3 | nonRef(GenotypeCodec.getAllele2(gtMother)) << 2
+                | nonRef(GenotypeCodec.getAllele1(gtInd)) << 1 | nonRef(GenotypeCodec.getAllele2(gtInd));
+    }
+
+    private static int nonRef(int allele) {
+        return allele == 0 ? 0 : 1;
+    }
+
+    private static long[] mendelErrorsBySex(String chromosome) {
+        String chr = chromosome.toUpperCase();
+        if (chr.equals("Y") || chr.equals("MT")) {
+            return HAPLOID_MENDEL_ERRORS_BY_SEX;
+        } else if (chr.equals("X")) {
+            return X_MENDEL_ERRORS_BY_SEX;
         }
+        return AUTOSOMAL_MENDEL_ERRORS_BY_SEX;
+    }
 
-        return false;
+    private static long[] mendelErrorsBySex(long notFemale, long female) {
+        long[] errors = new long[Sex.values().length];
+        Arrays.fill(errors, notFemale);
+        errors[Sex.FEMALE.ordinal()] = female;
+        return errors;
+    }
+
+    /**
+     * Table of the Mendelian errors of a chromosome and sex, indexed by {@link #mendelIndex(int, int, int)}.
+     */
+    private static long mendelErrors(String chromosome, Sex sex) {
+        long errors = 0;
+        for (int index = 0; index < 64; index++) {
+            int gtFather = GenotypeCodec.encode(index >> 5 & 1, index >> 4 & 1);
+            int gtMother = GenotypeCodec.encode(index >> 3 & 1, index >> 2 & 1);
+            int gtInd = GenotypeCodec.encode(index >> 1 & 1, index & 1);
+            if (checkMendel(chromosome, gtFather, gtMother, gtInd, sex) > 0) {
+                errors |= 1L << index;
+            }
+        }
+        return errors;
     }
 
-    private static int checkMendel(String chromosome, Genotype gFather, Genotype gMother, Genotype gInd, Sex sex) {
+    private static int checkMendel(String chromosome, int gtFather, int gtMother, int gtInd, Sex sex) {
 
         // Ignore if any allele is missing
-        if (gFather.getAllele1() < 0 ||
-                gFather.getAllele2() < 0 ||
-                gMother.getAllele1() < 0 ||
-                gMother.getAllele2() < 0 ||
-                gInd.getAllele1() < 0 ||
-                gInd.getAllele2() < 0) {
+        if (!GenotypeCodec.isCalled(gtFather) || !GenotypeCodec.isCalled(gtMother) || !GenotypeCodec.isCalled(gtInd)) {
             return -1;
         }
 
+        boolean fatherRef1 = GenotypeCodec.getAllele1(gtFather) == 0;
+        boolean fatherRef2 = GenotypeCodec.getAllele2(gtFather) == 0;
+        boolean motherRef1 = GenotypeCodec.getAllele1(gtMother) == 0;
+        boolean motherRef2 = GenotypeCodec.getAllele2(gtMother) == 0;
+        boolean indRef1 = GenotypeCodec.getAllele1(gtInd) == 0;
+        boolean indRef2 = GenotypeCodec.getAllele2(gtInd) == 0;
+
 
         // Ignore haploid chromosomes
         if (chromosome.toUpperCase().equals("Y") || chromosome.toUpperCase().equals("MT")) {
@@ -537,19 +583,19 @@ public class StatsCalculator {
         int mendelType = 0;
 
         if (!chromosome.toUpperCase().equals("X") || sex == Sex.FEMALE) {
-            if ((!gInd.isAllele1Ref() && gInd.isAllele2Ref()) ||
-                    (gInd.isAllele1Ref() && !gInd.isAllele2Ref())) {
+            if ((!indRef1 && indRef2) ||
+                    (indRef1 && !indRef2)) {
                 // KID = 01/10
                 // 00x00 -> 01  (m1)
                 // 11x11 -> 01  (m2)
-                if ((gFather.isAllele1Ref() && gFather.isAllele2Ref()) &&
-                        (gMother.isAllele1Ref() && gMother.isAllele2Ref())) {
+                if ((fatherRef1 && fatherRef2) &&
+                        (motherRef1 && motherRef2)) {
                     mendelType = 1;
-                } else if ((!gFather.isAllele1Ref() && !gFather.isAllele2Ref()) &&
-                        (!gMother.isAllele1Ref() && !gMother.isAllele2Ref())) {
+                } else if ((!fatherRef1 && !fatherRef2) &&
+                        (!motherRef1 && !motherRef2)) {
                     mendelType = 2;
                 }
-            } else if (gInd.isAllele1Ref() && gInd.isAllele2Ref()) {
+            } else if (indRef1 && indRef2) {
                 // KID = 00
                 // 00x11 -> 00 (m3) P11->00
                 // 01x11 -> 00 (m3)
@@ -564,14 +610,14 @@ public class StatsCalculator {
                 // Hom parent can't breed opposite hom child
 
                 // rule = at least one '11' parent
-                if ((!gFather.isAllele1Ref() && !gFather.isAllele2Ref()) ||
-                        !gMother.isAllele1Ref() && !gMother.isAllele2Ref()) {
+                if ((!fatherRef1 && !fatherRef2) ||
+                        !motherRef1 && !motherRef2) {
 
-                    if (!gFather.isAllele1Ref() && !gFather.isAllele2Ref() &&
-                            !gMother.isAllele1Ref() && !gMother.isAllele2Ref()
+                    if (!fatherRef1 && !fatherRef2 &&
+                            !motherRef1 && !motherRef2
                             ) {
                         mendelType = 5;
-                    } else if (!gFather.isAllele1Ref() && !gFather.isAllele2Ref()) {
+                    } else if (!fatherRef1 && !fatherRef2) {
                         mendelType = 4;
                     } else {
                         mendelType = 3;
@@ -594,13 +640,13 @@ public class StatsCalculator {
 
                 // rule = at least one '00' parent
 
-                if ((gFather.isAllele1Ref() && gFather.isAllele2Ref()) ||
-                        (gMother.isAllele1Ref() && gMother.isAllele2Ref())
+                if ((fatherRef1 && fatherRef2) ||
+                        (motherRef1 && motherRef2)
                         ) {
-                    if (gFather.isAllele1Ref() && gFather.isAllele2Ref() &&
-                            gMother.isAllele1Ref() && gMother.isAllele2Ref()) {
+                    if (fatherRef1 && fatherRef2 &&
+                            motherRef1 && motherRef2) {
                         mendelType = 8;
-                    } else if (gFather.isAllele1Ref() && gFather.isAllele2Ref()) {
+                    } else if (fatherRef1 && fatherRef2) {
                         mendelType = 6;
 
                     } else {
@@ -613,10 +659,10 @@ public class StatsCalculator {
 
         } else {
             // Chromosome X in inherited only from the mother and it is haploid
-            if (!gInd.isAllele1Ref() && gMother.isAllele1Ref() && gMother.isAllele2Ref()) {
+            if (!indRef1 && motherRef1 && motherRef2) {
                 mendelType = 9;
             }
-            if (gInd.isAllele1Ref() && !gMother.isAllele1Ref() && !gMother.isAllele2Ref()) {
+            if (indRef1 && !motherRef1 && !motherRef2) {
                 mendelType = 10;
             }
 
@@ -626,64 +672,34 @@ public class StatsCalculator {
         return mendelType;
     }
 
-    private static void calculateHardyWeinberChiSquareTest(List<VariantStats> statList) {
-        //To change body of created methods use File | Settings | File Templates.
-    }
-
-    private static void hardyWeinbergTest(VariantHardyWeinbergStats hw) {
-
-        hw.setN(hw.getN_AA() + hw.getN_Aa() + hw.getN_aa());
-        int n = hw.getN();
-        int n_AA = hw.getN_AA();
-        int n_Aa = hw.getN_Aa();
-        int n_aa = hw.getN_aa();
-
-//        ChiSquareTest chiSquareTest = new ChiSquareTest();
-
-        float chi, pValue;
-
-
-        if (n > 0) {
-            float p = (float) ((2.0 * n_AA + n_Aa) / (2 * n));
-            float q = 1 - p;
-
-            hw.setP(p);
-            hw.setQ(q);
-
-            hw.setE_AA(p * p * n);
-            hw.setE_Aa(2 * p * q * n);
-            hw.setE_aa(q * q * n);
-
-            if (hw.getE_AA() == n_AA) {
-                n_AA = 1;
-                hw.setE_AA(n_AA);
-            }
+    private static void mgf(VariantStats vcfStat) {
+        int numAlleles = vcfStat.getNumAlleles();
+        float[] genotypesFreq = vcfStat.getGenotypesFreq();
+        float mgf = Float.MAX_VALUE;
+        String mgfGenotype = "";
+        float currentGtFreq;
+
+        for (int i = 0; i < numAlleles; i++) {
+            for (int j = 0; j < numAlleles; j++) {
+                int idx1 = i * numAlleles + j;
+                if (i == j) {
+                    currentGtFreq = genotypesFreq[idx1];
+                } else {
+                    int idx2 = j * numAlleles + i;
+                    currentGtFreq = genotypesFreq[idx1] + genotypesFreq[idx2];
+                }
 
-            if (hw.getE_Aa() == n_Aa) {
-                n_Aa = 1;
-                hw.setE_Aa(n_Aa);
-            }
+                if (currentGtFreq < mgf) {
+                    String firstAllele = (i == 0) ? vcfStat.getRefAlleles() : vcfStat.getAltAlleles()[i - 1];
+                    String secondAllele = (j == 0) ? vcfStat.getRefAlleles() : vcfStat.getAltAlleles()[j - 1];
+                    mgfGenotype = firstAllele + "|" + secondAllele;
+                    mgf = currentGtFreq;
 
-            if (hw.getE_aa() == n_aa) {
-                n_aa = 1;
-                hw.setE_aa(n_aa);
+                }
             }
-
-
-            chi = (n_AA - hw.getE_AA()) * (n_AA - hw.getE_AA()) / hw.getE_AA()
-                    + (n_Aa - hw.getE_Aa()) * (n_Aa - hw.getE_Aa()) / hw.getE_Aa()
-                    + (n_aa - hw.getE_aa()) * (n_aa - hw.getE_aa()) / hw.getE_aa();
-
-//            pValue = chiSquareTest.chiSquare(chi, 1);
-            hw.setChi2(chi);
-
-            //hw->p_value = 1-gsl_cdf_chisq_P(hw->chi2,1);
-
-
         }
 
-
+        vcfStat.setMgf(mgf);
+        vcfStat.setMgfAllele(mgfGenotype);
     }
-
-
 }
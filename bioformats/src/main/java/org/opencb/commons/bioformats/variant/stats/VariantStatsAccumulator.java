@@ -0,0 +1,205 @@
+package org.opencb.commons.bioformats.variant.stats;
+
+import org.opencb.commons.bioformats.pedigree.Pedigree;
+import org.opencb.commons.bioformats.variant.Variant;
+import org.opencb.commons.bioformats.variant.utils.stats.VariantGlobalStats;
+import org.opencb.commons.bioformats.variant.utils.stats.VariantSampleGroupStats;
+import org.opencb.commons.bioformats.variant.utils.stats.VariantSampleStats;
+import org.opencb.commons.bioformats.variant.utils.stats.VariantStats;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Mergeable accumulator of the global, sample and sample group statistics of a set of variants.
+ * <p>
+ * Batches of variants can be accumulated by different threads into the same accumulator, or into different
+ * accumulators that are merged afterwards, with the same result. The statistics of each batch are calculated with
+ * {@link StatsCalculator} without any lock, and only added to the accumulator while holding its lock.
+ */
+public class VariantStatsAccumulator {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final List<String> sampleNames;
+    private final Pedigree ped;
+    private final List<String> groups;
+
+    private final VariantGlobalStats globalStats;
+    private final VariantSampleStats sampleStats;
+    private final Map<String, VariantSampleGroupStats> sampleGroupStats;
+    private final List<VariantStats> variantStats;
+
+    /**
+     * @param sampleNames      Samples to calculate the statistics for
+     * @param ped              Pedigree of the samples, or null
+     * @param groups           Pedigree fields to group the sample statistics by, like "phenotype" or "family"
+     * @param keepVariantStats Keep the statistics of every variant, in the same order they are accumulated
+     */
+    public VariantStatsAccumulator(List<String> sampleNames, Pedigree ped, List<String> groups, boolean keepVariantStats) {
+        if (ped == null && groups != null && !groups.isEmpty()) {
+            throw new IllegalArgumentException("A pedigree is required to calculate the statistics of groups " + groups);
+        }
+        this.sampleNames = sampleNames;
+        this.ped = ped;
+        this.groups = groups == null ? Collections.<String>emptyList() : groups;
+
+        this.globalStats = new VariantGlobalStats();
+        this.sampleStats = new VariantSampleStats(sampleNames);
+        this.sampleGroupStats = new LinkedHashMap<>();
+        for (String group : this.groups) {
+            VariantSampleGroupStats variantSampleGroupStats = new VariantSampleGroupStats();
+            variantSampleGroupStats.setGroup(group);
+            sampleGroupStats.put(group, variantSampleGroupStats);
+        }
+        this.variantStats = keepVariantStats ? new ArrayList<VariantStats>() : null;
+    }
+
+    /**
+     * Calculates the statistics of a batch of variants and adds them to the accumulator. Can be called concurrently.
+     *
+     * @param variants Batch of variants
+     * @return The statistics of each variant of the batch
+     */
+    public List<VariantStats> accumulate(List<Variant> variants) {
+        List<VariantStats> batchVariantStats = StatsCalculator.variantStats(variants, sampleNames, ped);
+        VariantGlobalStats batchGlobalStats = StatsCalculator.globalStats(batchVariantStats);
+        VariantSampleStats batchSampleStats = StatsCalculator.sampleStats(variants, sampleNames, ped);
+        List<VariantSampleGroupStats> batchSampleGroupStats = new ArrayList<>(groups.size());
+        for (String group : groups) {
+            batchSampleGroupStats.add(StatsCalculator.sampleGroupStats(variants, ped, group));
+        }
+
+        synchronized (this) {
+            globalStats.merge(batchGlobalStats);
+            sampleStats.merge(batchSampleStats);
+            for (VariantSampleGroupStats variantSampleGroupStats : batchSampleGroupStats) {
+                sampleGroupStats.get(variantSampleGroupStats.getGroup()).merge(variantSampleGroupStats);
+            }
+            if (variantStats != null) {
+                variantStats.addAll(batchVariantStats);
+            }
+        }
+        return batchVariantStats;
+    }
+
+    /**
+     * Adds the statistics of other accumulator. The variant statistics of the other accumulator go after the ones of
+     * this accumulator.
+     *
+     * @param other Accumulator to add
+     * @return this accumulator
+     */
+    public VariantStatsAccumulator merge(VariantStatsAccumulator other) {
+        // Copy the other accumulator first, so the locks of both accumulators are never held at the same time
+        VariantGlobalStats otherGlobalStats = new VariantGlobalStats();
+        VariantSampleStats otherSampleStats = new VariantSampleStats(Collections.<String>emptyList());
+        List<VariantSampleGroupStats> otherSampleGroupStats = new ArrayList<>();
+        List<VariantStats> otherVariantStats = null;
+        synchronized (other) {
+            otherGlobalStats.merge(other.globalStats);
+            otherSampleStats.merge(other.sampleStats);
+            for (VariantSampleGroupStats variantSampleGroupStats : other.sampleGroupStats.values()) {
+                otherSampleGroupStats.add(new VariantSampleGroupStats().merge(variantSampleGroupStats));
+            }
+            if (other.variantStats != null) {
+                otherVariantStats = new ArrayList<>(other.variantStats);
+            }
+        }
+
+        synchronized (this) {
+            globalStats.merge(otherGlobalStats);
+            sampleStats.merge(otherSampleStats);
+            for (VariantSampleGroupStats variantSampleGroupStats : otherSampleGroupStats) {
+                VariantSampleGroupStats groupStats = sampleGroupStats.get(variantSampleGroupStats.getGroup());
+                if (groupStats == null) {
+                    sampleGroupStats.put(variantSampleGroupStats.getGroup(), variantSampleGroupStats);
+                } else {
+                    groupStats.merge(variantSampleGroupStats);
+                }
+            }
+            if (variantStats != null && otherVariantStats != null) {
+                variantStats.addAll(otherVariantStats);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Calculates the statistics of a list of variants splitting it in batches processed by a fork-join pool.
+     *
+     * @param variants    Variants to calculate the statistics for
+     * @param sampleNames Samples to calculate the statistics for
+     * @param ped         Pedigree of the samples, or null
+     * @param groups      Pedigree fields to group the sample statistics by
+     * @param batchSize   Maximum number of variants processed by a single task
+     * @param pool        Fork-join pool
+     * @return An accumulator with all the statistics, including the statistics of every variant in the input order
+     */
+    public static VariantStatsAccumulator compute(List<Variant> variants, List<String> sampleNames, Pedigree ped,
+                                                  List<String> groups, int batchSize, ForkJoinPool pool) {
+        return pool.invoke(new ComputeTask(variants, sampleNames, ped, groups, batchSize));
+    }
+
+    public static VariantStatsAccumulator compute(List<Variant> variants, List<String> sampleNames, Pedigree ped, List<String> groups) {
+        return compute(variants, sampleNames, ped, groups, DEFAULT_BATCH_SIZE, ForkJoinPool.commonPool());
+    }
+
+    public List<String> getSampleNames() {
+        return sampleNames;
+    }
+
+    public synchronized VariantGlobalStats getGlobalStats() {
+        return globalStats;
+    }
+
+    public synchronized VariantSampleStats getSampleStats() {
+        return sampleStats;
+    }
+
+    public synchronized VariantSampleGroupStats getSampleGroupStats(String group) {
+        return sampleGroupStats.get(group);
+    }
+
+    /**
+     * @return The statistics of every variant, or null if they are not kept
+     */
+    public synchronized List<VariantStats> getVariantStats() {
+        return variantStats;
+    }
+
+    private static class ComputeTask extends RecursiveTask<VariantStatsAccumulator> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Variant> variants;
+        private final List<String> sampleNames;
+        private final Pedigree ped;
+        private final List<String> groups;
+        private final int batchSize;
+
+        ComputeTask(List<Variant> variants, List<String> sampleNames, Pedigree ped, List<String> groups, int batchSize) {
+            this.variants = variants;
+            this.sampleNames = sampleNames;
+            this.ped = ped;
+            this.groups = groups;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        protected VariantStatsAccumulator compute() {
+            if (variants.size() <= batchSize) {
+                VariantStatsAccumulator accumulator = new VariantStatsAccumulator(sampleNames, ped, groups, true);
+                accumulator.accumulate(variants);
+                return accumulator;
+            }
+            int middle = variants.size() / 2;
+            ComputeTask left = new ComputeTask(variants.subList(0, middle), sampleNames, ped, groups, batchSize);
+            ComputeTask right = new ComputeTask(variants.subList(middle, variants.size()), sampleNames, ped, groups, batchSize);
+            right.fork();
+            VariantStatsAccumulator accumulator = left.compute();
+            return accumulator.merge(right.join());
+        }
+    }
+}
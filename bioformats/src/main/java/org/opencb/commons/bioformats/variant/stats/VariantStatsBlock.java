@@ -0,0 +1,314 @@
+package org.opencb.commons.bioformats.variant.stats;
+
+import org.opencb.commons.bioformats.variant.utils.stats.VariantHardyWeinbergStats;
+import org.opencb.commons.bioformats.variant.utils.stats.VariantStats;
+
+import java.util.Arrays;
+
+/**
+ * Allele and genotype counts of a block of variants laid out column-wise, with batch kernels for the allele and
+ * genotype frequencies, the MAF and the Hardy-Weinberg test.
+ * <p>
+ * Every statistic is stored in a primitive array with one position per variant. The counts and frequencies of the
+ * alleles of the variant {@code i} are in the positions {@code [getAllelesOffset(i), getAllelesOffset(i + 1))} of
+ * their arrays, and the ones of its genotypes in {@code [getGenotypesOffset(i), getGenotypesOffset(i + 1))}. Each kernel
+ * is a sequence of loops over those arrays without any object access, so the whole block is processed at once.
+ */
+public class VariantStatsBlock {
+
+    private final int size;
+
+    private final int[] allelesOffsets;
+    private final int[] allelesCount;
+    private final float[] allelesFreq;
+    private final int[] totalAllelesCount;
+    private final float[] maf;
+    private final int[] mafAllele;
+
+    private final int[] genotypesOffsets;
+    private final int[] genotypesCount;
+    private final float[] genotypesFreq;
+    private final int[] totalGenotypesCount;
+
+    private final int[] n;
+    private final int[] nAA;
+    private final int[] nAa;
+    private final int[] naa;
+    private final float[] p;
+    private final float[] q;
+    private final float[] eAA;
+    private final float[] eAa;
+    private final float[] eaa;
+    private final float[] chi2;
+    private final float[] pValue;
+
+    /**
+     * @param numAlleles Number of alleles of each variant, including the reference
+     */
+    public VariantStatsBlock(int[] numAlleles) {
+        this.size = numAlleles.length;
+
+        allelesOffsets = new int[size + 1];
+        genotypesOffsets = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            allelesOffsets[i + 1] = allelesOffsets[i] + numAlleles[i];
+            genotypesOffsets[i + 1] = genotypesOffsets[i] + numAlleles[i] * numAlleles[i];
+        }
+
+        allelesCount = new int[allelesOffsets[size]];
+        allelesFreq = new float[allelesOffsets[size]];
+        totalAllelesCount = new int[size];
+        maf = new float[size];
+        mafAllele = new int[size];
+
+        genotypesCount = new int[genotypesOffsets[size]];
+        genotypesFreq = new float[genotypesOffsets[size]];
+        totalGenotypesCount = new int[size];
+
+        n = new int[size];
+        nAA = new int[size];
+        nAa = new int[size];
+        naa = new int[size];
+        p = new float[size];
+        q = new float[size];
+        eAA = new float[size];
+        eAa = new float[size];
+        eaa = new float[size];
+        chi2 = new float[size];
+        pValue = new float[size];
+    }
+
+    /**
+     * Sets the counts of a variant.
+     *
+     * @param variant             Position of the variant in the block
+     * @param allelesCount        Occurrences of each allele
+     * @param totalAllelesCount   Total number of alleles, that may include alleles not in allelesCount
+     * @param genotypesCount      Occurrences of each genotype, indexed by allele1 * numAlleles + allele2
+     * @param totalGenotypesCount Total number of genotypes with both alleles set
+     */
+    public void setCounts(int variant, int[] allelesCount, int totalAllelesCount, int[] genotypesCount, int totalGenotypesCount) {
+        System.arraycopy(allelesCount, 0, this.allelesCount, allelesOffsets[variant], getNumAlleles(variant));
+        System.arraycopy(genotypesCount, 0, this.genotypesCount, genotypesOffsets[variant],
+                genotypesOffsets[variant + 1] - genotypesOffsets[variant]);
+        this.totalAllelesCount[variant] = totalAllelesCount;
+        this.totalGenotypesCount[variant] = totalGenotypesCount;
+    }
+
+    /**
+     * Sets the genotype counts of a variant for the Hardy-Weinberg test.
+     *
+     * @param variant Position of the variant in the block
+     * @param nAA     Homozygous reference genotypes
+     * @param nAa     Heterozygous genotypes
+     * @param naa     Homozygous alternate genotypes
+     */
+    public void setHardyWeinbergCounts(int variant, int nAA, int nAa, int naa) {
+        this.nAA[variant] = nAA;
+        this.nAa[variant] = nAa;
+        this.naa[variant] = naa;
+    }
+
+    /**
+     * Runs all the kernels over the block.
+     *
+     * @return this block
+     */
+    public VariantStatsBlock compute() {
+        computeAllelesFreq();
+        computeMaf();
+        computeGenotypesFreq();
+        computeHardyWeinberg();
+        return this;
+    }
+
+    public void computeAllelesFreq() {
+        for (int i = 0; i < size; i++) {
+            int total = totalAllelesCount[i];
+            int end = allelesOffsets[i + 1];
+            if (total > 0) {
+                float totalFloat = total;
+                for (int j = allelesOffsets[i]; j < end; j++) {
+                    allelesFreq[j] = allelesCount[j] / totalFloat;
+                }
+            } else {
+                Arrays.fill(allelesFreq, allelesOffsets[i], end, 0);
+            }
+        }
+    }
+
+    /**
+     * Minor allele frequency of every variant, from the allele frequencies. Ties are resolved in favour of the first
+     * allele.
+     */
+    public void computeMaf() {
+        for (int i = 0; i < size; i++) {
+            int start = allelesOffsets[i];
+            int end = allelesOffsets[i + 1];
+            float min = Float.MAX_VALUE;
+            int minAllele = -1;
+            for (int j = start; j < end; j++) {
+                if (allelesFreq[j] < min) {
+                    min = allelesFreq[j];
+                    minAllele = j - start;
+                }
+            }
+            maf[i] = min;
+            mafAllele[i] = minAllele;
+        }
+    }
+
+    public void computeGenotypesFreq() {
+        for (int i = 0; i < size; i++) {
+            int total = totalGenotypesCount[i];
+            int end = genotypesOffsets[i + 1];
+            if (total > 0) {
+                float totalFloat = total;
+                for (int j = genotypesOffsets[i]; j < end; j++) {
+                    genotypesFreq[j] = genotypesCount[j] / totalFloat;
+                }
+            } else {
+                Arrays.fill(genotypesFreq, genotypesOffsets[i], end, 0);
+            }
+        }
+    }
+
+    /**
+     * Hardy-Weinberg chi-square test of every variant. When an observed count equals its expected value, both are
+     * taken as 1. The p-value is the upper tail of the chi-square distribution with one degree of freedom.
+     */
+    public void computeHardyWeinberg() {
+        for (int i = 0; i < size; i++) {
+            n[i] = nAA[i] + nAa[i] + naa[i];
+        }
+        for (int i = 0; i < size; i++) {
+            int total = n[i];
+            float pi = total > 0 ? (float) ((2.0 * nAA[i] + nAa[i]) / (2 * total)) : 0;
+            float qi = total > 0 ? 1 - pi : 0;
+            p[i] = pi;
+            q[i] = qi;
+            eAA[i] = pi * pi * total;
+            eAa[i] = 2 * pi * qi * total;
+            eaa[i] = qi * qi * total;
+        }
+        for (int i = 0; i < size; i++) {
+            if (n[i] == 0) {
+                chi2[i] = 0;
+                pValue[i] = 0;
+                continue;
+            }
+            // Observed counts matching the expected ones are replaced by 1, as well as the expected values
+            float oAA = eAA[i] == nAA[i] ? 1 : nAA[i];
+            float oAa = eAa[i] == nAa[i] ? 1 : nAa[i];
+            float oaa = eaa[i] == naa[i] ? 1 : naa[i];
+            float expAA = eAA[i] == nAA[i] ? 1 : eAA[i];
+            float expAa = eAa[i] == nAa[i] ? 1 : eAa[i];
+            float expaa = eaa[i] == naa[i] ? 1 : eaa[i];
+            eAA[i] = expAA;
+            eAa[i] = expAa;
+            eaa[i] = expaa;
+            chi2[i] = (oAA - expAA) * (oAA - expAA) / expAA
+                    + (oAa - expAa) * (oAa - expAa) / expAa
+                    + (oaa - expaa) * (oaa - expaa) / expaa;
+            pValue[i] = (float) chiSquareUpperTail(chi2[i]);
+        }
+    }
+
+    /**
+     * Copies the frequencies, MAF and Hardy-Weinberg results of a variant to its statistics.
+     *
+     * @param variant Position of the variant in the block
+     * @param stats   Statistics of the variant
+     */
+    public void copyTo(int variant, VariantStats stats) {
+        int allelesStart = allelesOffsets[variant];
+        int genotypesStart = genotypesOffsets[variant];
+        stats.setAllelesFreq(Arrays.copyOfRange(allelesFreq, allelesStart, allelesOffsets[variant + 1]));
+        stats.setGenotypesFreq(Arrays.copyOfRange(genotypesFreq, genotypesStart, genotypesOffsets[variant + 1]));
+        stats.setMaf(maf[variant]);
+        if (mafAllele[variant] >= 0) {
+            stats.setMafAllele(mafAllele[variant] == 0 ? stats.getRefAlleles() : stats.getAltAlleles()[mafAllele[variant] - 1]);
+        }
+
+        VariantHardyWeinbergStats hw = stats.getHw();
+        hw.setN_AA(nAA[variant]);
+        hw.setN_Aa(nAa[variant]);
+        hw.setN_aa(naa[variant]);
+        hw.setN(n[variant]);
+        if (n[variant] > 0) {
+            hw.setP(p[variant]);
+            hw.setQ(q[variant]);
+            hw.setE_AA(eAA[variant]);
+            hw.setE_Aa(eAa[variant]);
+            hw.setE_aa(eaa[variant]);
+            hw.setChi2(chi2[variant]);
+            hw.setpValue(pValue[variant]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getNumAlleles(int variant) {
+        return allelesOffsets[variant + 1] - allelesOffsets[variant];
+    }
+
+    public int getAllelesOffset(int variant) {
+        return allelesOffsets[variant];
+    }
+
+    public int getGenotypesOffset(int variant) {
+        return genotypesOffsets[variant];
+    }
+
+    public float[] getAllelesFreq() {
+        return allelesFreq;
+    }
+
+    public float[] getGenotypesFreq() {
+        return genotypesFreq;
+    }
+
+    public float[] getMaf() {
+        return maf;
+    }
+
+    /**
+     * @return Index of the minor allele of every variant, 0 being the reference
+     */
+    public int[] getMafAllele() {
+        return mafAllele;
+    }
+
+    public float[] getChi2() {
+        return chi2;
+    }
+
+    public float[] getpValue() {
+        return pValue;
+    }
+
+    public float[] getP() {
+        return p;
+    }
+
+    public float[] getQ() {
+        return q;
+    }
+
+    /**
+     * Upper tail of the chi-square distribution with one degree of freedom, erfc(sqrt(x / 2)).
+     * The complementary error function is approximated with a Chebyshev fit, with a relative error below 1.2e-7.
+     */
+    static double chiSquareUpperTail(double x) {
+        if (x <= 0) {
+            return 1;
+        }
+        double z = Math.sqrt(x / 2);
+        double t = 1 / (1 + 0.5 * z);
+        return t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+    }
+}
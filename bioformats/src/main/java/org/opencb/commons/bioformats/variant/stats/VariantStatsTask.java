@@ -0,0 +1,56 @@
+package org.opencb.commons.bioformats.variant.stats;
+
+import org.opencb.commons.bioformats.pedigree.Pedigree;
+import org.opencb.commons.bioformats.variant.Variant;
+import org.opencb.commons.bioformats.variant.utils.stats.VariantStats;
+import org.opencb.commons.run.ParallelTaskRunner;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * {@link ParallelTaskRunner} task that calculates the statistics of each batch of variants, and accumulates the
+ * global, sample and sample group statistics.
+ * <p>
+ * The same instance can be shared by all the threads of the runner. When the runner uses a different task per thread,
+ * the accumulated statistics can be joined with {@link #merge(Collection)}.
+ */
+public class VariantStatsTask implements ParallelTaskRunner.Task<Variant, VariantStats> {
+
+    private final VariantStatsAccumulator accumulator;
+
+    public VariantStatsTask(List<String> sampleNames, Pedigree ped, List<String> groups) {
+        this(new VariantStatsAccumulator(sampleNames, ped, groups, false));
+    }
+
+    public VariantStatsTask(VariantStatsAccumulator accumulator) {
+        this.accumulator = accumulator;
+    }
+
+    @Override
+    public List<VariantStats> apply(List<Variant> batch) {
+        return accumulator.accumulate(batch);
+    }
+
+    public VariantStatsAccumulator getAccumulator() {
+        return accumulator;
+    }
+
+    /**
+     * Merges the statistics accumulated by several tasks.
+     *
+     * @param tasks Tasks to merge
+     * @return A new accumulator with the statistics of all the tasks
+     */
+    public static VariantStatsAccumulator merge(Collection<VariantStatsTask> tasks) {
+        VariantStatsAccumulator merged = null;
+        for (VariantStatsTask task : tasks) {
+            VariantStatsAccumulator accumulator = task.getAccumulator();
+            if (merged == null) {
+                merged = new VariantStatsAccumulator(accumulator.getSampleNames(), null, null, false);
+            }
+            merged.merge(accumulator);
+        }
+        return merged;
+    }
+}
@@ -40,12 +40,24 @@ public class VariantGlobalStats {
         this();
 
         for (VariantGlobalStats gs : variantGlobalStatsList) {
-            this.updateStats(gs.getVariantsCount(), gs.samplesCount, gs.getSnpsCount(), gs.indelsCount, gs.passCount, gs.transitionsCount, gs.transversionsCount, gs.getBiallelicsCount(), gs.getMultiallelicsCount(), gs.getAccumQuality());
+            this.merge(gs);
         }
 
     }
 
 
+    /**
+     * Adds the counts of other global stats, for example computed over a different batch of variants.
+     *
+     * @param other Global stats to add
+     * @return this object
+     */
+    public VariantGlobalStats merge(VariantGlobalStats other) {
+        this.updateStats(other.variantsCount, other.samplesCount, other.snpsCount, other.indelsCount, other.passCount,
+                other.transitionsCount, other.transversionsCount, other.biallelicsCount, other.multiallelicsCount, other.accumQuality);
+        return this;
+    }
+
     public void updateStats(int variantsCount, int samplesCount, int snpsCount, int indelsCount, int passCount, int transitionsCount, int transversionsCount, int biallelicsCount, int multiallelicsCount, float accumQuality) {
         this.variantsCount += variantsCount;
         if (this.samplesCount == 0)
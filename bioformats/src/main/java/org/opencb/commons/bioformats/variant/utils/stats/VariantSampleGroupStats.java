@@ -1,5 +1,6 @@
 package org.opencb.commons.bioformats.variant.utils.stats;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,30 +26,28 @@ public class VariantSampleGroupStats {
         this();
 
 
-        VariantSampleStats variantSampleStatsAux;
-        VariantSingleSampleStats variantSingleSampleStats;
-
-
         for (VariantSampleGroupStats sgs : sampleGroup) {
-            this.setGroup(sgs.getGroup());
-            for (Map.Entry<String, VariantSampleStats> ss : sgs.getSampleStats().entrySet()) {
-                if (!this.sampleStats.containsKey(ss.getKey())) {
-                    this.sampleStats.put(ss.getKey(), ss.getValue());
-                } else {
-                    variantSampleStatsAux = this.sampleStats.get(ss.getKey());
-                    for (Map.Entry<String, VariantSingleSampleStats> entry : variantSampleStatsAux.getSamplesStats().entrySet()) {
-                        variantSingleSampleStats = entry.getValue();
-                        variantSingleSampleStats.incrementHomozygotesNumber(ss.getValue().getSamplesStats().get(entry.getKey()).getHomozygotesNumber());
-                        variantSingleSampleStats.incrementMendelianErrors(ss.getValue().getSamplesStats().get(entry.getKey()).getMendelianErrors());
-                        variantSingleSampleStats.incrementMissingGenotypes(ss.getValue().getSamplesStats().get(entry.getKey()).getMissingGenotypes());
-                    }
-
-
-                }
-
+            this.merge(sgs);
+        }
+    }
 
+    /**
+     * Adds the sample stats of each group value of other sample group stats.
+     *
+     * @param other Sample group stats to add
+     * @return this object
+     */
+    public VariantSampleGroupStats merge(VariantSampleGroupStats other) {
+        this.setGroup(other.getGroup());
+        for (Map.Entry<String, VariantSampleStats> ss : other.getSampleStats().entrySet()) {
+            VariantSampleStats variantSampleStats = this.sampleStats.get(ss.getKey());
+            if (variantSampleStats == null) {
+                variantSampleStats = new VariantSampleStats(Collections.<String>emptyList());
+                this.sampleStats.put(ss.getKey(), variantSampleStats);
             }
+            variantSampleStats.merge(ss.getValue());
         }
+        return this;
     }
 
     public Map<String, VariantSampleStats> getSampleStats() {
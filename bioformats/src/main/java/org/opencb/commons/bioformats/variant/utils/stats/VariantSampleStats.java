@@ -28,20 +28,32 @@ public class VariantSampleStats {
 
     public VariantSampleStats(List<String> sampleNames, List<VariantSampleStats> variantSampleStatses) {
         this(sampleNames);
-        String sampleName;
-        VariantSingleSampleStats ss, ssAux;
-        Map<String, VariantSingleSampleStats> map;
         for (VariantSampleStats variantSampleStat : variantSampleStatses) {
-            map = variantSampleStat.getSamplesStats();
-            for (Map.Entry<String, VariantSingleSampleStats> entry : map.entrySet()) {
-                sampleName = entry.getKey();
-                ss = entry.getValue();
-                ssAux = this.getSamplesStats().get(sampleName);
-                ssAux.incrementMendelianErrors(ss.getMendelianErrors());
-                ssAux.incrementMissingGenotypes(ss.getMissingGenotypes());
-                ssAux.incrementHomozygotesNumber(ss.getHomozygotesNumber());
+            this.merge(variantSampleStat);
+        }
+    }
+
+    /**
+     * Adds the counts of other sample stats, for example computed over a different batch of variants. Samples not
+     * present in this object are added.
+     *
+     * @param other Sample stats to add
+     * @return this object
+     */
+    public VariantSampleStats merge(VariantSampleStats other) {
+        VariantSingleSampleStats ss, ssAux;
+        for (Map.Entry<String, VariantSingleSampleStats> entry : other.getSamplesStats().entrySet()) {
+            ss = entry.getValue();
+            ssAux = samplesStats.get(entry.getKey());
+            if (ssAux == null) {
+                ssAux = new VariantSingleSampleStats(entry.getKey());
+                samplesStats.put(entry.getKey(), ssAux);
             }
+            ssAux.incrementMendelianErrors(ss.getMendelianErrors());
+            ssAux.incrementMissingGenotypes(ss.getMissingGenotypes());
+            ssAux.incrementHomozygotesNumber(ss.getHomozygotesNumber());
         }
+        return this;
     }
 
     public Map<String, VariantSingleSampleStats> getSamplesStats() {
@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.opencb.commons.bioformats.feature.Genotype;
+import org.opencb.commons.bioformats.feature.GenotypeCounts;
 
 /**
  * Created with IntelliJ IDEA.
@@ -25,6 +26,7 @@ public class VariantStats {
     private int[] allelesCount;
     private int[] genotypesCount;
     private List<Genotype> genotypes;
+    private GenotypeCounts genotypeCounts;
     private float[] allelesFreq;
     private float[] genotypesFreq;
     private float maf;
@@ -121,7 +123,7 @@ public class VariantStats {
                 ", numAlleles=" + numAlleles +
                 ", allelesCount=" + Arrays.toString(allelesCount) +
                 ", genotypesCount=" + Arrays.toString(genotypesCount) +
-                ", genotypes=" + genotypes +
+                ", genotypes=" + getGenotypes() +
                 ", allelesFreq=" + Arrays.toString(allelesFreq) +
                 ", genotypesFreq=" + Arrays.toString(genotypesFreq) +
                 ", maf=" + maf +
@@ -304,11 +306,29 @@ public class VariantStats {
     }
 
     public List<Genotype> getGenotypes() {
+        if (genotypes == null && genotypeCounts != null) {
+            genotypes = genotypeCounts.toGenotypes();
+        }
         return genotypes;
     }
 
     public void setGenotypes(List<Genotype> genotypes) {
         this.genotypes = genotypes;
+        this.genotypeCounts = null;
+    }
+
+    public GenotypeCounts getGenotypeCounts() {
+        return genotypeCounts;
+    }
+
+    /**
+     * Sets the number of occurrences of each genotype. The list of genotypes is derived from it when requested.
+     *
+     * @param genotypeCounts Genotype count matrix
+     */
+    public void setGenotypeCounts(GenotypeCounts genotypeCounts) {
+        this.genotypeCounts = genotypeCounts;
+        this.genotypes = null;
     }
 
     public int getTransitionsCount() {
@@ -94,65 +94,14 @@ public class VariantStatsWrapper {
     }
 
     public VariantGlobalStats getFinalGlobalStats() {
-
-        VariantGlobalStats gsFinal = new VariantGlobalStats();
-
-        for (VariantGlobalStats gs : this.variantGlobalStats) {
-            gsFinal.updateStats(gs.getVariantsCount(), gs.getSamplesCount(),
-                    gs.getSnpsCount(), gs.getIndelsCount(), gs.getPassCount(),
-                    gs.getTransitionsCount(), gs.getTransversionsCount(), gs.getBiallelicsCount(), gs.getMultiallelicsCount(), gs.getAccumQuality());
-        }
-        return gsFinal;
+        return new VariantGlobalStats(this.variantGlobalStats);
     }
 
     public VariantSampleStats getFinalSampleStats() {
-
-        VariantSampleStats ssFinal = new VariantSampleStats(this.getSampleNames());
-
-        String sampleName;
-        VariantSingleSampleStats ss, ssAux;
-        Map<String, VariantSingleSampleStats> map;
-
-        for (VariantSampleStats variantSampleStats : this.variantSampleStats) {
-            map = variantSampleStats.getSamplesStats();
-            for (Map.Entry<String, VariantSingleSampleStats> entry : map.entrySet()) {
-                sampleName = entry.getKey();
-                ss = entry.getValue();
-                ssAux = ssFinal.getSamplesStats().get(sampleName);
-                ssAux.incrementMendelianErrors(ss.getMendelianErrors());
-                ssAux.incrementMissingGenotypes(ss.getMissingGenotypes());
-                ssAux.incrementHomozygotesNumber(ss.getHomozygotesNumber());
-            }
-        }
-
-        return ssFinal;
-
+        return new VariantSampleStats(this.getSampleNames(), this.variantSampleStats);
     }
 
     public VariantSampleGroupStats getFinalSampleGroupStat(String group) {
-        VariantSampleGroupStats sgsFinal = new VariantSampleGroupStats();
-
-        VariantSampleStats variantSampleStatsAux;
-        VariantSingleSampleStats variantSingleSampleStats;
-
-        System.out.println(this.sampleGroupStats);
-        for (VariantSampleGroupStats sgs : this.sampleGroupStats.get(group)) {
-            sgsFinal.setGroup(sgs.getGroup());
-            for (Map.Entry<String, VariantSampleStats> ss : sgs.getSampleStats().entrySet()) {
-                if (!sgsFinal.getSampleStats().containsKey(ss.getKey())) {
-                    sgsFinal.getSampleStats().put(ss.getKey(), ss.getValue());
-                } else {
-                    variantSampleStatsAux = sgsFinal.getSampleStats().get(ss.getKey());
-                    for (Map.Entry<String, VariantSingleSampleStats> entry : variantSampleStatsAux.getSamplesStats().entrySet()) {
-                        variantSingleSampleStats = entry.getValue();
-                        variantSingleSampleStats.incrementHomozygotesNumber(ss.getValue().getSamplesStats().get(entry.getKey()).getHomozygotesNumber());
-                        variantSingleSampleStats.incrementMendelianErrors(ss.getValue().getSamplesStats().get(entry.getKey()).getMendelianErrors());
-                        variantSingleSampleStats.incrementMissingGenotypes(ss.getValue().getSamplesStats().get(entry.getKey()).getMissingGenotypes());
-                    }
-                }
-            }
-        }
-
-        return sgsFinal;
+        return new VariantSampleGroupStats(this.sampleGroupStats.get(group));
     }
 }
@@ -2,6 +2,7 @@ package org.opencb.commons.bioformats.variant.vcf4;
 
 
 import com.google.common.base.Joiner;
+import org.opencb.commons.bioformats.variant.VariantSamplesData;
 
 import java.util.*;
 
@@ -18,6 +19,7 @@ public class Vcf4 {
     private List<VcfRecord> records;
     private Map<String, Integer> samples;
     private List<String> sampleNames;
+    private VariantSamplesData.SampleIndex sampleIndex;
 
     public Vcf4() {
         this("VCFv4.0");
@@ -214,6 +216,7 @@ public class Vcf4 {
                 i++;
             }
         }
+        sampleIndex = null;
 
     }
 
@@ -238,4 +241,14 @@ public class Vcf4 {
     public List<String> getSampleNames() {
         return sampleNames;
     }
+
+    /**
+     * @return Index of the sample names, built once from the header line and shared by all the variants of the file
+     */
+    public synchronized VariantSamplesData.SampleIndex getSampleIndex() {
+        if (sampleIndex == null) {
+            sampleIndex = new VariantSamplesData.SampleIndex(sampleNames);
+        }
+        return sampleIndex;
+    }
 }
@@ -0,0 +1,256 @@
+package org.opencb.commons.bioformats.variant.vcf4;
+
+import org.opencb.commons.bioformats.variant.Variant;
+import org.opencb.commons.bioformats.variant.VariantSamplesData;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes variants as VCF data lines directly into a reusable byte buffer.
+ * <p>
+ * Lines are appended to the buffer until it is written to a stream with {@link #writeTo(OutputStream)}, so no String
+ * is created per line. Fields that were never modified since the variant was read are copied as they were in the file:
+ * the INFO column while its attributes have not been accessed, and the sample columns while they are stored as
+ * {@link VariantSamplesData}. The bytes of the INFO keys and of the FORMAT column are cached.
+ * <p>
+ * As in the previous writers, the samples of every variant are written with the FORMAT of the first encoded variant,
+ * unless a format is set with {@link #setFormat(String)}.
+ */
+public class VcfLineEncoder {
+
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final int MAX_CACHED_KEYS = 1024;
+    private static final byte[] MISSING = {'.'};
+
+    private byte[] buffer;
+    private int length;
+
+    private final Map<String, byte[]> keys;
+    private String format;
+    private String[] formatKeys;
+    private byte[] formatBytes;
+
+    public VcfLineEncoder() {
+        this(1 << 16);
+    }
+
+    /**
+     * @param capacity Initial capacity of the buffer, in bytes
+     */
+    public VcfLineEncoder(int capacity) {
+        buffer = new byte[capacity];
+        keys = new HashMap<>();
+    }
+
+    /**
+     * Sets the FORMAT used to write the samples of every variant.
+     *
+     * @param format FORMAT column, with its keys separated by ':'
+     * @return this encoder
+     */
+    public VcfLineEncoder setFormat(String format) {
+        this.format = format;
+        this.formatKeys = format.split(":");
+        this.formatBytes = format.getBytes(CHARSET);
+        return this;
+    }
+
+    /**
+     * Appends a variant to the buffer as a VCF data line, including the line terminator.
+     *
+     * @param variant Variant to encode
+     * @return this encoder
+     */
+    public VcfLineEncoder append(Variant variant) {
+        appendString(variant.getChromosome());
+        appendByte(VcfLineTokenizer.FIELD_SEPARATOR);
+        appendInt(variant.getPosition());
+        appendByte(VcfLineTokenizer.FIELD_SEPARATOR);
+        String id = variant.getId();
+        appendValue(id == null || id.isEmpty() ? null : id);
+        appendByte(VcfLineTokenizer.FIELD_SEPARATOR);
+        appendString(variant.getReference());
+        appendByte(VcfLineTokenizer.FIELD_SEPARATOR);
+        appendString(variant.getAlternate());
+        appendByte(VcfLineTokenizer.FIELD_SEPARATOR);
+        appendValue(variant.getAttribute("QUAL"));
+        appendByte(VcfLineTokenizer.FIELD_SEPARATOR);
+        appendValue(variant.getAttribute("FILTER"));
+        appendByte(VcfLineTokenizer.FIELD_SEPARATOR);
+        appendInfo(variant);
+
+        if (variant.getFormat() != null) {
+            if (format == null) {
+                setFormat(variant.getFormat());
+            }
+            appendByte(VcfLineTokenizer.FIELD_SEPARATOR);
+            appendBytes(formatBytes, 0, formatBytes.length);
+            appendSamples(variant);
+        }
+        appendByte((byte) '\n');
+        return this;
+    }
+
+    private void appendInfo(Variant variant) {
+        String rawInfo = variant.getRawInfo();
+        if (rawInfo != null) {
+            appendString(rawInfo);
+            return;
+        }
+
+        int start = length;
+        for (Map.Entry<String, String> entry : variant.getAttributes().entrySet()) {
+            String key = entry.getKey();
+            if (key.equalsIgnoreCase("QUAL") || key.equalsIgnoreCase("FILTER")) {
+                continue;
+            }
+            if (length > start) {
+                appendByte(VcfLineTokenizer.INFO_SEPARATOR);
+            }
+            byte[] keyBytes = getKeyBytes(key);
+            appendBytes(keyBytes, 0, keyBytes.length);
+            String value = entry.getValue();
+            if (value != null && !value.isEmpty()) {
+                appendByte(VcfLineTokenizer.INFO_VALUE_SEPARATOR);
+                appendString(value);
+            }
+        }
+        if (length == start) {
+            appendBytes(MISSING, 0, MISSING.length);
+        }
+    }
+
+    private void appendSamples(Variant variant) {
+        VariantSamplesData samplesData = variant.getSamplesDataColumns();
+        if (samplesData != null && format.equals(variant.getFormat())) {
+            if (samplesData.getNumSamples() > 0) {
+                appendByte(VcfLineTokenizer.FIELD_SEPARATOR);
+                ensureCapacity(samplesData.getRawLength());
+                samplesData.copyRaw(buffer, length);
+                length += samplesData.getRawLength();
+            }
+            return;
+        }
+
+        for (String sampleName : variant.getSampleNames()) {
+            appendByte(VcfLineTokenizer.FIELD_SEPARATOR);
+            Map<String, String> data = variant.getSampleData(sampleName);
+            for (int i = 0; i < formatKeys.length; i++) {
+                if (i > 0) {
+                    appendByte(VcfLineTokenizer.FORMAT_SEPARATOR);
+                }
+                String value = data == null ? null : data.get(formatKeys[i]);
+                appendValue(value);
+            }
+        }
+    }
+
+    private byte[] getKeyBytes(String key) {
+        byte[] keyBytes = keys.get(key);
+        if (keyBytes == null) {
+            keyBytes = key.getBytes(CHARSET);
+            if (keys.size() < MAX_CACHED_KEYS) {
+                keys.put(key, keyBytes);
+            }
+        }
+        return keyBytes;
+    }
+
+    /**
+     * Writes the encoded lines to a stream and empties the buffer.
+     *
+     * @param outputStream Stream to write to
+     * @throws IOException if the stream can not be written
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(buffer, 0, length);
+        length = 0;
+    }
+
+    /**
+     * @return Number of bytes encoded and not written yet
+     */
+    public int size() {
+        return length;
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public void clear() {
+        length = 0;
+    }
+
+    @Override
+    public String toString() {
+        return VcfLineTokenizer.toString(buffer, 0, length);
+    }
+
+    private void appendValue(String value) {
+        if (value == null) {
+            appendBytes(MISSING, 0, MISSING.length);
+        } else {
+            appendString(value);
+        }
+    }
+
+    private void appendString(String s) {
+        int n = s.length();
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                // Not ASCII, encode the rest of the string
+                byte[] bytes = s.substring(i).getBytes(CHARSET);
+                appendBytes(bytes, 0, bytes.length);
+                return;
+            }
+            buffer[length++] = (byte) c;
+        }
+    }
+
+    private void appendInt(int value) {
+        if (value == Integer.MIN_VALUE) {
+            appendString(Integer.toString(value));
+            return;
+        }
+        ensureCapacity(11);
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void appendByte(byte b) {
+        ensureCapacity(1);
+        buffer[length++] = b;
+    }
+
+    private void appendBytes(byte[] bytes, int start, int end) {
+        ensureCapacity(end - start);
+        System.arraycopy(bytes, start, buffer, length, end - start);
+        length += end - start;
+    }
+
+    private void ensureCapacity(int n) {
+        if (length + n > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + n));
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.opencb.commons.bioformats.variant.vcf4;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits a VCF data line into its tab separated fields working directly on the bytes of the line.
+ * <p>
+ * Only the offsets of the fields are stored, no String is created until a field is requested with
+ * {@link #getString(int)}. The tokenizer and its buffers are meant to be reused for every line of a file.
+ */
+public class VcfLineTokenizer {
+
+    public static final byte FIELD_SEPARATOR = '\t';
+    public static final byte INFO_SEPARATOR = ';';
+    public static final byte INFO_VALUE_SEPARATOR = '=';
+    public static final byte FORMAT_SEPARATOR = ':';
+
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private byte[] buffer;
+    private int lineStart;
+    private int lineEnd;
+    private int numFields;
+    private int[] fieldStarts;
+    private int[] fieldEnds;
+
+    public VcfLineTokenizer() {
+        fieldStarts = new int[16];
+        fieldEnds = new int[16];
+    }
+
+    /**
+     * Tokenizes a line. The buffer is not copied, so it must not be modified while the tokenizer is in use.
+     *
+     * @param buffer Buffer containing the line
+     * @param start  Position of the first byte of the line
+     * @param end    Position after the last byte of the line, excluding the line terminator
+     * @return this tokenizer
+     */
+    public VcfLineTokenizer tokenize(byte[] buffer, int start, int end) {
+        // Ignore trailing '\r' of files with Windows line terminators
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        this.buffer = buffer;
+        this.lineStart = start;
+        this.lineEnd = end;
+        this.numFields = 0;
+
+        int fieldStart = start;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == FIELD_SEPARATOR) {
+                addField(fieldStart, i);
+                fieldStart = i + 1;
+            }
+        }
+        addField(fieldStart, end);
+        return this;
+    }
+
+    public VcfLineTokenizer tokenize(String line) {
+        byte[] bytes = line.getBytes(CHARSET);
+        return tokenize(bytes, 0, bytes.length);
+    }
+
+    private void addField(int start, int end) {
+        if (numFields == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, numFields * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, numFields * 2);
+        }
+        fieldStarts[numFields] = start;
+        fieldEnds[numFields] = end;
+        numFields++;
+    }
+
+    public int getNumFields() {
+        return numFields;
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public int getFieldStart(int field) {
+        checkField(field);
+        return fieldStarts[field];
+    }
+
+    public int getFieldEnd(int field) {
+        checkField(field);
+        return fieldEnds[field];
+    }
+
+    public int getFieldLength(int field) {
+        checkField(field);
+        return fieldEnds[field] - fieldStarts[field];
+    }
+
+    /**
+     * Materializes a field as a String.
+     *
+     * @param field Index of the field
+     * @return The field as a String
+     */
+    public String getString(int field) {
+        checkField(field);
+        return toString(buffer, fieldStarts[field], fieldEnds[field]);
+    }
+
+    /**
+     * Parses an integer field without creating any intermediate String.
+     *
+     * @param field Index of the field
+     * @return The value of the field
+     * @throws NumberFormatException if the field is not a valid integer
+     */
+    public int getInt(int field) {
+        checkField(field);
+        return parseInt(buffer, fieldStarts[field], fieldEnds[field]);
+    }
+
+    /**
+     * Checks if a field is the VCF missing value ".".
+     *
+     * @param field Index of the field
+     * @return true if the field is "."
+     */
+    public boolean isMissing(int field) {
+        checkField(field);
+        return fieldEnds[field] - fieldStarts[field] == 1 && buffer[fieldStarts[field]] == '.';
+    }
+
+    /**
+     * Returns the whole line as a String, for error messages.
+     *
+     * @return The tokenized line
+     */
+    public String getLine() {
+        return toString(buffer, lineStart, lineEnd);
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= numFields) {
+            throw new IndexOutOfBoundsException("Field " + field + " not found. Line has " + numFields + " fields");
+        }
+    }
+
+    public static String toString(byte[] buffer, int start, int end) {
+        return new String(buffer, start, end - start, CHARSET);
+    }
+
+    /**
+     * Returns the position of the first occurrence of a byte in a range, or the end of the range if not found.
+     *
+     * @param buffer Buffer to search in
+     * @param start  First position of the range
+     * @param end    Position after the last byte of the range
+     * @param b      Byte to search for
+     * @return Position of the byte, or end
+     */
+    public static int indexOf(byte[] buffer, int start, int end, byte b) {
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == b) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    public static int parseInt(byte[] buffer, int start, int end) {
+        if (start >= end) {
+            throw new NumberFormatException("Empty number");
+        }
+        boolean negative = false;
+        int i = start;
+        if (buffer[i] == '-' || buffer[i] == '+') {
+            negative = buffer[i] == '-';
+            i++;
+            if (i == end) {
+                throw new NumberFormatException("For input string: \"" + toString(buffer, start, end) + "\"");
+            }
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + toString(buffer, start, end) + "\"");
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("Integer overflow: \"" + toString(buffer, start, end) + "\"");
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Integer overflow: \"" + toString(buffer, start, end) + "\"");
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,402 @@
+package org.opencb.commons.bioformats.variant.vcf4;
+
+import net.sf.samtools.util.BlockCompressedInputStream;
+import net.sf.samtools.util.BlockCompressedOutputStream;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Tabix index of a bgzipped VCF file, compatible with the .tbi files created by tabix.
+ * <p>
+ * Every record is assigned to the smallest bin of the UCSC binning scheme that contains it, and each bin keeps the
+ * chunks of the file with its records as pairs of BGZF virtual offsets. A linear index keeps, for every window of 16kb,
+ * the virtual offset of the first record overlapping it. Together, they give the first position of the file where the
+ * records overlapping a region can be, so a reader only has to seek there and decompress the blocks that follow until
+ * the end of the region.
+ */
+public class VcfTabixIndex {
+
+    public static final String EXTENSION = ".tbi";
+
+    private static final byte[] MAGIC = {'T', 'B', 'I', 1};
+    private static final int FORMAT_VCF = 2;
+    private static final int LINEAR_SHIFT = 14;
+    private static final int MAX_BIN = 37450;
+
+    private final List<String> chromosomes;
+    private final Map<String, Integer> chromosomeIds;
+    private final List<Map<Integer, List<long[]>>> bins;
+    private final List<long[]> linearIndexes;
+
+    private VcfTabixIndex() {
+        chromosomes = new ArrayList<>();
+        chromosomeIds = new HashMap<>();
+        bins = new ArrayList<>();
+        linearIndexes = new ArrayList<>();
+    }
+
+    /**
+     * Builds the index of a bgzipped VCF file. Records must be sorted by position within each chromosome, and the
+     * records of a chromosome must be contiguous.
+     *
+     * @param vcfFile Bgzipped VCF file
+     * @return Index of the file
+     * @throws IOException if the file can not be read or it is not sorted
+     */
+    public static VcfTabixIndex create(File vcfFile) throws IOException {
+        VcfTabixIndex index = new VcfTabixIndex();
+        Builder builder = index.new Builder();
+        try (BlockCompressedInputStream inputStream = new BlockCompressedInputStream(vcfFile)) {
+            long offset = 0;
+            String line;
+            while ((line = inputStream.readLine()) != null) {
+                long nextOffset = inputStream.getFilePointer();
+                if (!line.isEmpty() && line.charAt(0) != '#') {
+                    builder.add(line, offset, nextOffset);
+                }
+                offset = nextOffset;
+            }
+        }
+        builder.finish();
+        return index;
+    }
+
+    /**
+     * Reads a .tbi file.
+     *
+     * @param indexFile Index file
+     * @return The index
+     * @throws IOException if the file can not be read or it is not a tabix index of a VCF file
+     */
+    public static VcfTabixIndex read(File indexFile) throws IOException {
+        VcfTabixIndex index = new VcfTabixIndex();
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new BlockCompressedInputStream(indexFile)))) {
+            byte[] magic = new byte[4];
+            inputStream.readFully(magic);
+            if (!Arrays.equals(MAGIC, magic)) {
+                throw new IOException("Not a tabix index: " + indexFile);
+            }
+            int numChromosomes = readInt(inputStream);
+            int format = readInt(inputStream);
+            if ((format & 0xFFFF) != FORMAT_VCF) {
+                throw new IOException("Not a tabix index of a VCF file: " + indexFile);
+            }
+            // Columns, meta character and lines to skip are fixed for VCF
+            for (int i = 0; i < 5; i++) {
+                readInt(inputStream);
+            }
+            byte[] names = new byte[readInt(inputStream)];
+            inputStream.readFully(names);
+            int start = 0;
+            for (int i = 0; i < names.length; i++) {
+                if (names[i] == 0) {
+                    index.addChromosome(new String(names, start, i - start, StandardCharsets.UTF_8));
+                    start = i + 1;
+                }
+            }
+            if (index.chromosomes.size() != numChromosomes) {
+                throw new IOException("Corrupted tabix index, expected " + numChromosomes + " sequence names: " + indexFile);
+            }
+
+            for (int i = 0; i < numChromosomes; i++) {
+                Map<Integer, List<long[]>> chromosomeBins = index.bins.get(i);
+                int numBins = readInt(inputStream);
+                for (int j = 0; j < numBins; j++) {
+                    int bin = readInt(inputStream);
+                    int numChunks = readInt(inputStream);
+                    List<long[]> chunks = new ArrayList<>(numChunks);
+                    for (int k = 0; k < numChunks; k++) {
+                        chunks.add(new long[]{readLong(inputStream), readLong(inputStream)});
+                    }
+                    chromosomeBins.put(bin, chunks);
+                }
+                long[] linearIndex = new long[readInt(inputStream)];
+                for (int j = 0; j < linearIndex.length; j++) {
+                    linearIndex[j] = readLong(inputStream);
+                }
+                index.linearIndexes.set(i, linearIndex);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes the index as a .tbi file.
+     *
+     * @param indexFile File to write
+     * @throws IOException if the file can not be written
+     */
+    public void write(File indexFile) throws IOException {
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        for (String chromosome : chromosomes) {
+            byte[] bytes = chromosome.getBytes(StandardCharsets.UTF_8);
+            names.write(bytes, 0, bytes.length);
+            names.write(0);
+        }
+
+        try (OutputStream outputStream = new BufferedOutputStream(new BlockCompressedOutputStream(indexFile))) {
+            outputStream.write(MAGIC);
+            writeInt(outputStream, chromosomes.size());
+            writeInt(outputStream, FORMAT_VCF);
+            writeInt(outputStream, 1);      // Sequence column
+            writeInt(outputStream, 2);      // Start column
+            writeInt(outputStream, 0);      // End column, taken from the length of REF
+            writeInt(outputStream, '#');    // Meta character
+            writeInt(outputStream, 0);      // Lines to skip
+            writeInt(outputStream, names.size());
+            names.writeTo(outputStream);
+
+            for (int i = 0; i < chromosomes.size(); i++) {
+                Map<Integer, List<long[]>> chromosomeBins = bins.get(i);
+                writeInt(outputStream, chromosomeBins.size());
+                for (Map.Entry<Integer, List<long[]>> entry : chromosomeBins.entrySet()) {
+                    writeInt(outputStream, entry.getKey());
+                    writeInt(outputStream, entry.getValue().size());
+                    for (long[] chunk : entry.getValue()) {
+                        writeLong(outputStream, chunk[0]);
+                        writeLong(outputStream, chunk[1]);
+                    }
+                }
+                long[] linearIndex = linearIndexes.get(i);
+                writeInt(outputStream, linearIndex.length);
+                for (long offset : linearIndex) {
+                    writeLong(outputStream, offset);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the virtual offset of the file where the records overlapping a region start. Records from there on are
+     * sorted, so the region ends at the first record of other chromosome or starting after the region.
+     *
+     * @param chromosome Chromosome of the region
+     * @param start      First position of the region, 1-based
+     * @param end        Last position of the region, inclusive
+     * @return Virtual offset of the first record that may overlap the region, or -1 if no record overlaps it
+     */
+    public long getStartOffset(String chromosome, long start, long end) {
+        Integer id = chromosomeIds.get(chromosome);
+        if (id == null || end < start) {
+            return -1;
+        }
+        int beg = (int) Math.max(0, Math.min(start - 1, Integer.MAX_VALUE - 1));
+        int stop = (int) Math.max(beg + 1, Math.min(end, Integer.MAX_VALUE));
+
+        // Records overlapping the region can not be before the first record of the window of its start
+        long[] linearIndex = linearIndexes.get(id);
+        long minOffset = 0;
+        if (linearIndex.length > 0) {
+            minOffset = linearIndex[Math.min(beg >> LINEAR_SHIFT, linearIndex.length - 1)];
+        }
+
+        long startOffset = Long.MAX_VALUE;
+        Map<Integer, List<long[]>> chromosomeBins = bins.get(id);
+        for (int bin : reg2bins(beg, stop)) {
+            List<long[]> chunks = chromosomeBins.get(bin);
+            if (chunks != null) {
+                for (long[] chunk : chunks) {
+                    if (chunk[1] > minOffset) {
+                        startOffset = Math.min(startOffset, Math.max(chunk[0], minOffset));
+                    }
+                }
+            }
+        }
+        return startOffset == Long.MAX_VALUE ? -1 : startOffset;
+    }
+
+    public List<String> getChromosomes() {
+        return Collections.unmodifiableList(chromosomes);
+    }
+
+    private int addChromosome(String chromosome) {
+        int id = chromosomes.size();
+        chromosomes.add(chromosome);
+        chromosomeIds.put(chromosome, id);
+        bins.add(new TreeMap<Integer, List<long[]>>());
+        linearIndexes.add(new long[0]);
+        return id;
+    }
+
+    /**
+     * Bin of the UCSC binning scheme of a region.
+     *
+     * @param beg Start of the region, 0-based
+     * @param end End of the region, exclusive
+     * @return Smallest bin that contains the region
+     */
+    static int reg2bin(int beg, int end) {
+        --end;
+        if (beg >> 14 == end >> 14) {
+            return ((1 << 15) - 1) / 7 + (beg >> 14);
+        }
+        if (beg >> 17 == end >> 17) {
+            return ((1 << 12) - 1) / 7 + (beg >> 17);
+        }
+        if (beg >> 20 == end >> 20) {
+            return ((1 << 9) - 1) / 7 + (beg >> 20);
+        }
+        if (beg >> 23 == end >> 23) {
+            return ((1 << 6) - 1) / 7 + (beg >> 23);
+        }
+        if (beg >> 26 == end >> 26) {
+            return ((1 << 3) - 1) / 7 + (beg >> 26);
+        }
+        return 0;
+    }
+
+    /**
+     * Bins of the UCSC binning scheme that may contain records overlapping a region.
+     *
+     * @param beg Start of the region, 0-based
+     * @param end End of the region, exclusive
+     * @return Bins overlapping the region
+     */
+    static List<Integer> reg2bins(int beg, int end) {
+        List<Integer> list = new ArrayList<>();
+        --end;
+        list.add(0);
+        for (int k = 1 + (beg >> 26); k <= 1 + (end >> 26); k++) {
+            list.add(k);
+        }
+        for (int k = 9 + (beg >> 23); k <= 9 + (end >> 23); k++) {
+            list.add(k);
+        }
+        for (int k = 73 + (beg >> 20); k <= 73 + (end >> 20); k++) {
+            list.add(k);
+        }
+        for (int k = 585 + (beg >> 17); k <= 585 + (end >> 17); k++) {
+            list.add(k);
+        }
+        for (int k = 4681 + (beg >> 14); k <= 4681 + (end >> 14) && k <= MAX_BIN; k++) {
+            list.add(k);
+        }
+        return list;
+    }
+
+    private static int readInt(DataInputStream inputStream) throws IOException {
+        return Integer.reverseBytes(inputStream.readInt());
+    }
+
+    private static long readLong(DataInputStream inputStream) throws IOException {
+        return Long.reverseBytes(inputStream.readLong());
+    }
+
+    private static void writeInt(OutputStream outputStream, int value) throws IOException {
+        outputStream.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array());
+    }
+
+    private static void writeLong(OutputStream outputStream, long value) throws IOException {
+        outputStream.write(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(value).array());
+    }
+
+    /**
+     * Adds the records of a file to the index, in the same order they are in the file.
+     */
+    private class Builder {
+
+        private int chromosomeId = -1;
+        private int lastPosition;
+        private long[] linearIndex = new long[0];
+        private int bin = -1;
+        private long[] chunk;
+
+        void add(String line, long offset, long nextOffset) throws IOException {
+            int chromosomeEnd = line.indexOf('\t');
+            int positionEnd = chromosomeEnd < 0 ? -1 : line.indexOf('\t', chromosomeEnd + 1);
+            int idEnd = positionEnd < 0 ? -1 : line.indexOf('\t', positionEnd + 1);
+            if (idEnd < 0) {
+                throw new IOException("Not enough fields in line: " + line);
+            }
+            int referenceEnd = line.indexOf('\t', idEnd + 1);
+            if (referenceEnd < 0) {
+                referenceEnd = line.length();
+            }
+
+            String chromosome = line.substring(0, chromosomeEnd);
+            int position = Integer.parseInt(line.substring(chromosomeEnd + 1, positionEnd));
+            int beg = position - 1;
+            int end = beg + Math.max(1, referenceEnd - idEnd - 1);
+
+            if (chromosomeId < 0 || !chromosomes.get(chromosomeId).equals(chromosome)) {
+                if (chromosomeIds.containsKey(chromosome)) {
+                    throw new IOException("File not sorted, records of chromosome " + chromosome + " are not contiguous");
+                }
+                finishChromosome();
+                chromosomeId = addChromosome(chromosome);
+                lastPosition = 0;
+            } else if (position < lastPosition) {
+                throw new IOException("File not sorted, position " + position + " after " + lastPosition
+                        + " in chromosome " + chromosome);
+            }
+            lastPosition = position;
+
+            // Linear index: first record overlapping each window
+            int lastWindow = (end - 1) >> LINEAR_SHIFT;
+            if (lastWindow >= linearIndex.length) {
+                linearIndex = Arrays.copyOf(linearIndex, Math.max(lastWindow + 1, linearIndex.length * 2));
+            }
+            for (int window = beg >> LINEAR_SHIFT; window <= lastWindow; window++) {
+                if (linearIndex[window] == 0) {
+                    linearIndex[window] = offset;
+                }
+            }
+
+            // Chunks: consecutive records of the same bin are merged
+            int recordBin = reg2bin(beg, end);
+            if (recordBin == bin && chunk != null) {
+                chunk[1] = nextOffset;
+            } else {
+                finishChunk();
+                bin = recordBin;
+                chunk = new long[]{offset, nextOffset};
+            }
+        }
+
+        private void finishChunk() {
+            if (chunk != null) {
+                Map<Integer, List<long[]>> chromosomeBins = bins.get(chromosomeId);
+                List<long[]> chunks = chromosomeBins.get(bin);
+                if (chunks == null) {
+                    chunks = new ArrayList<>();
+                    chromosomeBins.put(bin, chunks);
+                }
+                long[] last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+                if (last != null && last[1] == chunk[0]) {
+                    last[1] = chunk[1];
+                } else {
+                    chunks.add(chunk);
+                }
+                chunk = null;
+            }
+        }
+
+        private void finishChromosome() {
+            if (chromosomeId >= 0) {
+                finishChunk();
+                bin = -1;
+                // Windows without records take the offset of the previous one
+                int length = linearIndex.length;
+                while (length > 0 && linearIndex[length - 1] == 0) {
+                    length--;
+                }
+                long[] chromosomeLinearIndex = Arrays.copyOf(linearIndex, length);
+                for (int i = 1; i < length; i++) {
+                    if (chromosomeLinearIndex[i] == 0) {
+                        chromosomeLinearIndex[i] = chromosomeLinearIndex[i - 1];
+                    }
+                }
+                linearIndexes.set(chromosomeId, chromosomeLinearIndex);
+                linearIndex = new long[0];
+            }
+        }
+
+        void finish() {
+            finishChromosome();
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package org.opencb.commons.bioformats.variant.vcf4.io.proto;
+
+import com.google.common.base.Joiner;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import org.opencb.commons.bioformats.feature.Region;
+import org.opencb.commons.bioformats.variant.Variant;
+import org.opencb.commons.bioformats.variant.VariantSamplesData;
+import org.opencb.commons.bioformats.variant.utils.stats.VariantStats;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Header of a block of a variant container file, and conversion of variants to and from the messages of
+ * {@link VariantFieldsProtos}.
+ * <p>
+ * A container file starts with {@link #MAGIC}, the VCF header and the names of the samples, followed by blocks of
+ * variants of a single chromosome. Each block starts with a header with its chromosome, the range of positions of its
+ * variants and the size of its sections, so a reader can skip whole blocks without decompressing them. The sections are
+ * compressed separately:
+ * <ul>
+ * <li>Keys: position, reference, alternate and id of every variant.</li>
+ * <li>Data: a {@link VariantFieldsProtos.VariantInfo} and the number of samples, followed by a
+ * {@link VariantFieldsProtos.VariantSample} with the raw column of each sample, for every variant.</li>
+ * <li>Stats: whether every variant has stats, followed by its {@link VariantFieldsProtos.VariantStats}. Optional.</li>
+ * </ul>
+ * Positions are written as the difference with the previous variant, and messages are length delimited.
+ */
+public class VariantProtoBlock {
+
+    public static final byte[] MAGIC = {'V', 'P', 'B', 1};
+
+    public static final int KEYS = 0;
+    public static final int DATA = 1;
+    public static final int STATS = 2;
+    public static final int NUM_SECTIONS = 3;
+
+    private final String chromosome;
+    private final int start;
+    private final int end;
+    private final int numVariants;
+    private final int[] compressedLengths;
+    private final int[] lengths;
+
+    /**
+     * @param chromosome        Chromosome of the variants
+     * @param start             Lowest position of the variants
+     * @param end               Highest position of the end of the variants
+     * @param numVariants       Number of variants in the block
+     * @param compressedLengths Compressed size of each section, 0 if absent
+     * @param lengths           Uncompressed size of each section, 0 if absent
+     */
+    public VariantProtoBlock(String chromosome, int start, int end, int numVariants, int[] compressedLengths, int[] lengths) {
+        this.chromosome = chromosome;
+        this.start = start;
+        this.end = end;
+        this.numVariants = numVariants;
+        this.compressedLengths = compressedLengths;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Reads a block header.
+     *
+     * @param input Stream positioned at the start of a block
+     * @return The block header, or null at the end of the file
+     * @throws IOException if the header can not be read
+     */
+    public static VariantProtoBlock readFrom(CodedInputStream input) throws IOException {
+        if (input.isAtEnd()) {
+            return null;
+        }
+        String chromosome = input.readString();
+        int start = input.readRawVarint32();
+        int end = input.readRawVarint32();
+        int numVariants = input.readRawVarint32();
+        int[] compressedLengths = new int[NUM_SECTIONS];
+        int[] lengths = new int[NUM_SECTIONS];
+        for (int i = 0; i < NUM_SECTIONS; i++) {
+            compressedLengths[i] = input.readRawVarint32();
+            lengths[i] = input.readRawVarint32();
+        }
+        return new VariantProtoBlock(chromosome, start, end, numVariants, compressedLengths, lengths);
+    }
+
+    public void writeTo(CodedOutputStream output) throws IOException {
+        output.writeStringNoTag(chromosome);
+        output.writeRawVarint32(start);
+        output.writeRawVarint32(end);
+        output.writeRawVarint32(numVariants);
+        for (int i = 0; i < NUM_SECTIONS; i++) {
+            output.writeRawVarint32(compressedLengths[i]);
+            output.writeRawVarint32(lengths[i]);
+        }
+    }
+
+    /**
+     * @param regions Regions to check, or null for all
+     * @return Whether any variant of the block may overlap any of the regions
+     */
+    public boolean overlaps(List<Region> regions) {
+        if (regions == null) {
+            return true;
+        }
+        for (Region region : regions) {
+            if (region.getChromosome().equals(chromosome) && region.getStart() <= end && region.getEnd() >= start) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getChromosome() {
+        return chromosome;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public int getNumVariants() {
+        return numVariants;
+    }
+
+    public int getCompressedLength(int section) {
+        return compressedLengths[section];
+    }
+
+    public int getLength(int section) {
+        return lengths[section];
+    }
+
+    public static void writeKey(CodedOutputStream output, Variant variant, int previousPosition) throws IOException {
+        output.writeSInt32NoTag(variant.getPosition() - previousPosition);
+        output.writeStringNoTag(variant.getReference());
+        output.writeStringNoTag(variant.getAlternate());
+        output.writeStringNoTag(variant.getId() == null ? "" : variant.getId());
+    }
+
+    public static Variant readKey(CodedInputStream input, String chromosome, int previousPosition) throws IOException {
+        int position = previousPosition + input.readSInt32();
+        Variant variant = new Variant(chromosome, position, input.readString(), input.readString());
+        String id = input.readString();
+        variant.setId(id.isEmpty() ? null : id);
+        return variant;
+    }
+
+    /**
+     * Writes the INFO, QUAL, FILTER, FORMAT and sample columns of a variant.
+     *
+     * @param output         Stream to write to
+     * @param variant        Variant to write
+     * @param includeSamples Whether to write the sample columns
+     * @throws IOException if the stream can not be written
+     */
+    public static void writeData(CodedOutputStream output, Variant variant, boolean includeSamples) throws IOException {
+        VariantFieldsProtos.VariantInfo.Builder info = VariantFieldsProtos.VariantInfo.newBuilder();
+        String rawInfo = variant.getRawInfo();
+        if (rawInfo != null) {
+            info.addAllInfo(Arrays.asList(rawInfo.split(";")));
+        } else {
+            for (Map.Entry<String, String> entry : variant.getAttributes().entrySet()) {
+                String key = entry.getKey();
+                if (!key.equalsIgnoreCase("QUAL") && !key.equalsIgnoreCase("FILTER")) {
+                    String value = entry.getValue();
+                    info.addInfo(value == null || value.isEmpty() ? key : key + "=" + value);
+                }
+            }
+        }
+        String filter = variant.getAttribute("FILTER");
+        if (filter != null) {
+            info.addAllFilters(Arrays.asList(filter.split(";")));
+        }
+        String quality = variant.getAttribute("QUAL");
+        if (quality != null) {
+            info.setQuality(quality);
+        }
+        String format = variant.getFormat();
+        if (includeSamples && format != null) {
+            info.addAllFormat(Arrays.asList(format.split(":")));
+        }
+        output.writeMessageNoTag(info.build());
+
+        if (!includeSamples || format == null) {
+            output.writeRawVarint32(0);
+            return;
+        }
+
+        VariantSamplesData samplesData = variant.getSamplesDataColumns();
+        if (samplesData != null) {
+            output.writeRawVarint32(samplesData.getNumSamples());
+            for (int i = 0; i < samplesData.getNumSamples(); i++) {
+                writeSample(output, samplesData.getRaw(i));
+            }
+        } else {
+            String[] formatKeys = format.split(":");
+            output.writeRawVarint32(variant.getSamplesData().size());
+            StringBuilder sample = new StringBuilder();
+            for (Map<String, String> data : variant.getSamplesData().values()) {
+                sample.setLength(0);
+                for (int i = 0; i < formatKeys.length; i++) {
+                    String value = data.get(formatKeys[i]);
+                    sample.append(i > 0 ? ":" : "").append(value == null ? VariantSamplesData.MISSING_VALUE : value);
+                }
+                writeSample(output, sample.toString());
+            }
+        }
+    }
+
+    private static void writeSample(CodedOutputStream output, String sample) throws IOException {
+        output.writeMessageNoTag(VariantFieldsProtos.VariantSample.newBuilder().setSample(sample).build());
+    }
+
+    /**
+     * Reads the INFO, QUAL, FILTER, FORMAT and sample columns of a variant.
+     *
+     * @param input       Stream to read from
+     * @param variant     Variant read from the keys section
+     * @param sampleIndex Names of the samples of the file
+     * @throws IOException if the stream can not be read
+     */
+    public static void readData(CodedInputStream input, Variant variant, VariantSamplesData.SampleIndex sampleIndex) throws IOException {
+        VariantFieldsProtos.VariantInfo.Builder info = VariantFieldsProtos.VariantInfo.newBuilder();
+        input.readMessage(info, ExtensionRegistryLite.getEmptyRegistry());
+        if (info.hasQuality()) {
+            variant.addAttribute("QUAL", info.getQuality());
+        }
+        if (info.getFiltersCount() > 0) {
+            variant.addAttribute("FILTER", Joiner.on(';').join(info.getFiltersList()));
+        }
+        if (info.getInfoCount() > 0) {
+            variant.setRawInfo(Joiner.on(';').join(info.getInfoList()));
+        }
+
+        int numSamples = input.readRawVarint32();
+        if (info.getFormatCount() > 0) {
+            variant.setFormat(Joiner.on(':').join(info.getFormatList()));
+            StringBuilder samples = new StringBuilder();
+            VariantFieldsProtos.VariantSample.Builder sample = VariantFieldsProtos.VariantSample.newBuilder();
+            for (int i = 0; i < numSamples; i++) {
+                sample.clear();
+                input.readMessage(sample, ExtensionRegistryLite.getEmptyRegistry());
+                samples.append(i > 0 ? "\t" : "").append(sample.getSample());
+            }
+            byte[] raw = samples.toString().getBytes(StandardCharsets.UTF_8);
+            variant.setSamplesDataColumns(new VariantSamplesData(sampleIndex, variant.getFormat(), raw));
+        }
+    }
+
+    public static void writeStats(CodedOutputStream output, VariantStats stats) throws IOException {
+        output.writeBoolNoTag(stats != null);
+        if (stats == null) {
+            return;
+        }
+
+        VariantFieldsProtos.VariantStats.Builder builder = VariantFieldsProtos.VariantStats.newBuilder()
+                .setNumAlleles(stats.getNumAlleles())
+                .setMafAllele(stats.getMafAllele() == null ? "" : stats.getMafAllele())
+                .setMgfGenotype(stats.getMgfAllele() == null ? "" : stats.getMgfAllele())
+                .setMaf(stats.getMaf())
+                .setMgf(stats.getMgf())
+                .setMissingAlleles(stats.getMissingAlleles())
+                .setMissingGenotypes(stats.getMissingGenotypes())
+                .setMendelianErrors(stats.getMendelinanErrors())
+                .setIsIndel(stats.isIndel())
+                .setCasesPercentDominant(stats.getCasesPercentDominant())
+                .setControlsPercentDominant(stats.getControlsPercentDominant())
+                .setCasesPercentRecessive(stats.getCasesPercentRecessive())
+                .setControlsPercentRecessive(stats.getControlsPercentRecessive());
+        if (stats.getAllelesCount() != null) {
+            for (int count : stats.getAllelesCount()) {
+                builder.addAllelesCount(count);
+            }
+        }
+        if (stats.getGenotypesCount() != null) {
+            for (int count : stats.getGenotypesCount()) {
+                builder.addGenotypesCount(count);
+            }
+        }
+        if (stats.getAllelesFreq() != null) {
+            for (float freq : stats.getAllelesFreq()) {
+                builder.addAllelesFreq(freq);
+            }
+        }
+        if (stats.getGenotypesFreq() != null) {
+            for (float freq : stats.getGenotypesFreq()) {
+                builder.addGenotypesFreq(freq);
+            }
+        }
+        if (stats.getHw() != null) {
+            builder.setHardyWeinberg(stats.getHw().getpValue());
+        }
+        output.writeMessageNoTag(builder.build());
+    }
+
+    /**
+     * Reads the stats of a variant. The list of genotypes is not stored, only the counts of each genotype.
+     *
+     * @param input   Stream to read from
+     * @param variant Variant read from the keys section
+     * @throws IOException if the stream can not be read
+     */
+    public static void readStats(CodedInputStream input, Variant variant) throws IOException {
+        if (!input.readBool()) {
+            return;
+        }
+        VariantFieldsProtos.VariantStats.Builder builder = VariantFieldsProtos.VariantStats.newBuilder();
+        input.readMessage(builder, ExtensionRegistryLite.getEmptyRegistry());
+
+        VariantStats stats = new VariantStats();
+        stats.setChromosome(variant.getChromosome());
+        stats.setPosition(variant.getPosition());
+        stats.setRefAllele(variant.getReference());
+        stats.setAltAlleles(variant.getAltAlleles());
+        stats.setNumAlleles(builder.getNumAlleles());
+        stats.setMafAllele(builder.getMafAllele());
+        stats.setMgfAllele(builder.getMgfGenotype());
+        stats.setMaf(builder.getMaf());
+        stats.setMgf(builder.getMgf());
+        stats.setMissingAlleles(builder.getMissingAlleles());
+        stats.setMissingGenotypes(builder.getMissingGenotypes());
+        stats.setMendelinanErrors(builder.getMendelianErrors());
+        stats.setIndel(builder.getIsIndel());
+        stats.setCasesPercentDominant(builder.getCasesPercentDominant());
+        stats.setControlsPercentDominant(builder.getControlsPercentDominant());
+        stats.setCasesPercentRecessive(builder.getCasesPercentRecessive());
+        stats.setControlsPercentRecessive(builder.getControlsPercentRecessive());
+        stats.setAllelesCount(toIntArray(builder.getAllelesCountList()));
+        stats.setGenotypesCount(toIntArray(builder.getGenotypesCountList()));
+        stats.setAllelesFreq(toFloatArray(builder.getAllelesFreqList()));
+        stats.setGenotypesFreq(toFloatArray(builder.getGenotypesFreqList()));
+        stats.getHw().setpValue(builder.getHardyWeinberg());
+        variant.setStats(stats);
+    }
+
+    private static int[] toIntArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private static float[] toFloatArray(List<Float> values) {
+        float[] array = new float[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,233 @@
+package org.opencb.commons.bioformats.variant.vcf4.io.readers;
+
+import com.google.protobuf.CodedInputStream;
+import org.opencb.commons.bioformats.commons.exception.FileFormatException;
+import org.opencb.commons.bioformats.feature.Region;
+import org.opencb.commons.bioformats.variant.Variant;
+import org.opencb.commons.bioformats.variant.VariantSamplesData;
+import org.opencb.commons.bioformats.variant.vcf4.io.proto.VariantProtoBlock;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads variants from a binary container file written by
+ * {@link org.opencb.commons.bioformats.variant.vcf4.io.writers.VariantProtoDataWriter}.
+ * <p>
+ * When created with a list of regions, the blocks that do not overlap any of them are skipped without decompressing
+ * them, and only the variants overlapping the regions are read, in the same order as in the file. If only the stats are
+ * read, the sample and INFO data is skipped too, and the variants have just their keys and their stats.
+ */
+public class VariantProtoDataReader implements VariantReader {
+
+    private final String filename;
+    private final List<Region> regions;
+    private boolean statsOnly;
+
+    private InputStream inputStream;
+    private CodedInputStream input;
+    private String header;
+    private List<String> sampleNames;
+    private VariantSamplesData.SampleIndex sampleIndex;
+
+    private final Inflater inflater;
+    private final byte[][] sections;
+    private final LinkedList<Variant> pending;
+
+    public VariantProtoDataReader(String filename) {
+        this(filename, null);
+    }
+
+    /**
+     * @param filename Container file
+     * @param regions  Regions to read, or null to read the whole file
+     */
+    public VariantProtoDataReader(String filename, List<Region> regions) {
+        this.filename = filename;
+        this.regions = regions;
+        this.inflater = new Inflater();
+        this.sections = new byte[VariantProtoBlock.NUM_SECTIONS][1 << 16];
+        this.pending = new LinkedList<>();
+    }
+
+    /**
+     * @param statsOnly Read only the keys and the stats of the variants
+     */
+    public void setStatsOnly(boolean statsOnly) {
+        this.statsOnly = statsOnly;
+    }
+
+    @Override
+    public boolean open() {
+        try {
+            inputStream = new FileInputStream(filename);
+            input = CodedInputStream.newInstance(inputStream);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean pre() {
+        try {
+            byte[] magic = input.readRawBytes(VariantProtoBlock.MAGIC.length);
+            if (!Arrays.equals(magic, VariantProtoBlock.MAGIC)) {
+                throw new FileFormatException("Not a variant container file: " + filename);
+            }
+            header = input.readString();
+            int numSamples = input.readRawVarint32();
+            sampleNames = new ArrayList<>(numSamples);
+            for (int i = 0; i < numSamples; i++) {
+                sampleNames.add(input.readString());
+            }
+            sampleNames = Collections.unmodifiableList(sampleNames);
+            sampleIndex = new VariantSamplesData.SampleIndex(sampleNames);
+        } catch (IOException | FileFormatException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public List<Variant> read() {
+        List<Variant> batch = read(1);
+        return batch.isEmpty() ? null : batch;
+    }
+
+    @Override
+    public List<Variant> read(int batchSize) {
+        List<Variant> batch = new ArrayList<>(batchSize);
+        try {
+            while (batch.size() < batchSize) {
+                if (pending.isEmpty() && !readBlock()) {
+                    break;
+                }
+                batch.add(pending.poll());
+            }
+        } catch (IOException | DataFormatException e) {
+            e.printStackTrace();
+        }
+        return batch;
+    }
+
+    /**
+     * Decodes the next block overlapping the regions into the pending variants.
+     *
+     * @return false at the end of the file
+     */
+    private boolean readBlock() throws IOException, DataFormatException {
+        while (pending.isEmpty()) {
+            // The limit of the stream applies to each block
+            input.resetSizeCounter();
+            VariantProtoBlock block = VariantProtoBlock.readFrom(input);
+            if (block == null) {
+                return false;
+            }
+            if (!block.overlaps(regions)) {
+                skipSections(block, 0, VariantProtoBlock.NUM_SECTIONS);
+                continue;
+            }
+
+            CodedInputStream keys = readSection(block, VariantProtoBlock.KEYS);
+            CodedInputStream data = null;
+            if (statsOnly) {
+                skipSections(block, VariantProtoBlock.DATA, VariantProtoBlock.DATA + 1);
+            } else {
+                data = readSection(block, VariantProtoBlock.DATA);
+            }
+            CodedInputStream stats = readSection(block, VariantProtoBlock.STATS);
+
+            int previousPosition = 0;
+            for (int i = 0; i < block.getNumVariants(); i++) {
+                Variant variant = VariantProtoBlock.readKey(keys, block.getChromosome(), previousPosition);
+                previousPosition = variant.getPosition();
+                if (data != null) {
+                    VariantProtoBlock.readData(data, variant, sampleIndex);
+                }
+                if (stats != null) {
+                    VariantProtoBlock.readStats(stats, variant);
+                }
+                if (overlaps(variant)) {
+                    pending.add(variant);
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean overlaps(Variant variant) {
+        if (regions == null) {
+            return true;
+        }
+        for (Region region : regions) {
+            if (region.getChromosome().equals(variant.getChromosome()) && variant.getPosition() <= region.getEnd()
+                    && variant.getPosition() + variant.getReference().length() - 1 >= region.getStart()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void skipSections(VariantProtoBlock block, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            input.skipRawBytes(block.getCompressedLength(i));
+        }
+    }
+
+    /**
+     * @return Stream of the decompressed section, or null if the block does not have it
+     */
+    private CodedInputStream readSection(VariantProtoBlock block, int section) throws IOException, DataFormatException {
+        int compressedLength = block.getCompressedLength(section);
+        int length = block.getLength(section);
+        if (compressedLength == 0) {
+            return null;
+        }
+        byte[] compressed = input.readRawBytes(compressedLength);
+        if (sections[section].length < length) {
+            sections[section] = new byte[length];
+        }
+
+        inflater.reset();
+        inflater.setInput(compressed);
+        int inflated = 0;
+        while (inflated < length && !inflater.finished()) {
+            inflated += inflater.inflate(sections[section], inflated, length - inflated);
+        }
+        return CodedInputStream.newInstance(sections[section], 0, length);
+    }
+
+    @Override
+    public boolean close() {
+        inflater.end();
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean post() {
+        return true;
+    }
+
+    @Override
+    public List<String> getSampleNames() {
+        return sampleNames;
+    }
+
+    @Override
+    public String getHeader() {
+        return header;
+    }
+}
@@ -3,13 +3,15 @@ package org.opencb.commons.bioformats.variant.vcf4.io.readers;
 import com.google.common.base.Predicate;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import net.sf.samtools.util.BlockCompressedInputStream;
 import org.opencb.commons.bioformats.commons.exception.FileFormatException;
+import org.opencb.commons.bioformats.feature.Region;
 import org.opencb.commons.bioformats.variant.Variant;
 import org.opencb.commons.bioformats.variant.VariantFactory;
 import org.opencb.commons.bioformats.variant.vcf4.*;
 
 import java.io.*;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -22,18 +24,71 @@ import java.util.zip.GZIPInputStream;
  * Date: 8/30/13
  * Time: 12:24 PM
  * To change this template use File | Settings | File Templates.
+ * <p>
+ * When created with a list of regions, the file must be bgzipped and indexed with tabix, and only the variants
+ * overlapping those regions are read, in the same order as the regions. The reader seeks to the first block of each
+ * region through the index, so the rest of the file is never decompressed.
+ * <p>
+ * A reader can also read only a shard of a file, see {@link VariantVcfShardedReader}.
  */
 public class VariantVcfReader implements VariantReader {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private Vcf4 vcf4;
-    private BufferedReader reader;
+    private InputStream inputStream;
     private Path path;
     private String filename;
 
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferPosition = 0;
+    private int bufferLimit = 0;
+    private byte[] line = new byte[1024];
+    private VcfLineTokenizer tokenizer = new VcfLineTokenizer();
+
+    private List<Region> regions;
+    private VcfTabixIndex index;
+    private int regionIndex;
+    private boolean inRegion;
+    private byte[] regionChromosome;
+
+    // Shard of the file. Positions are byte offsets, or virtual offsets if the file is bgzipped
+    private long shardStart = -1;
+    private long shardEnd = Long.MAX_VALUE;
+    private boolean blockCompressed;
+    private long fillStart;
+
     public VariantVcfReader(String filename) {
         this.filename = filename;
     }
 
+    /**
+     * Creates a reader of a shard of a file, whose header has already been parsed. The shard has the lines starting
+     * after the start position, and before or at the end position.
+     *
+     * @param filename        VCF file
+     * @param vcf4            Header of the file
+     * @param blockCompressed Whether the file is bgzipped and the positions are virtual offsets
+     * @param start           Start position of the shard
+     * @param end             End position of the shard
+     */
+    VariantVcfReader(String filename, Vcf4 vcf4, boolean blockCompressed, long start, long end) {
+        this.filename = filename;
+        this.vcf4 = vcf4;
+        this.blockCompressed = blockCompressed;
+        this.shardStart = start;
+        this.shardEnd = end;
+    }
+
+    /**
+     * @param filename Bgzipped VCF file, indexed with tabix
+     * @param regions  Regions to read the variants from
+     */
+    public VariantVcfReader(String filename, List<Region> regions) {
+        this.filename = filename;
+        this.regions = regions;
+    }
+
     @Override
     public boolean open() {
 
@@ -41,24 +96,65 @@ public class VariantVcfReader implements VariantReader {
             this.path = Paths.get(this.filename);
             Files.exists(this.path);
 
+            if (shardStart >= 0) {
+                openShard();
+                return true;
+            }
+
             vcf4 = new Vcf4();
-            if (path.toFile().getName().endsWith(".gz")) {
-                this.reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(path.toFile()))));
+            if (regions != null) {
+                this.index = VcfTabixIndex.read(new File(filename + VcfTabixIndex.EXTENSION));
+                this.inputStream = new BlockCompressedInputStream(path.toFile());
+                regionIndex = -1;
+                inRegion = false;
+            } else if (path.toFile().getName().endsWith(".gz")) {
+                this.inputStream = new GZIPInputStream(new FileInputStream(path.toFile()), BUFFER_SIZE);
             } else {
-                this.reader = Files.newBufferedReader(path, Charset.defaultCharset());
+                this.inputStream = new FileInputStream(path.toFile());
             }
+            bufferPosition = 0;
+            bufferLimit = 0;
 
         } catch (IOException e) {
             e.printStackTrace();
+            return regions == null;
         }
 
 
         return true;
     }
 
+    private void openShard() throws IOException {
+        if (blockCompressed) {
+            BlockCompressedInputStream blockCompressedInputStream = new BlockCompressedInputStream(path.toFile());
+            blockCompressedInputStream.seek(shardStart);
+            this.inputStream = blockCompressedInputStream;
+        } else if (path.toFile().getName().endsWith(".gz")) {
+            // Plain gzip can not be split
+            this.inputStream = new GZIPInputStream(new FileInputStream(path.toFile()), BUFFER_SIZE);
+        } else {
+            FileInputStream fileInputStream = new FileInputStream(path.toFile());
+            fileInputStream.getChannel().position(shardStart);
+            this.inputStream = fileInputStream;
+        }
+        bufferPosition = 0;
+        bufferLimit = 0;
+        fillStart = shardStart;
+
+        if (shardStart > 0) {
+            // The line in progress, or starting at the shard start, belongs to the previous shard
+            readLine();
+        }
+    }
+
     @Override
     public boolean pre() {
 
+        if (shardStart >= 0) {
+            // Header already parsed
+            return true;
+        }
+
         try {
             processHeader();
         } catch (IOException | FileFormatException e) {
@@ -71,7 +167,7 @@ public class VariantVcfReader implements VariantReader {
     @Override
     public boolean close() {
         try {
-            reader.close();
+            inputStream.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -85,20 +181,20 @@ public class VariantVcfReader implements VariantReader {
 
     @Override
     public List<Variant> read() {
-        String line;
+        int length;
         try {
-            while ((line = reader.readLine()) != null && (line.trim().equals("") || line.startsWith("#"))) {
-                ;
+            if (regions != null) {
+                length = readRegionLine();
+            } else {
+                length = readDataLine();
             }
-            if (line != null) {
-                String[] fields = line.split("\t");
+            if (length >= 0) {
                 Variant variant;
 
-
-                if (fields.length >= 8) {
-                    variant = VariantFactory.createVariantFromVcf(vcf4.getSampleNames(), fields);
+                if (tokenizer.getNumFields() >= 8) {
+                    variant = VariantFactory.createVariantFromVcf(vcf4.getSampleIndex(), tokenizer);
                 } else {
-                    throw new IOException("Not enough fields in line (min. 8): " + line);
+                    throw new IOException("Not enough fields in line (min. 8): " + tokenizer.getLine());
                 }
 
                 return Arrays.asList(variant);
@@ -111,6 +207,161 @@ public class VariantVcfReader implements VariantReader {
         return null;
     }
 
+    /**
+     * Reads and tokenizes the next data line, skipping header and blank lines.
+     *
+     * @return Length of the line, or -1 at the end of the file or shard
+     * @throws IOException if the file can not be read
+     */
+    private int readDataLine() throws IOException {
+        int length;
+        do {
+            if (peek() < 0 || fillStart + bufferPosition > shardEnd) {
+                return -1;
+            }
+            length = readLine();
+        } while (length >= 0 && (isBlank(length) || line[0] == '#'));
+
+        if (length >= 0) {
+            tokenizer.tokenize(line, 0, length);
+        }
+        return length;
+    }
+
+    /**
+     * Reads and tokenizes the next line overlapping the current region, moving to the next regions when needed.
+     *
+     * @return Length of the line, or -1 when there are no more regions
+     * @throws IOException if the file can not be read
+     */
+    private int readRegionLine() throws IOException {
+        while (true) {
+            if (!inRegion) {
+                if (++regionIndex >= regions.size()) {
+                    return -1;
+                }
+                Region region = regions.get(regionIndex);
+                long offset = region == null ? -1 : index.getStartOffset(region.getChromosome(), region.getStart(), region.getEnd());
+                if (offset < 0) {
+                    continue;
+                }
+                ((BlockCompressedInputStream) inputStream).seek(offset);
+                bufferPosition = 0;
+                bufferLimit = 0;
+                regionChromosome = region.getChromosome().getBytes(StandardCharsets.UTF_8);
+                inRegion = true;
+            }
+
+            int length = readLine();
+            if (length < 0) {
+                inRegion = false;
+                continue;
+            }
+            if (isBlank(length) || line[0] == '#') {
+                continue;
+            }
+            tokenizer.tokenize(line, 0, length);
+            Region region = regions.get(regionIndex);
+            long position = tokenizer.getInt(1);
+            // Records are sorted, so the region ends at the first record of other chromosome or after its end
+            if (!isRegionChromosome() || position > region.getEnd()) {
+                inRegion = false;
+                continue;
+            }
+            if (position + Math.max(1, tokenizer.getFieldLength(3)) - 1 >= region.getStart()) {
+                return length;
+            }
+        }
+    }
+
+    private boolean isRegionChromosome() {
+        int start = tokenizer.getFieldStart(0);
+        if (tokenizer.getFieldEnd(0) - start != regionChromosome.length) {
+            return false;
+        }
+        byte[] buffer = tokenizer.getBuffer();
+        for (int i = 0; i < regionChromosome.length; i++) {
+            if (buffer[start + i] != regionChromosome[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the next byte of the file without consuming it.
+     *
+     * @return Next byte, or -1 at the end of the file
+     * @throws IOException if the file can not be read
+     */
+    private int peek() throws IOException {
+        if (bufferPosition == bufferLimit && !fill()) {
+            return -1;
+        }
+        return buffer[bufferPosition];
+    }
+
+    /**
+     * Reads the next bytes of the file into the buffer. The position of the first byte of the buffer is kept, as a
+     * virtual offset if the file is bgzipped, in which case a single block is read each time.
+     *
+     * @return false at the end of the file
+     * @throws IOException if the file can not be read
+     */
+    private boolean fill() throws IOException {
+        int length = buffer.length;
+        if (blockCompressed) {
+            length = Math.min(length, inputStream.available());
+            fillStart = ((BlockCompressedInputStream) inputStream).getFilePointer();
+        } else {
+            fillStart += bufferLimit;
+        }
+        bufferLimit = length > 0 ? inputStream.read(buffer, 0, length) : -1;
+        bufferPosition = 0;
+        if (bufferLimit <= 0) {
+            bufferLimit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the next line into the line buffer, without the line terminator.
+     *
+     * @return Length of the line, or -1 at the end of the file
+     * @throws IOException if the file can not be read
+     */
+    private int readLine() throws IOException {
+        int length = 0;
+        while (true) {
+            if (bufferPosition == bufferLimit && !fill()) {
+                return length > 0 ? length : -1;
+            }
+            int newLine = VcfLineTokenizer.indexOf(buffer, bufferPosition, bufferLimit, (byte) '\n');
+            int chunk = newLine - bufferPosition;
+            if (length + chunk > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, length + chunk));
+            }
+            System.arraycopy(buffer, bufferPosition, line, length, chunk);
+            length += chunk;
+            bufferPosition = newLine;
+            if (newLine < bufferLimit) {
+                // Skip the '\n'
+                bufferPosition++;
+                return length;
+            }
+        }
+    }
+
+    private boolean isBlank(int length) {
+        for (int i = 0; i < length; i++) {
+            if (line[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
 
     @Override
     public List<Variant> read(int batchSize) {
@@ -126,6 +377,10 @@ public class VariantVcfReader implements VariantReader {
         return listRecords;
     }
 
+    Vcf4 getVcf4() {
+        return vcf4;
+    }
+
     @Override
     public List<String> getSampleNames() {
         return this.vcf4.getSampleNames();
@@ -171,18 +426,15 @@ public class VariantVcfReader implements VariantReader {
         List<String> headerLine;
         String line;
         String[] fields;
+        int length;
 
-        BufferedReader localBufferedReader;
-
-        if (Files.probeContentType(path).contains("gzip")) {
-            localBufferedReader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(path.toFile()))));
-        } else {
-            localBufferedReader = new BufferedReader(new FileReader(path.toFile()));
-        }
-
-
+        // The header is read from the same stream as the variants, which start right after it
         boolean header = false;
-        while ((line = localBufferedReader.readLine()) != null && line.startsWith("#")) {
+        while (peek() == '#' && (length = readLine()) >= 0) {
+            if (length > 0 && this.line[length - 1] == '\r') {
+                length--;
+            }
+            line = VcfLineTokenizer.toString(this.line, 0, length);
 
             if (line.startsWith("##fileformat")) {
                 if (line.split("=").length > 1) {
@@ -217,7 +469,6 @@ public class VariantVcfReader implements VariantReader {
             System.err.println("VCF Header must be provided.");
             System.exit(-1);
         }
-        localBufferedReader.close();
     }
 
 
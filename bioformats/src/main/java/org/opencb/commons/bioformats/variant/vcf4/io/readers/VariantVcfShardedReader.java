@@ -0,0 +1,276 @@
+package org.opencb.commons.bioformats.variant.vcf4.io.readers;
+
+import net.sf.samtools.util.BlockCompressedInputStream;
+import org.opencb.commons.bioformats.variant.Variant;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Reads a VCF file with several threads, each one parsing a contiguous shard of the file.
+ * <p>
+ * The header is parsed once, and the rest of the file is split in shards of about the same size. Uncompressed files
+ * are split at any byte, and bgzipped files at the start of a BGZF block. Each shard reads the lines starting after its
+ * start position, up to the last line starting at or before its end, so every line is read by exactly one shard. Files
+ * compressed with plain gzip can not be split and are read by a single shard.
+ * <p>
+ * The shards can be read independently through {@link #getShards()}, or with {@link #read(int)}, which parses all of
+ * them in parallel. If the reader is ordered, the variants are returned in the same order as in the file; otherwise
+ * every batch is returned as soon as it is parsed.
+ */
+public class VariantVcfShardedReader implements VariantReader {
+
+    private static final int BATCHES_PER_SHARD = 4;
+    private static final int BLOCK_HEADER_SIZE = 18;
+    private static final int MAX_BLOCK_SIZE = 64 * 1024;
+    private static final List<Variant> END_OF_SHARD = new ArrayList<>(0);
+
+    private final String filename;
+    private final int numShards;
+    private final boolean ordered;
+
+    private VariantVcfReader headerReader;
+    private List<VariantVcfReader> shards;
+
+    private ExecutorService executorService;
+    private List<BlockingQueue<List<Variant>>> queues;
+    private int currentQueue;
+    private int finishedShards;
+    private volatile RuntimeException error;
+
+    /**
+     * @param filename  VCF file, uncompressed or bgzipped to be split
+     * @param numShards Number of shards, and of threads reading them
+     * @param ordered   Return the variants in the same order as in the file
+     */
+    public VariantVcfShardedReader(String filename, int numShards, boolean ordered) {
+        this.filename = filename;
+        this.numShards = numShards;
+        this.ordered = ordered;
+    }
+
+    @Override
+    public boolean open() {
+        headerReader = new VariantVcfReader(filename);
+        if (!headerReader.open()) {
+            return false;
+        }
+        boolean res = headerReader.pre();
+        headerReader.close();
+        if (!res) {
+            return false;
+        }
+
+        try {
+            File file = new File(filename);
+            boolean blockCompressed;
+            try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+                blockCompressed = BlockCompressedInputStream.isValidFile(inputStream);
+            }
+
+            List<Long> boundaries;
+            if (blockCompressed) {
+                boundaries = getBlockBoundaries(file, numShards);
+            } else if (filename.endsWith(".gz")) {
+                boundaries = Arrays.asList(0L, Long.MAX_VALUE);
+            } else {
+                boundaries = getByteBoundaries(file, numShards);
+            }
+
+            shards = new ArrayList<>(boundaries.size() - 1);
+            for (int i = 0; i < boundaries.size() - 1; i++) {
+                // Lines starting at the first position of the next shard belong to this one
+                VariantVcfReader shard = new VariantVcfReader(filename, headerReader.getVcf4(), blockCompressed,
+                        boundaries.get(i), boundaries.get(i + 1));
+                if (!shard.open()) {
+                    return false;
+                }
+                shards.add(shard);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        return true;
+    }
+
+    private static List<Long> getByteBoundaries(File file, int numShards) {
+        long length = file.length();
+        List<Long> boundaries = new ArrayList<>(numShards + 1);
+        boundaries.add(0L);
+        for (int i = 1; i < numShards; i++) {
+            long boundary = length / numShards * i;
+            if (boundary > boundaries.get(boundaries.size() - 1)) {
+                boundaries.add(boundary);
+            }
+        }
+        boundaries.add(Long.MAX_VALUE);
+        return boundaries;
+    }
+
+    private static List<Long> getBlockBoundaries(File file, int numShards) throws IOException {
+        List<Long> boundaries = new ArrayList<>(numShards + 1);
+        boundaries.add(0L);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            long length = randomAccessFile.length();
+            byte[] window = new byte[2 * MAX_BLOCK_SIZE + BLOCK_HEADER_SIZE];
+            for (int i = 1; i < numShards; i++) {
+                long blockAddress = findBlock(randomAccessFile, length, length / numShards * i, window);
+                if (blockAddress < 0) {
+                    break;
+                }
+                // Virtual offset of the start of the block
+                long boundary = blockAddress << 16;
+                if (boundary > boundaries.get(boundaries.size() - 1)) {
+                    boundaries.add(boundary);
+                }
+            }
+        }
+        boundaries.add(Long.MAX_VALUE);
+        return boundaries;
+    }
+
+    /**
+     * Finds the first BGZF block starting at or after a position. A block header is only accepted if it is followed by
+     * another block header, or by the end of the file, so compressed data that looks like a header is skipped.
+     *
+     * @return Address of the block, or -1 if there is none
+     */
+    private static long findBlock(RandomAccessFile file, long length, long from, byte[] window) throws IOException {
+        file.seek(from);
+        int n = 0;
+        int read;
+        while (n < window.length && (read = file.read(window, n, window.length - n)) > 0) {
+            n += read;
+        }
+
+        for (int i = 0; i + BLOCK_HEADER_SIZE <= n; i++) {
+            if (isBlockHeader(window, i)) {
+                int blockSize = ((window[i + 16] & 0xff) | (window[i + 17] & 0xff) << 8) + 1;
+                int next = i + blockSize;
+                if (from + next == length || (next + BLOCK_HEADER_SIZE <= n && isBlockHeader(window, next))) {
+                    return from + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isBlockHeader(byte[] b, int i) {
+        return b[i] == 0x1f && b[i + 1] == (byte) 0x8b && b[i + 2] == 8 && b[i + 3] == 4
+                && b[i + 10] == 6 && b[i + 11] == 0
+                && b[i + 12] == 'B' && b[i + 13] == 'C' && b[i + 14] == 2 && b[i + 15] == 0;
+    }
+
+    /**
+     * @return Readers of each shard of the file, already opened and sharing the header of the file
+     */
+    public List<VariantReader> getShards() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    @Override
+    public List<Variant> read(int batchSize) {
+        if (executorService == null) {
+            start(batchSize);
+        }
+
+        try {
+            while (true) {
+                if (ordered) {
+                    if (currentQueue == queues.size()) {
+                        return new ArrayList<>();
+                    }
+                    List<Variant> batch = queues.get(currentQueue).take();
+                    if (batch != END_OF_SHARD) {
+                        return batch;
+                    }
+                    checkError();
+                    currentQueue++;
+                } else {
+                    if (finishedShards == shards.size()) {
+                        return new ArrayList<>();
+                    }
+                    List<Variant> batch = queues.get(0).take();
+                    if (batch != END_OF_SHARD) {
+                        return batch;
+                    }
+                    checkError();
+                    finishedShards++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ArrayList<>();
+        }
+    }
+
+    private void start(final int batchSize) {
+        queues = new ArrayList<>();
+        if (ordered) {
+            for (int i = 0; i < shards.size(); i++) {
+                queues.add(new ArrayBlockingQueue<List<Variant>>(BATCHES_PER_SHARD));
+            }
+        } else {
+            queues.add(new ArrayBlockingQueue<List<Variant>>(BATCHES_PER_SHARD * shards.size()));
+        }
+
+        executorService = Executors.newFixedThreadPool(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            final VariantVcfReader shard = shards.get(i);
+            final BlockingQueue<List<Variant>> queue = queues.get(ordered ? i : 0);
+            executorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        List<Variant> batch;
+                        while (!(batch = shard.read(batchSize)).isEmpty()) {
+                            queue.put(batch);
+                        }
+                    } catch (RuntimeException e) {
+                        error = e;
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    try {
+                        queue.put(END_OF_SHARD);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            });
+        }
+        executorService.shutdown();
+    }
+
+    private void checkError() {
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    @Override
+    public boolean close() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+        boolean res = true;
+        if (shards != null) {
+            for (VariantVcfReader shard : shards) {
+                res &= shard.close();
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public List<String> getSampleNames() {
+        return headerReader.getSampleNames();
+    }
+
+    @Override
+    public String getHeader() {
+        return headerReader.getHeader();
+    }
+}
@@ -0,0 +1,231 @@
+package org.opencb.commons.bioformats.variant.vcf4.io.writers;
+
+import com.google.protobuf.CodedOutputStream;
+import org.opencb.commons.bioformats.variant.Variant;
+import org.opencb.commons.bioformats.variant.vcf4.io.proto.VariantProtoBlock;
+import org.opencb.commons.bioformats.variant.vcf4.io.readers.VariantReader;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes variants to a binary container file of compressed blocks of protobuf messages, see {@link VariantProtoBlock}.
+ * A block is written when it reaches the block size or the chromosome changes, so sorted input gives blocks with
+ * small position ranges that can be skipped when reading by region.
+ */
+public class VariantProtoDataWriter implements VariantWriter {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1000;
+
+    private final String filename;
+    private final VariantReader reader;
+    private final int blockSize;
+    private boolean includeSamples = true;
+    private boolean includeStats = true;
+
+    private OutputStream outputStream;
+    private CodedOutputStream output;
+    private final List<Variant> block;
+    private final ByteArrayOutputStream[] sections;
+    private final Deflater deflater;
+    private byte[] compressed;
+
+    public VariantProtoDataWriter(VariantReader reader, String filename) {
+        this(reader, filename, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param reader    Reader of the variants, used to write the header and the sample names
+     * @param filename  File to write
+     * @param blockSize Maximum number of variants per block
+     */
+    public VariantProtoDataWriter(VariantReader reader, String filename, int blockSize) {
+        this.filename = filename;
+        this.reader = reader;
+        this.blockSize = blockSize;
+        this.block = new ArrayList<>(blockSize);
+        this.sections = new ByteArrayOutputStream[VariantProtoBlock.NUM_SECTIONS];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = new ByteArrayOutputStream();
+        }
+        this.deflater = new Deflater();
+        this.compressed = new byte[1 << 16];
+    }
+
+    @Override
+    public boolean open() {
+
+        boolean res = true;
+        try {
+            outputStream = new BufferedOutputStream(new FileOutputStream(filename), 1 << 16);
+            output = CodedOutputStream.newInstance(outputStream);
+        } catch (IOException e) {
+            e.printStackTrace();
+            res = false;
+        }
+
+        return res;
+    }
+
+    @Override
+    public boolean close() {
+
+        boolean res = true;
+        try {
+            writeBlock();
+            output.flush();
+            outputStream.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            res = false;
+        }
+        deflater.end();
+
+        return res;
+    }
+
+    @Override
+    public boolean pre() {
+
+        boolean res = true;
+        try {
+            output.writeRawBytes(VariantProtoBlock.MAGIC);
+            output.writeStringNoTag(reader.getHeader());
+            List<String> sampleNames = reader.getSampleNames();
+            output.writeRawVarint32(sampleNames.size());
+            for (String sampleName : sampleNames) {
+                output.writeStringNoTag(sampleName);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            res = false;
+        }
+        return res;
+    }
+
+    @Override
+    public boolean post() {
+        boolean res = true;
+        try {
+            writeBlock();
+            output.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+            res = false;
+        }
+        return res;
+    }
+
+    @Override
+    public boolean write(Variant elem) {
+
+        boolean res = true;
+        try {
+            if (!block.isEmpty() && (block.size() == blockSize || !block.get(0).getChromosome().equals(elem.getChromosome()))) {
+                writeBlock();
+            }
+            block.add(elem);
+        } catch (IOException e) {
+            e.printStackTrace();
+            res = false;
+        }
+        return res;
+    }
+
+    @Override
+    public boolean write(List<Variant> batch) {
+
+        for (Variant record : batch) {
+            if (!write(record)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void writeBlock() throws IOException {
+        if (block.isEmpty()) {
+            return;
+        }
+
+        for (ByteArrayOutputStream section : sections) {
+            section.reset();
+        }
+        CodedOutputStream keys = CodedOutputStream.newInstance(sections[VariantProtoBlock.KEYS]);
+        CodedOutputStream data = CodedOutputStream.newInstance(sections[VariantProtoBlock.DATA]);
+        CodedOutputStream stats = CodedOutputStream.newInstance(sections[VariantProtoBlock.STATS]);
+
+        int start = Integer.MAX_VALUE;
+        int end = 0;
+        int previousPosition = 0;
+        boolean hasStats = false;
+        for (Variant variant : block) {
+            VariantProtoBlock.writeKey(keys, variant, previousPosition);
+            VariantProtoBlock.writeData(data, variant, includeSamples);
+            VariantProtoBlock.writeStats(stats, includeStats ? variant.getStats() : null);
+            hasStats |= includeStats && variant.getStats() != null;
+
+            previousPosition = variant.getPosition();
+            start = Math.min(start, variant.getPosition());
+            end = Math.max(end, variant.getPosition() + variant.getReference().length() - 1);
+        }
+        keys.flush();
+        data.flush();
+        stats.flush();
+        if (!hasStats) {
+            sections[VariantProtoBlock.STATS].reset();
+        }
+
+        // Sections are compressed one after the other in the same buffer
+        int[] compressedLengths = new int[VariantProtoBlock.NUM_SECTIONS];
+        int[] lengths = new int[VariantProtoBlock.NUM_SECTIONS];
+        int offset = 0;
+        for (int i = 0; i < sections.length; i++) {
+            lengths[i] = sections[i].size();
+            if (lengths[i] > 0) {
+                compressedLengths[i] = compress(sections[i].toByteArray(), offset);
+                offset += compressedLengths[i];
+            }
+        }
+
+        new VariantProtoBlock(block.get(0).getChromosome(), start, end, block.size(), compressedLengths, lengths).writeTo(output);
+        output.writeRawBytes(compressed, 0, offset);
+        block.clear();
+    }
+
+    private int compress(byte[] bytes, int offset) {
+        deflater.reset();
+        deflater.setInput(bytes);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (offset + length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, offset + length, compressed.length - offset - length);
+        }
+        return length;
+    }
+
+    @Override
+    public void includeStats(boolean stats) {
+        this.includeStats = stats;
+    }
+
+    @Override
+    public void includeSamples(boolean samples) {
+        this.includeSamples = samples;
+    }
+
+    @Override
+    public void includeEffect(boolean effect) {
+    }
+}
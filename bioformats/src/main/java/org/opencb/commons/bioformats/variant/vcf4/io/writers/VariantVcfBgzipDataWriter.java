@@ -0,0 +1,52 @@
+package org.opencb.commons.bioformats.variant.vcf4.io.writers;
+
+
+import net.sf.samtools.util.BlockCompressedOutputStream;
+import org.opencb.commons.bioformats.variant.vcf4.VcfTabixIndex;
+import org.opencb.commons.bioformats.variant.vcf4.io.readers.VariantReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a VCF file compressed with BGZF, so it can be indexed with tabix and read by regions. The variants must be
+ * written sorted by chromosome and position to create the index.
+ */
+public class VariantVcfBgzipDataWriter extends VariantVcfDataWriter {
+
+    private final String filename;
+    private final boolean createIndex;
+
+    /**
+     * @param reader      Reader of the variants, used to write the header
+     * @param filename    File to write
+     * @param createIndex Create the tabix index of the file when it is closed, in filename + ".tbi"
+     */
+    public VariantVcfBgzipDataWriter(VariantReader reader, String filename, boolean createIndex) {
+        super(reader, filename);
+        this.filename = filename;
+        this.createIndex = createIndex;
+    }
+
+    @Override
+    protected OutputStream openOutputStream(String filename) throws IOException {
+        return new BlockCompressedOutputStream(filename);
+    }
+
+    @Override
+    public boolean close() {
+        boolean res = super.close();
+
+        if (res && createIndex) {
+            try {
+                VcfTabixIndex.create(new File(filename)).write(new File(filename + VcfTabixIndex.EXTENSION));
+            } catch (IOException e) {
+                e.printStackTrace();
+                res = false;
+            }
+        }
+
+        return res;
+    }
+}
@@ -0,0 +1,155 @@
+package org.opencb.commons.bioformats.alignment;
+
+import net.sf.samtools.SAMFileHeader;
+import org.junit.Test;
+import org.opencb.commons.bioformats.alignment.io.writers.AlignmentDataWriter;
+import org.opencb.commons.bioformats.alignment.io.writers.AlignmentRegionDataWriter;
+import org.opencb.commons.bioformats.alignment.stats.RegionCoverage;
+import org.opencb.commons.bioformats.alignment.tasks.AlignmentCoverageChunkTask;
+import org.opencb.commons.test.GenericTest;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class AlignmentBatchTest extends GenericTest {
+
+    @Test
+    public void testPackAlignments() {
+        Random random = new Random(3);
+        List<Alignment> alignments = createAlignments(random, 3000);
+        AlignmentBatch batch = new AlignmentBatch("1", 16);
+        for (Alignment alignment : alignments) {
+            batch.add(alignment);
+        }
+
+        assertEquals(alignments.size(), batch.size());
+        assertEquals("1", batch.getChromosome());
+        for (int i = 0; i < alignments.size(); i++) {
+            Alignment alignment = alignments.get(i);
+            assertEquals(alignment, batch.getAlignment(i));
+            assertEquals(alignment.getDifferences().size(), batch.getNumDifferences(i));
+            for (int d = 0; d < batch.getNumDifferences(i); d++) {
+                assertEquals(alignment.getDifferences().get(d).getSeq(), batch.getDifferenceSeq(i, d));
+            }
+            for (int position = 0; position < alignment.getLength(); position++) {
+                assertEquals(alignment.getReadSequence()[position], batch.getBase(i, position));
+                assertEquals(alignment.getQualities().charAt(position), batch.getQuality(i, position));
+            }
+        }
+    }
+
+    @Test
+    public void testMissingValues() {
+        Alignment alignment = new Alignment("read", "1", 10, 19, 10, 19, 10, 255, null, null, 0, 0,
+                Alignment.SEGMENT_UNMAPPED, Collections.<Alignment.AlignmentDifference>emptyList(), null);
+        alignment.setReadSequence("ACGTXacgtN".getBytes());
+        Alignment noSequence = new Alignment("read2", "1", 10, 19, 10, 19, 10, 0, "IIIIIIIIII", "=", 0, 0, 0,
+                Collections.<Alignment.AlignmentDifference>emptyList(), null);
+
+        AlignmentBatch batch = new AlignmentBatch(Arrays.asList(alignment, noSequence));
+        assertNull(batch.getQualities(0));
+        assertNull(batch.getMateReferenceName(0));
+        assertEquals(255, batch.getMappingQuality(0));
+        assertArrayEquals("ACGTNACGTN".getBytes(), batch.getReadSequence(0));
+        assertFalse(batch.hasReadSequence(1));
+        assertNull(batch.getReadSequence(1));
+        assertEquals("IIIIIIIIII", batch.getQualities(1));
+        assertEquals("=", batch.getMateReferenceName(1));
+    }
+
+    @Test
+    public void testPackedCoverage() {
+        Random random = new Random(5);
+        List<Alignment> alignments = createAlignments(random, 2000);
+        AlignmentRegion region = new AlignmentRegion(new ArrayList<>(alignments));
+        region.packAlignments();
+        assertNotNull(region.getAlignmentBatch());
+
+        RegionCoverage expected = AlignmentCoverageChunkTask.coverage(alignments);
+        RegionCoverage coverage = AlignmentCoverageChunkTask.coverage(region.getAlignmentBatch());
+        assertEquals(expected.getStart(), coverage.getStart());
+        assertEquals(expected.getEnd(), coverage.getEnd());
+        assertArrayEquals(expected.getA(), coverage.getA());
+        assertArrayEquals(expected.getC(), coverage.getC());
+        assertArrayEquals(expected.getG(), coverage.getG());
+        assertArrayEquals(expected.getT(), coverage.getT());
+        assertArrayEquals(expected.getAll(), coverage.getAll());
+    }
+
+    @Test
+    public void testUnpackAlignments() {
+        Random random = new Random(5);
+        List<Alignment> alignments = createAlignments(random, 100);
+        AlignmentRegion region = new AlignmentRegion(new ArrayList<>(alignments));
+        region.packAlignments();
+
+        // Consumers that are not batch-aware get the alignments, and their changes are kept
+        List<Alignment> unpacked = region.getAlignments();
+        assertNull(region.getAlignmentBatch());
+        assertEquals(alignments, unpacked);
+        unpacked.get(0).setFlags(Alignment.SEGMENT_UNMAPPED);
+        assertSame(unpacked, region.getAlignments());
+        assertEquals(Alignment.SEGMENT_UNMAPPED, region.getAlignments().get(0).getFlags());
+
+        AlignmentRegion packed = new AlignmentRegion(new ArrayList<>(alignments));
+        packed.packAlignments();
+        final List<Alignment> written = new ArrayList<>();
+        new AlignmentRegionDataWriter(new AlignmentDataWriter<Alignment, SAMFileHeader>() {
+            @Override
+            public boolean writeHeader(SAMFileHeader head) {
+                return true;
+            }
+
+            @Override
+            public boolean write(List<Alignment> batch) {
+                return written.addAll(batch);
+            }
+        }).write(packed);
+        assertEquals(alignments, written);
+    }
+
+    private static List<Alignment> createAlignments(Random random, int number) {
+        List<Alignment> alignments = new ArrayList<>(number);
+        long start = 1000;
+        for (int i = 0; i < number; i++) {
+            start += random.nextInt(20);
+            int length = 50 + random.nextInt(100);
+            byte[] sequence = new byte[length];
+            char[] qualities = new char[length];
+            for (int j = 0; j < length; j++) {
+                sequence[j] = (byte) "ACGTN".charAt(random.nextInt(5));
+                qualities[j] = (char) ('!' + random.nextInt(40));
+            }
+            List<Alignment.AlignmentDifference> differences = new ArrayList<>();
+            int deletionLength = 0;
+            for (int position = random.nextInt(40); position < length - 10; position += 10 + random.nextInt(40)) {
+                switch (random.nextInt(3)) {
+                    case 0:
+                        differences.add(new Alignment.AlignmentDifference(position,
+                                Alignment.AlignmentDifference.MISMATCH, new String(sequence, position, 1)));
+                        break;
+                    case 1:
+                        int deletion = 1 + random.nextInt(5);
+                        differences.add(new Alignment.AlignmentDifference(position,
+                                Alignment.AlignmentDifference.DELETION, deletion));
+                        deletionLength += deletion;
+                        break;
+                    default:
+                        differences.add(new Alignment.AlignmentDifference(position,
+                                Alignment.AlignmentDifference.INSERTION, new String(sequence, position, 3)));
+                        break;
+                }
+            }
+            Map<String, Object> attributes = new HashMap<>();
+            attributes.put("NM", random.nextInt(5));
+            Alignment alignment = new Alignment("read" + i, "1", start, start + length + deletionLength - 1, start,
+                    start + length + deletionLength - 1, length, random.nextInt(61), new String(qualities),
+                    random.nextBoolean() ? "=" : "2", (int) start + random.nextInt(500), random.nextInt(500),
+                    random.nextInt(0x800), differences, attributes);
+            alignment.setReadSequence(sequence);
+            alignments.add(alignment);
+        }
+        return alignments;
+    }
+}
@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import net.sf.samtools.*;
 import net.sf.samtools.util.StringLineReader;
@@ -337,6 +338,52 @@ public class AlignmentHelperTest {
     }
 
 
+    /**
+     * Test of findMismatches method, of class AlignmentHelper, against a comparison base by base.
+     */
+    @Test
+    public void testFindMismatches() {
+        Random random = new Random(3);
+        MismatchBuffer mismatches = new MismatchBuffer(1);
+        for (int round = 0; round < 2000; round++) {
+            int length = random.nextInt(100);
+            int referenceOffset = random.nextInt(10);
+            int readOffset = random.nextInt(10);
+            byte[] reference = new byte[referenceOffset + length + random.nextInt(10)];
+            byte[] read = new byte[readOffset + length + random.nextInt(10)];
+            for (int i = 0; i < reference.length; i++) {
+                reference[i] = (byte) "ACGT".charAt(random.nextInt(4));
+            }
+            int mismatchRate = 1 + random.nextInt(20);
+            for (int i = 0; i < read.length; i++) {
+                int position = i - readOffset + referenceOffset;
+                read[i] = position >= 0 && position < reference.length && random.nextInt(mismatchRate) != 0
+                        ? reference[position] : (byte) "ACGTN".charAt(random.nextInt(5));
+            }
+
+            List<int[]> expected = new LinkedList<>();
+            int runStart = -1;
+            for (int i = 0; i <= length; i++) {
+                if (i < length && reference[referenceOffset + i] != read[readOffset + i]) {
+                    if (runStart < 0) {
+                        runStart = i;
+                    }
+                } else if (runStart >= 0) {
+                    expected.add(new int[]{runStart, i - runStart});
+                    runStart = -1;
+                }
+            }
+
+            mismatches.clear();
+            AlignmentHelper.findMismatches(reference, referenceOffset, read, readOffset, length, mismatches);
+            assertEquals(expected.size(), mismatches.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i)[0], mismatches.getPosition(i));
+                assertEquals(expected.get(i)[1], mismatches.getLength(i));
+            }
+        }
+    }
+
     @Test
     public void getSequenceTest(){
 
@@ -0,0 +1,134 @@
+package org.opencb.commons.bioformats.alignment;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MISMATCH differences of a batch of reads against the reference, found with {@link AlignmentHelper#findMismatches},
+ * that compares 8 bases at a time, and with the base by base charAt loop over substrings used before.
+ * <p>
+ * Both benchmarks build the same differences. AlignmentHelperTest checks that the results are equal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MismatchesBenchmark {
+
+    private static final int REFERENCE_LENGTH = 1000000;
+    private static final int NUM_READS = 10000;
+    private static final String BASES = "ACGT";
+
+    @Param({"100", "250"})
+    private int readLength;
+
+    @Param({"0.001", "0.02"})
+    private double mismatchRate;
+
+    private String referenceString;
+    private byte[] reference;
+    private String[] readStrings;
+    private byte[][] reads;
+    private int[] positions;
+    private MismatchBuffer mismatches;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        char[] bases = new char[REFERENCE_LENGTH];
+        for (int i = 0; i < bases.length; i++) {
+            bases[i] = BASES.charAt(random.nextInt(4));
+        }
+        referenceString = new String(bases);
+        reference = referenceString.getBytes(StandardCharsets.ISO_8859_1);
+
+        readStrings = new String[NUM_READS];
+        reads = new byte[NUM_READS][];
+        positions = new int[NUM_READS];
+        for (int i = 0; i < NUM_READS; i++) {
+            positions[i] = random.nextInt(REFERENCE_LENGTH - readLength);
+            char[] read = referenceString.substring(positions[i], positions[i] + readLength).toCharArray();
+            for (int j = 0; j < read.length; j++) {
+                if (random.nextDouble() < mismatchRate) {
+                    read[j] = BASES.charAt((BASES.indexOf(read[j]) + 1 + random.nextInt(3)) % 4);
+                }
+            }
+            readStrings[i] = new String(read);
+            reads[i] = readStrings[i].getBytes(StandardCharsets.ISO_8859_1);
+        }
+        mismatches = new MismatchBuffer();
+    }
+
+    @Benchmark
+    public void wordXor(Blackhole blackhole) {
+        for (int i = 0; i < NUM_READS; i++) {
+            List<Alignment.AlignmentDifference> differences = new LinkedList<>();
+            byte[] read = reads[i];
+            mismatches.clear();
+            AlignmentHelper.findMismatches(reference, positions[i], read, 0, read.length, mismatches);
+            for (int j = 0; j < mismatches.size(); j++) {
+                differences.add(new Alignment.AlignmentDifference(positions[i] + mismatches.getPosition(j),
+                        Alignment.AlignmentDifference.MISMATCH,
+                        new String(read, mismatches.getPosition(j), mismatches.getLength(j), StandardCharsets.ISO_8859_1)));
+            }
+            blackhole.consume(differences);
+        }
+    }
+
+    @Benchmark
+    public void charAt(Blackhole blackhole) {
+        for (int i = 0; i < NUM_READS; i++) {
+            String subread = readStrings[i].substring(0, Math.min(readLength, readStrings[i].length()));
+            String subref = referenceString.substring(positions[i], positions[i] + readLength);
+            blackhole.consume(getMismatchDiff(subref, subread, positions[i]));
+        }
+    }
+
+    /**
+     * AlignmentHelper.getMismatchDiff before the word-wise comparison.
+     */
+    private static List<Alignment.AlignmentDifference> getMismatchDiff(String referenceSequence, String readSequence, int baseIndex) {
+        List<Alignment.AlignmentDifference> differences = new LinkedList<>();
+        StringBuilder sb = new StringBuilder();
+        int foundIndex = 0;
+        for (int i = 0; i < Math.min(referenceSequence.length(), readSequence.length()); i++) {
+            if (referenceSequence.charAt(i) != readSequence.charAt(i)) {
+                if (sb.length() == 0) {
+                    foundIndex = i;
+                }
+                sb.append(readSequence.charAt(i));
+            } else {
+                if (sb.length() > 0) {
+                    Alignment.AlignmentDifference difference =
+                            new Alignment.AlignmentDifference(baseIndex + foundIndex, Alignment.AlignmentDifference.MISMATCH, sb.toString());
+                    differences.add(difference);
+                    sb.setLength(0);
+                }
+            }
+        }
+
+        // If a mismatch was found at the end, it can't be appended inside the loop
+        if (sb.length() > 0) {
+            Alignment.AlignmentDifference difference =
+                    new Alignment.AlignmentDifference(baseIndex + foundIndex, Alignment.AlignmentDifference.MISMATCH, sb.toString());
+            differences.add(difference);
+        }
+
+        return differences;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MismatchesBenchmark.class.getSimpleName()).build()).run();
+    }
+}
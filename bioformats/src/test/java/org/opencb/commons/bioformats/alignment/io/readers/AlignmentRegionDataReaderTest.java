@@ -0,0 +1,77 @@
+package org.opencb.commons.bioformats.alignment.io.readers;
+
+import net.sf.samtools.SAMFileHeader;
+import org.junit.Test;
+import org.opencb.commons.bioformats.alignment.Alignment;
+import org.opencb.commons.bioformats.alignment.AlignmentRegion;
+import org.opencb.commons.test.GenericTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AlignmentRegionDataReaderTest extends GenericTest {
+
+    @Test
+    public void testReadBatches() {
+        List<Alignment> alignments = new ArrayList<>();
+        for (String chromosome : new String[]{"1", "2"}) {
+            for (int i = 0; i < 250; i++) {
+                // A jump in the middle of each chromosome splits a region by its size
+                long start = 1000 + i * 10 + (i >= 100 ? 100000 : 0);
+                alignments.add(new Alignment("read" + i, chromosome, start, start + 99, start, start + 99, 100, 60,
+                        null, null, 0, 0, 0, Collections.emptyList(), null));
+            }
+        }
+        final Iterator<Alignment> iterator = alignments.iterator();
+        final int[] reads = new int[1];
+        AlignmentDataReader<SAMFileHeader> alignmentDataReader = new AlignmentDataReader<SAMFileHeader>() {
+            @Override
+            public SAMFileHeader getHeader() {
+                return null;
+            }
+
+            @Override
+            public List<Alignment> read(int batchSize) {
+                reads[0]++;
+                List<Alignment> batch = new ArrayList<>(batchSize);
+                while (batch.size() < batchSize && iterator.hasNext()) {
+                    batch.add(iterator.next());
+                }
+                return batch;
+            }
+        };
+
+        AlignmentRegionDataReader reader = new AlignmentRegionDataReader(alignmentDataReader, 60);
+        reader.setReadBatchSize(64);
+        List<AlignmentRegion> regions = new ArrayList<>();
+        List<AlignmentRegion> batch;
+        while (!(batch = reader.read(3)).isEmpty()) {
+            assertTrue(batch.size() <= 3);
+            regions.addAll(batch);
+        }
+        assertTrue(reader.read(3).isEmpty());
+        assertNull(reader.read());
+        assertEquals((alignments.size() + 63) / 64 + 1, reads[0]);
+
+        List<Alignment> read = new ArrayList<>();
+        for (AlignmentRegion region : regions) {
+            List<Alignment> regionAlignments = region.getAlignments();
+            assertTrue(regionAlignments.size() <= 60);
+            for (Alignment alignment : regionAlignments) {
+                assertEquals(region.getChromosome(), alignment.getChromosome());
+                assertTrue(alignment.getUnclippedStart() >= region.getStart());
+                assertTrue(alignment.getUnclippedEnd() <= region.getEnd());
+            }
+            read.addAll(regionAlignments);
+        }
+        assertEquals(alignments, read);
+        // 100 + 150 alignments per chromosome, in regions of at most 60
+        assertEquals(2 * (2 + 3), regions.size());
+        assertFalse(regions.get(1).isOverlapEnd());
+        assertTrue(regions.get(2).isOverlapEnd());
+    }
+}
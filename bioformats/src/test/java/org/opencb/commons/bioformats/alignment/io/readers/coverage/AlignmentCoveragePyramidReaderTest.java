@@ -0,0 +1,89 @@
+package org.opencb.commons.bioformats.alignment.io.readers.coverage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.commons.bioformats.alignment.AlignmentRegion;
+import org.opencb.commons.bioformats.alignment.io.writers.coverage.AlignmentCoveragePyramidWriter;
+import org.opencb.commons.bioformats.alignment.stats.RegionCoverage;
+import org.opencb.commons.test.GenericTest;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class AlignmentCoveragePyramidReaderTest extends GenericTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testQueries() throws Exception {
+        Random random = new Random(11);
+        Map<String, int[]> expected = new LinkedHashMap<>();
+        List<AlignmentRegion> regions = new ArrayList<>();
+        for (String chromosome : new String[]{"1", "2"}) {
+            int[] all = new int[5000 + random.nextInt(500)];
+            int position = random.nextInt(300);
+            while (position < all.length) {
+                int length = Math.min(1 + random.nextInt(400), all.length - position);
+                short[] values = new short[length];
+                for (int i = 0; i < length; i++) {
+                    values[i] = (short) random.nextInt(100);
+                    all[position + i] = values[i];
+                }
+                RegionCoverage coverage = new RegionCoverage(length);
+                coverage.setAll(values);
+                coverage.setStart(position);
+                coverage.setEnd(position + length);
+                regions.add(new AlignmentRegion(chromosome, position, position + length - 1, null, coverage));
+                // Leave some gaps without coverage
+                position += length + (random.nextInt(4) == 0 ? random.nextInt(300) : 0);
+            }
+            expected.put(chromosome, all);
+        }
+
+        String filename = temporaryFolder.newFile("coverage.cov").getAbsolutePath();
+        AlignmentCoveragePyramidWriter writer = new AlignmentCoveragePyramidWriter(filename, 1, 10, 100);
+        assertTrue(writer.open());
+        assertTrue(writer.pre());
+        for (int i = 0; i < regions.size(); i += 3) {
+            assertTrue(writer.write(regions.subList(i, Math.min(i + 3, regions.size()))));
+        }
+        assertTrue(writer.post());
+        assertTrue(writer.close());
+
+        try (AlignmentCoveragePyramidReader reader = new AlignmentCoveragePyramidReader(filename)) {
+            assertArrayEquals(new int[]{1, 10, 100}, reader.getBinSizes());
+            assertEquals(expected.keySet(), reader.getChromosomes());
+            for (Map.Entry<String, int[]> entry : expected.entrySet()) {
+                String chromosome = entry.getKey();
+                int[] all = entry.getValue();
+                assertEquals(all.length, reader.getLength(chromosome));
+                for (int i = 0; i < 2000; i++) {
+                    int start = random.nextInt(all.length);
+                    int end = Math.min(all.length - 1, start + random.nextInt(i % 2 == 0 ? 50 : all.length));
+                    long sum = 0;
+                    int max = 0;
+                    for (int position = start; position <= end; position++) {
+                        sum += all[position];
+                        max = Math.max(max, all[position]);
+                    }
+                    assertEquals(sum, reader.getSum(chromosome, start, end));
+                    assertEquals((float) sum / (end - start + 1), reader.getMeanCoverage(chromosome, start, end), 0.0001);
+                    assertEquals(max, reader.getMaxCoverage(chromosome, start, end));
+                    assertEquals(all[start], reader.getCoverage(chromosome, start));
+                }
+                // Ranges partially outside the chromosome
+                assertEquals(reader.getSum(chromosome, 0, all.length - 1), reader.getSum(chromosome, -10, all.length + 10));
+            }
+            assertEquals(0, reader.getSum("3", 0, 1000));
+            assertEquals(0, reader.getMaxCoverage("3", 0, 1000));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongBinSizes() {
+        new AlignmentCoveragePyramidWriter("coverage.cov", 1, 10, 25);
+    }
+}
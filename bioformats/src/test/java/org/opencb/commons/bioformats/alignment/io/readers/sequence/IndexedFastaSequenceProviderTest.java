@@ -0,0 +1,91 @@
+package org.opencb.commons.bioformats.alignment.io.readers.sequence;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.commons.bioformats.feature.Region;
+import org.opencb.commons.test.GenericTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IndexedFastaSequenceProviderTest extends GenericTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testGetSequence() throws IOException {
+        Random random = new Random(9);
+        Map<String, String> sequences = new LinkedHashMap<>();
+        sequences.put("1", randomSequence(random, 1000));
+        sequences.put("2", randomSequence(random, 420));
+        sequences.put("MT", randomSequence(random, 7));
+        File fasta = temporaryFolder.newFile("reference.fa");
+        writeFasta(fasta, sequences, 60);
+
+        try (IndexedFastaSequenceProvider provider = new IndexedFastaSequenceProvider(fasta.getPath(), 16, 4)) {
+            for (Map.Entry<String, String> entry : sequences.entrySet()) {
+                String expected = entry.getValue().toUpperCase();
+                assertEquals(expected.length(), provider.getLength(entry.getKey()));
+                assertEquals(expected, provider.getSequence(new Region(entry.getKey(), 1, expected.length())));
+                for (int i = 0; i < 500; i++) {
+                    int start = 1 + random.nextInt(expected.length());
+                    int end = start + random.nextInt(100);
+                    assertEquals(expected.substring(start - 1, Math.min(end, expected.length())),
+                            provider.getSequence(new Region(entry.getKey(), start, end)));
+                }
+            }
+            assertEquals("", provider.getSequence(new Region("2", 500, 600)));
+            assertTrue(provider.getCacheHits() > 0);
+            assertTrue(provider.getCacheMisses() > 0);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownChromosome() throws IOException {
+        Map<String, String> sequences = new LinkedHashMap<>();
+        sequences.put("1", "ACGT");
+        File fasta = temporaryFolder.newFile("reference.fa");
+        writeFasta(fasta, sequences, 60);
+        try (IndexedFastaSequenceProvider provider = new IndexedFastaSequenceProvider(fasta.getPath())) {
+            provider.getSequence(new Region("2", 1, 10));
+        }
+    }
+
+    private static String randomSequence(Random random, int length) {
+        StringBuilder sequence = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sequence.append("ACGTNacgt".charAt(random.nextInt(9)));
+        }
+        return sequence.toString();
+    }
+
+    /**
+     * Writes the sequences and their index, as "samtools faidx" does.
+     */
+    private static void writeFasta(File fasta, Map<String, String> sequences, int lineBases) throws IOException {
+        long offset = 0;
+        try (PrintWriter writer = new PrintWriter(fasta);
+             PrintWriter index = new PrintWriter(fasta.getPath() + ".fai")) {
+            for (Map.Entry<String, String> entry : sequences.entrySet()) {
+                String header = ">" + entry.getKey() + " description\n";
+                writer.print(header);
+                offset += header.length();
+                index.print(entry.getKey() + "\t" + entry.getValue().length() + "\t" + offset + "\t" + lineBases
+                        + "\t" + (lineBases + 1) + "\n");
+                for (int i = 0; i < entry.getValue().length(); i += lineBases) {
+                    String line = entry.getValue().substring(i, Math.min(i + lineBases, entry.getValue().length()));
+                    writer.print(line + "\n");
+                    offset += line.length() + 1;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.opencb.commons.bioformats.alignment.sam.io;
+
+import net.sf.samtools.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.commons.bioformats.alignment.Alignment;
+import org.opencb.commons.bioformats.feature.Region;
+import org.opencb.commons.test.GenericTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class AlignmentBamRegionDataReaderTest extends GenericTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadRegions() throws IOException {
+        List<SAMRecord> records = new ArrayList<>();
+        File bam = writeBam(records);
+        List<Region> regions = Arrays.asList(new Region("1", 950, 3100), new Region("2", 1, 1000),
+                new Region("3", 10, 20), new Region("1", 4000, 4700));
+
+        AlignmentBamRegionDataReader reader = new AlignmentBamRegionDataReader(bam.getPath(), regions, 3, 100);
+        assertTrue(reader.open());
+        reader.pre();
+        List<Alignment> alignments = new ArrayList<>();
+        List<Alignment> batch;
+        while (!(batch = reader.read(7)).isEmpty()) {
+            assertTrue(batch.size() <= 7);
+            alignments.addAll(batch);
+        }
+        assertTrue(reader.read(7).isEmpty());
+        reader.post();
+        reader.close();
+
+        List<SAMRecord> expected = new ArrayList<>();
+        for (Region region : regions) {
+            for (SAMRecord record : records) {
+                if (record.getReferenceName().equals(region.getChromosome())
+                        && record.getAlignmentStart() <= region.getEnd() && record.getAlignmentEnd() >= region.getStart()) {
+                    expected.add(record);
+                }
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.size(), alignments.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getReadName(), alignments.get(i).getName());
+            assertEquals(expected.get(i).getReferenceName(), alignments.get(i).getChromosome());
+        }
+    }
+
+    @Test
+    public void testReadAll() throws IOException {
+        List<SAMRecord> records = new ArrayList<>();
+        File bam = writeBam(records);
+
+        AlignmentBamRegionDataReader reader = new AlignmentBamRegionDataReader(bam.getPath(), null, 3, 100);
+        assertTrue(reader.open());
+        reader.pre();
+        List<Alignment> alignments = new ArrayList<>();
+        List<Alignment> batch;
+        while (!(batch = reader.read(7)).isEmpty()) {
+            alignments.addAll(batch);
+        }
+        reader.post();
+        reader.close();
+
+        // The unmapped reads are returned last
+        assertEquals(records.size(), alignments.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(records.get(i).getReadName(), alignments.get(i).getName());
+        }
+    }
+
+    @Test
+    public void testInterrupted() throws IOException {
+        File bam = writeBam(new ArrayList<>());
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        AlignmentBamRegionDataReader reader = new AlignmentBamRegionDataReader(bam.getPath(), null, 2, 100);
+        assertTrue(reader.open());
+        reader.pre();
+        // The chunks are never decoded until the latch is released
+        reader.setReferenceSequenceProvider(region -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return null;
+        });
+        Thread.currentThread().interrupt();
+        try {
+            reader.read(7);
+            fail("Expected an interrupted read to fail");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+            assertTrue(Thread.interrupted());
+        } finally {
+            latch.countDown();
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testNotIndexed() throws IOException {
+        File bam = temporaryFolder.newFile("notIndexed.bam");
+        SAMFileHeader header = new SAMFileHeader();
+        header.addSequence(new SAMSequenceRecord("1", 1000));
+        header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+        new SAMFileWriterFactory().makeBAMWriter(header, true, bam).close();
+
+        assertFalse(new AlignmentBamRegionDataReader(bam.getPath(), null, 2).open());
+    }
+
+    /**
+     * Writes a sorted and indexed BAM file with random alignments in chromosomes 1 and 2, and some unmapped reads.
+     */
+    private File writeBam(List<SAMRecord> records) throws IOException {
+        File bam = temporaryFolder.newFile("regions.bam");
+        SAMFileHeader header = new SAMFileHeader();
+        header.addSequence(new SAMSequenceRecord("1", 5000));
+        header.addSequence(new SAMSequenceRecord("2", 800));
+        header.addSequence(new SAMSequenceRecord("3", 100));
+        header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+
+        Random random = new Random(5);
+        for (int i = 0; i < 2000; i++) {
+            String chromosome = i % 4 == 0 ? "2" : "1";
+            int length = 20 + random.nextInt(200);
+            SAMRecord record = new SAMRecord(header);
+            record.setReadName("read" + i);
+            record.setReferenceName(chromosome);
+            record.setAlignmentStart(1 + random.nextInt(header.getSequence(chromosome).getSequenceLength() - length));
+            record.setCigarString(length + "M");
+            char[] bases = new char[length];
+            for (int j = 0; j < length; j++) {
+                bases[j] = "ACGT".charAt(random.nextInt(4));
+            }
+            record.setReadString(new String(bases));
+            record.setBaseQualityString(new String(bases).replaceAll(".", "I"));
+            record.setMappingQuality(60);
+            records.add(record);
+        }
+        for (int i = 0; i < 20; i++) {
+            SAMRecord record = new SAMRecord(header);
+            record.setReadName("unmapped" + i);
+            record.setReadUnmappedFlag(true);
+            record.setReadString("ACGTACGT");
+            record.setBaseQualityString("IIIIIIII");
+            records.add(record);
+        }
+        Collections.sort(records, new SAMRecordCoordinateComparator());
+
+        SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true).makeBAMWriter(header, true, bam);
+        for (SAMRecord record : records) {
+            writer.addAlignment(record);
+        }
+        writer.close();
+        assertTrue(new File(temporaryFolder.getRoot(), "regions.bai").exists());
+        return bam;
+    }
+}
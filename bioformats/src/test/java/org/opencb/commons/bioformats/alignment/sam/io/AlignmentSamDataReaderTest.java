@@ -0,0 +1,73 @@
+package org.opencb.commons.bioformats.alignment.sam.io;
+
+import net.sf.samtools.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.commons.bioformats.alignment.Alignment;
+import org.opencb.commons.test.GenericTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AlignmentSamDataReaderTest extends GenericTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReferenceSequence() throws IOException {
+        AlignmentSamDataReader reader = new AlignmentSamDataReader(writeBam().getPath());
+        assertTrue(reader.open());
+        reader.pre();
+        reader.setReferenceSequenceProvider(region -> "ACGTTCGT");
+        List<Alignment> alignments = reader.read(10);
+        assertEquals(1, alignments.size());
+        assertEquals(1, alignments.get(0).getDifferences().size());
+        assertEquals(Alignment.AlignmentDifference.MISMATCH, alignments.get(0).getDifferences().get(0).getOp());
+        reader.close();
+    }
+
+    @Test
+    public void testReferenceSequenceError() throws IOException {
+        AlignmentSamDataReader reader = new AlignmentSamDataReader(writeBam().getPath());
+        assertTrue(reader.open());
+        reader.pre();
+        final IOException error = new IOException("Reference not available");
+        reader.setReferenceSequenceProvider(region -> {
+            throw error;
+        });
+        try {
+            reader.read(10);
+            fail("Expected an error reading the reference sequence");
+        } catch (IllegalStateException e) {
+            assertSame(error, e.getCause());
+        } finally {
+            reader.close();
+        }
+    }
+
+    private File writeBam() throws IOException {
+        File bam = temporaryFolder.newFile("reads.bam");
+        SAMFileHeader header = new SAMFileHeader();
+        header.addSequence(new SAMSequenceRecord("1", 1000));
+        header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+
+        SAMRecord record = new SAMRecord(header);
+        record.setReadName("read0");
+        record.setReferenceName("1");
+        record.setAlignmentStart(100);
+        record.setCigarString("8M");
+        record.setReadString("ACGTACGT");
+        record.setBaseQualityString("IIIIIIII");
+        record.setMappingQuality(60);
+
+        SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(header, true, bam);
+        writer.addAlignment(record);
+        writer.close();
+        return bam;
+    }
+}
@@ -0,0 +1,151 @@
+package org.opencb.commons.bioformats.alignment.stats;
+
+import org.opencb.commons.containers.list.IncrementalList;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coverage traversal of sorted reads as done by {@link AlignmentCoverageCalculator}: the list is decremented once per
+ * position up to the start of each read, and then the read length is inserted. Compares the circular array of
+ * {@link IncrementalList} with the LinkedList of deltas it used before.
+ * <p>
+ * The reads are a BAM-like workload: one million reads of about readLength bases, with random starts at the given
+ * mean coverage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IncrementalListBenchmark {
+
+    private static final int NUM_READS = 1000000;
+
+    @Param({"100", "250"})
+    private int readLength;
+
+    @Param({"30"})
+    private int coverage;
+
+    private int[] starts;
+    private int[] lengths;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        starts = new int[NUM_READS];
+        lengths = new int[NUM_READS];
+        int start = 1;
+        for (int i = 0; i < NUM_READS; i++) {
+            // Exponential gaps between the starts of the reads give the mean coverage
+            start += (int) (-Math.log(1 - random.nextDouble()) * readLength / coverage);
+            starts[i] = start;
+            // Some reads are trimmed
+            lengths[i] = random.nextInt(10) == 0 ? readLength / 2 + random.nextInt(readLength / 2) : readLength;
+        }
+    }
+
+    @Benchmark
+    public long circularArray() {
+        IncrementalList list = new IncrementalList();
+        long position = 0;
+        long removed = 0;
+        for (int i = 0; i < NUM_READS; i++) {
+            while (position < starts[i]) {
+                removed += list.decrement();
+                position++;
+            }
+            list.reverseInsert(lengths[i]);
+        }
+        return removed + list.getTotalCount();
+    }
+
+    @Benchmark
+    public long linkedList() {
+        LinkedIncrementalList list = new LinkedIncrementalList();
+        long position = 0;
+        long removed = 0;
+        for (int i = 0; i < NUM_READS; i++) {
+            while (position < starts[i]) {
+                removed += list.decrement();
+                position++;
+            }
+            list.reverseInsert(lengths[i]);
+        }
+        return removed + list.getTotalCount();
+    }
+
+    /**
+     * IncrementalList before the circular array, keeping the differences between consecutive counters.
+     */
+    static class LinkedIncrementalList {
+
+        private List<Long> list;
+        private ListIterator<Long> iterator;
+        private int totalCount;
+
+        LinkedIncrementalList() {
+            list = new LinkedList<>();
+            totalCount = 0;
+        }
+
+        void reverseInsert(long i) {
+            int count = totalCount;
+            long element = 0;
+            iterator = list.listIterator(list.size());
+            while (iterator.hasPrevious()) {
+                if (count < i) {
+                    break;
+                }
+                element = iterator.previous();
+                count -= element;
+            }
+            i -= count;
+            iterator.add(i);
+            if (iterator.hasNext()) {
+                element = iterator.next() - i;
+                iterator.set(element);
+            } else {
+                totalCount += i;
+            }
+        }
+
+        int decrement() {
+            long count;
+            int numRemoves = 0;
+            boolean decremented = false;
+            iterator = list.listIterator();
+
+            while (iterator.hasNext() && !decremented) {
+                count = iterator.next();
+
+                if (count == 0) {     //Have to be removed
+                    iterator.remove();
+                    numRemoves++;
+                } else {
+                    totalCount--;
+                    iterator.set(count - 1);
+                    decremented = true;
+                }
+            }
+            return numRemoves;
+        }
+
+        int getTotalCount() {
+            return totalCount;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(IncrementalListBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,131 @@
+package org.opencb.commons.bioformats.alignment.tasks;
+
+import org.junit.Test;
+import org.opencb.commons.bioformats.alignment.Alignment;
+import org.opencb.commons.bioformats.alignment.AlignmentRegion;
+import org.opencb.commons.bioformats.alignment.stats.MeanCoverage;
+import org.opencb.commons.bioformats.alignment.stats.RegionCoverage;
+import org.opencb.commons.io.DataReader;
+import org.opencb.commons.run.ParallelTaskRunner;
+import org.opencb.commons.test.GenericTest;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class AlignmentCoverageChunkTaskTest extends GenericTest {
+
+    private static final String[] CHROMOSOMES = {"1", "2"};
+    private static final int WINDOW = 100;
+
+    @Test
+    public void testParallelCoverage() throws Exception {
+        Random random = new Random(7);
+        List<List<Alignment>> regions = new ArrayList<>();
+        Map<String, int[]> expected = new HashMap<>();
+        for (String chromosome : CHROMOSOMES) {
+            int[] all = new int[20000];
+            List<Alignment> alignments = new ArrayList<>();
+            long position = 1000;
+            for (int i = 0; i < 500; i++) {
+                // Leave some gaps without coverage
+                position += random.nextInt(i % 100 == 99 ? 2000 : 30);
+                alignments.add(createAlignment(random, chromosome, position, all));
+            }
+            expected.put(chromosome, all);
+            for (int i = 0; i < alignments.size(); i += 37) {
+                regions.add(alignments.subList(i, Math.min(i + 37, alignments.size())));
+            }
+        }
+
+        Map<String, int[]> sequential = run(regions, 1);
+        Map<String, int[]> parallel = run(regions, 4);
+        for (String chromosome : CHROMOSOMES) {
+            assertArrayEquals(expected.get(chromosome), sequential.get(chromosome));
+            assertArrayEquals(expected.get(chromosome), parallel.get(chromosome));
+        }
+    }
+
+    /**
+     * Runs the coverage of the regions and checks that the merged regions do not overlap, and that the mean coverage
+     * windows are consecutive and match the coverage.
+     *
+     * @return Coverage of each chromosome
+     */
+    private Map<String, int[]> run(List<List<Alignment>> regions, int numTasks) throws Exception {
+        final Iterator<List<Alignment>> iterator = regions.iterator();
+        DataReader<AlignmentRegion> reader = batchSize -> {
+            List<AlignmentRegion> batch = new ArrayList<>();
+            while (batch.size() < batchSize && iterator.hasNext()) {
+                batch.add(new AlignmentRegion(iterator.next()));
+            }
+            return batch;
+        };
+        final List<AlignmentRegion> written = new ArrayList<>();
+        AlignmentCoverageMerger merger = new AlignmentCoverageMerger(batch -> written.addAll(batch));
+        merger.addMeanCoverageCalculator(WINDOW, "100");
+
+        new ParallelTaskRunner<>(reader, new AlignmentCoverageChunkTask(), merger,
+                new ParallelTaskRunner.Config(numTasks, 2, 8, true)).run();
+        assertEquals(regions.size(), written.size());
+
+        Map<String, int[]> coverages = new HashMap<>();
+        Map<String, Long> lastEnd = new HashMap<>();
+        Map<String, Long> nextWindow = new HashMap<>();
+        for (AlignmentRegion region : written) {
+            String chromosome = region.getChromosome();
+            int[] all = coverages.get(chromosome);
+            if (all == null) {
+                all = new int[20000];
+                coverages.put(chromosome, all);
+            }
+            RegionCoverage coverage = region.getCoverage();
+            assertTrue(lastEnd.get(chromosome) == null || coverage.getStart() >= lastEnd.get(chromosome));
+            lastEnd.put(chromosome, coverage.getEnd());
+            for (long position = coverage.getStart(); position < coverage.getEnd(); position++) {
+                all[(int) position] += coverage.getAll()[(int) (position - coverage.getStart())];
+            }
+
+            MeanCoverage meanCoverage = region.getMeanCoverage().get(0);
+            if (meanCoverage.getCoverage().length > 0) {
+                Long window = nextWindow.get(chromosome);
+                assertTrue(window == null || window == meanCoverage.getInitPosition());
+                nextWindow.put(chromosome, (long) meanCoverage.getInitPosition() + meanCoverage.getCoverage().length);
+            }
+        }
+
+        for (AlignmentRegion region : written) {
+            int[] all = coverages.get(region.getChromosome());
+            MeanCoverage meanCoverage = region.getMeanCoverage().get(0);
+            for (int i = 0; i < meanCoverage.getCoverage().length; i++) {
+                int window = meanCoverage.getInitPosition() + i;
+                int sum = 0;
+                for (int position = window * WINDOW; position < (window + 1) * WINDOW; position++) {
+                    sum += all[position];
+                }
+                assertEquals((float) sum / WINDOW, meanCoverage.getCoverage()[i], 0.0001);
+            }
+        }
+        return coverages;
+    }
+
+    private static Alignment createAlignment(Random random, String chromosome, long start, int[] all) {
+        int length = 50 + random.nextInt(50);
+        byte[] sequence = new byte[length];
+        List<Alignment.AlignmentDifference> differences = new ArrayList<>();
+        int deletion = random.nextBoolean() ? 10 + random.nextInt(20) : -1;
+        int offset = 0;
+        for (int i = 0; i < length; i++) {
+            if (i == deletion) {
+                differences.add(new Alignment.AlignmentDifference(i, Alignment.AlignmentDifference.DELETION, 5));
+                offset += 5;
+            }
+            sequence[i] = (byte) "ACGT".charAt(random.nextInt(4));
+            all[(int) (start + i + offset)]++;
+        }
+        Alignment alignment = new Alignment("read", chromosome, start, start + length + offset - 1, start,
+                start + length + offset - 1, length, 60, null, null, 0, 0, 0, differences, null);
+        alignment.setReadSequence(sequence);
+        return alignment;
+    }
+}
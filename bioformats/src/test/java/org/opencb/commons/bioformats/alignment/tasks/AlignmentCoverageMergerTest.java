@@ -0,0 +1,51 @@
+package org.opencb.commons.bioformats.alignment.tasks;
+
+import org.junit.Test;
+import org.opencb.commons.bioformats.alignment.AlignmentRegion;
+import org.opencb.commons.bioformats.alignment.stats.MeanCoverage;
+import org.opencb.commons.bioformats.alignment.stats.RegionCoverage;
+import org.opencb.commons.test.GenericTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AlignmentCoverageMergerTest extends GenericTest {
+
+    @Test
+    public void testLastWindowOfChromosome() throws Exception {
+        AlignmentCoverageMerger merger = new AlignmentCoverageMerger(null);
+        merger.addMeanCoverageCalculator(100, "100");
+
+        // Chromosome lengths not multiple of the window size
+        List<AlignmentRegion> merged = new ArrayList<>(merger.merge(Arrays.asList(
+                createRegion("1", 0, 150), createRegion("1", 150, 250), createRegion("2", 0, 130))));
+        merged.addAll(merger.drain());
+        assertEquals(3, merged.size());
+
+        MeanCoverage first = merged.get(0).getMeanCoverage().get(0);
+        assertEquals(0, first.getInitPosition());
+        assertArrayEquals(new float[]{1}, first.getCoverage(), 0);
+
+        MeanCoverage last = merged.get(1).getMeanCoverage().get(0);
+        assertEquals(1, last.getInitPosition());
+        assertArrayEquals(new float[]{1, 0.5f}, last.getCoverage(), 0);
+
+        MeanCoverage otherChromosome = merged.get(2).getMeanCoverage().get(0);
+        assertEquals(0, otherChromosome.getInitPosition());
+        assertArrayEquals(new float[]{1, 0.3f}, otherChromosome.getCoverage(), 0.0001f);
+    }
+
+    /**
+     * @return Region with coverage 1 in [start, end)
+     */
+    private static AlignmentRegion createRegion(String chromosome, long start, long end) {
+        RegionCoverage coverage = new RegionCoverage((int) (end - start));
+        Arrays.fill(coverage.getAll(), (short) 1);
+        coverage.setStart(start);
+        coverage.setEnd(end);
+        return new AlignmentRegion(chromosome, start, end, null, coverage);
+    }
+}
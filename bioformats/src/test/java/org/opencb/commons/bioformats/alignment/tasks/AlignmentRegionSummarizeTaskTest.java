@@ -3,17 +3,20 @@ package org.opencb.commons.bioformats.alignment.tasks;
 
 import org.junit.Ignore;
 import org.junit.Test;
+import org.opencb.commons.bioformats.alignment.Alignment;
 import org.opencb.commons.bioformats.alignment.AlignmentRegion;
 import org.opencb.commons.bioformats.alignment.io.readers.AlignmentRegionDataReader;
 import org.opencb.commons.bioformats.alignment.sam.io.AlignmentSamDataReader;
+import org.opencb.commons.bioformats.alignment.stats.AlignmentRegionSummary;
 import org.opencb.commons.io.DataWriter;
 import org.opencb.commons.run.Runner;
 import org.opencb.commons.run.Task;
 import org.opencb.commons.test.GenericTest;
 
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
+
+import static org.junit.Assert.*;
 
 /**
  * Created with IntelliJ IDEA.
@@ -42,4 +45,46 @@ public class AlignmentRegionSummarizeTaskTest extends GenericTest {
             e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
         }
     }
+
+    @Test
+    public void summarizeWindows() throws IOException {
+        List<Alignment> alignments = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            long start = 1 + i * 1000;
+            // Most alignments of the first window have length 100, and of the next ones length 150
+            int length = i % 5 == 0 ? 75 : start <= 100000 ? 100 : 150;
+            Map<String, Object> attributes = new HashMap<>();
+            attributes.put("NM", i % 3 == 0 ? 1 : 0);
+            alignments.add(new Alignment("read" + i, "1", start, start + length - 1, start, start + length - 1,
+                    length, i % 4 == 0 ? 20 : 60, null, i % 10 == 0 ? "2" : "=", (int) start + 200, 300,
+                    Alignment.ALIGNMENT_MULTIPLE_SEGMENTS, Collections.<Alignment.AlignmentDifference>emptyList(),
+                    attributes));
+        }
+        AlignmentRegion packed = new AlignmentRegion(new ArrayList<>(alignments.subList(150, 300)));
+        packed.packAlignments();
+
+        AlignmentRegionSummarizeTask task = new AlignmentRegionSummarizeTask();
+        task.apply(Arrays.asList(new AlignmentRegion(alignments.subList(0, 150)), packed));
+        task.post();
+
+        assertEquals(300, task.getNumAlignments());
+        List<AlignmentRegionSummary> summaries = task.getSummaries();
+        assertEquals(3, summaries.size());
+        assertEquals(0, summaries.get(0).getStart());
+        assertEquals(100000, summaries.get(0).getEnd());
+        assertEquals(100, summaries.get(0).getDefaultLength());
+        assertEquals(150, summaries.get(1).getDefaultLength());
+        for (AlignmentRegionSummary summary : summaries) {
+            assertEquals(Alignment.ALIGNMENT_MULTIPLE_SEGMENTS, summary.getDefaultFlag());
+            assertEquals(60, summary.getDefaultMapQ());
+            assertEquals("=", summary.getDefaultRNext());
+            assertEquals(Integer.valueOf(0), summary.getKeyMap().get("NM"));
+        }
+        int total = 0;
+        for (Map.Entry<Map.Entry<Integer, Object>, Integer> entry : summaries.get(0).getTagMap().entrySet()) {
+            assertEquals(Integer.valueOf(0), entry.getKey().getKey());
+            total += entry.getValue();
+        }
+        assertEquals(100, total);
+    }
 }
@@ -0,0 +1,67 @@
+package org.opencb.commons.bioformats.feature;
+
+import org.junit.Test;
+import org.opencb.commons.test.GenericTest;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class GenotypeCodecTest extends GenericTest {
+
+    @Test
+    public void testEncode() throws Exception {
+        int gt = GenotypeCodec.encode("0/1");
+        assertEquals(0, GenotypeCodec.getAllele1(gt));
+        assertEquals(1, GenotypeCodec.getAllele2(gt));
+        assertEquals(AllelesCode.ALLELES_OK, GenotypeCodec.getAllelesCode(gt));
+        assertTrue(GenotypeCodec.isCalled(gt));
+        assertEquals(gt, GenotypeCodec.encode("0|1"));
+        assertEquals(gt, GenotypeCodec.encode(0, 1));
+        assertNotEquals(gt, GenotypeCodec.encode("1/0"));
+
+        assertEquals(GenotypeCodec.MISSING_GENOTYPE, GenotypeCodec.encode("./."));
+        assertEquals(GenotypeCodec.MISSING_GENOTYPE, GenotypeCodec.encode("."));
+        assertEquals(AllelesCode.ALL_ALLELES_MISSING, GenotypeCodec.getAllelesCode(GenotypeCodec.MISSING_GENOTYPE));
+        assertEquals(AllelesCode.FIRST_ALLELE_MISSING, GenotypeCodec.getAllelesCode(GenotypeCodec.encode("./1")));
+        assertEquals(AllelesCode.SECOND_ALLELE_MISSING, GenotypeCodec.getAllelesCode(GenotypeCodec.encode("1|.")));
+    }
+
+    @Test
+    public void testEncodeMultiDigit() throws Exception {
+        int gt = GenotypeCodec.encode("12/103");
+        assertEquals(12, GenotypeCodec.getAllele1(gt));
+        assertEquals(103, GenotypeCodec.getAllele2(gt));
+
+        int haploid = GenotypeCodec.encode("100");
+        assertTrue(GenotypeCodec.isHaploid(haploid));
+        assertFalse(GenotypeCodec.isCalled(haploid));
+        assertEquals(100, GenotypeCodec.getAllele1(haploid));
+        assertEquals(GenotypeCodec.MISSING_ALLELE, GenotypeCodec.getAllele2(haploid));
+        assertEquals(AllelesCode.HAPLOID, GenotypeCodec.getAllelesCode(haploid));
+        assertEquals(haploid, GenotypeCodec.encode("100/"));
+    }
+
+    @Test
+    public void testEncodeBytes() throws Exception {
+        byte[] bytes = "0|1:12/3".getBytes(StandardCharsets.UTF_8);
+        assertEquals(GenotypeCodec.encode("0/1"), GenotypeCodec.encode(bytes, 0, 3));
+        assertEquals(GenotypeCodec.encode("12/3"), GenotypeCodec.encode(bytes, 4, bytes.length));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testEncodeError() throws Exception {
+        GenotypeCodec.encode("A/C");
+    }
+
+    @Test
+    public void testToGenotype() throws Exception {
+        for (String gt : new String[]{"0/1", "1/1", "./1", "2/.", "./.", "15/7", "100"}) {
+            Genotype genotype = GenotypeCodec.toGenotype(GenotypeCodec.encode(gt));
+            Genotype expected = new Genotype(gt);
+            assertEquals(expected.getAllele1(), genotype.getAllele1());
+            assertEquals(expected.getAllele2(), genotype.getAllele2());
+            assertEquals(expected.getCode(), genotype.getCode());
+        }
+    }
+}
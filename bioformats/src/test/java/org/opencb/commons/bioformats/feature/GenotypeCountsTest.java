@@ -0,0 +1,62 @@
+package org.opencb.commons.bioformats.feature;
+
+import org.junit.Test;
+import org.opencb.commons.test.GenericTest;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GenotypeCountsTest extends GenericTest {
+
+    @Test
+    public void testAdd() throws Exception {
+        GenotypeCounts counts = new GenotypeCounts(2);
+        counts.add(GenotypeCodec.encode("0/0"));
+        counts.add(GenotypeCodec.encode("0|0"));
+        counts.add(GenotypeCodec.encode("0/1"));
+        counts.add(GenotypeCodec.encode("1/0"), 2);
+        counts.add(GenotypeCodec.encode("./."));
+        counts.add(GenotypeCodec.encode("./1"));
+
+        assertEquals(2, counts.getCount(0, 0));
+        assertEquals(1, counts.getCount(0, 1));
+        assertEquals(2, counts.getCount(GenotypeCodec.encode("1/0")));
+        assertEquals(0, counts.getCount(1, 1));
+        assertEquals(1, counts.getCount(GenotypeCodec.MISSING_ALLELE, GenotypeCodec.MISSING_ALLELE));
+        assertEquals(1, counts.getCount(GenotypeCodec.MISSING_ALLELE, 1));
+    }
+
+    @Test
+    public void testHaploidAndOutOfRange() throws Exception {
+        GenotypeCounts counts = new GenotypeCounts(2);
+        counts.add(GenotypeCodec.encodeHaploid(1));
+        counts.add(GenotypeCodec.encode("100"));
+        counts.add(GenotypeCodec.encode("0/3"));
+        counts.add(GenotypeCodec.encode("0/3"));
+
+        assertEquals(1, counts.getHaploidCount(1));
+        assertEquals(0, counts.getHaploidCount(0));
+        assertEquals(2, counts.getCount(GenotypeCodec.encode("0/3")));
+        assertEquals(1, counts.getCount(GenotypeCodec.encode("100")));
+        assertEquals(2, counts.getOutOfRangeCounts().size());
+    }
+
+    @Test
+    public void testToGenotypes() throws Exception {
+        GenotypeCounts counts = new GenotypeCounts(2);
+        counts.add(GenotypeCodec.encode("1/1"));
+        counts.add(GenotypeCodec.encode("0/0"), 3);
+        counts.add(GenotypeCodec.encode("0/3"));
+
+        List<Genotype> genotypes = counts.toGenotypes();
+        assertEquals(3, genotypes.size());
+        assertEquals(0, (int) genotypes.get(0).getAllele1());
+        assertEquals(0, (int) genotypes.get(0).getAllele2());
+        assertEquals(3, (int) genotypes.get(0).getCount());
+        assertEquals(1, (int) genotypes.get(1).getAllele1());
+        assertEquals(1, (int) genotypes.get(1).getCount());
+        assertEquals(3, (int) genotypes.get(2).getAllele2());
+        assertEquals(1, (int) genotypes.get(2).getCount());
+    }
+}
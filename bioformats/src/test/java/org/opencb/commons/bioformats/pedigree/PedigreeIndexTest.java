@@ -0,0 +1,43 @@
+package org.opencb.commons.bioformats.pedigree;
+
+import org.junit.Test;
+import org.opencb.commons.bioformats.pedigree.io.readers.PedigreePedReader;
+import org.opencb.commons.test.GenericTest;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class PedigreeIndexTest extends GenericTest {
+
+    @Test
+    public void testIndex() throws Exception {
+        PedigreePedReader reader = new PedigreePedReader(getClass().getResource("/pedigree-test-file.ped").getFile());
+        reader.open();
+        reader.pre();
+        Pedigree ped = reader.read().get(0);
+        reader.post();
+        reader.close();
+
+        PedigreeIndex index = new PedigreeIndex(ped, Arrays.asList("NA19600", "NA19685", "NA19660", "UNKNOWN"));
+
+        // The father is not in the list of samples, so it goes after them
+        assertEquals(4, index.getNumIndexedSamples());
+        assertEquals(Arrays.asList("NA19600", "NA19685", "NA19660", "UNKNOWN", "NA19661"), index.getSampleNames());
+
+        assertEquals(4, index.getFather(0));
+        assertEquals(2, index.getMother(0));
+        assertEquals(4, index.getFather(1));
+        assertEquals(2, index.getMother(1));
+        assertEquals(PedigreeIndex.NONE, index.getFather(2));
+        assertEquals(PedigreeIndex.NONE, index.getMother(3));
+        assertArrayEquals(new int[]{0, 1}, index.getChildren());
+
+        assertEquals(ped.getIndividual("NA19600").getSexCode(), index.getSex(0));
+        assertEquals(ped.getIndividual("NA19685").getSexCode(), index.getSex(1));
+        assertEquals(ped.getIndividual("NA19600").getCondition(), index.getCondition(0));
+        assertEquals(Sex.UNKNOWN_SEX, index.getSex(3));
+        assertEquals(Condition.UNKNOWN_CONDITION, index.getCondition(3));
+        assertEquals(index.getSex(4).ordinal(), index.getSexCode(4));
+    }
+}
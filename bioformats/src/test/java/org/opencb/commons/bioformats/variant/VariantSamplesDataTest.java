@@ -0,0 +1,102 @@
+package org.opencb.commons.bioformats.variant;
+
+import org.junit.Test;
+import org.opencb.commons.bioformats.variant.vcf4.Vcf4;
+import org.opencb.commons.bioformats.variant.vcf4.VcfLineTokenizer;
+import org.opencb.commons.test.GenericTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class VariantSamplesDataTest extends GenericTest {
+
+    private static final List<String> SAMPLES = Arrays.asList("S1", "S2", "S3", "S4");
+    private static final String LINE = "1\t100\t.\tA\tC\t.\t.\t.\tGT:DP:GQ:GL:FT\t"
+            + "0|1:10:99:-0.5:PASS\t1/1:.:07:-1.25:q10\t./.\t0/0:0:-3:0.10";
+
+    private VariantSamplesData createSamplesData() {
+        VcfLineTokenizer tokenizer = new VcfLineTokenizer().tokenize(LINE);
+        return new VariantSamplesData(new VariantSamplesData.SampleIndex(SAMPLES), tokenizer.getString(8), tokenizer, 9);
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        VariantSamplesData samplesData = createSamplesData();
+
+        assertEquals(4, samplesData.getNumSamples());
+        assertEquals("0|1", samplesData.get("S1", "GT"));
+        assertEquals("10", samplesData.get("S1", "dp"));
+        assertEquals("-0.5", samplesData.get("S1", "GL"));
+        assertEquals(".", samplesData.get("S2", "DP"));
+        assertEquals("07", samplesData.get("S2", "GQ"));
+        assertEquals("-1.25", samplesData.get("S2", "GL"));
+        assertEquals("./.", samplesData.get("S3", "GT"));
+        assertEquals(".", samplesData.get("S3", "FT"));
+        assertEquals("0.10", samplesData.get("S4", "GL"));
+        assertEquals(".", samplesData.get("S4", "FT"));
+        assertNull(samplesData.get("S5", "GT"));
+        assertNull(samplesData.get("S1", "XX"));
+        assertEquals("1/1:.:07:-1.25:q10", samplesData.getRaw(1));
+    }
+
+    @Test
+    public void testGetTyped() throws Exception {
+        VariantSamplesData samplesData = createSamplesData();
+        int dp = samplesData.getFieldIndex("DP");
+
+        assertEquals(10, samplesData.getInt(0, dp));
+        assertEquals(VariantSamplesData.MISSING_INT, samplesData.getInt(1, dp));
+        assertEquals(VariantSamplesData.MISSING_INT, samplesData.getInt(2, dp));
+        assertEquals(0, samplesData.getInt(3, dp));
+        assertEquals(7, samplesData.getInt(1, samplesData.getFieldIndex("GQ")));
+        assertEquals(-1.25f, samplesData.getFloat(1, samplesData.getFieldIndex("GL")), 0);
+        assertTrue(Float.isNaN(samplesData.getFloat(2, samplesData.getFieldIndex("GL"))));
+    }
+
+    @Test
+    public void testAsMap() throws Exception {
+        Map<String, Map<String, String>> map = createSamplesData().asMap();
+
+        assertEquals(4, map.size());
+        assertEquals(SAMPLES, Arrays.asList(map.keySet().toArray()));
+        assertEquals("{GT=./., DP=., GQ=., GL=., FT=.}", map.get("S3").toString());
+        assertEquals("q10", map.get("S2").get("FT"));
+        assertTrue(map.containsKey("S4"));
+        assertFalse(map.containsKey("S5"));
+    }
+
+    @Test
+    public void testVariant() throws Exception {
+        Variant variant = VariantFactory.createVariantFromVcf(SAMPLES, new VcfLineTokenizer().tokenize(LINE));
+
+        assertNotNull(variant.getSamplesDataColumns());
+        assertEquals("1/1", variant.getSampleData("S2", "GT"));
+        assertEquals("99", variant.getSampleData("S1").get("GQ"));
+
+        // Adding data switches back to maps without losing the existing data
+        variant.addSampleData("S5", variant.getSampleData("S1"));
+        assertNull(variant.getSamplesDataColumns());
+        assertEquals(5, variant.getSamplesData().size());
+        assertEquals("1/1", variant.getSampleData("S2", "GT"));
+        assertEquals("0|1", variant.getSampleData("S5", "GT"));
+    }
+
+    @Test
+    public void testSampleIndex() throws Exception {
+        List<String> names = new ArrayList<>(SAMPLES);
+        VariantSamplesData.SampleIndex sampleIndex = new VariantSamplesData.SampleIndex(names);
+        names.set(0, "S0");
+        assertEquals(SAMPLES, sampleIndex.getNames());
+        assertEquals(0, sampleIndex.indexOf("S1"));
+        assertEquals(-1, sampleIndex.indexOf("S0"));
+
+        Vcf4 vcf4 = new Vcf4();
+        vcf4.setHeaderLine(Arrays.asList("#CHROM", "POS", "ID", "REF", "ALT", "QUAL", "FILTER", "INFO", "FORMAT", "S1", "S2"));
+        assertSame(vcf4.getSampleIndex(), vcf4.getSampleIndex());
+        assertEquals(Arrays.asList("S1", "S2"), vcf4.getSampleIndex().getNames());
+    }
+}
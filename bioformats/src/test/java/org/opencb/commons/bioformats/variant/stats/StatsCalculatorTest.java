@@ -0,0 +1,41 @@
+package org.opencb.commons.bioformats.variant.stats;
+
+import org.junit.Test;
+import org.opencb.commons.bioformats.variant.Variant;
+import org.opencb.commons.bioformats.variant.VariantFactory;
+import org.opencb.commons.bioformats.variant.utils.stats.VariantStats;
+import org.opencb.commons.test.GenericTest;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class StatsCalculatorTest extends GenericTest {
+
+    private static final List<String> SAMPLES = Arrays.asList("S1", "S2", "S3", "S4");
+
+    @Test
+    public void testHardyWeinbergMonomorphic() throws Exception {
+        Variant variant = VariantFactory.createVariantFromVcf(SAMPLES,
+                "1", "100", ".", "A", ".", ".", ".", ".", "GT", "0/0", "0|0", "./.", "0/0");
+
+        VariantStats stats = StatsCalculator.variantStats(Arrays.asList(variant), SAMPLES, null).get(0);
+        assertEquals(3, stats.getHw().getN_AA());
+        assertEquals(0, stats.getHw().getN_Aa());
+        assertEquals(0, stats.getHw().getN_aa());
+        assertEquals(3, stats.getHw().getN());
+    }
+
+    @Test
+    public void testHardyWeinbergBiallelic() throws Exception {
+        Variant variant = VariantFactory.createVariantFromVcf(SAMPLES,
+                "1", "100", ".", "A", "C", ".", ".", ".", "GT", "0/0", "0|1", "1/0", "1/1");
+
+        VariantStats stats = StatsCalculator.variantStats(Arrays.asList(variant), SAMPLES, null).get(0);
+        assertEquals(1, stats.getHw().getN_AA());
+        assertEquals(2, stats.getHw().getN_Aa());
+        assertEquals(1, stats.getHw().getN_aa());
+        assertEquals(4, stats.getHw().getN());
+    }
+}
@@ -0,0 +1,99 @@
+package org.opencb.commons.bioformats.variant.stats;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.commons.bioformats.pedigree.Pedigree;
+import org.opencb.commons.bioformats.pedigree.io.readers.PedigreePedReader;
+import org.opencb.commons.bioformats.variant.Variant;
+import org.opencb.commons.bioformats.variant.utils.stats.VariantGlobalStats;
+import org.opencb.commons.bioformats.variant.utils.stats.VariantStats;
+import org.opencb.commons.bioformats.variant.vcf4.io.readers.VariantVcfReader;
+import org.opencb.commons.run.ParallelTaskRunner;
+import org.opencb.commons.test.GenericTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class VariantStatsAccumulatorTest extends GenericTest {
+
+    private String vcfFile = getClass().getResource("/variant-test-file.vcf.gz").getFile();
+    private String pedFile = getClass().getResource("/pedigree-test-file.ped").getFile();
+
+    private List<Variant> variants;
+    private List<String> sampleNames;
+    private Pedigree ped;
+
+    @Before
+    public void setUp() throws Exception {
+        VariantVcfReader reader = new VariantVcfReader(vcfFile);
+        reader.open();
+        reader.pre();
+        variants = new ArrayList<>();
+        List<Variant> batch;
+        while (!(batch = reader.read(100)).isEmpty()) {
+            variants.addAll(batch);
+        }
+        sampleNames = reader.getSampleNames();
+        reader.post();
+        reader.close();
+
+        PedigreePedReader pedReader = new PedigreePedReader(pedFile);
+        pedReader.open();
+        pedReader.pre();
+        ped = pedReader.read().get(0);
+        pedReader.post();
+        pedReader.close();
+    }
+
+    @Test
+    public void testParallelTaskRunner() throws Exception {
+        VariantVcfReader reader = new VariantVcfReader(vcfFile);
+        VariantStatsTask task = new VariantStatsTask(sampleNames, ped, Collections.singletonList("family"));
+        ParallelTaskRunner<Variant, VariantStats> runner = new ParallelTaskRunner<>(reader, task, null,
+                new ParallelTaskRunner.Config(4, 50, 10, false));
+        runner.run();
+
+        checkStats(task.getAccumulator());
+        assertEquals(StatsCalculator.sampleGroupStats(variants, ped, "family").toString(),
+                task.getAccumulator().getSampleGroupStats("family").toString());
+    }
+
+    @Test
+    public void testForkJoin() throws Exception {
+        VariantStatsAccumulator accumulator = VariantStatsAccumulator.compute(variants, sampleNames, ped, null, 64, new ForkJoinPool(4));
+
+        checkStats(accumulator);
+        assertEquals(StatsCalculator.variantStats(variants, sampleNames, ped).toString(), accumulator.getVariantStats().toString());
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        VariantStatsAccumulator accumulator1 = new VariantStatsAccumulator(sampleNames, ped, null, true);
+        VariantStatsAccumulator accumulator2 = new VariantStatsAccumulator(sampleNames, ped, null, true);
+        accumulator1.accumulate(variants.subList(0, 300));
+        accumulator2.accumulate(variants.subList(300, variants.size()));
+
+        checkStats(accumulator1.merge(accumulator2));
+        assertEquals(variants.size(), accumulator1.getVariantStats().size());
+    }
+
+    private void checkStats(VariantStatsAccumulator accumulator) {
+        VariantGlobalStats expected = StatsCalculator.globalStats(StatsCalculator.variantStats(variants, sampleNames, ped));
+        VariantGlobalStats globalStats = accumulator.getGlobalStats();
+        assertEquals(variants.size(), globalStats.getVariantsCount());
+        assertEquals(expected.getSamplesCount(), globalStats.getSamplesCount());
+        assertEquals(expected.getSnpsCount(), globalStats.getSnpsCount());
+        assertEquals(expected.getIndelsCount(), globalStats.getIndelsCount());
+        assertEquals(expected.getPassCount(), globalStats.getPassCount());
+        assertEquals(expected.getTransitionsCount(), globalStats.getTransitionsCount());
+        assertEquals(expected.getTransversionsCount(), globalStats.getTransversionsCount());
+        assertEquals(expected.getBiallelicsCount(), globalStats.getBiallelicsCount());
+        assertEquals(expected.getAccumQuality(), globalStats.getAccumQuality(), 1);
+
+        assertEquals(StatsCalculator.sampleStats(variants, sampleNames, ped).toString(), accumulator.getSampleStats().toString());
+    }
+}
@@ -0,0 +1,182 @@
+package org.opencb.commons.bioformats.variant.stats;
+
+import org.opencb.commons.bioformats.variant.utils.stats.VariantHardyWeinbergStats;
+import org.opencb.commons.bioformats.variant.utils.stats.VariantStats;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allele and genotype frequencies, MAF and Hardy-Weinberg test of a list of variants, computed variant by variant as
+ * StatsCalculator did before {@link VariantStatsBlock}, and with the block kernels.
+ * <p>
+ * Both benchmarks start from the same counts and return the filled statistics. The per-variant path also computes the
+ * p-value, that it never set, so both do the same work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VariantStatsBlockBenchmark {
+
+    @Param({"1000", "100000"})
+    private int numVariants;
+
+    private int[] numAlleles;
+    private int[][] allelesCounts;
+    private int[] totalAllelesCounts;
+    private int[][] genotypesCounts;
+    private int[] totalGenotypesCounts;
+    private int[][] hardyWeinbergCounts;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        numAlleles = new int[numVariants];
+        allelesCounts = new int[numVariants][];
+        totalAllelesCounts = new int[numVariants];
+        genotypesCounts = new int[numVariants][];
+        totalGenotypesCounts = new int[numVariants];
+        hardyWeinbergCounts = new int[numVariants][];
+        for (int i = 0; i < numVariants; i++) {
+            // One multiallelic variant every 4, and a few thousand samples
+            numAlleles[i] = i % 4 == 0 ? 3 : 2;
+            genotypesCounts[i] = new int[numAlleles[i] * numAlleles[i]];
+            allelesCounts[i] = new int[numAlleles[i]];
+            for (int allele1 = 0; allele1 < numAlleles[i]; allele1++) {
+                for (int allele2 = 0; allele2 < numAlleles[i]; allele2++) {
+                    int count = random.nextInt(allele1 == 0 && allele2 == 0 ? 2000 : 200);
+                    genotypesCounts[i][allele1 * numAlleles[i] + allele2] = count;
+                    totalGenotypesCounts[i] += count;
+                    allelesCounts[i][allele1] += count;
+                    allelesCounts[i][allele2] += count;
+                }
+            }
+            totalAllelesCounts[i] = totalGenotypesCounts[i] * 2;
+            int[] gc = genotypesCounts[i];
+            hardyWeinbergCounts[i] = new int[]{gc[0], gc[1] + gc[numAlleles[i]], gc[numAlleles[i] + 1]};
+        }
+    }
+
+    @Benchmark
+    public List<VariantStats> perVariant() {
+        List<VariantStats> statList = new ArrayList<>(numVariants);
+        for (int v = 0; v < numVariants; v++) {
+            VariantStats vcfStat = newVariantStats(v);
+            int[] allelesCount = allelesCounts[v];
+            int[] genotypesCount = genotypesCounts[v];
+            int totalAllelesCount = totalAllelesCounts[v];
+            int totalGenotypesCount = totalGenotypesCounts[v];
+            float[] allelesFreq = new float[vcfStat.getNumAlleles()];
+            float[] genotypesFreq = new float[vcfStat.getNumAlleles() * vcfStat.getNumAlleles()];
+            float maf = Float.MAX_VALUE;
+
+            vcfStat.getHw().setN_AA(hardyWeinbergCounts[v][0]);
+            vcfStat.getHw().setN_Aa(hardyWeinbergCounts[v][1]);
+            vcfStat.getHw().setN_aa(hardyWeinbergCounts[v][2]);
+
+            for (int i = 0; i < vcfStat.getNumAlleles(); i++) {
+                allelesFreq[i] = (totalAllelesCount > 0) ? allelesCount[i] / (float) totalAllelesCount : 0;
+                if (allelesFreq[i] < maf) {
+                    maf = allelesFreq[i];
+                    vcfStat.setMafAllele((i == 0) ? vcfStat.getRefAlleles() : vcfStat.getAltAlleles()[i - 1]);
+                }
+            }
+            vcfStat.setMaf(maf);
+
+            for (int i = 0; i < vcfStat.getNumAlleles() * vcfStat.getNumAlleles(); i++) {
+                genotypesFreq[i] = (totalGenotypesCount > 0) ? genotypesCount[i] / (float) totalGenotypesCount : 0;
+            }
+
+            vcfStat.setAllelesCount(allelesCount);
+            vcfStat.setGenotypesCount(genotypesCount);
+            vcfStat.setAllelesFreq(allelesFreq);
+            vcfStat.setGenotypesFreq(genotypesFreq);
+
+            hardyWeinbergTest(vcfStat.getHw());
+            statList.add(vcfStat);
+        }
+        return statList;
+    }
+
+    @Benchmark
+    public List<VariantStats> block() {
+        List<VariantStats> statList = new ArrayList<>(numVariants);
+        VariantStatsBlock block = new VariantStatsBlock(numAlleles);
+        for (int v = 0; v < numVariants; v++) {
+            VariantStats vcfStat = newVariantStats(v);
+            block.setHardyWeinbergCounts(v, hardyWeinbergCounts[v][0], hardyWeinbergCounts[v][1], hardyWeinbergCounts[v][2]);
+            block.setCounts(v, allelesCounts[v], totalAllelesCounts[v], genotypesCounts[v], totalGenotypesCounts[v]);
+            vcfStat.setAllelesCount(allelesCounts[v]);
+            vcfStat.setGenotypesCount(genotypesCounts[v]);
+            statList.add(vcfStat);
+        }
+        block.compute();
+        for (int v = 0; v < numVariants; v++) {
+            block.copyTo(v, statList.get(v));
+        }
+        return statList;
+    }
+
+    private VariantStats newVariantStats(int variant) {
+        VariantStats vcfStat = new VariantStats();
+        vcfStat.setRefAllele("A");
+        vcfStat.setAltAlleles(numAlleles[variant] == 3 ? new String[]{"C", "T"} : new String[]{"C"});
+        vcfStat.setNumAlleles(numAlleles[variant]);
+        return vcfStat;
+    }
+
+    /**
+     * Hardy-Weinberg test of StatsCalculator before the block kernels, plus the p-value.
+     */
+    private static void hardyWeinbergTest(VariantHardyWeinbergStats hw) {
+        hw.setN(hw.getN_AA() + hw.getN_Aa() + hw.getN_aa());
+        int n = hw.getN();
+        int n_AA = hw.getN_AA();
+        int n_Aa = hw.getN_Aa();
+        int n_aa = hw.getN_aa();
+
+        if (n > 0) {
+            float p = (float) ((2.0 * n_AA + n_Aa) / (2 * n));
+            float q = 1 - p;
+
+            hw.setP(p);
+            hw.setQ(q);
+
+            hw.setE_AA(p * p * n);
+            hw.setE_Aa(2 * p * q * n);
+            hw.setE_aa(q * q * n);
+
+            if (hw.getE_AA() == n_AA) {
+                n_AA = 1;
+                hw.setE_AA(n_AA);
+            }
+            if (hw.getE_Aa() == n_Aa) {
+                n_Aa = 1;
+                hw.setE_Aa(n_Aa);
+            }
+            if (hw.getE_aa() == n_aa) {
+                n_aa = 1;
+                hw.setE_aa(n_aa);
+            }
+
+            float chi = (n_AA - hw.getE_AA()) * (n_AA - hw.getE_AA()) / hw.getE_AA()
+                    + (n_Aa - hw.getE_Aa()) * (n_Aa - hw.getE_Aa()) / hw.getE_Aa()
+                    + (n_aa - hw.getE_aa()) * (n_aa - hw.getE_aa()) / hw.getE_aa();
+            hw.setChi2(chi);
+            hw.setpValue((float) VariantStatsBlock.chiSquareUpperTail(chi));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(VariantStatsBlockBenchmark.class.getSimpleName()).build()).run();
+    }
+}
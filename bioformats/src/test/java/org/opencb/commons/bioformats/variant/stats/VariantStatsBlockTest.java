@@ -0,0 +1,59 @@
+package org.opencb.commons.bioformats.variant.stats;
+
+import org.junit.Test;
+import org.opencb.commons.test.GenericTest;
+
+import static org.junit.Assert.*;
+
+public class VariantStatsBlockTest extends GenericTest {
+
+    @Test
+    public void testFrequencies() throws Exception {
+        VariantStatsBlock block = new VariantStatsBlock(new int[]{2, 3, 2});
+        block.setCounts(0, new int[]{6, 2}, 8, new int[]{2, 1, 1, 0}, 4);
+        block.setCounts(1, new int[]{1, 4, 1}, 6, new int[]{0, 1, 0, 0, 1, 0, 0, 1, 0}, 3);
+        block.compute();
+
+        float[] allelesFreq = block.getAllelesFreq();
+        assertEquals(0.75f, allelesFreq[block.getAllelesOffset(0)], 0);
+        assertEquals(0.25f, allelesFreq[block.getAllelesOffset(0) + 1], 0);
+        assertEquals(0.25f, block.getMaf()[0], 0);
+        assertEquals(1, block.getMafAllele()[0]);
+
+        assertEquals(4f / 6, allelesFreq[block.getAllelesOffset(1) + 1], 0);
+        assertEquals(1f / 6, block.getMaf()[1], 0);
+        assertEquals(0, block.getMafAllele()[1]);
+        assertEquals(1f / 3, block.getGenotypesFreq()[block.getGenotypesOffset(1) + 4], 0);
+
+        // No alleles counted
+        assertEquals(0, allelesFreq[block.getAllelesOffset(2)], 0);
+        assertEquals(0, block.getMaf()[2], 0);
+        assertEquals(0, block.getGenotypesFreq()[block.getGenotypesOffset(2)], 0);
+    }
+
+    @Test
+    public void testHardyWeinberg() throws Exception {
+        VariantStatsBlock block = new VariantStatsBlock(new int[]{2, 2, 2});
+        block.setHardyWeinbergCounts(0, 3, 1, 0);
+        block.setHardyWeinbergCounts(1, 0, 4, 0);
+        block.computeHardyWeinberg();
+
+        assertEquals(0.875f, block.getP()[0], 0);
+        assertEquals(0.125f, block.getQ()[0], 0);
+        assertEquals(0.08163265f, block.getChi2()[0], 1e-7);
+        assertEquals(0.775, block.getpValue()[0], 1e-3);
+
+        assertEquals(4f, block.getChi2()[1], 0);
+        assertEquals(0.0455, block.getpValue()[1], 1e-4);
+
+        assertEquals(0, block.getChi2()[2], 0);
+        assertEquals(0, block.getpValue()[2], 0);
+    }
+
+    @Test
+    public void testChiSquareUpperTail() throws Exception {
+        assertEquals(1, VariantStatsBlock.chiSquareUpperTail(0), 0);
+        assertEquals(0.05, VariantStatsBlock.chiSquareUpperTail(3.841459), 1e-6);
+        assertEquals(0.01, VariantStatsBlock.chiSquareUpperTail(6.634897), 1e-6);
+    }
+}
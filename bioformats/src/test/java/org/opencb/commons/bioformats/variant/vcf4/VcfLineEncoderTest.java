@@ -0,0 +1,98 @@
+package org.opencb.commons.bioformats.variant.vcf4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.commons.bioformats.variant.Variant;
+import org.opencb.commons.bioformats.variant.VariantFactory;
+import org.opencb.commons.bioformats.variant.vcf4.io.readers.VariantVcfReader;
+import org.opencb.commons.bioformats.variant.vcf4.io.writers.VariantVcfGzipDataWriter;
+import org.opencb.commons.test.GenericTest;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class VcfLineEncoderTest extends GenericTest {
+
+    private static final String LINE = "1\t1650807\trs1137005\tT\tC\t100.00\tPASS\tDP=5;H2;AF=0.5\tGT:DS\t0|1:1.000\t1/1";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testAppend() throws Exception {
+        VcfLineTokenizer tokenizer = new VcfLineTokenizer().tokenize(LINE);
+        Variant variant = VariantFactory.createVariantFromVcf(Arrays.asList("S1", "S2"), tokenizer);
+
+        VcfLineEncoder encoder = new VcfLineEncoder(8);
+        encoder.append(variant);
+        assertEquals(LINE + "\n", encoder.toString());
+
+        // Modified INFO and samples are encoded again
+        variant.addAttribute("NS", "2");
+        Map<String, String> sampleData = new HashMap<>();
+        sampleData.put("GT", "1/1");
+        variant.addSampleData("S3", sampleData);
+        encoder.clear();
+        encoder.append(variant);
+        String expected = "1\t1650807\trs1137005\tT\tC\t100.00\tPASS\tDP=5;H2;AF=0.5;NS=2\tGT:DS\t0|1:1.000\t1/1:.\t1/1:.\n";
+        assertEquals(expected, encoder.toString());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        encoder.writeTo(outputStream);
+        assertEquals(0, encoder.size());
+        assertEquals(expected, outputStream.toString("UTF-8"));
+    }
+
+    @Test
+    public void testMissingId() throws Exception {
+        Variant variant = new Variant("1", 100, "A", "G");
+        VcfLineEncoder encoder = new VcfLineEncoder(8);
+        encoder.append(variant);
+        assertTrue(encoder.toString().startsWith("1\t100\t.\tA\tG\t"));
+
+        variant.setId("");
+        encoder.clear();
+        encoder.append(variant);
+        assertTrue(encoder.toString().startsWith("1\t100\t.\tA\tG\t"));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        String inputFile = getClass().getResource("/variant-test-file.vcf.gz").getFile();
+        String outputFile = temporaryFolder.newFile("variant-test-file.vcf.gz").getAbsolutePath();
+
+        VariantVcfReader reader = new VariantVcfReader(inputFile);
+        VariantVcfGzipDataWriter writer = new VariantVcfGzipDataWriter(reader, outputFile);
+        reader.open();
+        reader.pre();
+        writer.open();
+        writer.pre();
+        List<Variant> batch;
+        while (!(batch = reader.read(100)).isEmpty()) {
+            assertTrue(writer.write(batch));
+        }
+        writer.post();
+        writer.close();
+        reader.post();
+        reader.close();
+
+        assertEquals(readDataLines(inputFile), readDataLines(outputFile));
+    }
+
+    private List<String> readDataLines(String file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file))))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+}
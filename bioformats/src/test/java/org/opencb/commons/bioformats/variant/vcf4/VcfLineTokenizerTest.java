@@ -0,0 +1,49 @@
+package org.opencb.commons.bioformats.variant.vcf4;
+
+import org.junit.Test;
+import org.opencb.commons.bioformats.variant.Variant;
+import org.opencb.commons.bioformats.variant.VariantFactory;
+import org.opencb.commons.test.GenericTest;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class VcfLineTokenizerTest extends GenericTest {
+
+    private static final String LINE = "1\t1650807\trs1137005\tT\tC\t100.00\tPASS\tDP=5;H2;AF=0.5\tGT:DS\t0|1:1.000\t1/1";
+
+    @Test
+    public void testTokenize() throws Exception {
+        VcfLineTokenizer tokenizer = new VcfLineTokenizer().tokenize(LINE);
+
+        assertEquals(11, tokenizer.getNumFields());
+        assertEquals("1", tokenizer.getString(0));
+        assertEquals(1650807, tokenizer.getInt(1));
+        assertEquals("DP=5;H2;AF=0.5", tokenizer.getString(7));
+        assertEquals("1/1", tokenizer.getString(10));
+        assertFalse(tokenizer.isMissing(7));
+
+        tokenizer.tokenize("1\t2\t.\r");
+        assertEquals(3, tokenizer.getNumFields());
+        assertTrue(tokenizer.isMissing(2));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseIntError() throws Exception {
+        new VcfLineTokenizer().tokenize("1\t12a").getInt(1);
+    }
+
+    @Test
+    public void testCreateVariant() throws Exception {
+        VcfLineTokenizer tokenizer = new VcfLineTokenizer().tokenize(LINE);
+        Variant variant = VariantFactory.createVariantFromVcf(Arrays.asList("S1", "S2"), tokenizer);
+        Variant expected = VariantFactory.createVariantFromVcf(Arrays.asList("S1", "S2"), LINE.split("\t"));
+
+        assertEquals(expected.toString(), variant.toString());
+        assertEquals("5", variant.getAttribute("DP"));
+        assertEquals("", variant.getAttribute("H2"));
+        assertEquals("0|1", variant.getSampleData("S1", "GT"));
+        assertEquals(".", variant.getSampleData("S2", "DS"));
+    }
+}
@@ -0,0 +1,110 @@
+package org.opencb.commons.bioformats.variant.vcf4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.commons.bioformats.feature.Region;
+import org.opencb.commons.bioformats.variant.Variant;
+import org.opencb.commons.bioformats.variant.vcf4.io.readers.VariantVcfReader;
+import org.opencb.commons.bioformats.variant.vcf4.io.writers.VariantVcfBgzipDataWriter;
+import org.opencb.commons.test.GenericTest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VcfTabixIndexTest extends GenericTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private String bgzipFile;
+    private List<Variant> variants;
+
+    @Before
+    public void setUp() throws Exception {
+        String inputFile = getClass().getResource("/variant-test-file.vcf.gz").getFile();
+        bgzipFile = new File(temporaryFolder.getRoot(), "variant-test-file.vcf.gz").getAbsolutePath();
+
+        VariantVcfReader reader = new VariantVcfReader(inputFile);
+        VariantVcfBgzipDataWriter writer = new VariantVcfBgzipDataWriter(reader, bgzipFile, true);
+        reader.open();
+        reader.pre();
+        writer.open();
+        writer.pre();
+        variants = new ArrayList<>();
+        List<Variant> batch;
+        while (!(batch = reader.read(100)).isEmpty()) {
+            variants.addAll(batch);
+            writer.write(batch);
+        }
+        writer.post();
+        assertTrue(writer.close());
+        reader.post();
+        reader.close();
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        File indexFile = new File(bgzipFile + VcfTabixIndex.EXTENSION);
+        assertTrue(indexFile.exists());
+
+        VcfTabixIndex index = VcfTabixIndex.read(indexFile);
+        VcfTabixIndex created = VcfTabixIndex.create(new File(bgzipFile));
+        assertEquals(created.getChromosomes(), index.getChromosomes());
+        assertEquals(23, index.getChromosomes().size());
+        for (Region region : Region.parseRegions("1:1-2000000,19:500000-60000000,X:1-1000000")) {
+            long offset = index.getStartOffset(region.getChromosome(), region.getStart(), region.getEnd());
+            assertTrue(offset > 0);
+            assertEquals(created.getStartOffset(region.getChromosome(), region.getStart(), region.getEnd()), offset);
+        }
+        assertEquals(-1, index.getStartOffset("Y", 1, 1000000));
+        assertEquals(-1, index.getStartOffset("1", 1, 1000000));
+    }
+
+    @Test
+    public void testReadRegions() throws Exception {
+        List<Region> regions = Region.parseRegions("1:1-2000000,19:500000-1000000,2:277003-277003,22:1-100000000,Y:1-1000,X:200000000-300000000");
+        VariantVcfReader reader = new VariantVcfReader(bgzipFile, regions);
+        assertTrue(reader.open());
+        reader.pre();
+        List<Variant> read = new ArrayList<>();
+        List<Variant> batch;
+        while (!(batch = reader.read(10)).isEmpty()) {
+            read.addAll(batch);
+        }
+        reader.post();
+        reader.close();
+
+        List<Variant> expected = new ArrayList<>();
+        for (Region region : regions) {
+            for (Variant variant : variants) {
+                if (variant.getChromosome().equals(region.getChromosome())
+                        && variant.getPosition() + variant.getReference().length() - 1 >= region.getStart()
+                        && variant.getPosition() <= region.getEnd()) {
+                    expected.add(variant);
+                }
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.size(), read.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getChromosome(), read.get(i).getChromosome());
+            assertEquals(expected.get(i).getPosition(), read.get(i).getPosition());
+            assertEquals(expected.get(i).getAlternate(), read.get(i).getAlternate());
+        }
+        assertEquals(4, read.get(0).getSamplesDataColumns().getNumSamples());
+    }
+
+    @Test
+    public void testReg2bin() throws Exception {
+        assertEquals(4681, VcfTabixIndex.reg2bin(0, 1));
+        assertEquals(4681 + 1, VcfTabixIndex.reg2bin(1 << 14, (1 << 14) + 10));
+        assertEquals(585, VcfTabixIndex.reg2bin(0, (1 << 14) + 1));
+        assertEquals(0, VcfTabixIndex.reg2bin(0, 1 << 29));
+        assertTrue(VcfTabixIndex.reg2bins(100, 200).contains(VcfTabixIndex.reg2bin(150, 160)));
+    }
+}
@@ -0,0 +1,141 @@
+package org.opencb.commons.bioformats.variant.vcf4.io.readers;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.commons.bioformats.feature.Region;
+import org.opencb.commons.bioformats.variant.Variant;
+import org.opencb.commons.bioformats.variant.stats.StatsCalculator;
+import org.opencb.commons.bioformats.variant.utils.stats.VariantStats;
+import org.opencb.commons.bioformats.variant.vcf4.VcfLineEncoder;
+import org.opencb.commons.bioformats.variant.vcf4.io.writers.VariantProtoDataWriter;
+import org.opencb.commons.test.GenericTest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VariantProtoDataReaderTest extends GenericTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private String protoFile;
+    private List<Variant> variants;
+    private List<String> sampleNames;
+    private String header;
+
+    @Before
+    public void setUp() throws Exception {
+        String inputFile = getClass().getResource("/variant-test-file.vcf.gz").getFile();
+        protoFile = new File(temporaryFolder.getRoot(), "variant-test-file.vpb").getAbsolutePath();
+
+        VariantVcfReader reader = new VariantVcfReader(inputFile);
+        VariantProtoDataWriter writer = new VariantProtoDataWriter(reader, protoFile, 100);
+        reader.open();
+        reader.pre();
+        writer.open();
+        writer.pre();
+        variants = new ArrayList<>();
+        List<Variant> batch;
+        while (!(batch = reader.read(100)).isEmpty()) {
+            List<VariantStats> stats = StatsCalculator.variantStats(batch, reader.getSampleNames(), null);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).setStats(stats.get(i));
+            }
+            variants.addAll(batch);
+            assertTrue(writer.write(batch));
+        }
+        writer.post();
+        assertTrue(writer.close());
+        sampleNames = reader.getSampleNames();
+        header = reader.getHeader();
+        reader.post();
+        reader.close();
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        VariantProtoDataReader reader = new VariantProtoDataReader(protoFile);
+        List<Variant> read = readAll(reader);
+        assertEquals(sampleNames, reader.getSampleNames());
+        assertEquals(header, reader.getHeader());
+
+        assertEquals(variants.size(), read.size());
+        VcfLineEncoder expected = new VcfLineEncoder();
+        VcfLineEncoder actual = new VcfLineEncoder();
+        for (int i = 0; i < variants.size(); i++) {
+            expected.append(variants.get(i));
+            actual.append(read.get(i));
+            assertStatsEquals(variants.get(i).getStats(), read.get(i).getStats());
+        }
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void testReadRegions() throws Exception {
+        List<Region> regions = Region.parseRegions("1:1-2000000,19:500000-1000000,2:277003-277003,Y:1-1000");
+        List<Variant> read = readAll(new VariantProtoDataReader(protoFile, regions));
+
+        List<Variant> expected = new ArrayList<>();
+        for (Variant variant : variants) {
+            for (Region region : regions) {
+                if (variant.getChromosome().equals(region.getChromosome())
+                        && variant.getPosition() + variant.getReference().length() - 1 >= region.getStart()
+                        && variant.getPosition() <= region.getEnd()) {
+                    expected.add(variant);
+                    break;
+                }
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.size(), read.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getChromosome(), read.get(i).getChromosome());
+            assertEquals(expected.get(i).getPosition(), read.get(i).getPosition());
+            assertEquals(expected.get(i).getAlternate(), read.get(i).getAlternate());
+        }
+    }
+
+    @Test
+    public void testReadStatsOnly() throws Exception {
+        VariantProtoDataReader reader = new VariantProtoDataReader(protoFile);
+        reader.setStatsOnly(true);
+        List<Variant> read = readAll(reader);
+
+        assertEquals(variants.size(), read.size());
+        for (int i = 0; i < variants.size(); i++) {
+            assertEquals(variants.get(i).getPosition(), read.get(i).getPosition());
+            assertEquals(variants.get(i).getReference(), read.get(i).getReference());
+            assertNull(read.get(i).getFormat());
+            assertStatsEquals(variants.get(i).getStats(), read.get(i).getStats());
+        }
+    }
+
+    private List<Variant> readAll(VariantProtoDataReader reader) {
+        assertTrue(reader.open());
+        assertTrue(reader.pre());
+        List<Variant> read = new ArrayList<>();
+        List<Variant> batch;
+        while (!(batch = reader.read(33)).isEmpty()) {
+            read.addAll(batch);
+        }
+        reader.post();
+        reader.close();
+        return read;
+    }
+
+    private static void assertStatsEquals(VariantStats expected, VariantStats actual) {
+        assertEquals(expected.getMaf(), actual.getMaf(), 0);
+        assertEquals(expected.getMgf(), actual.getMgf(), 0);
+        assertEquals(expected.getMafAllele(), actual.getMafAllele());
+        assertEquals(expected.getMissingGenotypes(), actual.getMissingGenotypes());
+        assertArrayEquals(expected.getAllelesCount(), actual.getAllelesCount());
+        assertArrayEquals(expected.getGenotypesCount(), actual.getGenotypesCount());
+        assertArrayEquals(expected.getAllelesFreq(), actual.getAllelesFreq(), 0);
+        assertEquals(expected.getHw().getpValue(), actual.getHw().getpValue(), 0);
+    }
+}
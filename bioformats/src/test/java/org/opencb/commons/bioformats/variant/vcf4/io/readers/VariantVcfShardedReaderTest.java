@@ -0,0 +1,123 @@
+package org.opencb.commons.bioformats.variant.vcf4.io.readers;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.commons.bioformats.variant.Variant;
+import org.opencb.commons.bioformats.variant.vcf4.io.writers.VariantVcfBgzipDataWriter;
+import org.opencb.commons.bioformats.variant.vcf4.io.writers.VariantVcfDataWriter;
+import org.opencb.commons.test.GenericTest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VariantVcfShardedReaderTest extends GenericTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private String inputFile;
+    private String plainFile;
+    private String bgzipFile;
+    private List<String> variants;
+
+    @Before
+    public void setUp() throws Exception {
+        inputFile = getClass().getResource("/variant-test-file.vcf.gz").getFile();
+        plainFile = new File(temporaryFolder.getRoot(), "variant-test-file.vcf").getAbsolutePath();
+        bgzipFile = new File(temporaryFolder.getRoot(), "variant-test-file.bgz.vcf.gz").getAbsolutePath();
+
+        VariantVcfReader reader = new VariantVcfReader(inputFile);
+        VariantVcfDataWriter plainWriter = new VariantVcfDataWriter(reader, plainFile);
+        VariantVcfBgzipDataWriter bgzipWriter = new VariantVcfBgzipDataWriter(reader, bgzipFile, false);
+        reader.open();
+        reader.pre();
+        plainWriter.open();
+        plainWriter.pre();
+        bgzipWriter.open();
+        bgzipWriter.pre();
+        variants = new ArrayList<>();
+        List<Variant> batch;
+        while (!(batch = reader.read(100)).isEmpty()) {
+            for (Variant variant : batch) {
+                variants.add(toString(variant));
+            }
+            plainWriter.write(batch);
+            bgzipWriter.write(batch);
+        }
+        plainWriter.post();
+        assertTrue(plainWriter.close());
+        bgzipWriter.post();
+        assertTrue(bgzipWriter.close());
+        reader.post();
+        reader.close();
+    }
+
+    @Test
+    public void testReadOrdered() throws Exception {
+        for (String file : new String[]{plainFile, bgzipFile}) {
+            for (int numShards : new int[]{1, 3, 8}) {
+                assertEquals(variants, readAll(new VariantVcfShardedReader(file, numShards, true), 7));
+            }
+        }
+        assertEquals(variants, readAll(new VariantVcfShardedReader(inputFile, 4, true), 7));
+    }
+
+    @Test
+    public void testReadUnordered() throws Exception {
+        List<String> expected = new ArrayList<>(variants);
+        Collections.sort(expected);
+        for (String file : new String[]{plainFile, bgzipFile}) {
+            List<String> read = readAll(new VariantVcfShardedReader(file, 5, false), 10);
+            Collections.sort(read);
+            assertEquals(expected, read);
+        }
+    }
+
+    @Test
+    public void testShards() throws Exception {
+        VariantVcfShardedReader reader = new VariantVcfShardedReader(bgzipFile, 4, true);
+        assertTrue(reader.open());
+        assertEquals(4, reader.getSampleNames().size());
+        assertTrue(reader.getShards().size() > 1);
+
+        List<String> read = new ArrayList<>();
+        for (VariantReader shard : reader.getShards()) {
+            assertTrue(shard.pre());
+            List<Variant> batch;
+            while (!(batch = shard.read(10)).isEmpty()) {
+                for (Variant variant : batch) {
+                    assertEquals(4, variant.getSamplesDataColumns().getNumSamples());
+                    read.add(toString(variant));
+                }
+            }
+        }
+        reader.close();
+        assertEquals(variants, read);
+    }
+
+    private List<String> readAll(VariantReader reader, int batchSize) {
+        assertTrue(reader.open());
+        assertTrue(reader.pre());
+        List<String> read = new ArrayList<>();
+        List<Variant> batch;
+        while (!(batch = reader.read(batchSize)).isEmpty()) {
+            for (Variant variant : batch) {
+                read.add(toString(variant));
+            }
+        }
+        reader.post();
+        reader.close();
+        return read;
+    }
+
+    private static String toString(Variant variant) {
+        return variant.getChromosome() + ":" + variant.getPosition() + ":" + variant.getReference() + ":"
+                + variant.getAlternate() + ":" + variant.getSampleNames();
+    }
+}
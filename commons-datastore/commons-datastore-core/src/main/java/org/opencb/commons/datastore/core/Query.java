@@ -1,10 +1,6 @@
 package org.opencb.commons.datastore.core;
 
-import java.util.Arrays;
 import java.util.Map;
-import java.util.Objects;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
@@ -30,43 +26,18 @@ public class Query extends ObjectMap {
         super(json);
     }
 
+    /**
+     * Validates the query against a QueryParam enum, converting all the values to the type of each param.
+     *
+     * @param enumType QueryParam enum
+     * @param <E>      QueryParam enum type
+     * @throws EnumConstantNotPresentException if the query contains an unknown param
+     * @throws NumberFormatException           if a value of a numeric array can not be parsed
+     * @see QuerySchema
+     */
     public <E extends Enum<E> & QueryParam> void validate(Class<E> enumType)
             throws EnumConstantNotPresentException, NumberFormatException {
-        Objects.requireNonNull(enumType);
-        Map<String, E> enumFields = Arrays.asList(enumType.getEnumConstants()).stream().collect(
-                Collectors.toMap(queryParam -> queryParam.key(), Function.<E>identity()));
-        for (Map.Entry<String, Object> entry : entrySet()) {
-            if (!enumFields.containsKey(entry.getKey())) {
-                throw new EnumConstantNotPresentException(enumType, entry.getKey());
-            } else {
-                QueryParam queryParam = enumFields.get(entry.getKey());
-                switch (queryParam.type()) {
-                    case TEXT:
-                        put(queryParam.key(), getString(queryParam.key()));
-                        break;
-                    case TEXT_ARRAY:
-                        put(queryParam.key(), getAsStringList(queryParam.key()));
-                        break;
-                    case INTEGER:
-                        put(queryParam.key(), getLong(queryParam.key()));
-                        break;
-                    case INTEGER_ARRAY:
-                        put(queryParam.key(), getAsLongList(queryParam.key()));
-                        break;
-                    case DECIMAL:
-                        put(queryParam.key(), getDouble(queryParam.key()));
-                        break;
-                    case DECIMAL_ARRAY:
-                        put(queryParam.key(), getAsDoubleList(queryParam.key()));
-                        break;
-                    case BOOLEAN:
-                        put(queryParam.key(), getBoolean(queryParam.key()));
-                        break;
-                    default:
-                        break;
-                }
-            }
-        }
+        QuerySchema.of(enumType).validate(this);
     }
 
     @Override
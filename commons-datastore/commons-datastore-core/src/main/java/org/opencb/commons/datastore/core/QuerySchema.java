@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.commons.datastore.core;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Validates and normalizes {@link Query} objects against a {@link QueryParam} enum.
+ * <p>
+ * The schema of each enum is built only once and cached, see {@link #of(Class)}. Validation is done in a single pass over
+ * the query, and values that already have the expected type are not converted again.
+ */
+public final class QuerySchema<E extends Enum<E> & QueryParam> {
+
+    private static final int PARALLEL_THRESHOLD = 100;
+
+    private static final ClassValue<QuerySchema> SCHEMAS = new ClassValue<QuerySchema>() {
+        @Override
+        protected QuerySchema computeValue(Class<?> type) {
+            return new QuerySchema(type);
+        }
+    };
+
+    private final Class<E> enumType;
+    private final Map<String, E> params;
+
+    private QuerySchema(Class<E> enumType) {
+        this.enumType = enumType;
+        E[] enumConstants = enumType.getEnumConstants();
+        params = new HashMap<>(enumConstants.length * 2);
+        for (E queryParam : enumConstants) {
+            params.put(queryParam.key(), queryParam);
+        }
+    }
+
+    /**
+     * Returns the cached schema of a QueryParam enum.
+     *
+     * @param enumType QueryParam enum
+     * @param <E>      QueryParam enum type
+     * @return The schema of the enum
+     */
+    public static <E extends Enum<E> & QueryParam> QuerySchema<E> of(Class<E> enumType) {
+        Objects.requireNonNull(enumType);
+        return SCHEMAS.get(enumType);
+    }
+
+    public E getParam(String key) {
+        return params.get(key);
+    }
+
+    /**
+     * Validates that all the keys of the query are known params, and converts all the values to the type of the param.
+     *
+     * @param query Query to validate. Values are replaced with the normalized ones.
+     * @throws EnumConstantNotPresentException if the query contains an unknown param
+     * @throws NumberFormatException           if a value of a numeric array can not be parsed
+     */
+    public void validate(Query query) throws EnumConstantNotPresentException, NumberFormatException {
+        for (Map.Entry<String, Object> entry : query.entrySet()) {
+            E queryParam = params.get(entry.getKey());
+            if (queryParam == null) {
+                throw new EnumConstantNotPresentException(enumType, entry.getKey());
+            }
+            Object value = entry.getValue();
+            String key = entry.getKey();
+            switch (queryParam.type()) {
+                case TEXT:
+                    if (!(value instanceof String)) {
+                        entry.setValue(query.getString(key));
+                    }
+                    break;
+                case TEXT_ARRAY:
+                    if (!isListOf(value, String.class)) {
+                        entry.setValue(query.getAsStringList(key));
+                    }
+                    break;
+                case INTEGER:
+                    if (!(value instanceof Long)) {
+                        entry.setValue(query.getLong(key));
+                    }
+                    break;
+                case INTEGER_ARRAY:
+                    if (!isListOf(value, Long.class)) {
+                        entry.setValue(query.getAsLongList(key));
+                    }
+                    break;
+                case DECIMAL:
+                    if (!(value instanceof Double)) {
+                        entry.setValue(query.getDouble(key));
+                    }
+                    break;
+                case DECIMAL_ARRAY:
+                    if (!isListOf(value, Double.class)) {
+                        entry.setValue(query.getAsDoubleList(key));
+                    }
+                    break;
+                case BOOLEAN:
+                    if (!(value instanceof Boolean)) {
+                        entry.setValue(query.getBoolean(key));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Validates a batch of queries, in parallel for large batches. An invalid query does not stop the validation of the others.
+     *
+     * @param queries Queries to validate. Values are replaced with the normalized ones.
+     * @return A list with the same size as the input, with the validation error of each query, or null if the query is valid
+     */
+    public List<RuntimeException> validate(List<Query> queries) {
+        RuntimeException[] errors = new RuntimeException[queries.size()];
+        IntStream indexes = IntStream.range(0, queries.size());
+        if (queries.size() >= PARALLEL_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> {
+            try {
+                validate(queries.get(i));
+            } catch (EnumConstantNotPresentException | NumberFormatException e) {
+                errors[i] = e;
+            }
+        });
+        return Arrays.asList(errors);
+    }
+
+    private static boolean isListOf(Object value, Class<?> clazz) {
+        if (!(value instanceof List)) {
+            return false;
+        }
+        for (Object o : (List) value) {
+            if (!clazz.isInstance(o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
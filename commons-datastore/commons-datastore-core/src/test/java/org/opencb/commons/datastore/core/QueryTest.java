@@ -4,6 +4,12 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
 /**
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
@@ -62,4 +68,35 @@ public class QueryTest {
         thrown.expect(EnumConstantNotPresentException.class);
         query.validate(TestQueryParam.class);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testValidateNormalize() throws Exception {
+        Query query = new Query(TestQueryParam.TEST_PARAM_BOOLEAN.key(), "true")
+                .append(TestQueryParam.TEST_PARAM_INTEGER_ARRAY.key(), "1,2,3")
+                .append(TestQueryParam.TEST_PARAM_DECIMAL.key(), "0.5");
+
+        query.validate(TestQueryParam.class);
+        assertEquals(true, query.get(TestQueryParam.TEST_PARAM_BOOLEAN.key()));
+        assertEquals(Arrays.asList(1L, 2L, 3L), query.get(TestQueryParam.TEST_PARAM_INTEGER_ARRAY.key()));
+        assertEquals(0.5, query.get(TestQueryParam.TEST_PARAM_DECIMAL.key()));
+    }
+
+    @Test
+    public void testValidateBatch() throws Exception {
+        List<Query> queries = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            queries.add(new Query(TestQueryParam.TEST_PARAM_INTEGER_ARRAY.key(), i + "," + (i + 1)));
+        }
+        queries.add(new Query("NotAField", "1"));
+        queries.add(new Query(TestQueryParam.TEST_PARAM_INTEGER_ARRAY.key(), "1,A"));
+
+        List<RuntimeException> errors = QuerySchema.of(TestQueryParam.class).validate(queries);
+        assertEquals(queries.size(), errors.size());
+        for (int i = 0; i < 1000; i++) {
+            assertNull(errors.get(i));
+            assertEquals(Arrays.asList((long) i, (long) i + 1), queries.get(i).get(TestQueryParam.TEST_PARAM_INTEGER_ARRAY.key()));
+        }
+        assertTrue(errors.get(1000) instanceof EnumConstantNotPresentException);
+        assertTrue(errors.get(1001) instanceof NumberFormatException);
+    }
+}
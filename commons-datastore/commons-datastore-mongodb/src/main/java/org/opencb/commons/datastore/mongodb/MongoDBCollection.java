@@ -60,6 +60,10 @@ public class MongoDBCollection {
     public static final String BATCH_SIZE = "batchSize";
     public static final String ELEM_MATCH = "elemMatch";
 
+    public static final String ALLOW_DISK_USE = "allowDiskUse";
+    public static final String OUT = "out";
+    public static final String MERGE = "merge";
+
     public static final String UPSERT = "upsert";
     public static final String MULTI = "multi";
     public static final String REPLACE = "replace";
@@ -71,6 +75,7 @@ public class MongoDBCollection {
 
     private MongoDBNativeQuery mongoDBNativeQuery;
     private QueryResultWriter<Object> queryResultWriter;
+    private MongoDBIndexAdvisor indexAdvisor;
 
     private ObjectMapper objectMapper;
     private ObjectWriter objectWriter;
@@ -294,6 +299,9 @@ public class MongoDBCollection {
             queryResult = endQuery(list, start);
         }
 
+        if (indexAdvisor != null) {
+            indexAdvisor.record(query, options, queryResult.getDbTime());
+        }
         return queryResult;
     }
 
@@ -309,65 +317,41 @@ public class MongoDBCollection {
 
 
     public QueryResult<Document> aggregate(List<? extends Bson> operations, QueryOptions options) {
-        long start = startQuery();
-        QueryResult<Document> queryResult;
-
-        // we need to be sure that the List is mutable
-        List<Bson> bsonOperations = new ArrayList<>(operations);
-        if (options != null && options.containsKey("limit")) {
-            bsonOperations.add(Aggregates.limit(options.getInt("limit")));
-        }
-        AggregateIterable output = mongoDBNativeQuery.aggregate(bsonOperations, options);
-        MongoCursor<Document> iterator = output.iterator();
-        List<Bson> list = new LinkedList<>();
-        if (queryResultWriter != null) {
-            try {
-                queryResultWriter.open();
-                while (iterator.hasNext()) {
-                    queryResultWriter.write(iterator.next());
-                }
-                queryResultWriter.close();
-            } catch (IOException e) {
-                queryResult = endQuery(list, start);
-                queryResult.setErrorMsg(e.getMessage() + " " + Arrays.toString(e.getStackTrace()));
-                return queryResult;
-            }
-        } else {
-            while (iterator.hasNext()) {
-                list.add(iterator.next());
-            }
-        }
-        queryResult = endQuery(list, start);
-        return queryResult;
+        return aggregate(operations, null, options);
     }
 
     public <T> QueryResult<T> aggregate(List<? extends Bson> operations, ComplexTypeConverter<T, Document> converter,
                                         QueryOptions options) {
         long start = startQuery();
         QueryResult<T> queryResult;
-        AggregateIterable output = mongoDBNativeQuery.aggregate(operations, options);
-        MongoCursor<Document> iterator = output.iterator();
+        AggregateIterable<Document> output = mongoDBNativeQuery.aggregate(getPipeline(operations, options), options);
         List<T> list = new LinkedList<>();
-        if (queryResultWriter != null) {
-            try {
-                queryResultWriter.open();
-                while (iterator.hasNext()) {
-                    queryResultWriter.write(iterator.next());
-                }
-                queryResultWriter.close();
-            } catch (IOException e) {
-                queryResult = endQuery(list, start);
-                queryResult.setErrorMsg(e.getMessage() + " " + Arrays.toString(e.getStackTrace()));
-                return queryResult;
+        try (MongoCursor<Document> iterator = output.iterator()) {
+            if (isAggregateToCollection(options)) {
+                // Results have been written by the server into the output collection, there is nothing to return
+                return endQuery(list, start);
             }
-        } else {
-            if (converter != null) {
-                while (iterator.hasNext()) {
-                    list.add(converter.convertToDataModelType(iterator.next()));
+            if (queryResultWriter != null) {
+                try {
+                    queryResultWriter.open();
+                    while (iterator.hasNext()) {
+                        queryResultWriter.write(iterator.next());
+                    }
+                    queryResultWriter.close();
+                } catch (IOException e) {
+                    queryResult = endQuery(list, start);
+                    queryResult.setErrorMsg(e.getMessage() + " " + Arrays.toString(e.getStackTrace()));
+                    return queryResult;
                 }
             } else {
-                while (iterator.hasNext()) {
-                    list.add((T) iterator.next());
+                if (converter != null) {
+                    while (iterator.hasNext()) {
+                        list.add(converter.convertToDataModelType(iterator.next()));
+                    }
+                } else {
+                    while (iterator.hasNext()) {
+                        list.add((T) iterator.next());
+                    }
                 }
             }
         }
@@ -375,6 +359,41 @@ public class MongoDBCollection {
         return queryResult;
     }
 
+    /**
+     * Executes an aggregation returning a cursor over its results, so they are not materialized in memory.
+     * Params batchSize, timeout, allowDiskUse, limit, out and merge are read from QueryOptions.
+     * The returned cursor must be closed.
+     *
+     * @param operations Aggregation pipeline
+     * @param options    Some options like batchSize, timeout or allowDiskUse
+     * @return A MongoCursor over the results of the aggregation
+     */
+    public MongoCursor<Document> aggregateIterator(List<? extends Bson> operations, QueryOptions options) {
+        return mongoDBNativeQuery.aggregate(getPipeline(operations, options), options).iterator();
+    }
+
+    private List<Bson> getPipeline(List<? extends Bson> operations, QueryOptions options) {
+        // we need to be sure that the List is mutable
+        List<Bson> bsonOperations = new ArrayList<>(operations);
+        if (options != null) {
+            if (options.containsKey(QueryOptions.LIMIT)) {
+                bsonOperations.add(Aggregates.limit(options.getInt(QueryOptions.LIMIT)));
+            }
+            // $out and $merge must be the last stage of the pipeline
+            if (options.getString(OUT) != null && !options.getString(OUT).isEmpty()) {
+                bsonOperations.add(Aggregates.out(options.getString(OUT)));
+            } else if (options.getString(MERGE) != null && !options.getString(MERGE).isEmpty()) {
+                bsonOperations.add(new Document("$merge", new Document("into", options.getString(MERGE))));
+            }
+        }
+        return bsonOperations;
+    }
+
+    private boolean isAggregateToCollection(QueryOptions options) {
+        return options != null && (options.getString(OUT) != null && !options.getString(OUT).isEmpty()
+                || options.getString(MERGE) != null && !options.getString(MERGE).isEmpty());
+    }
+
     public QueryResult insert(Document object, QueryOptions options) {
         long start = startQuery();
         mongoDBNativeQuery.insert(object, options);
@@ -541,6 +560,19 @@ public class MongoDBCollection {
         this.queryResultWriter = queryResultWriter;
     }
 
+    public MongoDBIndexAdvisor getIndexAdvisor() {
+        return indexAdvisor;
+    }
+
+    /**
+     * Sets an index advisor to record the shape of all the queries executed with the find methods. Null to disable it.
+     *
+     * @param indexAdvisor Index advisor
+     */
+    public void setIndexAdvisor(MongoDBIndexAdvisor indexAdvisor) {
+        this.indexAdvisor = indexAdvisor;
+    }
+
     /**
      * Returns a Native instance to MongoDB. This is a convenience method,
      * equivalent to {@code new MongoClientOptions.Native()}.
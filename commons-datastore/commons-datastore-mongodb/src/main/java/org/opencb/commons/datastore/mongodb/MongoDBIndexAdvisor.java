@@ -0,0 +1,403 @@
+/*
+ * Copyright 2015 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.commons.datastore.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoException;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the shape of the queries executed through a {@link MongoDBCollection} and recommends the indexes they need.
+ * <p>
+ * Queries are normalized by replacing all the values with a placeholder, so "{a: 1, b: {$gt: 5}}" and
+ * "{b: {$gt: 7}, a: 2}" have the same shape. For each shape the number of executions and the dbTime reported in the
+ * QueryResult are accumulated. The slowest shapes are then explained against the server, and an index is recommended
+ * for every shape whose winning plan does a collection scan or an in memory sort. Recommended indexes follow the
+ * equality, sort, range order.
+ * <p>
+ * The advisor is opt-in, see {@link MongoDBCollection#setIndexAdvisor(MongoDBIndexAdvisor)}.
+ */
+public class MongoDBIndexAdvisor {
+
+    public static final int MAX_SHAPES_DEFAULT = 1000;
+
+    static final String PLACEHOLDER = "?";
+
+    private final MongoDataStore mongoDataStore;
+    private final String collectionName;
+    private final int maxShapes;
+    private final Map<String, QueryShape> shapes = new ConcurrentHashMap<>();
+
+    protected Logger logger = LoggerFactory.getLogger(MongoDBIndexAdvisor.class);
+
+    public MongoDBIndexAdvisor(MongoDataStore mongoDataStore, String collectionName) {
+        this(mongoDataStore, collectionName, MAX_SHAPES_DEFAULT);
+    }
+
+    public MongoDBIndexAdvisor(MongoDataStore mongoDataStore, String collectionName, int maxShapes) {
+        this.mongoDataStore = mongoDataStore;
+        this.collectionName = collectionName;
+        this.maxShapes = maxShapes;
+    }
+
+    /**
+     * Records the execution of a query. Once maxShapes different shapes are recorded, new shapes are ignored.
+     *
+     * @param query   Query filter
+     * @param options QueryOptions used in the query, the sort is read from here
+     * @param dbTime  Time spent in the database, as reported by the QueryResult
+     */
+    public void record(Bson query, QueryOptions options, long dbTime) {
+        BsonDocument filter = toBsonDocument(query);
+        BsonDocument sort = toBsonDocument(MongoDBNativeQuery.getSort(options));
+        // Sort direction is part of the shape, so the sort is not normalized
+        String key = normalize(filter).toJson() + " sort: " + sort.toJson();
+
+        QueryShape shape = shapes.get(key);
+        if (shape == null) {
+            if (shapes.size() >= maxShapes) {
+                return;
+            }
+            shape = shapes.computeIfAbsent(key, k -> new QueryShape(k, filter, sort));
+        }
+        shape.add(filter, dbTime);
+    }
+
+    /**
+     * Returns the recorded shapes, sorted by total dbTime in descending order.
+     *
+     * @return List of recorded shapes
+     */
+    public List<QueryShape> getShapes() {
+        List<QueryShape> list = new ArrayList<>(shapes.values());
+        list.sort((s1, s2) -> Long.compare(s2.getTotalTime(), s1.getTotalTime()));
+        return list;
+    }
+
+    public void clear() {
+        shapes.clear();
+    }
+
+    /**
+     * Explains the slowest recorded shapes and recommends an index for those not served by an index.
+     *
+     * @param maxShapesToExplain Maximum number of shapes to explain
+     * @return List of index recommendations, from the slowest shape to the fastest one
+     */
+    public List<IndexRecommendation> recommend(int maxShapesToExplain) {
+        List<IndexRecommendation> recommendations = new ArrayList<>();
+        List<QueryShape> slowestShapes = getShapes();
+        for (QueryShape shape : slowestShapes.subList(0, Math.min(maxShapesToExplain, slowestShapes.size()))) {
+            Document explain;
+            try {
+                explain = explain(shape.getSampleFilter(), shape.getSort());
+            } catch (MongoException e) {
+                logger.warn("Unable to explain query shape {} : {}", shape.getShape(), e.getMessage());
+                continue;
+            }
+            Object queryPlanner = explain.get("queryPlanner");
+            if (!(queryPlanner instanceof Document)) {
+                continue;
+            }
+            Set<String> stages = new HashSet<>();
+            collectStages(((Document) queryPlanner).get("winningPlan"), stages);
+
+            String reason = null;
+            if (stages.contains("COLLSCAN")) {
+                reason = IndexRecommendation.COLLECTION_SCAN;
+            } else if (stages.contains("SORT")) {
+                reason = IndexRecommendation.IN_MEMORY_SORT;
+            }
+            if (reason != null) {
+                Document keys = getIndexKeys(shape.getSampleFilter(), shape.getSort());
+                if (!keys.isEmpty()) {
+                    recommendations.add(new IndexRecommendation(shape, keys, reason));
+                }
+            }
+        }
+        return recommendations;
+    }
+
+    /**
+     * Creates the recommended indexes. Indexes are created in background unless other thing is said in the options.
+     *
+     * @param recommendations Index recommendations to apply
+     * @param options         Index options, as accepted by {@link MongoDBCollection#createIndex(Bson, ObjectMap)}
+     */
+    public void apply(List<IndexRecommendation> recommendations, ObjectMap options) {
+        ObjectMap indexOptions = new ObjectMap(MongoDBCollection.BACKGROUND, true);
+        if (options != null) {
+            indexOptions.putAll(options);
+        }
+        MongoDBCollection mongoDBCollection = mongoDataStore.getCollection(collectionName);
+        for (IndexRecommendation recommendation : recommendations) {
+            logger.info("Creating index {} on collection '{}'", recommendation.getKeys().toJson(), collectionName);
+            mongoDBCollection.createIndex(recommendation.getKeys(), indexOptions);
+        }
+    }
+
+    private Document explain(BsonDocument filter, BsonDocument sort) {
+        Document find = new Document("find", collectionName).append("filter", filter);
+        if (sort != null && !sort.isEmpty()) {
+            find.append("sort", sort);
+        }
+        return mongoDataStore.getDb().runCommand(new Document("explain", find).append("verbosity", "queryPlanner"));
+    }
+
+    private static void collectStages(Object plan, Set<String> stages) {
+        if (plan instanceof Document) {
+            Document document = (Document) plan;
+            if (document.get("stage") != null) {
+                stages.add(document.get("stage").toString());
+            }
+            collectStages(document.get("inputStage"), stages);
+            collectStages(document.get("inputStages"), stages);
+        } else if (plan instanceof List) {
+            for (Object o : (List) plan) {
+                collectStages(o, stages);
+            }
+        }
+    }
+
+    static BsonDocument toBsonDocument(Bson bson) {
+        if (bson == null) {
+            return new BsonDocument();
+        }
+        return bson.toBsonDocument(BsonDocument.class, MongoClient.getDefaultCodecRegistry());
+    }
+
+    /**
+     * Replaces all the values of a filter with a placeholder, keeping fields and operators. Fields are sorted.
+     *
+     * @param filter Query filter
+     * @return Normalized filter
+     */
+    static BsonDocument normalize(BsonDocument filter) {
+        BsonDocument normalized = new BsonDocument();
+        for (String key : new TreeSet<>(filter.keySet())) {
+            BsonValue value = filter.get(key);
+            if (key.equals("$and") || key.equals("$or") || key.equals("$nor")) {
+                BsonArray array = new BsonArray();
+                if (value.isArray()) {
+                    for (BsonValue bsonValue : value.asArray()) {
+                        array.add(bsonValue.isDocument() ? normalize(bsonValue.asDocument()) : new BsonString(PLACEHOLDER));
+                    }
+                }
+                normalized.put(key, array);
+            } else if (isOperatorDocument(value)) {
+                BsonDocument operators = new BsonDocument();
+                for (String operator : new TreeSet<>(value.asDocument().keySet())) {
+                    BsonValue operand = value.asDocument().get(operator);
+                    if (operator.equals("$elemMatch") && operand.isDocument()) {
+                        operators.put(operator, normalize(operand.asDocument()));
+                    } else {
+                        operators.put(operator, new BsonString(PLACEHOLDER));
+                    }
+                }
+                normalized.put(key, operators);
+            } else {
+                normalized.put(key, new BsonString(PLACEHOLDER));
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * Builds the keys of an index for a filter and a sort, following the equality, sort, range rule.
+     * Only top level fields and fields inside a top level "$and" are indexed.
+     *
+     * @param filter Query filter
+     * @param sort   Query sort
+     * @return Index keys
+     */
+    static Document getIndexKeys(BsonDocument filter, BsonDocument sort) {
+        Set<String> equality = new LinkedHashSet<>();
+        Set<String> range = new LinkedHashSet<>();
+        collectIndexFields(filter, equality, range);
+
+        Document keys = new Document();
+        for (String field : equality) {
+            keys.append(field, 1);
+        }
+        if (sort != null) {
+            for (Map.Entry<String, BsonValue> entry : sort.entrySet()) {
+                if (!keys.containsKey(entry.getKey())) {
+                    boolean descending = entry.getValue().isNumber() && entry.getValue().asNumber().intValue() < 0;
+                    keys.append(entry.getKey(), descending ? -1 : 1);
+                }
+            }
+        }
+        for (String field : range) {
+            if (!keys.containsKey(field)) {
+                keys.append(field, 1);
+            }
+        }
+        return keys;
+    }
+
+    private static void collectIndexFields(BsonDocument filter, Set<String> equality, Set<String> range) {
+        for (Map.Entry<String, BsonValue> entry : filter.entrySet()) {
+            String key = entry.getKey();
+            BsonValue value = entry.getValue();
+            if (key.equals("$and")) {
+                if (value.isArray()) {
+                    for (BsonValue bsonValue : value.asArray()) {
+                        if (bsonValue.isDocument()) {
+                            collectIndexFields(bsonValue.asDocument(), equality, range);
+                        }
+                    }
+                }
+            } else if (key.startsWith("$")) {
+                // $or, $nor, $text, $where... can not be served by a single compound index
+                continue;
+            } else if (isOperatorDocument(value)) {
+                Set<String> operators = value.asDocument().keySet();
+                if (operators.size() == 1 && (operators.contains("$eq") || operators.contains("$in"))) {
+                    equality.add(key);
+                } else {
+                    range.add(key);
+                }
+            } else {
+                equality.add(key);
+            }
+        }
+    }
+
+    private static boolean isOperatorDocument(BsonValue value) {
+        if (value.isDocument() && !value.asDocument().isEmpty()) {
+            return value.asDocument().keySet().iterator().next().startsWith("$");
+        }
+        return false;
+    }
+
+    /**
+     * Accumulated statistics of all the queries with the same shape.
+     */
+    public static class QueryShape {
+
+        private final String shape;
+        private final BsonDocument sort;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalTime = new AtomicLong();
+        private final AtomicLong maxTime = new AtomicLong();
+        private volatile BsonDocument sampleFilter;
+
+        QueryShape(String shape, BsonDocument sampleFilter, BsonDocument sort) {
+            this.shape = shape;
+            this.sampleFilter = sampleFilter;
+            this.sort = sort;
+        }
+
+        void add(BsonDocument filter, long dbTime) {
+            count.incrementAndGet();
+            totalTime.addAndGet(dbTime);
+            if (dbTime > maxTime.getAndAccumulate(dbTime, Math::max)) {
+                // Keep the slowest query of the shape to be explained
+                sampleFilter = filter;
+            }
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("QueryShape{");
+            sb.append("shape='").append(shape).append('\'');
+            sb.append(", count=").append(count);
+            sb.append(", totalTime=").append(totalTime);
+            sb.append(", maxTime=").append(maxTime);
+            sb.append('}');
+            return sb.toString();
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public BsonDocument getSort() {
+            return sort;
+        }
+
+        public BsonDocument getSampleFilter() {
+            return sampleFilter;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getTotalTime() {
+            return totalTime.get();
+        }
+
+        public long getMaxTime() {
+            return maxTime.get();
+        }
+    }
+
+    /**
+     * An index recommended for a query shape.
+     */
+    public static class IndexRecommendation {
+
+        public static final String COLLECTION_SCAN = "COLLSCAN";
+        public static final String IN_MEMORY_SORT = "SORT";
+
+        private final QueryShape queryShape;
+        private final Document keys;
+        private final String reason;
+
+        IndexRecommendation(QueryShape queryShape, Document keys, String reason) {
+            this.queryShape = queryShape;
+            this.keys = keys;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("IndexRecommendation{");
+            sb.append("keys=").append(keys.toJson());
+            sb.append(", reason='").append(reason).append('\'');
+            sb.append(", queryShape=").append(queryShape);
+            sb.append('}');
+            return sb.toString();
+        }
+
+        public QueryShape getQueryShape() {
+            return queryShape;
+        }
+
+        public Document getKeys() {
+            return keys;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+}
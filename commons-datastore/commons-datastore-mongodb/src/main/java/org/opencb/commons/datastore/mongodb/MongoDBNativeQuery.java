@@ -95,18 +95,9 @@ public class MongoDBNativeQuery {
             findIterable.skip(skip);
         }
 
-        Object sortObject = (options != null) ? options.get(QueryOptions.SORT) : null;
-        if (sortObject != null) {
-            if (sortObject instanceof Bson) {
-                findIterable.sort(((Bson) sortObject));
-            } else if (sortObject instanceof String) {
-                String order = options.getString(QueryOptions.ORDER, "DESC");
-                if (order.equalsIgnoreCase(QueryOptions.ASCENDING) || order.equalsIgnoreCase("ASC") || order.equals("1")) {
-                    findIterable.sort(Sorts.ascending(((String) sortObject)));
-                } else {
-                    findIterable.sort(Sorts.descending(((String) sortObject)));
-                }
-            }
+        Bson sort = getSort(options);
+        if (sort != null) {
+            findIterable.sort(sort);
         }
 
         if (options != null && options.containsKey(MongoDBCollection.BATCH_SIZE)) {
@@ -120,8 +111,30 @@ public class MongoDBNativeQuery {
         return findIterable;
     }
 
-    public AggregateIterable aggregate(List<? extends Bson> operations, QueryOptions options) {
-        return (operations.size() > 0) ? dbCollection.aggregate(operations) : null;
+    /**
+     * Creates the AggregateIterable for a pipeline. Params batchSize, timeout and allowDiskUse are read from QueryOptions.
+     *
+     * @param operations Aggregation pipeline
+     * @param options    Some options like batchSize, timeout or allowDiskUse
+     * @return An AggregateIterable from MongoDB API, or null if the pipeline is empty
+     */
+    public AggregateIterable<Document> aggregate(List<? extends Bson> operations, QueryOptions options) {
+        if (operations.size() == 0) {
+            return null;
+        }
+        AggregateIterable<Document> aggregateIterable = dbCollection.aggregate(operations);
+        if (options != null) {
+            if (options.containsKey(MongoDBCollection.ALLOW_DISK_USE)) {
+                aggregateIterable.allowDiskUse(options.getBoolean(MongoDBCollection.ALLOW_DISK_USE));
+            }
+            if (options.containsKey(MongoDBCollection.BATCH_SIZE)) {
+                aggregateIterable.batchSize(options.getInt(MongoDBCollection.BATCH_SIZE, 20));
+            }
+            if (options.containsKey(QueryOptions.TIMEOUT)) {
+                aggregateIterable.maxTime(options.getLong(QueryOptions.TIMEOUT), TimeUnit.MILLISECONDS);
+            }
+        }
+        return aggregateIterable;
     }
 
     /**
@@ -347,6 +360,29 @@ public class MongoDBNativeQuery {
     }
 
 
+    /**
+     * Reads the sort from the 'sort' and 'order' fields of the QueryOptions.
+     *
+     * @param options QueryOptions
+     * @return The sort to apply, or null if none was requested
+     */
+    static Bson getSort(QueryOptions options) {
+        Object sortObject = (options != null) ? options.get(QueryOptions.SORT) : null;
+        if (sortObject != null) {
+            if (sortObject instanceof Bson) {
+                return (Bson) sortObject;
+            } else if (sortObject instanceof String) {
+                String order = options.getString(QueryOptions.ORDER, "DESC");
+                if (order.equalsIgnoreCase(QueryOptions.ASCENDING) || order.equalsIgnoreCase("ASC") || order.equals("1")) {
+                    return Sorts.ascending(((String) sortObject));
+                } else {
+                    return Sorts.descending(((String) sortObject));
+                }
+            }
+        }
+        return null;
+    }
+
     private Bson getProjection(Bson projection, QueryOptions options) {
         Bson projectionResult = null;
         List<Bson> projections = new ArrayList<>();
@@ -0,0 +1,418 @@
+/*
+ * Copyright 2015 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.commons.datastore.mongodb;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.Filters;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.conversions.Bson;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.core.QueryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer that coalesces the updates to the same "_id" of a {@link MongoDBCollection}.
+ * <p>
+ * Updates are kept in memory and merged per "_id": "$inc" values are added, "$set" and "$unset" keep the last value,
+ * "$max" and "$min" keep the maximum and minimum, and "$addToSet" values are joined. Pending updates are written with a
+ * single unordered bulk update every time the window expires, when the buffer reaches its maximum number of keys, or
+ * when {@link #flush()} or {@link #close()} are called.
+ * <p>
+ * If an update modifies a field already modified by a pending update with a different operator, or a field that contains
+ * or is contained by a field of a pending update, the pending updates are written before buffering the new one, so the
+ * result is the same as executing the updates one by one.
+ * <p>
+ * If a write fails with a network error or a timeout, the updates are kept, and are written before any newer update by
+ * the next flush. Any other error, like a duplicate key or a failed validation, would fail again, so the updates that
+ * were not written are logged and discarded. An error in a background write is thrown by the next call to
+ * {@link #update(Object, Bson)}, unless the kept updates are written before.
+ */
+public class MongoDBUpdateBuffer implements AutoCloseable {
+
+    public static final String INC = "$inc";
+    public static final String SET = "$set";
+    public static final String UNSET = "$unset";
+    public static final String MAX = "$max";
+    public static final String MIN = "$min";
+    public static final String ADD_TO_SET = "$addToSet";
+    private static final List<String> SUPPORTED_OPERATORS = Arrays.asList(INC, SET, UNSET, MAX, MIN, ADD_TO_SET);
+
+    private final MongoDBCollection collection;
+    private final int maxKeys;
+    private final QueryOptions options;
+
+    private final Object flushLock = new Object();
+    private Map<Object, PendingUpdate> pendingUpdates = new LinkedHashMap<>();
+    // Updates of a write that failed with a transient error, to be written before the pending updates
+    private Map<Object, PendingUpdate> failedUpdates = Collections.emptyMap();
+    private RuntimeException backgroundError;
+    private final ScheduledExecutorService scheduler;
+    private boolean closed = false;
+
+    protected Logger logger = LoggerFactory.getLogger(MongoDBUpdateBuffer.class);
+
+    /**
+     * Creates a new write-behind buffer.
+     *
+     * @param collection Collection to update
+     * @param windowMs   Maximum time in milliseconds that an update is kept in the buffer. If 0, the buffer is only written
+     *                   when full or when explicitly flushed
+     * @param maxKeys    Maximum number of different "_id" to keep in the buffer
+     * @param options    Update options, like upsert
+     */
+    public MongoDBUpdateBuffer(MongoDBCollection collection, long windowMs, int maxKeys, QueryOptions options) {
+        this.collection = collection;
+        this.maxKeys = maxKeys;
+        this.options = options != null ? new QueryOptions(options) : new QueryOptions();
+        // The bulk update must never be a multi update. Each update is bound to a single _id
+        this.options.put(MongoDBCollection.MULTI, false);
+        this.options.put(MongoDBCollection.REPLACE, false);
+
+        if (windowMs > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "MongoDBUpdateBuffer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    logger.error("Error writing buffered updates", e);
+                    synchronized (this) {
+                        backgroundError = e;
+                        notifyAll();
+                    }
+                }
+            }, windowMs, windowMs, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Buffers an update to the document with the given "_id".
+     *
+     * @param id     Value of the "_id" of the document to update
+     * @param update Update with any of the operators $inc, $set, $unset, $max, $min and $addToSet
+     * @throws IllegalStateException If the buffer is closed, or if a background write failed since the last call
+     */
+    public void update(Object id, Bson update) {
+        Document updateDocument = toDocument(update);
+        for (String operator : updateDocument.keySet()) {
+            if (!SUPPORTED_OPERATORS.contains(operator)) {
+                throw new IllegalArgumentException("Update operator '" + operator + "' can not be buffered. "
+                        + "Supported operators: " + SUPPORTED_OPERATORS);
+            }
+        }
+
+        boolean flush;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("MongoDBUpdateBuffer is closed");
+            }
+            if (backgroundError != null) {
+                RuntimeException error = backgroundError;
+                backgroundError = null;
+                throw new IllegalStateException("Error writing buffered updates", error);
+            }
+            PendingUpdate pendingUpdate = pendingUpdates.get(id);
+            if (pendingUpdate != null && pendingUpdate.conflicts(updateDocument)) {
+                flush = true;
+            } else {
+                if (pendingUpdate == null) {
+                    pendingUpdate = new PendingUpdate();
+                    pendingUpdates.put(id, pendingUpdate);
+                }
+                pendingUpdate.merge(updateDocument);
+                flush = pendingUpdates.size() >= maxKeys;
+                updateDocument = null;
+            }
+        }
+        if (flush) {
+            flush();
+        }
+        if (updateDocument != null) {
+            // Conflicting update. Buffer it once the previous updates have been written
+            update(id, updateDocument);
+        }
+    }
+
+    /**
+     * Writes all the pending updates with a single unordered bulk update. The updates of a previous write that failed with
+     * a transient error are written first, with their own bulk update.
+     *
+     * @return The result of the bulk update, or null if there was nothing to write
+     */
+    public QueryResult<BulkWriteResult> flush() {
+        // Flushes are serialized, so updates to the same _id are always written in order
+        synchronized (flushLock) {
+            QueryResult<BulkWriteResult> result = null;
+            Map<Object, PendingUpdate> updates;
+            synchronized (this) {
+                updates = failedUpdates;
+            }
+            if (!updates.isEmpty()) {
+                logger.debug("Writing {} buffered updates from a failed write", updates.size());
+                result = write(updates);
+            }
+
+            synchronized (this) {
+                if (pendingUpdates.isEmpty()) {
+                    return result;
+                }
+                updates = pendingUpdates;
+                pendingUpdates = new LinkedHashMap<>();
+            }
+            logger.debug("Writing {} buffered updates", updates.size());
+            return write(updates);
+        }
+    }
+
+    /**
+     * Writes the updates. If the write fails with a transient error they are kept in {@link #failedUpdates}, otherwise
+     * the ones that were not written are discarded.
+     */
+    private QueryResult<BulkWriteResult> write(Map<Object, PendingUpdate> updates) {
+        List<Object> ids = new ArrayList<>(updates.keySet());
+        List<Bson> queries = new ArrayList<>(updates.size());
+        List<Bson> documents = new ArrayList<>(updates.size());
+        for (Map.Entry<Object, PendingUpdate> entry : updates.entrySet()) {
+            queries.add(Filters.eq("_id", entry.getKey()));
+            documents.add(entry.getValue().toDocument());
+        }
+        QueryResult<BulkWriteResult> result;
+        try {
+            result = collection.update(queries, documents, options);
+        } catch (MongoSocketException | MongoTimeoutException | MongoExecutionTimeoutException e) {
+            // Transient error. The updates are written again by the next flush
+            synchronized (this) {
+                failedUpdates = updates;
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            // Discarded, so they do not hold back the newer updates
+            if (e instanceof MongoBulkWriteException) {
+                // The bulk update is unordered, so all the updates without a write error were applied
+                for (BulkWriteError error : ((MongoBulkWriteException) e).getWriteErrors()) {
+                    logger.error("Discarding buffered update of _id {}: {}", ids.get(error.getIndex()), error.getMessage());
+                }
+            } else {
+                logger.error("Discarding {} buffered updates", updates.size());
+            }
+            synchronized (this) {
+                failedUpdates = Collections.emptyMap();
+            }
+            throw e;
+        }
+        synchronized (this) {
+            if (!failedUpdates.isEmpty()) {
+                // The kept updates were written, nothing is lost anymore
+                failedUpdates = Collections.emptyMap();
+                backgroundError = null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the pending updates and stops the background writes. No more updates are accepted.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    /**
+     * @return Number of "_id" with updates not written yet, including the ones of a failed write
+     */
+    public synchronized int getNumPendingUpdates() {
+        int numPendingUpdates = pendingUpdates.size();
+        for (Object id : failedUpdates.keySet()) {
+            if (!pendingUpdates.containsKey(id)) {
+                numPendingUpdates++;
+            }
+        }
+        return numPendingUpdates;
+    }
+
+    synchronized RuntimeException getBackgroundError() {
+        return backgroundError;
+    }
+
+    synchronized Document getPendingUpdate(Object id) {
+        PendingUpdate pendingUpdate = pendingUpdates.get(id);
+        return pendingUpdate == null ? null : pendingUpdate.toDocument();
+    }
+
+    private static Document toDocument(Bson bson) {
+        if (bson instanceof Document) {
+            return (Document) bson;
+        }
+        BsonDocument bsonDocument = bson.toBsonDocument(BsonDocument.class, MongoClient.getDefaultCodecRegistry());
+        return new DocumentCodec().decode(new BsonDocumentReader(bsonDocument), DecoderContext.builder().build());
+    }
+
+    /**
+     * All the updates buffered for a single "_id", merged by operator and field.
+     */
+    static class PendingUpdate {
+
+        private final Map<String, Map<String, Object>> operators = new LinkedHashMap<>();
+
+        /**
+         * Checks if any field of the update is already modified by a different operator, or if it contains or is
+         * contained by a field already modified, like "a" and "a.b". MongoDB rejects an update that modifies both.
+         *
+         * @param update Update document
+         * @return true if the update can not be merged
+         */
+        boolean conflicts(Document update) {
+            for (String operator : update.keySet()) {
+                for (String field : ((Document) update.get(operator)).keySet()) {
+                    for (Map.Entry<String, Map<String, Object>> entry : operators.entrySet()) {
+                        for (String pendingField : entry.getValue().keySet()) {
+                            if (pendingField.equals(field)) {
+                                if (!compatible(entry.getKey(), operator)) {
+                                    return true;
+                                }
+                            } else if (pendingField.startsWith(field + ".") || field.startsWith(pendingField + ".")) {
+                                return true;
+                            }
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static boolean compatible(String operator1, String operator2) {
+            // $set and $unset of the same field override each other
+            return operator1.equals(operator2)
+                    || (operator1.equals(SET) || operator1.equals(UNSET)) && (operator2.equals(SET) || operator2.equals(UNSET));
+        }
+
+        void merge(Document update) {
+            for (String operator : update.keySet()) {
+                Document fields = (Document) update.get(operator);
+                for (Map.Entry<String, Object> entry : fields.entrySet()) {
+                    String field = entry.getKey();
+                    Object value = entry.getValue();
+                    switch (operator) {
+                        case INC:
+                            fields(INC).merge(field, value, PendingUpdate::add);
+                            break;
+                        case SET:
+                            fields(UNSET).remove(field);
+                            fields(SET).put(field, value);
+                            break;
+                        case UNSET:
+                            fields(SET).remove(field);
+                            fields(UNSET).put(field, value);
+                            break;
+                        case MAX:
+                            fields(MAX).merge(field, value, (v1, v2) -> compare(v1, v2) >= 0 ? v1 : v2);
+                            break;
+                        case MIN:
+                            fields(MIN).merge(field, value, (v1, v2) -> compare(v1, v2) <= 0 ? v1 : v2);
+                            break;
+                        case ADD_TO_SET:
+                            Set<Object> values = (Set<Object>) fields(ADD_TO_SET).computeIfAbsent(field, k -> new LinkedHashSet<>());
+                            if (value instanceof Document && ((Document) value).containsKey("$each")) {
+                                values.addAll((Collection<?>) ((Document) value).get("$each"));
+                            } else {
+                                values.add(value);
+                            }
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unsupported update operator " + operator);
+                    }
+                }
+            }
+        }
+
+        private Map<String, Object> fields(String operator) {
+            return operators.computeIfAbsent(operator, k -> new LinkedHashMap<>());
+        }
+
+        Document toDocument() {
+            Document document = new Document();
+            for (Map.Entry<String, Map<String, Object>> entry : operators.entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    continue;
+                }
+                Document fields = new Document();
+                for (Map.Entry<String, Object> fieldEntry : entry.getValue().entrySet()) {
+                    if (entry.getKey().equals(ADD_TO_SET)) {
+                        fields.append(fieldEntry.getKey(), new Document("$each", new ArrayList<>((Set<?>) fieldEntry.getValue())));
+                    } else {
+                        fields.append(fieldEntry.getKey(), fieldEntry.getValue());
+                    }
+                }
+                document.append(entry.getKey(), fields);
+            }
+            return document;
+        }
+
+        private static Object add(Object o1, Object o2) {
+            Number n1 = (Number) o1;
+            Number n2 = (Number) o2;
+            if (n1 instanceof Double || n2 instanceof Double || n1 instanceof Float || n2 instanceof Float) {
+                return n1.doubleValue() + n2.doubleValue();
+            }
+            long sum = n1.longValue() + n2.longValue();
+            if (n1 instanceof Integer && n2 instanceof Integer && sum >= Integer.MIN_VALUE && sum <= Integer.MAX_VALUE) {
+                return (int) sum;
+            }
+            return sum;
+        }
+
+        private static int compare(Object o1, Object o2) {
+            if (o1 instanceof Number && o2 instanceof Number) {
+                return Double.compare(((Number) o1).doubleValue(), ((Number) o2).doubleValue());
+            }
+            return ((Comparable<Object>) o1).compareTo(o2);
+        }
+    }
+}
@@ -42,13 +42,29 @@ public class MongoDataStore {
     private MongoClient mongoClient;
     private MongoDatabase db;
     private MongoDBConfiguration mongoDBConfiguration;
+    private Runnable onClose;
+    private boolean closed;
 
     protected Logger logger = LoggerFactory.getLogger(MongoDataStore.class);
 
     MongoDataStore(MongoClient mongoClient, MongoDatabase db, MongoDBConfiguration mongoDBConfiguration) {
+        this(mongoClient, db, mongoDBConfiguration, null);
+    }
+
+    /**
+     * Creates a MongoDataStore over a MongoClient that may be shared with other databases.
+     *
+     * @param mongoClient           MongoClient used to access the database
+     * @param db                    MongoDatabase
+     * @param mongoDBConfiguration  Configuration used to create this MongoDataStore
+     * @param onClose               Action to execute on close instead of closing the MongoClient, or null
+     */
+    MongoDataStore(MongoClient mongoClient, MongoDatabase db, MongoDBConfiguration mongoDBConfiguration, Runnable onClose) {
         this.mongoClient = mongoClient;
         this.db = db;
         this.mongoDBConfiguration = mongoDBConfiguration;
+        this.onClose = onClose;
+        this.closed = false;
     }
 
     public boolean testConnection() {
@@ -109,9 +125,17 @@ public class MongoDataStore {
         db.drop();
     }
 
-    void close() {
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
         logger.debug("MongoDataStore: connection closed for database '{}'", getDatabaseName());
-        mongoClient.close();
+        if (onClose != null) {
+            onClose.run();
+        } else {
+            mongoClient.close();
+        }
     }
 
 
@@ -124,6 +148,10 @@ public class MongoDataStore {
         return Collections.emptyMap();
     }
 
+    MongoClient getMongoClient() {
+        return mongoClient;
+    }
+
     public MongoDatabase getDb() {
         return db;
     }
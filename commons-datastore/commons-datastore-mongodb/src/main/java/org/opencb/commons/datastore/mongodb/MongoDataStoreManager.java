@@ -25,6 +25,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.opencb.commons.datastore.mongodb.MongoDBConfiguration.*;
 
@@ -33,7 +34,9 @@ import static org.opencb.commons.datastore.mongodb.MongoDBConfiguration.*;
  */
 public class MongoDataStoreManager implements AutoCloseable {
 
-    private Map<String, MongoDataStore> mongoDataStores = new HashMap<>();
+    private final Map<String, MongoDataStore> mongoDataStores = new ConcurrentHashMap<>();
+    // MongoClients are shared between databases with the same servers, credentials and client options. Guarded by itself.
+    private final Map<MongoClientKey, SharedMongoClient> mongoClients = new HashMap<>();
     private List<DataStoreServerAddress> dataStoreServerAddresses;
 
     //    private MongoDBConfiguration mongoDBConfiguration;
@@ -93,12 +96,22 @@ public class MongoDataStoreManager implements AutoCloseable {
     }
 
     public MongoDataStore get(String database, MongoDBConfiguration mongoDBConfiguration) {
-        if (!mongoDataStores.containsKey(database)) {
-            MongoDataStore mongoDataStore = create(database, mongoDBConfiguration);
-            logger.debug("MongoDataStoreManager: new MongoDataStore database '{}' created", database);
-            mongoDataStores.put(database, mongoDataStore);
+        if (database == null) {
+            logger.debug("MongoDB database is null or empty");
+            return null;
+        }
+        MongoDataStore mongoDataStore = mongoDataStores.get(database);
+        if (mongoDataStore == null) {
+            // computeIfAbsent is atomic, so concurrent callers will never create two MongoDataStores for the same database
+            mongoDataStore = mongoDataStores.computeIfAbsent(database, key -> {
+                MongoDataStore newMongoDataStore = create(key, mongoDBConfiguration);
+                if (newMongoDataStore != null) {
+                    logger.debug("MongoDataStoreManager: new MongoDataStore database '{}' created", key);
+                }
+                return newMongoDataStore;
+            });
         }
-        return mongoDataStores.get(database);
+        return mongoDataStore;
     }
 
     private MongoDataStore create(String database, MongoDBConfiguration mongoDBConfiguration) {
@@ -145,7 +158,8 @@ public class MongoDataStoreManager implements AutoCloseable {
             }
 
 
-            mc = newMongoClient(mongoClientOptions, mongoCredential);
+            MongoClientKey mongoClientKey = new MongoClientKey(getServerAddresses(), mongoCredential, mongoClientOptions);
+            mc = acquireMongoClient(mongoClientKey);
 
 //                mc.setReadPreference(ReadPreference.secondary(new BasicDBObject("dc", "PG")));
 //                mc.setReadPreference(ReadPreference.primary());
@@ -157,7 +171,7 @@ public class MongoDataStoreManager implements AutoCloseable {
 
             long t1 = System.currentTimeMillis();
             logger.debug("MongoDataStoreManager: MongoDataStore object for database: '" + database + "' created in " + (t0 - t1) + "ms");
-            mongoDataStore = new MongoDataStore(mc, db, mongoDBConfiguration);
+            mongoDataStore = new MongoDataStore(mc, db, mongoDBConfiguration, () -> releaseMongoClient(mongoClientKey));
         } else {
             logger.debug("MongoDB database is null or empty");
         }
@@ -181,8 +195,9 @@ public class MongoDataStoreManager implements AutoCloseable {
 
     public void drop(String database) {
         if (database != null && !database.trim().equals("")) {
-            if (mongoDataStores.containsKey(database)) {
-                mongoDataStores.get(database).drop();
+            MongoDataStore mongoDataStore = mongoDataStores.get(database);
+            if (mongoDataStore != null) {
+                mongoDataStore.drop();
                 // Do not close or remove from map
             }
         } else {
@@ -191,18 +206,65 @@ public class MongoDataStoreManager implements AutoCloseable {
     }
 
     public void close(String database) {
-        if (mongoDataStores.containsKey(database)) {
-            mongoDataStores.get(database).close();
-            mongoDataStores.remove(database);
+        if (database == null) {
+            return;
+        }
+        MongoDataStore mongoDataStore = mongoDataStores.remove(database);
+        if (mongoDataStore != null) {
+            mongoDataStore.close();
         }
     }
 
     @Override
     public void close() {
-        for (Entry<String, MongoDataStore> entry : mongoDataStores.entrySet()) {
-            entry.getValue().close();
+        for (String database : new ArrayList<>(mongoDataStores.keySet())) {
+            close(database);
         }
-        mongoDataStores.clear();
+    }
+
+    /**
+     * Returns the MongoClient shared by all the databases with the same servers, credentials and client options,
+     * creating it if needed. Each call must be paired with a call to {@link #releaseMongoClient(MongoClientKey)}.
+     *
+     * @param mongoClientKey Servers, credentials and options of the MongoClient
+     * @return the shared MongoClient
+     */
+    private MongoClient acquireMongoClient(MongoClientKey mongoClientKey) {
+        synchronized (mongoClients) {
+            SharedMongoClient sharedMongoClient = mongoClients.get(mongoClientKey);
+            if (sharedMongoClient == null) {
+                MongoClient mongoClient = newMongoClient(mongoClientKey.mongoClientOptions, mongoClientKey.mongoCredential);
+                sharedMongoClient = new SharedMongoClient(mongoClient);
+                mongoClients.put(mongoClientKey, sharedMongoClient);
+                logger.debug("MongoDataStoreManager: new MongoClient created for {}", mongoClientKey.serverAddresses);
+            }
+            sharedMongoClient.references++;
+            return sharedMongoClient.mongoClient;
+        }
+    }
+
+    /**
+     * Releases one reference to a shared MongoClient. The MongoClient is closed when no MongoDataStore uses it anymore.
+     *
+     * @param mongoClientKey Servers, credentials and options of the MongoClient
+     */
+    private void releaseMongoClient(MongoClientKey mongoClientKey) {
+        synchronized (mongoClients) {
+            SharedMongoClient sharedMongoClient = mongoClients.get(mongoClientKey);
+            if (sharedMongoClient != null && --sharedMongoClient.references <= 0) {
+                mongoClients.remove(mongoClientKey);
+                sharedMongoClient.mongoClient.close();
+                logger.debug("MongoDataStoreManager: MongoClient closed for {}", mongoClientKey.serverAddresses);
+            }
+        }
+    }
+
+    private List<ServerAddress> getServerAddresses() {
+        List<ServerAddress> serverAddresses = new ArrayList<>(dataStoreServerAddresses.size());
+        for (DataStoreServerAddress serverAddress : dataStoreServerAddresses) {
+            serverAddresses.add(new ServerAddress(serverAddress.getHost(), serverAddress.getPort()));
+        }
+        return serverAddresses;
     }
 
     private MongoClient newMongoClient() {
@@ -223,10 +285,7 @@ public class MongoDataStoreManager implements AutoCloseable {
                         mongoClientOptions);
             }
         } else {
-            List<ServerAddress> serverAddresses = new ArrayList<>(dataStoreServerAddresses.size());
-            for (DataStoreServerAddress serverAddress : dataStoreServerAddresses) {
-                serverAddresses.add(new ServerAddress(serverAddress.getHost(), serverAddress.getPort()));
-            }
+            List<ServerAddress> serverAddresses = getServerAddresses();
             if (mongoCredential != null) {
                 mc = new MongoClient(serverAddresses, Arrays.asList(mongoCredential), mongoClientOptions);
             } else {
@@ -236,6 +295,50 @@ public class MongoDataStoreManager implements AutoCloseable {
         return mc;
     }
 
+    /**
+     * Identifies a MongoClient by its servers, credentials and client options.
+     */
+    private static final class MongoClientKey {
+        private final List<ServerAddress> serverAddresses;
+        private final MongoCredential mongoCredential;
+        private final MongoClientOptions mongoClientOptions;
+
+        MongoClientKey(List<ServerAddress> serverAddresses, MongoCredential mongoCredential, MongoClientOptions mongoClientOptions) {
+            this.serverAddresses = serverAddresses;
+            this.mongoCredential = mongoCredential;
+            this.mongoClientOptions = mongoClientOptions;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MongoClientKey)) {
+                return false;
+            }
+            MongoClientKey that = (MongoClientKey) o;
+            return Objects.equals(serverAddresses, that.serverAddresses)
+                    && Objects.equals(mongoCredential, that.mongoCredential)
+                    && Objects.equals(mongoClientOptions, that.mongoClientOptions);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(serverAddresses, mongoCredential, mongoClientOptions);
+        }
+    }
+
+    private static final class SharedMongoClient {
+        private final MongoClient mongoClient;
+        private int references;
+
+        SharedMongoClient(MongoClient mongoClient) {
+            this.mongoClient = mongoClient;
+            this.references = 0;
+        }
+    }
+
     /*
      * GETTERS AND SETTERS
      */
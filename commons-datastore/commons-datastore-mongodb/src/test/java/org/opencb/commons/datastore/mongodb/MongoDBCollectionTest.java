@@ -19,6 +19,7 @@ package org.opencb.commons.datastore.mongodb;
 import com.mongodb.BasicDBObject;
 import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
@@ -411,6 +412,33 @@ public class MongoDBCollectionTest {
         assertEquals("There must be 2 results", 2, queryResult.getResult().size());
     }
 
+    @Test
+    public void testAggregateIterator() throws Exception {
+        List<Bson> dbObjectList = new ArrayList<>();
+        dbObjectList.add(new Document("$group", new Document("_id", "$number")));
+
+        QueryOptions options = new QueryOptions(MongoDBCollection.BATCH_SIZE, 10).append(MongoDBCollection.ALLOW_DISK_USE, true);
+        int count = 0;
+        try (MongoCursor<Document> iterator = mongoDBCollection.aggregateIterator(dbObjectList, options)) {
+            while (iterator.hasNext()) {
+                assertNotNull(iterator.next().get("_id"));
+                count++;
+            }
+        }
+        assertEquals(mongoDBCollection.distinct("number", null, Integer.class).getNumResults(), count);
+    }
+
+    @Test
+    public void testAggregateOut() throws Exception {
+        List<Bson> dbObjectList = new ArrayList<>();
+        dbObjectList.add(new Document("$group", new Document("_id", "$age")));
+
+        QueryResult<Document> queryResult = mongoDBCollection.aggregate(dbObjectList, new QueryOptions(MongoDBCollection.OUT, "aggregate_out_test"));
+        assertEquals(0, queryResult.getNumResults());
+        assertEquals(mongoDBCollection.distinct("age", null, Integer.class).getNumResults(),
+                mongoDataStore.getCollection("aggregate_out_test").count().first().intValue());
+    }
+
     @Test
     public void testInsert() throws Exception {
         Long countBefore = mongoDBCollectionInsertTest.count().first();
@@ -0,0 +1,56 @@
+package org.opencb.commons.datastore.mongodb;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.Test;
+import org.opencb.commons.datastore.core.QueryOptions;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class MongoDBIndexAdvisorTest {
+
+    @Test
+    public void testNormalize() throws Exception {
+        BsonDocument shape1 = MongoDBIndexAdvisor.normalize(MongoDBIndexAdvisor.toBsonDocument(
+                Filters.and(Filters.eq("a", 1), Filters.gt("b", 5))));
+        BsonDocument shape2 = MongoDBIndexAdvisor.normalize(MongoDBIndexAdvisor.toBsonDocument(
+                Filters.and(Filters.gt("b", 7), Filters.eq("a", "x"))));
+        assertEquals(shape1, shape2);
+        assertEquals(BsonDocument.parse("{a: '?', b: {$gt: '?'}}"), shape1);
+
+        BsonDocument shape3 = MongoDBIndexAdvisor.normalize(MongoDBIndexAdvisor.toBsonDocument(
+                Filters.or(Filters.eq("a", 1), Filters.in("c", Arrays.asList(1, 2, 3)))));
+        assertEquals(BsonDocument.parse("{$or: [{a: '?'}, {c: {$in: '?'}}]}"), shape3);
+    }
+
+    @Test
+    public void testGetIndexKeys() throws Exception {
+        BsonDocument filter = MongoDBIndexAdvisor.toBsonDocument(
+                Filters.and(Filters.gt("start", 100), Filters.eq("chromosome", "1"), Filters.in("type", Arrays.asList("SNV", "INDEL"))));
+        BsonDocument sort = MongoDBIndexAdvisor.toBsonDocument(Sorts.descending("score"));
+
+        Document keys = MongoDBIndexAdvisor.getIndexKeys(filter, sort);
+        assertEquals(Arrays.asList("chromosome", "type", "score", "start"), Arrays.asList(keys.keySet().toArray()));
+        assertEquals(-1, keys.get("score"));
+    }
+
+    @Test
+    public void testRecord() throws Exception {
+        MongoDBIndexAdvisor indexAdvisor = new MongoDBIndexAdvisor(null, "collection");
+        QueryOptions options = new QueryOptions(QueryOptions.SORT, "start").append(QueryOptions.ORDER, QueryOptions.ASCENDING);
+        indexAdvisor.record(Filters.eq("chromosome", "1"), options, 10);
+        indexAdvisor.record(Filters.eq("chromosome", "2"), options, 30);
+        indexAdvisor.record(Filters.eq("chromosome", "2"), null, 5);
+
+        assertEquals(2, indexAdvisor.getShapes().size());
+        MongoDBIndexAdvisor.QueryShape slowest = indexAdvisor.getShapes().get(0);
+        assertEquals(2, slowest.getCount());
+        assertEquals(40, slowest.getTotalTime());
+        assertEquals(30, slowest.getMaxTime());
+        assertEquals(BsonDocument.parse("{chromosome: '2'}"), slowest.getSampleFilter());
+    }
+}
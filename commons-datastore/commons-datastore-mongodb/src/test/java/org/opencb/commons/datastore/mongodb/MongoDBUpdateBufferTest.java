@@ -0,0 +1,210 @@
+package org.opencb.commons.datastore.mongodb;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.Updates;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.core.QueryResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MongoDBUpdateBufferTest {
+
+    private MongoDBUpdateBuffer updateBuffer;
+
+    @Before
+    public void setUp() throws Exception {
+        // No collection, and no background writes. Updates are only merged
+        updateBuffer = new MongoDBUpdateBuffer(null, 0, Integer.MAX_VALUE, null);
+    }
+
+    @Test
+    public void testMergeInc() throws Exception {
+        updateBuffer.update(1, Updates.inc("count", 1));
+        updateBuffer.update(1, Updates.inc("count", 2));
+        updateBuffer.update(1, Updates.inc("total", 5L));
+        updateBuffer.update(2, Updates.inc("count", 0.5));
+        updateBuffer.update(2, Updates.inc("count", 1));
+
+        assertEquals(2, updateBuffer.getNumPendingUpdates());
+        assertEquals(new Document("$inc", new Document("count", 3).append("total", 5L)), updateBuffer.getPendingUpdate(1));
+        assertEquals(new Document("$inc", new Document("count", 1.5)), updateBuffer.getPendingUpdate(2));
+    }
+
+    @Test
+    public void testMergeSet() throws Exception {
+        updateBuffer.update(1, Updates.combine(Updates.set("name", "a"), Updates.inc("count", 1)));
+        updateBuffer.update(1, Updates.set("name", "b"));
+        updateBuffer.update(1, Updates.inc("count", 1));
+
+        assertEquals(new Document("$set", new Document("name", "b")).append("$inc", new Document("count", 2)),
+                updateBuffer.getPendingUpdate(1));
+
+        updateBuffer.update(1, Updates.unset("name"));
+        assertEquals(new Document("$inc", new Document("count", 2)).append("$unset", new Document("name", "")),
+                updateBuffer.getPendingUpdate(1));
+    }
+
+    @Test
+    public void testMergeAddToSet() throws Exception {
+        updateBuffer.update(1, Updates.addToSet("tags", "a"));
+        updateBuffer.update(1, Updates.addEachToSet("tags", Arrays.asList("b", "a", "c")));
+
+        assertEquals(new Document("$addToSet", new Document("tags", new Document("$each", Arrays.asList("a", "b", "c")))),
+                updateBuffer.getPendingUpdate(1));
+    }
+
+    @Test
+    public void testMergeMaxMin() throws Exception {
+        updateBuffer.update(1, Updates.combine(Updates.max("max", 5), Updates.min("min", 5)));
+        updateBuffer.update(1, Updates.combine(Updates.max("max", 7), Updates.min("min", 7)));
+        updateBuffer.update(1, Updates.combine(Updates.max("max", 3), Updates.min("min", 3)));
+
+        assertEquals(new Document("$max", new Document("max", 7)).append("$min", new Document("min", 3)),
+                updateBuffer.getPendingUpdate(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedOperator() throws Exception {
+        updateBuffer.update(1, Updates.push("list", 1));
+    }
+
+    @Test
+    public void testConflictingPaths() throws Exception {
+        RecordingCollection collection = new RecordingCollection();
+        updateBuffer = new MongoDBUpdateBuffer(collection, 0, Integer.MAX_VALUE, null);
+
+        updateBuffer.update(1, Updates.set("a", new Document("b", 1)));
+        updateBuffer.update(1, Updates.set("a.b", 2));
+        assertEquals(1, collection.writes.size());
+        assertEquals(new Document("$set", new Document("a", new Document("b", 1))), collection.writes.get(0).get(0));
+        assertEquals(new Document("$set", new Document("a.b", 2)), updateBuffer.getPendingUpdate(1));
+
+        updateBuffer.update(1, Updates.inc("a", 1));
+        assertEquals(2, collection.writes.size());
+        assertEquals(new Document("$inc", new Document("a", 1)), updateBuffer.getPendingUpdate(1));
+
+        // Same prefix, but not a parent path
+        updateBuffer.update(1, Updates.inc("ab", 1));
+        updateBuffer.update(1, Updates.set("b.c", 1));
+        updateBuffer.update(1, Updates.set("b.d", 1));
+        assertEquals(2, collection.writes.size());
+        assertEquals(new Document("$inc", new Document("a", 1).append("ab", 1))
+                .append("$set", new Document("b.c", 1).append("b.d", 1)), updateBuffer.getPendingUpdate(1));
+    }
+
+    @Test
+    public void testFailedWrite() throws Exception {
+        RecordingCollection collection = new RecordingCollection();
+        updateBuffer = new MongoDBUpdateBuffer(collection, 0, Integer.MAX_VALUE, null);
+
+        updateBuffer.update(1, Updates.inc("count", 1));
+        updateBuffer.update(2, Updates.inc("count", 1));
+        collection.failure = new MongoSocketException("Connection lost", new ServerAddress());
+        try {
+            updateBuffer.flush();
+            fail("Expected write error");
+        } catch (MongoSocketException e) {
+            assertSame(collection.failure, e);
+        }
+        assertEquals(2, updateBuffer.getNumPendingUpdates());
+
+        // Newer updates are written after the failed ones
+        updateBuffer.update(1, Updates.inc("count", 2));
+        collection.failure = null;
+        updateBuffer.flush();
+        assertEquals(0, updateBuffer.getNumPendingUpdates());
+        assertEquals(Arrays.asList(new Document("$inc", new Document("count", 1)), new Document("$inc", new Document("count", 1))),
+                collection.writes.get(0));
+        assertEquals(Collections.singletonList(new Document("$inc", new Document("count", 2))), collection.writes.get(1));
+    }
+
+    @Test
+    public void testPartiallyFailedWrite() throws Exception {
+        RecordingCollection collection = new RecordingCollection();
+        updateBuffer = new MongoDBUpdateBuffer(collection, 0, Integer.MAX_VALUE, null);
+
+        updateBuffer.update(1, Updates.inc("count", 1));
+        updateBuffer.update(2, Updates.inc("count", 2));
+        updateBuffer.update(3, Updates.inc("count", 3));
+        collection.failure = new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+                Collections.singletonList(new BulkWriteError(11000, "Duplicated key", new BsonDocument(), 1)), null,
+                new ServerAddress());
+        try {
+            updateBuffer.flush();
+            fail("Expected write error");
+        } catch (MongoBulkWriteException e) {
+            assertSame(collection.failure, e);
+        }
+
+        // The update with a write error would fail again, so it is discarded and does not hold back the newer updates
+        assertEquals(0, updateBuffer.getNumPendingUpdates());
+        collection.failure = null;
+        updateBuffer.update(4, Updates.inc("count", 4));
+        updateBuffer.close();
+        assertEquals(1, collection.writes.size());
+        assertEquals(Collections.singletonList(new Document("$inc", new Document("count", 4))), collection.writes.get(0));
+    }
+
+    @Test
+    public void testBackgroundError() throws Exception {
+        RecordingCollection collection = new RecordingCollection();
+        collection.failure = new MongoSocketException("Connection lost", new ServerAddress());
+        updateBuffer = new MongoDBUpdateBuffer(collection, 10, Integer.MAX_VALUE, null);
+
+        updateBuffer.update(1, Updates.inc("count", 1));
+        synchronized (updateBuffer) {
+            while (updateBuffer.getBackgroundError() == null) {
+                updateBuffer.wait();
+            }
+        }
+        try {
+            updateBuffer.update(1, Updates.inc("count", 1));
+            fail("Expected background write error");
+        } catch (IllegalStateException e) {
+            assertSame(collection.failure, e.getCause());
+        }
+
+        collection.failure = null;
+        updateBuffer.close();
+        assertEquals(0, updateBuffer.getNumPendingUpdates());
+        assertEquals(Collections.singletonList(new Document("$inc", new Document("count", 1))),
+                collection.writes.get(collection.writes.size() - 1));
+    }
+
+    /**
+     * Collection that keeps the updates instead of writing them, or fails with the given exception.
+     */
+    private static class RecordingCollection extends MongoDBCollection {
+
+        private final List<List<Bson>> writes = new ArrayList<>();
+        private volatile RuntimeException failure;
+
+        RecordingCollection() {
+            super(null);
+        }
+
+        @Override
+        public synchronized QueryResult<BulkWriteResult> update(List<? extends Bson> queries, List<? extends Bson> updates,
+                                                                QueryOptions options) {
+            if (failure != null) {
+                throw failure;
+            }
+            writes.add(new ArrayList<>(updates));
+            return new QueryResult<>();
+        }
+    }
+}
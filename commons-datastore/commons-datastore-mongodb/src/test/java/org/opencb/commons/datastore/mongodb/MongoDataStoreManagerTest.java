@@ -52,4 +52,15 @@ public class MongoDataStoreManagerTest {
         mongoDataStore.createCollection("collection1");
         Assert.assertTrue(mongoDataStoreManager.exists("test"));
     }
+
+    @Test
+    public void testSharedMongoClient() throws Exception {
+        MongoDataStore other = mongoDataStoreManager.get("test_other");
+        Assert.assertSame(mongoDataStore.getMongoClient(), other.getMongoClient());
+        Assert.assertSame(other, mongoDataStoreManager.get("test_other"));
+
+        // Closing one database must not close the client shared with the other one
+        mongoDataStoreManager.close("test_other");
+        Assert.assertTrue(mongoDataStore.getCollectionNames() != null);
+    }
 }
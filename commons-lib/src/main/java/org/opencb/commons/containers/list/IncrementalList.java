@@ -1,105 +1,122 @@
 package org.opencb.commons.containers.list;
 
-import java.util.*;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.ListIterator;
-
 /**
  * Created with IntelliJ IDEA.
  * User: jcoll
  * Date: 11/21/13
  * Time: 4:58 PM
  * To change this template use File | Settings | File Templates.
+ * <p>
+ * List of counters that are decremented together, one step at a time, and removed when they reach zero. It is used to
+ * track the reads that cover the current position: each read is inserted with its length and removed once its last
+ * position is passed.
+ * <p>
+ * Instead of keeping the counters, the list keeps how many of them reach zero at each step, in a circular array of ints
+ * indexed by step. Inserting and decrementing are O(1) and do not create any object.
  */
-//TODO: Implement List
 public class IncrementalList {
 
-    private List<Long> list;
-    private ListIterator<Long> iterator;
-    private int totalCount;
+    private int[] ends;
+    private int mask;
+    private long step;
+    private long lastEnd;
+    private int size;
 
     public IncrementalList() {
-        list = new LinkedList<>();
-        totalCount = 0;
+        this(1024);
     }
 
-    public void reverseInsert(long i) {
-        int count = totalCount;
-        long element = 0;
-        iterator = list.listIterator(list.size());
-        while (iterator.hasPrevious()) {
-            if (count < i) {
-                break;
-            }
-            element = iterator.previous();
-            count -= element;
-        }
-        i -= count;
-        iterator.add(i);
-        if (iterator.hasNext()) {
-            element = iterator.next() - i;
-            iterator.set(element);
-        } else {
-            totalCount += i;
-        }
-
+    /**
+     * @param capacity Initial number of steps that can be tracked ahead of the current one. Grows as needed
+     */
+    public IncrementalList(int capacity) {
+        ends = new int[Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1];
+        mask = ends.length - 1;
+        step = 0;
+        lastEnd = -1;
+        size = 0;
+    }
 
+    /**
+     * Inserts a counter. Kept for compatibility, insertion does not depend on the order anymore.
+     *
+     * @param i Value of the counter
+     */
+    public void reverseInsert(long i) {
+        insert(i);
     }
 
+    /**
+     * Inserts a counter, that will be removed by the decrement after it reaches zero.
+     *
+     * @param i Value of the counter
+     */
     public void insert(long i) {
-        iterator = list.listIterator();
-        int count = 0;
-        long element;
-        while (iterator.hasNext()) {
-            element = iterator.next();
-            count += element;
-            if (count > i) {
-                count -= element;
-                iterator.previous();
-                break;
-            }
+        long end = step + i;
+        if (end - step >= ends.length) {
+            grow(i + 1);
         }
-        i -= count;
-        iterator.add(i);
-        if (iterator.hasNext()) {
-            element = iterator.next() - i;
-            iterator.set(element);
-        } else {
-            totalCount += i;
+        ends[(int) (end & mask)]++;
+        size++;
+        if (end > lastEnd) {
+            lastEnd = end;
         }
     }
 
+    /**
+     * Decrements all the counters, removing the ones that were already zero.
+     *
+     * @return Number of removed counters
+     */
     public int decrement() {
-        long count;
-        int numRemoves = 0;
-        boolean decremented = false;
-        iterator = list.listIterator();
-
-        while (iterator.hasNext() && !decremented) {
-            count = iterator.next();
-
-            if (count == 0) {     //Have to be removed
-                iterator.remove();
-                numRemoves++;
-            } else {
-                totalCount--;
-                iterator.set(count - 1);
-                decremented = true;
-            }
-        }
+        int index = (int) (step & mask);
+        int numRemoves = ends[index];
+        ends[index] = 0;
+        size -= numRemoves;
+        step++;
         return numRemoves;
     }
 
+    /**
+     * @return Value of the lowest counter, or -1 if the list is empty
+     */
     public long head() {
-        if (!list.isEmpty()) {
-            return list.listIterator().next();
-        } else {
+        if (size == 0) {
             return -1;
         }
+        long s = step;
+        while (ends[(int) (s & mask)] == 0) {
+            s++;
+        }
+        return s - step;
     }
 
+    /**
+     * @return Value of the highest counter, or 0 if the list is empty
+     */
     public int getTotalCount() {
-        return totalCount;
+        return (int) Math.max(0, lastEnd - step);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void grow(long capacity) {
+        int newLength = ends.length;
+        while (newLength < capacity) {
+            newLength <<= 1;
+        }
+        int[] newEnds = new int[newLength];
+        int newMask = newLength - 1;
+        for (long s = step; s <= lastEnd; s++) {
+            newEnds[(int) (s & newMask)] = ends[(int) (s & mask)];
+        }
+        ends = newEnds;
+        mask = newMask;
     }
 }
@@ -0,0 +1,160 @@
+package org.opencb.commons.containers.map;
+
+import java.util.Arrays;
+
+/**
+ * Counts the occurrences of int values, in a hash table with open addressing and linear probing over arrays of ints,
+ * so counting a value does not box it nor create any entry object.
+ * <p>
+ * The values are also kept in the order they were first counted, which is the order used by {@link #getKey(int)} and
+ * {@link #getCount(int)}. {@link #clear()} only resets the slots in use, and keeps the arrays to be reused.
+ */
+public class IntHistogram {
+
+    private int[] keys;
+    private int[] counts;       // 0 if the slot is empty
+    private int[] slots;        // Slot of each key, in the order they were first counted
+    private int mask;
+    private int size;
+
+    public IntHistogram() {
+        this(64);
+    }
+
+    /**
+     * @param capacity Expected number of different values. Grows as needed
+     */
+    public IntHistogram(int capacity) {
+        int length = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1;
+        keys = new int[length];
+        counts = new int[length];
+        slots = new int[length / 2];
+        mask = length - 1;
+        size = 0;
+    }
+
+    /**
+     * Counts one occurrence of a value.
+     *
+     * @param key Value
+     */
+    public void add(int key) {
+        add(key, 1);
+    }
+
+    /**
+     * Counts several occurrences of a value.
+     *
+     * @param key   Value
+     * @param count Number of occurrences, greater than zero
+     */
+    public void add(int key, int count) {
+        int slot = slot(key);
+        if (counts[slot] == 0) {
+            if (size == slots.length) {
+                grow();
+                slot = slot(key);
+            }
+            keys[slot] = key;
+            slots[size++] = slot;
+        }
+        counts[slot] += count;
+    }
+
+    /**
+     * @param key Value
+     * @return Number of occurrences of the value
+     */
+    public int get(int key) {
+        return counts[slot(key)];
+    }
+
+    /**
+     * @return Slot of the key, or the empty slot where it would be inserted
+     */
+    private int slot(int key) {
+        int slot = hash(key) & mask;
+        while (counts[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldCounts = counts;
+        int[] oldSlots = slots;
+        keys = new int[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        slots = new int[oldSlots.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = slot(oldKeys[oldSlots[i]]);
+            keys[slot] = oldKeys[oldSlots[i]];
+            counts[slot] = oldCounts[oldSlots[i]];
+            slots[i] = slot;
+        }
+    }
+
+    /**
+     * @return Number of different values counted
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param i Index from 0 to size - 1, in the order the values were first counted
+     * @return Value at the index
+     */
+    public int getKey(int i) {
+        return keys[slots[i]];
+    }
+
+    /**
+     * @param i Index from 0 to size - 1, in the order the values were first counted
+     * @return Number of occurrences of the value at the index
+     */
+    public int getCount(int i) {
+        return counts[slots[i]];
+    }
+
+    /**
+     * @param defaultValue Value to return if the histogram is empty
+     * @return Most frequent value. If several values are equally frequent, the one counted first
+     */
+    public int getMode(int defaultValue) {
+        int mode = defaultValue;
+        int modeCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (counts[slots[i]] > modeCount) {
+                modeCount = counts[slots[i]];
+                mode = keys[slots[i]];
+            }
+        }
+        return mode;
+    }
+
+    /**
+     * Removes all the values, keeping the capacity.
+     */
+    public void clear() {
+        if (size > keys.length / 8) {
+            Arrays.fill(counts, 0);
+        } else {
+            for (int i = 0; i < size; i++) {
+                counts[slots[i]] = 0;
+            }
+        }
+        size = 0;
+    }
+}
@@ -72,6 +72,7 @@ public class ParallelTaskRunner<I, O> {
     // Sorted blocking queue.
     private BlockingQueue<Future<Batch<O>>> writeBlockingQueueFuture;
     private Map<Integer, CompletableFuture<Batch<O>>> writeBlockingQueueFutureMap;
+    private Future writerFuture;
 
     private int numBatches = 0;
     private int finishedTasks = 0;
@@ -309,7 +310,7 @@ public class ParallelTaskRunner<I, O> {
             doSubmit(new TaskRunnable(task));
         }
         if (writer != null) {
-            doSubmit(new WriterRunnable(writer));
+            writerFuture = doSubmit(new WriterRunnable(writer));
         }
         try {
             if (reader != null) {
@@ -439,9 +440,10 @@ public class ParallelTaskRunner<I, O> {
         return TimeUnit.NANOSECONDS.convert(timeWriting, unit);
     }
 
-    private void doSubmit(Callable taskRunnable) {
+    private Future doSubmit(Callable taskRunnable) {
         Future ftask = executorService.submit(taskRunnable);
         futureTasks.add(ftask);
+        return ftask;
     }
 
     /**
@@ -638,12 +640,24 @@ public class ParallelTaskRunner<I, O> {
 //                                logger.trace("Offer POISON_PILL failed!");
 //                            }
                         } else if (writeBlockingQueueFuture != null) {
-                            CompletableFuture<Batch<O>> future = new CompletableFuture<>();
-                            future.complete(POISON_PILL);
-                            writeBlockingQueueFuture.offer(future);
+                            // Batches not processed, if aborted. The writer stops at the first one
                             for (Map.Entry<Integer, CompletableFuture<Batch<O>>> entry : writeBlockingQueueFutureMap.entrySet()) {
                                 entry.getValue().complete(POISON_PILL);
                             }
+                            CompletableFuture<Batch<O>> future = new CompletableFuture<>();
+                            future.complete(POISON_PILL);
+                            // The sorted writer can not stop without the poison pill, so wait for room in the queue
+                            // while the writer is running
+                            try {
+                                while (!writeBlockingQueueFuture.offer(future, TIMEOUT_CHECK, TimeUnit.SECONDS)) {
+                                    if (writerFuture == null || writerFuture.isDone()) {
+                                        break;
+                                    }
+                                }
+                            } catch (InterruptedException e) {
+                                logger.warn("Catch InterruptedException " + e);
+                                Thread.currentThread().interrupt();
+                            }
                         }
                     }
                 }
@@ -0,0 +1,70 @@
+package org.opencb.commons.containers.list;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class IncrementalListTest {
+
+    @Test
+    public void testDecrement() {
+        IncrementalList list = new IncrementalList(4);
+        list.insert(2);
+        list.reverseInsert(0);
+        list.insert(2);
+        assertEquals(3, list.size());
+        assertEquals(0, list.head());
+        assertEquals(2, list.getTotalCount());
+
+        assertEquals(1, list.decrement());
+        assertEquals(1, list.head());
+        assertEquals(1, list.getTotalCount());
+        assertEquals(0, list.decrement());
+        assertEquals(0, list.head());
+        assertEquals(0, list.getTotalCount());
+        assertEquals(2, list.decrement());
+        assertEquals(0, list.size());
+        assertEquals(-1, list.head());
+        assertEquals(0, list.getTotalCount());
+    }
+
+    @Test
+    public void testRandom() {
+        // Compared with plain counters, growing the list several times
+        Random random = new Random(1);
+        IncrementalList list = new IncrementalList(2);
+        List<Long> counters = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            if (random.nextInt(3) == 0) {
+                long counter = random.nextInt(i < 5000 ? 20 : 2000);
+                list.insert(counter);
+                counters.add(counter);
+            } else {
+                int removed = 0;
+                for (int j = counters.size() - 1; j >= 0; j--) {
+                    if (counters.get(j) == 0) {
+                        counters.remove(j);
+                        removed++;
+                    } else {
+                        counters.set(j, counters.get(j) - 1);
+                    }
+                }
+                assertEquals(removed, list.decrement());
+            }
+
+            long head = -1;
+            long max = 0;
+            for (long counter : counters) {
+                head = head < 0 ? counter : Math.min(head, counter);
+                max = Math.max(max, counter);
+            }
+            assertEquals(counters.size(), list.size());
+            assertEquals(head, list.head());
+            assertEquals(max, list.getTotalCount());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.opencb.commons.containers.map;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class IntHistogramTest {
+
+    @Test
+    public void testMode() {
+        IntHistogram histogram = new IntHistogram(2);
+        assertEquals(-1, histogram.getMode(-1));
+        histogram.add(5);
+        histogram.add(-3, 2);
+        histogram.add(5);
+        histogram.add(0);
+        assertEquals(3, histogram.size());
+        assertEquals(5, histogram.getMode(-1));
+        histogram.add(-3);
+        assertEquals(-3, histogram.getMode(-1));
+        assertEquals(0, histogram.get(7));
+
+        histogram.clear();
+        assertEquals(0, histogram.size());
+        assertEquals(0, histogram.get(5));
+        assertEquals(-1, histogram.getMode(-1));
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(1);
+        IntHistogram histogram = new IntHistogram(4);
+        for (int round = 0; round < 5; round++) {
+            Map<Integer, Integer> expected = new LinkedHashMap<>();
+            int range = round % 2 == 0 ? 100 : 100000;
+            for (int i = 0; i < 20000; i++) {
+                int key = random.nextInt(range) - range / 2;
+                histogram.add(key);
+                expected.merge(key, 1, Integer::sum);
+            }
+
+            assertEquals(expected.size(), histogram.size());
+            int i = 0;
+            for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+                assertEquals(entry.getKey().intValue(), histogram.getKey(i));
+                assertEquals(entry.getValue().intValue(), histogram.getCount(i));
+                assertEquals(entry.getValue().intValue(), histogram.get(entry.getKey()));
+                i++;
+            }
+            int mode = histogram.getMode(0);
+            for (int count : expected.values()) {
+                assertEquals(true, count <= expected.get(mode));
+            }
+            histogram.clear();
+        }
+    }
+}
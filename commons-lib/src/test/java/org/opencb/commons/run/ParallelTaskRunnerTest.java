@@ -345,4 +345,43 @@ public class ParallelTaskRunnerTest {
 
     }
 
+    @Test(timeout = 60000)
+    public void testSortedSlowWriter() throws Exception {
+        // The writer queue is full when the last task finishes
+        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
+                .setNumTasks(4)
+                .setBatchSize(10)
+                .setCapacity(2)
+                .setSorted(true)
+                .build();
+
+        int limit = 1000;
+        List<Integer> values = new ArrayList<>(limit);
+        final int[] count = {0};
+
+        ParallelTaskRunner<Integer, Integer> runner = new ParallelTaskRunner<>(batchSize -> {
+            List<Integer> batch = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize && count[0] < limit; i++) {
+                batch.add(count[0]++);
+            }
+            return batch;
+        }, batch -> batch, batch -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            values.addAll(batch);
+            return true;
+        }, config);
+
+        runner.run();
+
+        List<Integer> expected = new ArrayList<>(limit);
+        for (int i = 0; i < limit; i++) {
+            expected.add(i);
+        }
+        Assert.assertEquals(expected, values);
+    }
+
 }
\ No newline at end of file